@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Access to the test data of the inputformat, which is used as input for the benchmarks.
+ * The directory can be configured using the system property {@value #TESTDATA_PROPERTY}.
+ **/
+public final class BenchmarkData {
+
+    public static final String TESTDATA_PROPERTY = "hadoopcryptoledger.benchmark.testdata";
+    public static final String DEFAULT_TESTDATA = "../inputformat/src/test/resources/testdata";
+
+    public static final int DEFAULT_BUFFERSIZE = 64 * 1024;
+    public static final int DEFAULT_MAXSIZE_BITCOINBLOCK = 8 * 1024 * 1024;
+    public static final int DEFAULT_MAXSIZE_ETHEREUMBLOCK = 1 * 1024 * 1024;
+    public static final byte[][] BITCOIN_MAGIC = {{(byte) 0xF9, (byte) 0xBE, (byte) 0xB4, (byte) 0xD9}};
+    public static final int ETHEREUM_CHAIN_ID = 1;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Reads a test data file completely into memory, so that the benchmarks do not measure disk I/O
+     *
+     * @param fileName name of the file in the test data directory
+     * @return content of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static byte[] read(String fileName) throws IOException {
+        File file = new File(System.getProperty(TESTDATA_PROPERTY, DEFAULT_TESTDATA), fileName);
+        if (!file.isFile()) {
+            throw new IOException("Test data " + file.getAbsolutePath() + " not found. Please set the system property " + TESTDATA_PROPERTY);
+        }
+        return Files.readAllBytes(file.toPath());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.benchmark.bitcoin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.zuinnote.hadoop.benchmark.BenchmarkData;
+import org.zuinnote.hadoop.benchmark.ByteCounter;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlock;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads all blocks of a file with {@link BitcoinBlockReader#readBlock()} and {@link BitcoinBlockReader#readRawBlock()}.
+ * The file is kept in memory, so that only the parsing is measured. One operation is one complete file.
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitcoinBlockReaderBenchmark {
+
+    @Param({"version4.blk", "scriptwitness2.blk", "multiblock.blk"})
+    public String fileName;
+
+    @Param({"false", "true"})
+    public boolean direct;
+
+    @Param({"false", "true"})
+    public boolean reuseBuffer;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() throws IOException {
+        this.data = BenchmarkData.read(this.fileName);
+    }
+
+    private BitcoinBlockReader newReader() {
+        BitcoinBlockReader bbr = new BitcoinBlockReader(new ByteArrayInputStream(this.data), BenchmarkData.DEFAULT_MAXSIZE_BITCOINBLOCK, BenchmarkData.DEFAULT_BUFFERSIZE, BenchmarkData.BITCOIN_MAGIC, this.direct);
+        bbr.setReuseBuffer(this.reuseBuffer);
+        return bbr;
+    }
+
+    @Benchmark
+    public void readBlock(ByteCounter counter, Blackhole blackhole) throws IOException {
+        BitcoinBlockReader bbr = newReader();
+        BitcoinBlock block;
+        while ((block = bbr.readBlock()) != null) {
+            blackhole.consume(block);
+        }
+        counter.bytes += this.data.length;
+    }
+
+    @Benchmark
+    public void readRawBlock(ByteCounter counter, Blackhole blackhole) throws IOException {
+        BitcoinBlockReader bbr = newReader();
+        ByteBuffer rawBlock;
+        while ((rawBlock = bbr.readRawBlock()) != null) {
+            blackhole.consume(rawBlock);
+        }
+        counter.bytes += this.data.length;
+    }
+}
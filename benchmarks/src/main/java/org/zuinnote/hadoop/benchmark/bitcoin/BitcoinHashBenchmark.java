@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.benchmark.bitcoin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.zuinnote.hadoop.benchmark.BenchmarkData;
+import org.zuinnote.hadoop.benchmark.ByteCounter;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlock;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockReader;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinTransaction;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing of the transactions of a block (txid and wtxid) and of the Merkle tree.
+ * <p>
+ * As in the record readers, transactions are hashed directly from the raw block and cache their hashes, so the transaction
+ * hash benchmarks parse the block from its raw bytes in every operation.
+ * {@link #parseBlock} measures the parsing alone and can be subtracted. The Merkle tree benchmarks work on a parsed
+ * block with already cached transaction hashes and measure only the hashing of the inner nodes.
+ * </p>
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitcoinHashBenchmark {
+
+    @Param({"version4.blk", "scriptwitness2.blk"})
+    public String fileName;
+
+    private BitcoinBlockReader parser;
+    private ByteBuffer rawBlock;
+    private BitcoinBlock block;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] data = BenchmarkData.read(this.fileName);
+        this.parser = new BitcoinBlockReader(new ByteArrayInputStream(data), BenchmarkData.DEFAULT_MAXSIZE_BITCOINBLOCK, BenchmarkData.DEFAULT_BUFFERSIZE, BenchmarkData.BITCOIN_MAGIC, false);
+        this.parser.setRecordTransactionRanges(true);
+        this.rawBlock = this.parser.readRawBlock();
+        this.block = this.parser.parseBlock(this.rawBlock.duplicate());
+        this.block.buildMerkleTree();
+    }
+
+    @Benchmark
+    public BitcoinBlock parseBlock(ByteCounter counter) {
+        counter.bytes += this.rawBlock.remaining();
+        return this.parser.parseBlock(this.rawBlock.duplicate());
+    }
+
+    @Benchmark
+    public void transactionHash(ByteCounter counter, Blackhole blackhole) {
+        for (BitcoinTransaction transaction : parseBlock(counter).getTransactions()) {
+            blackhole.consume(transaction.getTransactionHash());
+        }
+    }
+
+    @Benchmark
+    public void transactionHashSegwit(ByteCounter counter, Blackhole blackhole) {
+        for (BitcoinTransaction transaction : parseBlock(counter).getTransactions()) {
+            blackhole.consume(transaction.getTransactionHashSegwit());
+        }
+    }
+
+    @Benchmark
+    public Object buildMerkleTree() {
+        return this.block.buildMerkleTree();
+    }
+
+    @Benchmark
+    public byte[] calculateMerkleRoot() {
+        return this.block.calculateMerkleRoot();
+    }
+}
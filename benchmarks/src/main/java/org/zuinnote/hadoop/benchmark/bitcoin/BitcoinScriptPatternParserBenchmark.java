@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.benchmark.bitcoin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.zuinnote.hadoop.benchmark.BenchmarkData;
+import org.zuinnote.hadoop.benchmark.ByteCounter;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlock;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockReader;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinScriptPatternParser;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinTransaction;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinTransactionOutput;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Determines the payment destination of all output scripts of the blocks in a file. One operation covers all scripts.
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitcoinScriptPatternParserBenchmark {
+
+    @Param({"version4.blk", "scriptwitness2.blk", "multiblock.blk"})
+    public String fileName;
+
+    private byte[][] scripts;
+    private long scriptBytes;
+
+    @Setup
+    public void setup() throws IOException {
+        BitcoinBlockReader bbr = new BitcoinBlockReader(new ByteArrayInputStream(BenchmarkData.read(this.fileName)), BenchmarkData.DEFAULT_MAXSIZE_BITCOINBLOCK, BenchmarkData.DEFAULT_BUFFERSIZE, BenchmarkData.BITCOIN_MAGIC, false);
+        List<byte[]> result = new ArrayList<>();
+        BitcoinBlock block;
+        while ((block = bbr.readBlock()) != null) {
+            for (BitcoinTransaction transaction : block.getTransactions()) {
+                for (BitcoinTransactionOutput output : transaction.getListOfOutputs()) {
+                    result.add(output.getTxOutScript());
+                    this.scriptBytes += output.getTxOutScript().length;
+                }
+            }
+        }
+        this.scripts = result.toArray(new byte[result.size()][]);
+    }
+
+    @Benchmark
+    public void getPaymentDestination(ByteCounter counter, Blackhole blackhole) {
+        for (byte[] script : this.scripts) {
+            blackhole.consume(BitcoinScriptPatternParser.getPaymentDestination(script));
+        }
+        counter.bytes += this.scriptBytes;
+    }
+}
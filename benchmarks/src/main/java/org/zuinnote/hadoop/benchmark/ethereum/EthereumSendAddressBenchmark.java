@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.benchmark.ethereum;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.zuinnote.hadoop.benchmark.BenchmarkData;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumBlock;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumBlockReader;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumSignatureRecovery;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumTransaction;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumUtil;
+import org.zuinnote.hadoop.ethereum.format.exception.EthereumBlockReadException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recovers the sender addresses of all signed transactions of a file with {@link EthereumUtil#getSendAddress}, the
+ * generic secp256k1 implementation, the batch recovery of {@link EthereumSignatureRecovery} and block by block with
+ * {@link EthereumUtil#getSendAddresses(EthereumBlock, int)} in the calling thread and in the common ForkJoinPool.
+ * One operation covers all transactions.
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EthereumSendAddressBenchmark {
+
+    @Param({"eth1346406.bin", "eth4800251.bin"})
+    public String fileName;
+
+    private EthereumTransaction[] transactions;
+    private List<EthereumTransaction> transactionList;
+    private List<EthereumBlock> blocks;
+
+    @Setup
+    public void setup() throws IOException, EthereumBlockReadException {
+        EthereumBlockReader ebr = new EthereumBlockReader(new ByteArrayInputStream(BenchmarkData.read(this.fileName)), BenchmarkData.DEFAULT_MAXSIZE_ETHEREUMBLOCK, BenchmarkData.DEFAULT_BUFFERSIZE, false);
+        List<EthereumTransaction> result = new ArrayList<>();
+        this.blocks = new ArrayList<>();
+        EthereumBlock block;
+        while ((block = ebr.readBlock()) != null) {
+            this.blocks.add(block);
+            for (EthereumTransaction transaction : block.getEthereumTransactions()) {
+                if (transaction.getSig_v() != null) {
+                    result.add(transaction);
+                }
+            }
+        }
+        this.transactions = result.toArray(new EthereumTransaction[result.size()]);
+        this.transactionList = Arrays.asList(this.transactions);
+    }
+
+    @Benchmark
+    public void getSendAddress(Blackhole blackhole) {
+        for (EthereumTransaction transaction : this.transactions) {
+            blackhole.consume(EthereumUtil.getSendAddress(transaction, BenchmarkData.ETHEREUM_CHAIN_ID));
+        }
+    }
+
+    @Benchmark
+    public void getSendAddressGeneric(Blackhole blackhole) {
+        for (EthereumTransaction transaction : this.transactions) {
+            blackhole.consume(EthereumSignatureRecovery.getSendAddressGeneric(transaction, BenchmarkData.ETHEREUM_CHAIN_ID));
+        }
+    }
+
+    @Benchmark
+    public void getSendAddresses(Blackhole blackhole) {
+        blackhole.consume(EthereumSignatureRecovery.getSendAddresses(this.transactionList, BenchmarkData.ETHEREUM_CHAIN_ID));
+    }
+
+    @Benchmark
+    public void getSendAddressesPerBlock(Blackhole blackhole) {
+        for (EthereumBlock block : this.blocks) {
+            blackhole.consume(EthereumUtil.getSendAddresses(block, BenchmarkData.ETHEREUM_CHAIN_ID, null));
+        }
+    }
+
+    @Benchmark
+    public void getSendAddressesPerBlockParallel(Blackhole blackhole) {
+        for (EthereumBlock block : this.blocks) {
+            blackhole.consume(EthereumUtil.getSendAddresses(block, BenchmarkData.ETHEREUM_CHAIN_ID));
+        }
+    }
+}
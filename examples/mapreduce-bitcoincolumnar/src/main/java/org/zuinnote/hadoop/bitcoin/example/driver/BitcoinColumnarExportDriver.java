@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.zuinnote.hadoop.bitcoin.example.driver;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.zuinnote.hadoop.bitcoin.example.tasks.BitcoinColumnarExportMap;
+import org.zuinnote.hadoop.bitcoin.format.mapreduce.BitcoinBlockViewFileInputFormat;
+
+/**
+ * Converts files containing Bitcoin blockchain data once into the ORC tables blocks, transactions, inputs and outputs
+ * (see BitcoinColumnarWriter for the schemas). Hive, Spark or Presto can then scan the columns they need with predicate
+ * pushdown instead of parsing the raw blocks for every query.
+ * <p>
+ * Usage: BitcoinColumnarExportDriver input output - the tables are written to output/blocks, output/transactions,
+ * output/inputs and output/outputs
+ * </p>
+ */
+public class BitcoinColumnarExportDriver extends Configured implements Tool {
+
+    public BitcoinColumnarExportDriver() {
+        // nothing needed here
+    }
+
+    public int run(String[] args) throws Exception {
+        Job job = Job.getInstance(getConf(), "example-hadoop-bitcoin-columnarexport-job");
+        job.setJarByClass(BitcoinColumnarExportDriver.class);
+        job.setMapperClass(BitcoinColumnarExportMap.class);
+        job.setNumReduceTasks(0);
+        job.setOutputKeyClass(NullWritable.class);
+        job.setOutputValueClass(NullWritable.class);
+
+        job.setInputFormatClass(BitcoinBlockViewFileInputFormat.class);
+        // the mapper writes the tables itself, the output format is only used to commit the work output path
+        LazyOutputFormat.setOutputFormatClass(job, TextOutputFormat.class);
+        FileInputFormat.addInputPath(job, new Path(args[0]));
+        FileOutputFormat.setOutputPath(job, new Path(args[1]));
+
+        return job.waitForCompletion(true) ? 0 : 1;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Configuration conf = new Configuration();
+        /** Set as an example some of the options to configure the Bitcoin fileformat **/
+        /** Find here all configuration options: https://github.com/ZuInnoTe/hadoopcryptoledger/wiki/Hadoop-File-Format **/
+        conf.set("hadoopcryptoledger.bitcoinblockinputformat.filter.magic", "F9BEB4D9");
+        conf.set("orc.compress", "ZLIB");
+        // Let ToolRunner handle generic command-line options
+        int res = ToolRunner.run(conf, new BitcoinColumnarExportDriver(), args);
+        System.exit(res);
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.zuinnote.hadoop.bitcoin.example.tasks;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockView;
+
+import java.io.IOException;
+
+/**
+ * Map-only task writing the blocks of its split into the ORC tables blocks, transactions, inputs and outputs. The files
+ * are created in the work output path of the task, so they are only moved into the output directory if the task
+ * succeeds.
+ **/
+public class BitcoinColumnarExportMap extends Mapper<BytesWritable, BitcoinBlockView, NullWritable, NullWritable> {
+
+    private BitcoinColumnarWriter writer;
+
+    @Override
+    public void setup(Context context) throws IOException, InterruptedException {
+        String fileName = String.format("part-m-%05d.orc", context.getTaskAttemptID().getTaskID().getId());
+        this.writer = new BitcoinColumnarWriter(context.getConfiguration(), FileOutputFormat.getWorkOutputPath(context), fileName);
+    }
+
+    @Override
+    public void map(BytesWritable key, BitcoinBlockView value, Context context) throws IOException, InterruptedException {
+        this.writer.addBlock(value);
+    }
+
+    @Override
+    public void cleanup(Context context) throws IOException {
+        if (this.writer != null) {
+            this.writer.close();
+        }
+    }
+
+}
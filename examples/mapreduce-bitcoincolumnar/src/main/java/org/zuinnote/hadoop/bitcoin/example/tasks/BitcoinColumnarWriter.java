@@ -0,0 +1,204 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.example.tasks;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.orc.OrcFile;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.Writer;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockView;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinScriptPatternParser;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinTransactionView;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes blocks, transactions, inputs and outputs of Bitcoin blocks as four normalized ORC tables. Values are copied
+ * directly from the flyweight {@link BitcoinBlockView} into the column vectors of the tables, ie no Java objects are
+ * created for transactions, inputs and outputs.
+ * <p>
+ * All hashes (block hash, txid, wtxid) are stored in internal byte order, ie as calculated by BitcoinUtil and not
+ * reversed as displayed by block explorers. Transactions are joined with their block by block_hash, inputs and outputs
+ * with their transaction by txid.
+ * </p>
+ **/
+public class BitcoinColumnarWriter implements Closeable {
+
+    public static final String TABLE_BLOCKS = "blocks";
+    public static final String TABLE_TRANSACTIONS = "transactions";
+    public static final String TABLE_INPUTS = "inputs";
+    public static final String TABLE_OUTPUTS = "outputs";
+
+    public static final TypeDescription SCHEMA_BLOCKS = TypeDescription.fromString("struct<block_hash:binary,magic:binary,block_size:bigint,version:bigint,prev_block_hash:binary,merkle_root:binary,time:bigint,bits:bigint,nonce:bigint,transaction_count:int>");
+    public static final TypeDescription SCHEMA_TRANSACTIONS = TypeDescription.fromString("struct<block_hash:binary,tx_index:int,txid:binary,wtxid:binary,version:bigint,segwit:boolean,input_count:int,output_count:int,lock_time:bigint,size:int>");
+    public static final TypeDescription SCHEMA_INPUTS = TypeDescription.fromString("struct<txid:binary,input_index:int,prev_txid:binary,prev_output_index:bigint,script:binary,sequence:bigint>");
+    public static final TypeDescription SCHEMA_OUTPUTS = TypeDescription.fromString("struct<txid:binary,output_index:int,value:bigint,script:binary,payment_destination:string>");
+
+    private final Writer blocks;
+    private final Writer transactions;
+    private final Writer inputs;
+    private final Writer outputs;
+    private final VectorizedRowBatch blockBatch = SCHEMA_BLOCKS.createRowBatch();
+    private final VectorizedRowBatch transactionBatch = SCHEMA_TRANSACTIONS.createRowBatch();
+    private final VectorizedRowBatch inputBatch = SCHEMA_INPUTS.createRowBatch();
+    private final VectorizedRowBatch outputBatch = SCHEMA_OUTPUTS.createRowBatch();
+    private final byte[] hashBuffer = new byte[32];
+
+    /**
+     * Creates one ORC file for each table, ie dir/blocks/fileName, dir/transactions/fileName etc.
+     *
+     * @param conf     configuration, ORC writer options (eg orc.compress) are taken from it
+     * @param dir      base directory of the tables
+     * @param fileName name of the files to create
+     * @throws IOException in case the files cannot be created
+     */
+    public BitcoinColumnarWriter(Configuration conf, Path dir, String fileName) throws IOException {
+        this.blocks = createWriter(conf, new Path(new Path(dir, TABLE_BLOCKS), fileName), SCHEMA_BLOCKS);
+        this.transactions = createWriter(conf, new Path(new Path(dir, TABLE_TRANSACTIONS), fileName), SCHEMA_TRANSACTIONS);
+        this.inputs = createWriter(conf, new Path(new Path(dir, TABLE_INPUTS), fileName), SCHEMA_INPUTS);
+        this.outputs = createWriter(conf, new Path(new Path(dir, TABLE_OUTPUTS), fileName), SCHEMA_OUTPUTS);
+    }
+
+    private static Writer createWriter(Configuration conf, Path file, TypeDescription schema) throws IOException {
+        return OrcFile.createWriter(file, OrcFile.writerOptions(conf).setSchema(schema));
+    }
+
+    /**
+     * Adds a block including all its transactions, inputs and outputs to the tables
+     *
+     * @param block view of the block
+     * @throws IOException in case a batch cannot be written
+     */
+    public void addBlock(BitcoinBlockView block) throws IOException {
+        byte[] blockHash = block.getBlockHash();
+        int row = this.blockBatch.size++;
+        ((BytesColumnVector) this.blockBatch.cols[0]).setVal(row, blockHash);
+        ((BytesColumnVector) this.blockBatch.cols[1]).setVal(row, block.getMagicNo());
+        ((LongColumnVector) this.blockBatch.cols[2]).vector[row] = block.getBlockSize();
+        ((LongColumnVector) this.blockBatch.cols[3]).vector[row] = block.getVersion();
+        block.getHashPrevBlock(this.hashBuffer, 0);
+        ((BytesColumnVector) this.blockBatch.cols[4]).setVal(row, this.hashBuffer);
+        block.getHashMerkleRoot(this.hashBuffer, 0);
+        ((BytesColumnVector) this.blockBatch.cols[5]).setVal(row, this.hashBuffer);
+        ((LongColumnVector) this.blockBatch.cols[6]).vector[row] = block.getTime();
+        ((LongColumnVector) this.blockBatch.cols[7]).vector[row] = block.getBits();
+        ((LongColumnVector) this.blockBatch.cols[8]).vector[row] = block.getNonce();
+        ((LongColumnVector) this.blockBatch.cols[9]).vector[row] = block.getTransactionCount();
+        flushIfFull(this.blocks, this.blockBatch);
+        for (int i = 0; i < block.getTransactionCount(); i++) {
+            addTransaction(blockHash, block.getTransaction(i));
+        }
+    }
+
+    private void addTransaction(byte[] blockHash, BitcoinTransactionView transaction) throws IOException {
+        byte[] txid = transaction.getTransactionHash();
+        boolean segwit = transaction.isSegwit();
+        int row = this.transactionBatch.size++;
+        ((BytesColumnVector) this.transactionBatch.cols[0]).setVal(row, blockHash);
+        ((LongColumnVector) this.transactionBatch.cols[1]).vector[row] = transaction.getIndex();
+        ((BytesColumnVector) this.transactionBatch.cols[2]).setVal(row, txid);
+        // without witness data wtxid and txid are identical
+        ((BytesColumnVector) this.transactionBatch.cols[3]).setVal(row, segwit ? transaction.getTransactionHashSegwit() : txid);
+        ((LongColumnVector) this.transactionBatch.cols[4]).vector[row] = transaction.getVersion();
+        ((LongColumnVector) this.transactionBatch.cols[5]).vector[row] = segwit ? 1 : 0;
+        ((LongColumnVector) this.transactionBatch.cols[6]).vector[row] = transaction.getInputCount();
+        ((LongColumnVector) this.transactionBatch.cols[7]).vector[row] = transaction.getOutputCount();
+        ((LongColumnVector) this.transactionBatch.cols[8]).vector[row] = transaction.getLockTime();
+        ((LongColumnVector) this.transactionBatch.cols[9]).vector[row] = transaction.rawSlice().remaining();
+        flushIfFull(this.transactions, this.transactionBatch);
+        for (int i = 0; i < transaction.getInputCount(); i++) {
+            row = this.inputBatch.size++;
+            ((BytesColumnVector) this.inputBatch.cols[0]).setVal(row, txid);
+            ((LongColumnVector) this.inputBatch.cols[1]).vector[row] = i;
+            transaction.getPrevTransactionHash(i, this.hashBuffer, 0);
+            ((BytesColumnVector) this.inputBatch.cols[2]).setVal(row, this.hashBuffer);
+            ((LongColumnVector) this.inputBatch.cols[3]).vector[row] = transaction.getPreviousTxOutIndex(i);
+            setVal((BytesColumnVector) this.inputBatch.cols[4], row, transaction.inputScriptSlice(i));
+            ((LongColumnVector) this.inputBatch.cols[5]).vector[row] = transaction.getSeqNo(i);
+            flushIfFull(this.inputs, this.inputBatch);
+        }
+        for (int i = 0; i < transaction.getOutputCount(); i++) {
+            row = this.outputBatch.size++;
+            ((BytesColumnVector) this.outputBatch.cols[0]).setVal(row, txid);
+            ((LongColumnVector) this.outputBatch.cols[1]).vector[row] = i;
+            ((LongColumnVector) this.outputBatch.cols[2]).vector[row] = transaction.getValue(i);
+            ByteBuffer script = transaction.scriptSlice(i);
+            byte[] scriptBytes = new byte[script.remaining()];
+            script.get(scriptBytes);
+            ((BytesColumnVector) this.outputBatch.cols[3]).setVal(row, scriptBytes);
+            BytesColumnVector destination = (BytesColumnVector) this.outputBatch.cols[4];
+            String paymentDestination = BitcoinScriptPatternParser.getPaymentDestination(scriptBytes);
+            if (paymentDestination == null) {
+                destination.noNulls = false;
+                destination.isNull[row] = true;
+            } else {
+                destination.setVal(row, paymentDestination.getBytes(StandardCharsets.UTF_8));
+            }
+            flushIfFull(this.outputs, this.outputBatch);
+        }
+    }
+
+    /**
+     * Copies a slice of the raw block into a column. The raw block is reused by the reader, so it cannot be referenced.
+     */
+    private static void setVal(BytesColumnVector column, int row, ByteBuffer slice) {
+        if (slice.hasArray()) {
+            column.setVal(row, slice.array(), slice.arrayOffset() + slice.position(), slice.remaining());
+        } else {
+            byte[] copy = new byte[slice.remaining()];
+            slice.get(copy);
+            column.setVal(row, copy);
+        }
+    }
+
+    private static void flushIfFull(Writer writer, VectorizedRowBatch batch) throws IOException {
+        if (batch.size == batch.getMaxSize()) {
+            flush(writer, batch);
+        }
+    }
+
+    private static void flush(Writer writer, VectorizedRowBatch batch) throws IOException {
+        if (batch.size > 0) {
+            writer.addRowBatch(batch);
+            batch.reset();
+        }
+    }
+
+    /**
+     * Writes the remaining rows and closes all tables
+     *
+     * @throws IOException in case the tables cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        flush(this.blocks, this.blockBatch);
+        flush(this.transactions, this.transactionBatch);
+        flush(this.inputs, this.inputBatch);
+        flush(this.outputs, this.outputBatch);
+        this.blocks.close();
+        this.transactions.close();
+        this.inputs.close();
+        this.outputs.close();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.zuinnote.hadoop.bitcoin.example;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.RecordReader;
+import org.junit.jupiter.api.Test;
+import org.zuinnote.hadoop.bitcoin.example.tasks.BitcoinColumnarWriter;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockReader;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockView;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class MapReduceBitcoinColumnarTest {
+
+    private static final String GENESIS_BLOCK_HASH = "6FE28C0AB6F1B372C1A6A246AE63F74F931E8365E15A089C68D6190000000000";
+    private static final String GENESIS_TXID = "3BA3EDFD7A7B12B27AC72C3E67768F617FC81BC3888A51323A9FB8AA4B1E5E4A";
+
+    @Test
+    public void writeGenesisBlock() throws IOException {
+        Configuration conf = new Configuration();
+        ClassLoader classLoader = getClass().getClassLoader();
+        File file = new File(classLoader.getResource("testdata/genesis.blk").getFile());
+        Path dir = new Path(Files.createTempDirectory("hcl-columnar").toUri());
+        byte[][] magic = new byte[][]{{(byte) 0xF9, (byte) 0xBE, (byte) 0xB4, (byte) 0xD9}};
+        BitcoinBlockReader bbr = new BitcoinBlockReader(new FileInputStream(file), 2 * 1024 * 1024, 64 * 1024, magic, false);
+        try (BitcoinColumnarWriter writer = new BitcoinColumnarWriter(conf, dir, "part-m-00000.orc")) {
+            writer.addBlock(new BitcoinBlockView().reset(bbr.readRawBlock()));
+        } finally {
+            bbr.close();
+        }
+        VectorizedRowBatch blocks = readTable(conf, dir, BitcoinColumnarWriter.TABLE_BLOCKS);
+        assertEquals(1, blocks.size, "Genesis block written");
+        assertEquals(GENESIS_BLOCK_HASH, hex((BytesColumnVector) blocks.cols[0], 0), "Block hash of genesis block");
+        assertEquals(1, ((LongColumnVector) blocks.cols[9]).vector[0], "Genesis block contains one transaction");
+        VectorizedRowBatch transactions = readTable(conf, dir, BitcoinColumnarWriter.TABLE_TRANSACTIONS);
+        assertEquals(1, transactions.size, "Coinbase transaction written");
+        assertEquals(GENESIS_BLOCK_HASH, hex((BytesColumnVector) transactions.cols[0], 0), "Transaction references its block");
+        assertEquals(GENESIS_TXID, hex((BytesColumnVector) transactions.cols[2], 0), "Txid of coinbase transaction");
+        assertEquals(GENESIS_TXID, hex((BytesColumnVector) transactions.cols[3], 0), "Wtxid equals txid without witness data");
+        VectorizedRowBatch inputs = readTable(conf, dir, BitcoinColumnarWriter.TABLE_INPUTS);
+        assertEquals(1, inputs.size, "Coinbase input written");
+        assertEquals(4294967295L, ((LongColumnVector) inputs.cols[3]).vector[0], "Coinbase input does not reference an output");
+        VectorizedRowBatch outputs = readTable(conf, dir, BitcoinColumnarWriter.TABLE_OUTPUTS);
+        assertEquals(1, outputs.size, "Coinbase output written");
+        assertEquals(5000000000L, ((LongColumnVector) outputs.cols[2]).vector[0], "Coinbase output pays 50 BTC");
+        BytesColumnVector destination = (BytesColumnVector) outputs.cols[4];
+        assertTrue(new String(destination.vector[0], destination.start[0], destination.length[0], StandardCharsets.UTF_8).startsWith("bitcoinpubkey_"), "Coinbase output pays to a public key");
+    }
+
+    private static VectorizedRowBatch readTable(Configuration conf, Path dir, String table) throws IOException {
+        Reader reader = OrcFile.createReader(new Path(new Path(dir, table), "part-m-00000.orc"), OrcFile.readerOptions(conf));
+        VectorizedRowBatch batch = reader.getSchema().createRowBatch();
+        RecordReader rows = reader.rows();
+        rows.nextBatch(batch);
+        rows.close();
+        return batch;
+    }
+
+    private static String hex(BytesColumnVector column, int row) {
+        return BitcoinUtil.convertByteArrayToHexString(Arrays.copyOfRange(column.vector[row], column.start[row], column.start[row] + column.length[row]));
+    }
+}
@@ -15,12 +15,20 @@
  */
 package org.zuinnote.flink.ethereum;
 
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.flink.api.common.io.FileInputFormat;
+import org.apache.flink.core.fs.BlockLocation;
 import org.apache.flink.core.fs.FileInputSplit;
+import org.apache.flink.core.fs.FileStatus;
+import org.apache.flink.core.fs.FileSystem;
+import org.apache.flink.core.fs.Path;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumBlockIndex;
 import org.zuinnote.hadoop.ethereum.format.common.EthereumBlockReader;
 import org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumRecordReader;
 
@@ -47,6 +55,67 @@ public abstract class AbstractEthereumFlinkInputFormat<E> extends FileInputForma
 	}
 	
 	
+	/*
+	 * Excludes the sidecar indexes of block files
+	 *
+	 * (non-Javadoc)
+	 * @see org.apache.flink.api.common.io.FileInputFormat#acceptFile(org.apache.flink.core.fs.FileStatus)
+	 */
+	@Override
+	public boolean acceptFile(FileStatus fileStatus) {
+		return super.acceptFile(fileStatus) && !fileStatus.getPath().getName().endsWith(EthereumBlockIndex.FILE_EXTENSION);
+	}
+
+	/*
+	 * Creates one split per file. Files with a sidecar index (cf. org.zuinnote.hadoop.ethereum.format.common.EthereumBlockIndex) are split at block boundaries instead.
+	 *
+	 * (non-Javadoc)
+	 * @see org.apache.flink.api.common.io.FileInputFormat#createInputSplits(int)
+	 */
+	@Override
+	public FileInputSplit[] createInputSplits(int minNumSplits) throws IOException {
+		FileInputSplit[] splits = super.createInputSplits(minNumSplits);
+		long totalLength = 0;
+		for (FileInputSplit split : splits) {
+			totalLength += split.getLength();
+		}
+		long maxSplitSize = totalLength / Math.max(minNumSplits, 1);
+		List<FileInputSplit> result = new ArrayList<>(splits.length);
+		for (FileInputSplit split : splits) {
+			Path file = split.getPath();
+			FileSystem fs = file.getFileSystem();
+			Path indexPath = new Path(file.getParent(), file.getName() + EthereumBlockIndex.FILE_EXTENSION);
+			EthereumBlockIndex index = null;
+			if (fs.exists(indexPath)) {
+				index = new EthereumBlockIndex();
+				try (DataInputStream in = new DataInputStream(fs.open(indexPath))) {
+					index.readFields(in);
+				}
+			}
+			FileStatus status = fs.getFileStatus(file);
+			if ((index == null) || (status.getLen() < index.getFileLength())) {
+				result.add(new FileInputSplit(result.size(), file, split.getStart(), split.getLength(), split.getHostnames()));
+				continue;
+			}
+			long splitSize = Math.max(getMinSplitSize(), Math.min(maxSplitSize, status.getBlockSize()));
+			long[] boundaries = index.getSplitBoundaries(splitSize);
+			for (int i = 0; i < boundaries.length - 1; i++) {
+				result.add(new FileInputSplit(result.size(), file, boundaries[i], boundaries[i + 1] - boundaries[i], getHosts(fs, status, boundaries[i])));
+			}
+			// the file has grown since it has been indexed, the new data starts after the last indexed block
+			long endOfBlocks = index.getEndOfBlocks();
+			if ((status.getLen() > index.getFileLength()) && (status.getLen() > endOfBlocks)) {
+				result.add(new FileInputSplit(result.size(), file, endOfBlocks, status.getLen() - endOfBlocks, getHosts(fs, status, endOfBlocks)));
+			}
+		}
+		return result.toArray(new FileInputSplit[result.size()]);
+	}
+
+	private static String[] getHosts(FileSystem fs, FileStatus status, long offset) throws IOException {
+		BlockLocation[] blocks = fs.getFileBlockLocations(status, offset, 1);
+		return blocks.length > 0 ? blocks[0].getHosts() : new String[0];
+	}
+
 	/*
 	 * Reads data supplied by Flink with @see org.zuinnote.hadoop.ethereum.format.common.EthereumBlockReader
 	 * 
@@ -66,7 +66,7 @@ public class EthereumBlockFlinkInputFormat extends AbstractEthereumFlinkInputFor
 	@Override
 	public EthereumBlock nextRecord(EthereumBlock reuse) throws IOException {
 		EthereumBlock dataBlock=null;
-		if ((this.currentSplit.getLength()<0) ||(this.stream.getPos()<=this.currentSplit.getStart()+this.currentSplit.getLength())) {
+		if ((this.currentSplit.getLength()<0) ||(this.stream.getPos()<this.currentSplit.getStart()+this.currentSplit.getLength())) {
 		
 				try {
 					dataBlock=this.getEbr().readBlock();
@@ -56,7 +56,7 @@ public class EthereumRawBlockFlinkInputFormat extends AbstractEthereumFlinkInput
 	@Override
 	public BytesWritable nextRecord(BytesWritable reuse) throws IOException {
 		ByteBuffer dataBlock=null;
-		if ((this.currentSplit.getLength()<0) ||(this.stream.getPos()<=this.currentSplit.getStart()+this.currentSplit.getLength())) {
+		if ((this.currentSplit.getLength()<0) ||(this.stream.getPos()<this.currentSplit.getStart()+this.currentSplit.getLength())) {
 
 				try {
 					dataBlock=this.getEbr().readRawBlock();
@@ -35,6 +35,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlock;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockHeader;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinTransaction;
 import org.zuinnote.hadoop.bitcoin.format.exception.HadoopCryptoLedgerConfigurationException;
 
@@ -269,6 +270,29 @@ public class FlinkBitcoinDataSourceTest {
 		    assertTrue(inputFormat.reachedEnd(),"End reached");
 	 }
 	 
+	 @Test
+	 public void parseBitcoinBlockHeader() throws HadoopCryptoLedgerConfigurationException, IOException {
+		  ClassLoader classLoader = getClass().getClassLoader();
+		    String fileName="multiblock.blk";
+		    String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+		    Path file = new Path(fileNameBlock); 
+		    FileInputSplit blockInputSplit = new FileInputSplit(0,file,0, -1, null);
+		    BitcoinBlockHeaderFlinkInputFormat inputFormat = new BitcoinBlockHeaderFlinkInputFormat(1024*1024,"F9BEB4D9",false);
+		    inputFormat.open(blockInputSplit);
+		    assertFalse(inputFormat.reachedEnd(),"End not reached");
+		    BitcoinBlockHeader reuse = new BitcoinBlockHeader();
+		    BitcoinBlockHeader nextHeader = inputFormat.nextRecord(reuse);
+		    assertNotNull(nextHeader,"First header returned");
+		    assertEquals( 1, nextHeader.getTransactionCount(),"Genesis block contains one transaction");
+		    assertEquals( 1231006505L, nextHeader.getTime(),"Time of genesis block");
+		    assertEquals( 293L, inputFormat.getCurrentState().longValue(),"Transactions of genesis block are skipped");
+		    int headerCount=1;
+			while (!inputFormat.reachedEnd() && (inputFormat.nextRecord(reuse)!=null)) {
+				headerCount++;
+			}
+			assertEquals( 3, headerCount,"Multiblock contains three blocks");
+	 }
+	 
 	 @Test
 	 public void parseBitcoinTransaction() throws HadoopCryptoLedgerConfigurationException, IOException {
 		  ClassLoader classLoader = getClass().getClassLoader();
@@ -23,8 +23,13 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 
 import org.apache.flink.core.fs.FileInputSplit;
 import org.apache.flink.core.fs.Path;
@@ -35,6 +40,9 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.zuinnote.hadoop.ethereum.format.common.EthereumBlock;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumBlockIndex;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumBlockIndexBuilder;
+import org.zuinnote.hadoop.ethereum.format.exception.EthereumBlockReadException;
 
 public class FlinkEthereumDataSourceTest {
 
@@ -219,4 +227,46 @@ public class FlinkEthereumDataSourceTest {
 		 }
 		 
 
+		 @Test
+		 public void parseEthereumBlockIndexedSplits() throws IOException, EthereumBlockReadException {
+			  ClassLoader classLoader = getClass().getClassLoader();
+			    String fileName="eth0to10.bin";
+			    File source = new File(classLoader.getResource("testdata/"+fileName).getFile());
+			    File dir = Files.createTempDirectory("flinkethereumindex").toFile();
+			    File blockFile = new File(dir, fileName);
+			    File indexFile = new File(dir, fileName + EthereumBlockIndex.FILE_EXTENSION);
+			    try {
+				    Files.copy(source.toPath(), blockFile.toPath());
+				    EthereumBlockIndex index;
+				    try (InputStream in = new FileInputStream(blockFile)) {
+					    index = EthereumBlockIndexBuilder.build(in, blockFile.length(), 1024*1024, 64*1024);
+				    }
+				    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(indexFile))) {
+					    index.write(out);
+				    }
+				    EthereumBlockFlinkInputFormat inputFormat = new EthereumBlockFlinkInputFormat(1024*1024, false);
+				    inputFormat.setFilePath(new Path(dir.getAbsolutePath()));
+				    FileInputSplit[] splits = inputFormat.createInputSplits(4);
+				    assertTrue(splits.length > 1,"Indexed file is split at block boundaries");
+				    int blocks = 0;
+				    for (FileInputSplit split : splits) {
+					    assertEquals(blockFile.getName(), split.getPath().getName(),"Sidecar index is not read as block file");
+					    EthereumBlockFlinkInputFormat splitFormat = new EthereumBlockFlinkInputFormat(1024*1024, false);
+					    splitFormat.open(split);
+					    EthereumBlock reuse = new EthereumBlock();
+					    while (!splitFormat.reachedEnd()) {
+						    if (splitFormat.nextRecord(reuse) != null) {
+							    blocks++;
+						    }
+					    }
+					    splitFormat.close();
+				    }
+				    assertEquals(11, blocks,"Each block is read from exactly one split");
+			    } finally {
+				    indexFile.delete();
+				    blockFile.delete();
+				    dir.delete();
+			    }
+		 }
+
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.bitcoin.hive.datatypes;
+
+import java.io.Serializable;
+
+public class HiveBitcoinScriptWitness implements Serializable {
+
+/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1986523153478294532L;
+	
+private byte[] witnessScriptLength;
+private byte[] witnessScript;
+
+public HiveBitcoinScriptWitness(byte[] witnessScriptLength, byte[] witnessScript) {
+	this.witnessScriptLength=witnessScriptLength;
+	this.witnessScript=witnessScript;
+}
+
+public byte[] getWitnessScriptLength() {
+	return this.witnessScriptLength;
+}
+
+public byte[] getWitnessScript() {
+	return this.witnessScript;
+}
+
+}
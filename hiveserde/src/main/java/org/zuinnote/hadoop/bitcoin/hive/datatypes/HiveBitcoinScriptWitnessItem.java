@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.bitcoin.hive.datatypes;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class HiveBitcoinScriptWitnessItem implements Serializable {
+
+/**
+	 * 
+	 */
+	private static final long serialVersionUID = -8500521021303513414L;
+	
+private byte[] stackItemCounter;
+private List<HiveBitcoinScriptWitness> scriptWitnessList;
+
+public HiveBitcoinScriptWitnessItem(byte[] stackItemCounter, List<HiveBitcoinScriptWitness> scriptWitnessList) {
+	this.stackItemCounter=stackItemCounter;
+	this.scriptWitnessList=scriptWitnessList;
+}
+
+public byte[] getStackItemCounter() {
+	return this.stackItemCounter;
+}
+
+public List<HiveBitcoinScriptWitness> getScriptWitnessList() {
+	return this.scriptWitnessList;
+}
+
+}
@@ -22,8 +22,6 @@ import java.io.IOException;
 
 import org.apache.commons.io.output.ThresholdingOutputStream;
 import org.apache.hadoop.io.Writable;
-import org.zuinnote.hadoop.bitcoin.format.common.BitcoinScriptWitnessItem;
-import org.zuinnote.hadoop.bitcoin.format.common.BitcoinTransactionInput;
 
 import java.util.List;
 import java.util.ArrayList;
@@ -37,9 +35,9 @@ private byte marker;
 private byte flag;
 private byte[] inCounter;
 private byte[] outCounter;
-private List<BitcoinTransactionInput> listOfInputs;
+private List<HiveBitcoinTransactionInput> listOfInputs;
 private List<HiveBitcoinTransactionOutput> listOfOutputs;
-private List<BitcoinScriptWitnessItem> listOfScriptWitnessItem;
+private List<HiveBitcoinScriptWitnessItem> listOfScriptWitnessItem;
 private int lockTime;
 
 public HiveBitcoinTransaction() {
@@ -64,7 +62,7 @@ public HiveBitcoinTransaction() {
  * @param listOfOutputs
  * @param lockTime
  */
-public HiveBitcoinTransaction(int version, byte[] inCounter, List<BitcoinTransactionInput> listOfInputs, byte[] outCounter, List<HiveBitcoinTransactionOutput> listOfOutputs, int lockTime) {
+public HiveBitcoinTransaction(int version, byte[] inCounter, List<HiveBitcoinTransactionInput> listOfInputs, byte[] outCounter, List<HiveBitcoinTransactionOutput> listOfOutputs, int lockTime) {
 
 	this.marker=1;
 	this.flag=0;
@@ -91,7 +89,7 @@ public HiveBitcoinTransaction(int version, byte[] inCounter, List<BitcoinTransac
  * @param listOfScriptWitnessItem
  * @param lockTime
  */
-public HiveBitcoinTransaction(byte marker, byte flag, int version, byte[] inCounter, List<BitcoinTransactionInput> listOfInputs, byte[] outCounter, List<HiveBitcoinTransactionOutput> listOfOutputs, List<BitcoinScriptWitnessItem> listOfScriptWitnessItem, int lockTime) {
+public HiveBitcoinTransaction(byte marker, byte flag, int version, byte[] inCounter, List<HiveBitcoinTransactionInput> listOfInputs, byte[] outCounter, List<HiveBitcoinTransactionOutput> listOfOutputs, List<HiveBitcoinScriptWitnessItem> listOfScriptWitnessItem, int lockTime) {
 	this.marker=marker;
 	this.flag=flag;
 	this.version=version;
@@ -119,7 +117,7 @@ public byte[] getInCounter() {
 	return this.inCounter;
 }
 
-public List<BitcoinTransactionInput> getListOfInputs() {
+public List<HiveBitcoinTransactionInput> getListOfInputs() {
 	return this.listOfInputs;
 }
 
@@ -131,7 +129,7 @@ public List<HiveBitcoinTransactionOutput> getListOfOutputs() {
 	return this.listOfOutputs;
 }
 
-public List<BitcoinScriptWitnessItem> getBitcoinScriptWitness() {
+public List<HiveBitcoinScriptWitnessItem> getBitcoinScriptWitness() {
 	return this.listOfScriptWitnessItem;
 }
 
@@ -38,6 +38,17 @@ public HiveBitcoinTransactionOutput(HiveDecimal value, byte[] txOutScriptLength,
 	this.txOutScript=txOutScript;
 }
 
+/**
+ * Creates an output from a value in satoshis without an intermediate BigInteger
+ *
+ * @param valueSatoshis value in satoshis
+ * @param txOutScriptLength length of the script
+ * @param txOutScript script
+ */
+public HiveBitcoinTransactionOutput(long valueSatoshis, byte[] txOutScriptLength, byte[] txOutScript) {
+	this(HiveDecimal.create(valueSatoshis), txOutScriptLength, txOutScript);
+}
+
 public HiveDecimal getValue() {
 	return this.value;
 }
@@ -20,29 +20,38 @@
 package org.zuinnote.hadoop.bitcoin.hive.serde;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.hive.serde2.AbstractDeserializer;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
 import org.apache.hadoop.hive.serde2.SerDeException;
 import org.apache.hadoop.hive.serde2.SerDeStats;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedSerde;
-import org.apache.hadoop.hive.common.type.HiveDecimal;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinAuxPOWBlockHeader;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinAuxPOWBranch;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlock;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockSection;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinScriptWitness;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinScriptWitnessItem;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinTransaction;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinTransactionInput;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinTransactionOutput;
 import org.zuinnote.hadoop.bitcoin.format.mapred.AbstractBitcoinRecordReader;
 import org.zuinnote.hadoop.bitcoin.hive.datatypes.HiveBitcoinAuxPOW;
 import org.zuinnote.hadoop.bitcoin.hive.datatypes.HiveBitcoinBlock;
+import org.zuinnote.hadoop.bitcoin.hive.datatypes.HiveBitcoinScriptWitness;
+import org.zuinnote.hadoop.bitcoin.hive.datatypes.HiveBitcoinScriptWitnessItem;
 import org.zuinnote.hadoop.bitcoin.hive.datatypes.HiveBitcoinTransaction;
+import org.zuinnote.hadoop.bitcoin.hive.datatypes.HiveBitcoinTransactionInput;
 import org.zuinnote.hadoop.bitcoin.hive.datatypes.HiveBitcoinTransactionOutput;
 import org.zuinnote.hadoop.bitcoin.format.mapred.AbstractBitcoinFileInputFormat;
 
@@ -74,6 +83,7 @@ public class BitcoinBlockSerde extends AbstractDeserializer  {
 	public static final String CONF_USEDIRECTBUFFER = AbstractBitcoinRecordReader.CONF_USEDIRECTBUFFER;
 	public static final String CONF_ISSPLITABLE = AbstractBitcoinFileInputFormat.CONF_ISSPLITABLE;
 	public static final String CONF_READAUXPOW = AbstractBitcoinRecordReader.CONF_READAUXPOW;
+	public static final String CONF_PROJECTION = AbstractBitcoinRecordReader.CONF_PROJECTION;
 
 	private static final Log LOG = LogFactory.getLog(BitcoinBlockSerde.class.getName());
 	private ObjectInspector bitcoinBlockObjectInspector;
@@ -137,68 +147,138 @@ public class BitcoinBlockSerde extends AbstractDeserializer  {
 			conf.setBoolean(BitcoinBlockSerde.CONF_READAUXPOW, Boolean.parseBoolean(readAuxPOWStr));
 			LOG.info("Enable read aux pow: " + readAuxPOWStr);
 		}
+		String projectionStr = tbl.getProperty(BitcoinBlockSerde.CONF_PROJECTION);
+		if (projectionStr == null) {
+			projectionStr = getProjectionFromReadColumns(conf);
+		}
+		if (projectionStr != null) {
+			conf.set(BitcoinBlockSerde.CONF_PROJECTION, projectionStr);
+			LOG.info("Setting projection: " + projectionStr);
+		}
 		LOG.debug("Finish initializion");
 
 	}
 
 
 
+	/**
+	 * Determines the sections of a block that need to be parsed from the columns read by Hive (hive.io.file.readcolumn.names)
+	 * and the nested columns of the transactions (hive.io.file.readNestedColumn.paths)
+	 *
+	 * @param conf configuration containing the columns read by Hive
+	 * @return projection or null if all columns are read
+	 */
+	static String getProjectionFromReadColumns(Configuration conf) {
+		if ((conf == null) || ColumnProjectionUtils.isReadAllColumns(conf)) {
+			return null;
+		}
+		EnumSet<BitcoinBlockSection> sections = EnumSet.of(BitcoinBlockSection.HEADER);
+		for (String column : ColumnProjectionUtils.getReadColumnNames(conf)) {
+			String name = column.toLowerCase();
+			if ("auxpow".equals(name)) {
+				sections.add(BitcoinBlockSection.AUXPOW);
+			} else if ("transactions".equals(name)) {
+				sections.add(BitcoinBlockSection.TRANSACTIONS);
+			}
+		}
+		if (sections.contains(BitcoinBlockSection.TRANSACTIONS)) {
+			boolean nestedColumns = false;
+			Set<String> nestedColumnPaths = ColumnProjectionUtils.getNestedColumnPaths(conf);
+			for (String path : nestedColumnPaths) {
+				String[] fields = path.toLowerCase().split("\\.");
+				if ((fields.length > 1) && "transactions".equals(fields[0])) {
+					nestedColumns = true;
+					if ("listofinputs".equals(fields[1])) {
+						sections.add(BitcoinBlockSection.INPUTS);
+					} else if ("listofoutputs".equals(fields[1])) {
+						sections.add(BitcoinBlockSection.OUTPUTS);
+					} else if ("listofscriptwitnessitem".equals(fields[1])) {
+						sections.add(BitcoinBlockSection.WITNESSES);
+					}
+				}
+			}
+			if (!nestedColumns) {
+				// complete transactions are read
+				sections.add(BitcoinBlockSection.INPUTS);
+				sections.add(BitcoinBlockSection.OUTPUTS);
+				sections.add(BitcoinBlockSection.WITNESSES);
+			}
+		}
+		StringBuilder result = new StringBuilder();
+		for (BitcoinBlockSection section : sections) {
+			if (result.length() > 0) {
+				result.append(",");
+			}
+			result.append(section.name().toLowerCase());
+		}
+		return result.toString();
+	}
+
 	private HiveBitcoinBlock convertToHiveBitcoinBlock(BitcoinBlock block) {
 		// convert to HiveBitcoinBlock
 		// convert transactions
 		List<HiveBitcoinTransaction> newTransactions = new ArrayList<>();
 		for (int i = 0; i < block.getTransactions().size(); i++) {
-			BitcoinTransaction currentTransaction = block.getTransactions().get(i);
-			List<HiveBitcoinTransactionOutput> newTransactionsOutputList = new ArrayList<>();
-			for (int j = 0; j < currentTransaction.getListOfOutputs().size(); j++) {
-				BitcoinTransactionOutput currentOutput = currentTransaction.getListOfOutputs().get(j);
-				HiveDecimal newValue = HiveDecimal.create(currentOutput.getValue());
-				newTransactionsOutputList.add(new HiveBitcoinTransactionOutput(newValue,
-						currentOutput.getTxOutScriptLength(), currentOutput.getTxOutScript()));
-			}
-			HiveBitcoinTransaction newTransaction = new HiveBitcoinTransaction(currentTransaction.getMarker(),
-					currentTransaction.getFlag(), currentTransaction.getVersion(), currentTransaction.getInCounter(),
-					currentTransaction.getListOfInputs(), currentTransaction.getOutCounter(), newTransactionsOutputList,
-					currentTransaction.getBitcoinScriptWitness(), currentTransaction.getLockTime());
-
-			newTransactions.add(newTransaction);
+			newTransactions.add(convertToHiveBitcoinTransaction(block.getTransactions().get(i)));
 		}
 		// convertAuxPow
-		// convert Transaction
 		HiveBitcoinAuxPOW newHiveBitcoinAuxPOW = null;
 		if (block.getAuxPOW() != null) {
-			BitcoinTransaction currentCoinbaseTransaction = block.getAuxPOW().getCoinbaseTransaction();
-			List<HiveBitcoinTransactionOutput> newCoinbaseTransactionOutputList = new ArrayList<>();
-			for (int i = 0; i < currentCoinbaseTransaction.getListOfOutputs().size(); i++) {
-				BitcoinTransactionOutput currentOutput = currentCoinbaseTransaction.getListOfOutputs().get(i);
-				HiveDecimal newValue = HiveDecimal.create(currentOutput.getValue());
-				newCoinbaseTransactionOutputList.add(new HiveBitcoinTransactionOutput(newValue,
-						currentOutput.getTxOutScriptLength(), currentOutput.getTxOutScript()));
-			}
-			HiveBitcoinTransaction newCoinbaseTransaction = new HiveBitcoinTransaction(
-					currentCoinbaseTransaction.getMarker(), currentCoinbaseTransaction.getFlag(),
-					currentCoinbaseTransaction.getVersion(), currentCoinbaseTransaction.getInCounter(),
-					currentCoinbaseTransaction.getListOfInputs(), currentCoinbaseTransaction.getInCounter(),
-					newCoinbaseTransactionOutputList, currentCoinbaseTransaction.getBitcoinScriptWitness(),
-					currentCoinbaseTransaction.getLockTime());
-			newHiveBitcoinAuxPOW = new HiveBitcoinAuxPOW(block.getAuxPOW().getVersion(), newCoinbaseTransaction,
+			HiveBitcoinTransaction newCoinbaseTransaction = convertToHiveBitcoinTransaction(block.getAuxPOW().getCoinbaseTransaction());
+			newHiveBitcoinAuxPOW = new HiveBitcoinAuxPOW((int) block.getAuxPOW().getVersion().getValue(), newCoinbaseTransaction,
 					block.getAuxPOW().getParentBlockHeaderHash(), block.getAuxPOW().getCoinbaseBranch(),
 					block.getAuxPOW().getAuxBlockChainBranch(), block.getAuxPOW().getParentBlockHeader());
 		}
 		// final result
 		HiveBitcoinBlock result = new HiveBitcoinBlock();
-		result.setBlockSize(block.getBlockSize());
-		result.setMagicNo(block.getMagicNo());
-		result.setVersion(block.getVersion());
-		result.setTime(block.getTime());
-		result.setBits(block.getBits());
-		result.setNonce(block.getNonce());
-		result.setTransactionCounter(block.getTransactionCounter());
-		result.setHashPrevBlock(block.getHashPrevBlock());
-		result.setHashMerkleRoot(block.getHashMerkleRoot());
+		result.setBlockSize((int) block.getBlockSize().getValue());
+		result.setMagicNo(block.getMagicNo().getBytes());
+		result.setVersion((int) block.getVersion().getValue());
+		result.setTime((int) block.getTime().getValue());
+		result.setBits(block.getBits().getBytes());
+		result.setNonce((int) block.getNonce().getValue());
+		result.setTransactionCounter(block.getTransactions().size());
+		result.setHashPrevBlock(block.getHashPrevBlock().getBytes());
+		result.setHashMerkleRoot(block.getHashMerkleRoot().getBytes());
 		result.setTransactions(newTransactions);
 		result.setAuxPOW(newHiveBitcoinAuxPOW);
 		return result;
 	}
 
+	private HiveBitcoinTransaction convertToHiveBitcoinTransaction(BitcoinTransaction transaction) {
+		// convert inputs
+		List<HiveBitcoinTransactionInput> newInputs = new ArrayList<>();
+		for (int i = 0; i < transaction.getListOfInputs().size(); i++) {
+			BitcoinTransactionInput currentInput = transaction.getListOfInputs().get(i);
+			newInputs.add(new HiveBitcoinTransactionInput(currentInput.getPrevTransactionHash().getBytes(),
+					currentInput.getPreviousTxOutIndex(), currentInput.getTxInScriptLength().getBytes(),
+					currentInput.getTxInScript(), currentInput.getSeqNo()));
+		}
+		// convert outputs
+		List<HiveBitcoinTransactionOutput> newOutputs = new ArrayList<>();
+		for (int i = 0; i < transaction.getListOfOutputs().size(); i++) {
+			BitcoinTransactionOutput currentOutput = transaction.getListOfOutputs().get(i);
+			newOutputs.add(new HiveBitcoinTransactionOutput(currentOutput.getValueSatoshis(),
+					currentOutput.getTxOutScriptLength().getBytes(), currentOutput.getTxOutScript()));
+		}
+		// convert script witnesses
+		List<HiveBitcoinScriptWitnessItem> newScriptWitnessItems = new ArrayList<>();
+		List<BitcoinScriptWitnessItem> scriptWitnessItems = transaction.getBitcoinScriptWitness();
+		for (int i = 0; (scriptWitnessItems != null) && (i < scriptWitnessItems.size()); i++) {
+			BitcoinScriptWitnessItem currentItem = scriptWitnessItems.get(i);
+			List<HiveBitcoinScriptWitness> newScriptWitnesses = new ArrayList<>();
+			for (int j = 0; j < currentItem.getScriptWitnessList().size(); j++) {
+				BitcoinScriptWitness currentWitness = currentItem.getScriptWitnessList().get(j);
+				newScriptWitnesses.add(new HiveBitcoinScriptWitness(currentWitness.getWitnessScriptLength().getBytes(),
+						currentWitness.getWitnessScript()));
+			}
+			newScriptWitnessItems.add(new HiveBitcoinScriptWitnessItem(currentItem.getStackItemCounter().getBytes(),
+					newScriptWitnesses));
+		}
+		return new HiveBitcoinTransaction(transaction.getMarker(), transaction.getFlag(),
+				(int) transaction.getVersion(), transaction.getInCounter().getBytes(), newInputs,
+				transaction.getOutCounter().getBytes(), newOutputs, newScriptWitnessItems,
+				(int) transaction.getLockTime());
+	}
+
 }
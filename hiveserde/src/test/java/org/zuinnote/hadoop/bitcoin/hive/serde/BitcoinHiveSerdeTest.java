@@ -20,6 +20,7 @@ package org.zuinnote.hadoop.bitcoin.hive.serde;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
@@ -31,6 +32,7 @@ import java.util.Properties;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
 import org.junit.jupiter.api.Test;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlock;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockReader;
@@ -108,7 +110,23 @@ private static final byte[][] DEFAULT_MAGIC = {{(byte)0xF9,(byte)0xBE,(byte)0xB4
 	}
   }
 
+  @Test
+  public void initializeProjectionFromReadColumns() {
+	BitcoinBlockSerde testSerde = new BitcoinBlockSerde();
+	Configuration conf = new Configuration();
+	conf.setBoolean(ColumnProjectionUtils.READ_ALL_COLUMNS, false);
+	conf.set(ColumnProjectionUtils.READ_COLUMN_NAMES_CONF_STR, "time,transactions");
+	conf.set(ColumnProjectionUtils.READ_NESTED_COLUMN_PATH_CONF_STR, "time,transactions.listofoutputs");
+	testSerde.initialize(conf, new Properties());
+	assertEquals("header,transactions,outputs", conf.get(BitcoinBlockSerde.CONF_PROJECTION), "Projection contains only header and outputs");
+	Configuration confHeader = new Configuration();
+	confHeader.setBoolean(ColumnProjectionUtils.READ_ALL_COLUMNS, false);
+	confHeader.set(ColumnProjectionUtils.READ_COLUMN_NAMES_CONF_STR, "hashprevblock");
+	testSerde.initialize(confHeader, new Properties());
+	assertEquals("header", confHeader.get(BitcoinBlockSerde.CONF_PROJECTION), "Projection contains only header");
+	Configuration confAll = new Configuration();
+	testSerde.initialize(confAll, new Properties());
+	assertNull(confAll.get(BitcoinBlockSerde.CONF_PROJECTION), "No projection if all columns are read");
+  }
 
-} 
-
-
+}
@@ -16,7 +16,6 @@
 
 package org.zuinnote.hadoop.bitcoin.hive.udf;
 
-import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
@@ -45,7 +44,6 @@ import org.zuinnote.hadoop.bitcoin.format.common.BitcoinTransactionInput;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinTransactionOutput;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinScriptWitness;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinScriptWitnessItem;
-import org.zuinnote.hadoop.bitcoin.format.common.BitcoinUtil;
 import org.zuinnote.hadoop.bitcoin.hive.datatypes.HiveBitcoinTransaction;
 
 
@@ -178,16 +176,10 @@ public Object evaluate(DeferredObject[] arguments) throws HiveException {
 		Object listofscriptwitnessitemObject =  soi.getStructFieldData(originalObject,listofscriptwitnessitemSF);
 		ListObjectInspector loiScriptWitnessItem=(ListObjectInspector)listofscriptwitnessitemSF.getFieldObjectInspector();
 		List<BitcoinScriptWitnessItem> listOfScriptWitnessitemArray = readListOfBitcoinScriptWitnessFromTable(loiScriptWitnessItem,listofscriptwitnessitemObject);
-		bitcoinTransaction = new BitcoinTransaction(marker, flag, version,inCounter,listOfInputsArray,outCounter,listOfOutputsArray,listOfScriptWitnessitemArray,locktime);
+		bitcoinTransaction = BitcoinUDFUtil.createBitcoinTransaction(marker, flag, version,inCounter,listOfInputsArray,outCounter,listOfOutputsArray,listOfScriptWitnessitemArray,locktime);
 
 	}
-	byte[] transactionHash=null;
-	try {
-		 transactionHash = BitcoinUtil.getTransactionHashSegwit(bitcoinTransaction);
-	}  catch (IOException ioe) {
-		LOG.error(ioe);
-		throw new HiveException(ioe.toString());
-	}
+	byte[] transactionHash = bitcoinTransaction.getTransactionHashSegwit();
 	return new BytesWritable(transactionHash);
 }
 
@@ -221,10 +213,9 @@ for (int i=0;i<listLength;i++) {
 	}
 	byte[] currentPrevTransactionHash = wboi.getPrimitiveJavaObject(listOfInputsElementObjectInspector.getStructFieldData(currentlistofinputsObject,prevtransactionhashSF));
 	long currentPreviousTxOutIndex = wloi.get(listOfInputsElementObjectInspector.getStructFieldData(currentlistofinputsObject,previoustxoutindexSF));
-	byte[] currentTxInScriptLength= wboi.getPrimitiveJavaObject(listOfInputsElementObjectInspector.getStructFieldData(currentlistofinputsObject,txinscriptlengthSF));
 	byte[] currentTxInScript= wboi.getPrimitiveJavaObject(listOfInputsElementObjectInspector.getStructFieldData(currentlistofinputsObject,txinscriptSF));
 	long currentSeqNo = wloi.get(listOfInputsElementObjectInspector.getStructFieldData(currentlistofinputsObject,seqnoSF));
-	BitcoinTransactionInput currentBitcoinTransactionInput = new BitcoinTransactionInput(currentPrevTransactionHash,currentPreviousTxOutIndex,currentTxInScriptLength,currentTxInScript,currentSeqNo);
+	BitcoinTransactionInput currentBitcoinTransactionInput = BitcoinUDFUtil.createBitcoinTransactionInput(currentPrevTransactionHash,currentPreviousTxOutIndex,currentTxInScript,currentSeqNo);
 	result.add(currentBitcoinTransactionInput);
 }
 return result;
@@ -256,7 +247,7 @@ StructObjectInspector listOfOutputsElementObjectInspector = (StructObjectInspect
 		HiveDecimal currentValue=hdoi.getPrimitiveJavaObject(listOfOutputsElementObjectInspector.getStructFieldData(currentListOfOutputsObject,valueSF));	
 		byte[] currentTxOutScriptLength=wboi.getPrimitiveJavaObject(listOfOutputsElementObjectInspector.getStructFieldData(currentListOfOutputsObject,txoutscriptlengthSF));
 		byte[] currentTxOutScript=wboi.getPrimitiveJavaObject(listOfOutputsElementObjectInspector.getStructFieldData(currentListOfOutputsObject,txoutscriptSF));
-		BitcoinTransactionOutput currentBitcoinTransactionOutput = new BitcoinTransactionOutput(currentValue.bigDecimalValue().toBigIntegerExact(),currentTxOutScriptLength,currentTxOutScript);
+		BitcoinTransactionOutput currentBitcoinTransactionOutput = BitcoinUDFUtil.createBitcoinTransactionOutput(currentValue.bigDecimalValue().toBigIntegerExact(),currentTxOutScriptLength,currentTxOutScript);
 		result.add(currentBitcoinTransactionOutput);
 	}
 return result;
@@ -302,9 +293,9 @@ for (int i=0;i<listLength;i++) {
 		}
 		byte[] scriptWitnessLength = wboi.getPrimitiveJavaObject(listOfScriptwitnessElementObjectInspector.getStructFieldData(currentlistofscriptwitnessObject,witnessscriptlengthSF));
 		byte[] scriptWitness = wboi.getPrimitiveJavaObject(listOfScriptwitnessElementObjectInspector.getStructFieldData(currentlistofscriptwitnessObject,witnessscriptSF));
-		currentScriptWitnessList.add(new BitcoinScriptWitness(scriptWitnessLength,scriptWitness));
+		currentScriptWitnessList.add(BitcoinUDFUtil.createBitcoinScriptWitness(scriptWitnessLength,scriptWitness));
 	}
-	BitcoinScriptWitnessItem currentBitcoinScriptWitnessItem = new BitcoinScriptWitnessItem(stackItemCounter,currentScriptWitnessList);
+	BitcoinScriptWitnessItem currentBitcoinScriptWitnessItem = BitcoinUDFUtil.createBitcoinScriptWitnessItem(stackItemCounter,currentScriptWitnessList);
 	result.add(currentBitcoinScriptWitnessItem);
 }
 return result;
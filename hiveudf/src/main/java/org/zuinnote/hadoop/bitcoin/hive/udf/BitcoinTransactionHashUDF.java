@@ -41,7 +41,6 @@ import org.zuinnote.hadoop.bitcoin.hive.datatypes.HiveBitcoinTransaction;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.logging.Log;
 
-import java.io.IOException;
 
 import java.util.List;
 import java.util.ArrayList;
@@ -159,16 +158,10 @@ public Object evaluate(DeferredObject[] arguments) throws HiveException {
 		Object listofoutputsObject = soi.getStructFieldData(originalObject,listofoutputsSF);
 		ListObjectInspector loiOutputs=(ListObjectInspector)listofoutputsSF.getFieldObjectInspector();
 		List<BitcoinTransactionOutput> listOfOutputsArray = readListOfOutputsFromTable(loiOutputs,listofoutputsObject);
-		bitcoinTransaction = new BitcoinTransaction(version,inCounter,listOfInputsArray,outCounter,listOfOutputsArray,locktime);
+		bitcoinTransaction = BitcoinUDFUtil.createBitcoinTransaction((byte)0x01, (byte)0x00, version,inCounter,listOfInputsArray,outCounter,listOfOutputsArray,new ArrayList<BitcoinScriptWitnessItem>(),locktime);
 
 	}
-	byte[] transactionHash=null;
-	try {
-		 transactionHash = BitcoinUtil.getTransactionHash(bitcoinTransaction);
-	}  catch (IOException ioe) {
-		LOG.error(ioe);
-		throw new HiveException(ioe.toString());
-	}
+	byte[] transactionHash = bitcoinTransaction.getTransactionHash();
 	return new BytesWritable(transactionHash);
 }
 
@@ -202,10 +195,9 @@ for (int i=0;i<listLength;i++) {
 	}
 	byte[] currentPrevTransactionHash = wboi.getPrimitiveJavaObject(listOfInputsElementObjectInspector.getStructFieldData(currentlistofinputsObject,prevtransactionhashSF));
 	long currentPreviousTxOutIndex = wloi.get(listOfInputsElementObjectInspector.getStructFieldData(currentlistofinputsObject,previoustxoutindexSF));
-	byte[] currentTxInScriptLength= wboi.getPrimitiveJavaObject(listOfInputsElementObjectInspector.getStructFieldData(currentlistofinputsObject,txinscriptlengthSF));
 	byte[] currentTxInScript= wboi.getPrimitiveJavaObject(listOfInputsElementObjectInspector.getStructFieldData(currentlistofinputsObject,txinscriptSF));
 	long currentSeqNo = wloi.get(listOfInputsElementObjectInspector.getStructFieldData(currentlistofinputsObject,seqnoSF));
-	BitcoinTransactionInput currentBitcoinTransactionInput = new BitcoinTransactionInput(currentPrevTransactionHash,currentPreviousTxOutIndex,currentTxInScriptLength,currentTxInScript,currentSeqNo);
+	BitcoinTransactionInput currentBitcoinTransactionInput = BitcoinUDFUtil.createBitcoinTransactionInput(currentPrevTransactionHash,currentPreviousTxOutIndex,currentTxInScript,currentSeqNo);
 	result.add(currentBitcoinTransactionInput);
 }
 return result;
@@ -237,7 +229,7 @@ StructObjectInspector listOfOutputsElementObjectInspector = (StructObjectInspect
 		HiveDecimal currentValue=hdoi.getPrimitiveJavaObject(listOfOutputsElementObjectInspector.getStructFieldData(currentListOfOutputsObject,valueSF));	
 		byte[] currentTxOutScriptLength=wboi.getPrimitiveJavaObject(listOfOutputsElementObjectInspector.getStructFieldData(currentListOfOutputsObject,txoutscriptlengthSF));
 		byte[] currentTxOutScript=wboi.getPrimitiveJavaObject(listOfOutputsElementObjectInspector.getStructFieldData(currentListOfOutputsObject,txoutscriptSF));
-		BitcoinTransactionOutput currentBitcoinTransactionOutput = new BitcoinTransactionOutput(currentValue.bigDecimalValue().toBigIntegerExact(),currentTxOutScriptLength,currentTxOutScript);
+		BitcoinTransactionOutput currentBitcoinTransactionOutput = BitcoinUDFUtil.createBitcoinTransactionOutput(currentValue.bigDecimalValue().toBigIntegerExact(),currentTxOutScriptLength,currentTxOutScript);
 		result.add(currentBitcoinTransactionOutput);
 	}
 return result;
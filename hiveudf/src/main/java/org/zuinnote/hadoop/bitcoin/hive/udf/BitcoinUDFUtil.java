@@ -16,12 +16,23 @@
 
 package org.zuinnote.hadoop.bitcoin.hive.udf;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinScript;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinScriptWitness;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinScriptWitnessItem;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinTransaction;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinTransactionInput;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinTransactionOutput;
+import org.zuinnote.hadoop.bitcoin.format.littleendian.HashSHA256;
+import org.zuinnote.hadoop.bitcoin.format.littleendian.UIntVar;
+import org.zuinnote.hadoop.bitcoin.format.util.Bytes;
+import org.zuinnote.hadoop.bitcoin.hive.datatypes.HiveBitcoinScriptWitness;
+import org.zuinnote.hadoop.bitcoin.hive.datatypes.HiveBitcoinScriptWitnessItem;
 import org.zuinnote.hadoop.bitcoin.hive.datatypes.HiveBitcoinTransaction;
+import org.zuinnote.hadoop.bitcoin.hive.datatypes.HiveBitcoinTransactionInput;
 import org.zuinnote.hadoop.bitcoin.hive.datatypes.HiveBitcoinTransactionOutput;
 
 /**
@@ -38,14 +49,96 @@ public class BitcoinUDFUtil {
 	 * @return transaction in BitcoinTransaction format
 	 */
 	public static BitcoinTransaction convertToBitcoinTransaction(HiveBitcoinTransaction transaction) {
+		List<BitcoinTransactionInput> newTransactionsInputList = new ArrayList<>();
+		for (int j = 0; j < transaction.getListOfInputs().size(); j++) {
+			HiveBitcoinTransactionInput currentInput = transaction.getListOfInputs().get(j);
+			newTransactionsInputList.add(createBitcoinTransactionInput(currentInput.getPrevTransactionHash(), currentInput.getPreviousTxOutIndex(),
+					currentInput.getTxInScript(), currentInput.getSeqNo()));
+		}
 		List<BitcoinTransactionOutput> newTransactionsOutputList = new ArrayList<>();
 		for (int j = 0; j < transaction.getListOfOutputs().size(); j++) {
 			HiveBitcoinTransactionOutput currentOutput = transaction.getListOfOutputs().get(j);
-			newTransactionsOutputList.add(new BitcoinTransactionOutput(currentOutput.getValue().bigDecimalValue().toBigIntegerExact(),
+			newTransactionsOutputList.add(createBitcoinTransactionOutput(currentOutput.getValue().bigDecimalValue().toBigIntegerExact(),
 					currentOutput.getTxOutScriptLength(), currentOutput.getTxOutScript()));
 		}
-		BitcoinTransaction result = new BitcoinTransaction(transaction.getMarker(),transaction.getFlag(),transaction.getVersion(), transaction.getInCounter(), transaction.getListOfInputs(),  transaction.getOutCounter(), newTransactionsOutputList, transaction.getBitcoinScriptWitness(), transaction.getLockTime());
-		return result;
+		List<BitcoinScriptWitnessItem> newScriptWitnessItemList = new ArrayList<>();
+		for (int j = 0; j < transaction.getBitcoinScriptWitness().size(); j++) {
+			HiveBitcoinScriptWitnessItem currentItem = transaction.getBitcoinScriptWitness().get(j);
+			List<BitcoinScriptWitness> newScriptWitnessList = new ArrayList<>();
+			for (HiveBitcoinScriptWitness currentWitness : currentItem.getScriptWitnessList()) {
+				newScriptWitnessList.add(createBitcoinScriptWitness(currentWitness.getWitnessScriptLength(), currentWitness.getWitnessScript()));
+			}
+			newScriptWitnessItemList.add(createBitcoinScriptWitnessItem(currentItem.getStackItemCounter(), newScriptWitnessList));
+		}
+		return createBitcoinTransaction(transaction.getMarker(), transaction.getFlag(), transaction.getVersion(), transaction.getInCounter(), newTransactionsInputList, transaction.getOutCounter(), newTransactionsOutputList, newScriptWitnessItemList, transaction.getLockTime());
+	}
+
+	/***
+	 * Creates a BitcoinTransaction from the fields as they are stored in Hive
+	 *
+	 * @param marker segwit marker
+	 * @param flag segwit flag
+	 * @param version version (unsigned 32 bit)
+	 * @param inCounter number of inputs as variable length integer
+	 * @param listOfInputs inputs
+	 * @param outCounter number of outputs as variable length integer
+	 * @param listOfOutputs outputs
+	 * @param listOfScriptWitnessItem script witnesses
+	 * @param lockTime lock time (unsigned 32 bit)
+	 * @return transaction in BitcoinTransaction format
+	 */
+	public static BitcoinTransaction createBitcoinTransaction(byte marker, byte flag, int version, byte[] inCounter, List<BitcoinTransactionInput> listOfInputs, byte[] outCounter, List<BitcoinTransactionOutput> listOfOutputs, List<BitcoinScriptWitnessItem> listOfScriptWitnessItem, int lockTime) {
+		return new BitcoinTransaction(Integer.toUnsignedLong(version), marker, flag, new UIntVar(inCounter).getValue(), new UIntVar(outCounter).getValue(), listOfInputs, listOfOutputs, listOfScriptWitnessItem, Integer.toUnsignedLong(lockTime));
+	}
+
+	/***
+	 * Creates a BitcoinTransactionInput from the fields as they are stored in Hive
+	 *
+	 * @param prevTransactionHash hash of the previous transaction
+	 * @param previousTxOutIndex index of the output in the previous transaction
+	 * @param txInScript script (its length is derived from the array)
+	 * @param seqNo sequence number
+	 * @return input in BitcoinTransactionInput format
+	 */
+	public static BitcoinTransactionInput createBitcoinTransactionInput(byte[] prevTransactionHash, long previousTxOutIndex, byte[] txInScript, long seqNo) {
+		return new BitcoinTransactionInput(new HashSHA256(prevTransactionHash), previousTxOutIndex, txInScript, seqNo);
+	}
+
+	/***
+	 * Creates a BitcoinTransactionOutput from the fields as they are stored in Hive
+	 *
+	 * @param value value in satoshis
+	 * @param txOutScriptLength length of the script as variable length integer
+	 * @param txOutScript script
+	 * @return output in BitcoinTransactionOutput format
+	 */
+	public static BitcoinTransactionOutput createBitcoinTransactionOutput(BigInteger value, byte[] txOutScriptLength, byte[] txOutScript) {
+		BitcoinScript script = new BitcoinScript();
+		script.setLength(new UIntVar(txOutScriptLength));
+		script.setScript(new Bytes(txOutScript));
+		return new BitcoinTransactionOutput(value, script);
+	}
+
+	/***
+	 * Creates a BitcoinScriptWitnessItem from the fields as they are stored in Hive
+	 *
+	 * @param stackItemCounter number of script witnesses as variable length integer
+	 * @param scriptWitnessList script witnesses
+	 * @return script witness item in BitcoinScriptWitnessItem format
+	 */
+	public static BitcoinScriptWitnessItem createBitcoinScriptWitnessItem(byte[] stackItemCounter, List<BitcoinScriptWitness> scriptWitnessList) {
+		return new BitcoinScriptWitnessItem(new UIntVar(stackItemCounter), scriptWitnessList);
+	}
+
+	/***
+	 * Creates a BitcoinScriptWitness from the fields as they are stored in Hive
+	 *
+	 * @param witnessScriptLength length of the script as variable length integer
+	 * @param witnessScript script
+	 * @return script witness in BitcoinScriptWitness format
+	 */
+	public static BitcoinScriptWitness createBitcoinScriptWitness(byte[] witnessScriptLength, byte[] witnessScript) {
+		return new BitcoinScriptWitness(new UIntVar(witnessScriptLength), witnessScript);
 	}
 
 }
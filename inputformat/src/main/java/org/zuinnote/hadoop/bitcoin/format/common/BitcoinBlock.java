@@ -17,6 +17,7 @@
 package org.zuinnote.hadoop.bitcoin.format.common;
 
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
 import org.zuinnote.hadoop.bitcoin.format.littleendian.EpochDatetime;
 import org.zuinnote.hadoop.bitcoin.format.littleendian.HashSHA256;
 import org.zuinnote.hadoop.bitcoin.format.littleendian.Magic;
@@ -27,7 +28,12 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.DigestException;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -41,6 +47,12 @@ import java.util.List;
  * <a href="https://github.com/bitcoinj/bitcoinj/blob/master/core/src/main/java/org/bitcoinj/core/Block.java">Block.java</a>
  * by Andreas Schildbach.
  * </p>
+ *
+ * <p>
+ * The Writable serialization consists of a flag byte (bit 0 is set if the block contains AuxPOW information, bit 1 if the height of the block
+ * is known), the height of the block (vint, only if known), the length of the block (vint) and the block in the Bitcoin wire format as contained
+ * in blk*.dat files (magic, block size, header, AuxPOW, transactions).
+ * </p>
  **/
 public class BitcoinBlock implements Serializable, Writable {
 
@@ -54,6 +66,17 @@ public class BitcoinBlock implements Serializable, Writable {
     private HashSHA256 hashMerkleRoot;
     private List<BitcoinTransaction> transactions;
     private BitcoinAuxPOW auxPOW;
+    private int height = BitcoinChainIndex.UNKNOWN_HEIGHT;
+    private transient byte[] serializationBuffer;
+    // header as contained in the raw block and the hash calculated from it
+    private transient byte[] rawHeader;
+    private transient byte[] blockHash;
+    private transient byte[] merkleScratch;
+
+    private static final byte FLAG_AUXPOW = 1;
+    private static final byte FLAG_HEIGHT = 2;
+    private static final BitcoinBlockReader PARSER = new BitcoinBlockReader(false);
+    private static final BitcoinBlockReader PARSER_AUXPOW = new BitcoinBlockReader(true);
 
     public BitcoinBlock(UInt32 blockSize, Magic magicNo, UInt32 version, EpochDatetime time, UInt32 bits,
                             UInt32 nonce, HashSHA256 hashPrevBlock, HashSHA256 hashMerkleRoot,
@@ -95,6 +118,7 @@ public class BitcoinBlock implements Serializable, Writable {
 
     public void setVersion(UInt32 version) {
         this.version = version;
+        clearRawHeader();
     }
 
     public EpochDatetime getTime() {
@@ -103,6 +127,7 @@ public class BitcoinBlock implements Serializable, Writable {
 
     public void setTime(EpochDatetime time) {
         this.time = time;
+        clearRawHeader();
     }
 
     public UInt32 getBits() {
@@ -111,6 +136,7 @@ public class BitcoinBlock implements Serializable, Writable {
 
     public void setBits(UInt32 bits) {
         this.bits = bits;
+        clearRawHeader();
     }
 
     public UInt32 getNonce() {
@@ -119,6 +145,7 @@ public class BitcoinBlock implements Serializable, Writable {
 
     public void setNonce(UInt32 nonce) {
         this.nonce = nonce;
+        clearRawHeader();
     }
 
     public HashSHA256 getHashPrevBlock() {
@@ -131,6 +158,7 @@ public class BitcoinBlock implements Serializable, Writable {
 
     public void setHashPrevBlock(HashSHA256 hashPrevBlock) {
         this.hashPrevBlock = hashPrevBlock;
+        clearRawHeader();
     }
 
     public HashSHA256 getHashMerkleRoot() {
@@ -139,6 +167,7 @@ public class BitcoinBlock implements Serializable, Writable {
 
     public void setHashMerkleRoot(HashSHA256 hashMerkleRoot) {
         this.hashMerkleRoot = hashMerkleRoot;
+        clearRawHeader();
     }
 
     public List<BitcoinTransaction> getTransactions() {
@@ -157,6 +186,19 @@ public class BitcoinBlock implements Serializable, Writable {
         this.auxPOW = auxPOW;
     }
 
+    /**
+     * Returns the height of the block in the best chain. It is only known if the block has been read with a chain index (cf. {@link BitcoinChainIndex}).
+     *
+     * @return height or {@link BitcoinChainIndex#UNKNOWN_HEIGHT}
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
     public void set(BitcoinBlock newBitcoinBlock) {
         this.blockSize = newBitcoinBlock.getBlockSize();
         this.magicNo = newBitcoinBlock.getMagicNo();
@@ -168,16 +210,95 @@ public class BitcoinBlock implements Serializable, Writable {
         this.hashMerkleRoot = newBitcoinBlock.getHashMerkleRoot();
         this.transactions = newBitcoinBlock.getTransactions();
         this.auxPOW = newBitcoinBlock.getAuxPOW();
+        this.height = newBitcoinBlock.getHeight();
+        this.rawHeader = newBitcoinBlock.rawHeader;
+        this.blockHash = newBitcoinBlock.blockHash;
+    }
+
+    /**
+     * Sets the header (80 bytes) as contained in the raw block. It is used to calculate the hash of the block.
+     *
+     * @param rawHeader header
+     */
+    void setRawHeader(byte[] rawHeader) {
+        this.rawHeader = rawHeader;
+        this.blockHash = null;
+    }
+
+    private void clearRawHeader() {
+        setRawHeader(null);
+    }
+
+    /**
+     * Serializes the block in the Bitcoin wire format as contained in blk*.dat files, ie starting with the magic and the block size.
+     * The block size is the size of the serialized content, which differs from {@link #getBlockSize()} if sections of the block
+     * have been skipped by a projection (cf. {@link BitcoinBlockReader#setProjection(java.util.EnumSet)}).
+     *
+     * @return serialized block
+     */
+    public byte[] getBytes() {
+        Bytes buffer = new Bytes();
+        buffer.write(magicNo, blockSize, version, hashPrevBlock, hashMerkleRoot, time, bits, nonce);
+        if (auxPOW != null) {
+            writeAuxPOW(buffer, auxPOW);
+        }
+        buffer.write(BitcoinUtil.convertLongToVarIntByteArray(transactions.size()));
+        buffer.write(transactions);
+        byte[] result = buffer.getBytes();
+        ByteBuffer.wrap(result, 4, 4).order(ByteOrder.LITTLE_ENDIAN).putInt(result.length - 8);
+        return result;
+    }
+
+    private static void writeAuxPOW(Bytes buffer, BitcoinAuxPOW auxPOW) {
+        buffer.write(auxPOW.getCoinbaseTransaction());
+        buffer.write(auxPOW.getParentBlockHeaderHash());
+        writeAuxPOWBranch(buffer, auxPOW.getCoinbaseBranch());
+        writeAuxPOWBranch(buffer, auxPOW.getAuxBlockChainBranch());
+        BitcoinAuxPOWBlockHeader parentBlockHeader = auxPOW.getParentBlockHeader();
+        ByteBuffer header = ByteBuffer.allocate(80).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(parentBlockHeader.getVersion());
+        header.put(parentBlockHeader.getPreviousBlockHash());
+        header.put(parentBlockHeader.getMerkleRoot());
+        header.putInt(parentBlockHeader.getTime());
+        header.put(parentBlockHeader.getBits());
+        header.putInt(parentBlockHeader.getNonce());
+        buffer.write(header.array());
+    }
+
+    private static void writeAuxPOWBranch(Bytes buffer, BitcoinAuxPOWBranch branch) {
+        buffer.write(branch.getNumberOfLinks());
+        for (byte[] link : branch.getLinks()) {
+            buffer.write(link);
+        }
+        buffer.write(branch.getBranchSideBitmask());
     }
 
     @Override
     public void write(DataOutput dataOutput) throws IOException {
-        throw new UnsupportedOperationException("write unsupported");
+        byte[] rawBlock = getBytes();
+        boolean knownHeight = height != BitcoinChainIndex.UNKNOWN_HEIGHT;
+        dataOutput.writeByte((auxPOW != null ? FLAG_AUXPOW : 0) | (knownHeight ? FLAG_HEIGHT : 0));
+        if (knownHeight) {
+            WritableUtils.writeVInt(dataOutput, height);
+        }
+        WritableUtils.writeVInt(dataOutput, rawBlock.length);
+        dataOutput.write(rawBlock);
     }
 
     @Override
     public void readFields(DataInput dataInput) throws IOException {
-        throw new UnsupportedOperationException("readFields unsupported");
+        byte flags = dataInput.readByte();
+        int newHeight = (flags & FLAG_HEIGHT) != 0 ? WritableUtils.readVInt(dataInput) : BitcoinChainIndex.UNKNOWN_HEIGHT;
+        int length = WritableUtils.readVInt(dataInput);
+        if ((this.serializationBuffer == null) || (this.serializationBuffer.length < length)) {
+            this.serializationBuffer = new byte[length];
+        }
+        dataInput.readFully(this.serializationBuffer, 0, length);
+        ByteBuffer rawBlock = ByteBuffer.wrap(this.serializationBuffer, 0, length);
+        rawBlock.order(ByteOrder.LITTLE_ENDIAN);
+        BitcoinBlockReader parser = (flags & FLAG_AUXPOW) != 0 ? PARSER_AUXPOW : PARSER;
+        set(parser.parseBlock(rawBlock));
+        this.height = newHeight;
     }
 
     /**
@@ -263,21 +384,86 @@ public class BitcoinBlock implements Serializable, Writable {
         return tree;
     }
 
+    /**
+     * Calculates the Merkle root of the transactions. In contrast to {@link #buildMerkleTree()} only the root is calculated
+     * in place on a reusable scratch area.
+     *
+     * @return Merkle root in reversed byte order (as shown by blockchain explorers)
+     */
     public byte[] calculateMerkleRoot() {
-        List<byte[]> tree = buildMerkleTree();
-        return tree.get(tree.size() - 1);
+        return BitcoinUtil.reverseByteArray(calculateMerkleRootInternal());
     }
 
+    /**
+     * Verifies that the Merkle root in the header of the block matches the transactions of the block.
+     * This is not done when reading blocks, because it requires hashing all transactions.
+     *
+     * @return true if the Merkle root of the transactions is equal to the Merkle root in the header, false if not
+     */
+    public boolean verifyMerkleRoot() {
+        return Arrays.equals(calculateMerkleRootInternal(), hashMerkleRoot.getBytes());
+    }
+
+    /**
+     * Calculates the Merkle root on a single scratch area: the hashes of a level are overwritten by the hashes of the next level.
+     *
+     * @return Merkle root in internal byte order
+     */
+    private byte[] calculateMerkleRootInternal() {
+        int levelSize = transactions.size();
+        if ((this.merkleScratch == null) || (this.merkleScratch.length < levelSize * 32)) {
+            this.merkleScratch = new byte[Math.max(levelSize, 1) * 32];
+        }
+        byte[] scratch = this.merkleScratch;
+        for (int i = 0; i < levelSize; i++) {
+            System.arraycopy(transactions.get(i).getTransactionHash(), 0, scratch, i * 32, 32);
+        }
+        MessageDigest digest = BitcoinUtil.newDigest();
+        try {
+            for (; levelSize > 1; levelSize = (levelSize + 1) / 2) {
+                for (int left = 0; left < levelSize; left += 2) {
+                    // the last hash is paired with itself if the level has an odd number of hashes
+                    int right = Math.min(left + 1, levelSize - 1);
+                    int parent = (left / 2) * 32;
+                    digest.update(scratch, left * 32, 32);
+                    digest.update(scratch, right * 32, 32);
+                    // the parent position is never after the children, which have already been consumed
+                    digest.digest(scratch, parent, 32);
+                    digest.update(scratch, parent, 32);
+                    digest.digest(scratch, parent, 32);
+                }
+            }
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+        return Arrays.copyOf(scratch, 32);
+    }
+
+    /**
+     * Returns the hash of the block. It is calculated from the header (using the Merkle root contained in the header) and cached.
+     *
+     * @return hash of the block
+     */
     public HashSHA256 getHash() {
-        return new HashSHA256(getHeader());
+        if (this.blockHash == null) {
+            this.blockHash = getHeader().hashTwice();
+        }
+        return new HashSHA256(this.blockHash.clone());
     }
 
     public String getHashString() {
         return getHash().toString();
     }
 
+    /**
+     * Returns the header of the block (80 bytes). If the block has been read by {@link BitcoinBlockReader} then it is exactly the header of the raw block.
+     *
+     * @return header
+     */
     public Bytes getHeader() {
-        return new Bytes(version, hashPrevBlock, BitcoinUtil.reverseByteArray(calculateMerkleRoot()),
-                            time, bits, nonce);
+        if (this.rawHeader != null) {
+            return new Bytes(this.rawHeader);
+        }
+        return new Bytes(version, hashPrevBlock, hashMerkleRoot, time, bits, nonce);
     }
 }
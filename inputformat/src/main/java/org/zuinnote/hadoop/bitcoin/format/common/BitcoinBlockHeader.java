@@ -0,0 +1,199 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.apache.hadoop.io.Writable;
+import org.zuinnote.hadoop.bitcoin.format.littleendian.LE;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * <p>
+ * Compact record of a block containing only the header (80 bytes) together with magic, block size and the number of
+ * transactions, as read by {@link BitcoinBlockReader#readBlockHeader()}. Transactions are not read at all.
+ * </p>
+ * <p>
+ * The Writable serialization has a fixed size of 100 bytes: magic, block size and header as contained in blk*.dat files
+ * (88 bytes), the number of transactions (8 bytes) and the height of the block (4 bytes, -1 if unknown).
+ * </p>
+ **/
+public class BitcoinBlockHeader implements Serializable, Writable {
+
+    public static final int SERIALIZED_SIZE = 8 + BitcoinBlockView.HEADER_SIZE + 8 + 4;
+
+    private static final int OFFSET_BLOCKSIZE = 4;
+    private static final int OFFSET_VERSION = 8;
+    private static final int OFFSET_PREVBLOCK = 12;
+    private static final int OFFSET_MERKLEROOT = 44;
+    private static final int OFFSET_TIME = 76;
+    private static final int OFFSET_BITS = 80;
+    private static final int OFFSET_NONCE = 84;
+    private static final int RAW_SIZE = 8 + BitcoinBlockView.HEADER_SIZE;
+
+    private final byte[] raw = new byte[RAW_SIZE];
+    private long transactionCount;
+    private int height = BitcoinChainIndex.UNKNOWN_HEIGHT;
+    private transient byte[] blockHash;
+
+    public BitcoinBlockHeader() {
+    }
+
+    /**
+     * @param rawHeader        magic, block size and header (88 bytes) starting at the position of the buffer, which is not changed
+     * @param transactionCount number of transactions of the block
+     */
+    public BitcoinBlockHeader(ByteBuffer rawHeader, long transactionCount) {
+        set(rawHeader, transactionCount);
+    }
+
+    /**
+     * Sets the content of this header
+     *
+     * @param rawHeader        magic, block size and header (88 bytes) starting at the position of the buffer, which is not changed
+     * @param transactionCount number of transactions of the block
+     */
+    public void set(ByteBuffer rawHeader, long transactionCount) {
+        rawHeader.duplicate().get(this.raw);
+        this.transactionCount = transactionCount;
+        this.height = BitcoinChainIndex.UNKNOWN_HEIGHT;
+        this.blockHash = null;
+    }
+
+    public void set(BitcoinBlockHeader newHeader) {
+        System.arraycopy(newHeader.raw, 0, this.raw, 0, RAW_SIZE);
+        this.transactionCount = newHeader.transactionCount;
+        this.height = newHeader.height;
+        this.blockHash = newHeader.blockHash;
+    }
+
+    public byte[] getMagicNo() {
+        return Arrays.copyOfRange(this.raw, 0, 4);
+    }
+
+    public long getBlockSize() {
+        return getUInt32(OFFSET_BLOCKSIZE);
+    }
+
+    public long getVersion() {
+        return getUInt32(OFFSET_VERSION);
+    }
+
+    /**
+     * @return hash of the previous block (internal byte order)
+     */
+    public byte[] getHashPrevBlock() {
+        return Arrays.copyOfRange(this.raw, OFFSET_PREVBLOCK, OFFSET_PREVBLOCK + 32);
+    }
+
+    /**
+     * @return Merkle root of the transactions (internal byte order)
+     */
+    public byte[] getHashMerkleRoot() {
+        return Arrays.copyOfRange(this.raw, OFFSET_MERKLEROOT, OFFSET_MERKLEROOT + 32);
+    }
+
+    /**
+     * @return time as Unix epoch time
+     */
+    public long getTime() {
+        return getUInt32(OFFSET_TIME);
+    }
+
+    public Date getDate() {
+        return new Date(getTime() * 1000L);
+    }
+
+    public long getBits() {
+        return getUInt32(OFFSET_BITS);
+    }
+
+    public long getNonce() {
+        return getUInt32(OFFSET_NONCE);
+    }
+
+    public long getTransactionCount() {
+        return this.transactionCount;
+    }
+
+    /**
+     * Returns the height of the block in the best chain. It is only known if the block has been read with a chain index (cf. {@link BitcoinChainIndex}).
+     *
+     * @return height or {@link BitcoinChainIndex#UNKNOWN_HEIGHT}
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    /**
+     * @return header (80 bytes) as contained in the raw block
+     */
+    public byte[] getHeader() {
+        return Arrays.copyOfRange(this.raw, OFFSET_VERSION, RAW_SIZE);
+    }
+
+    /**
+     * Returns the hash of the block. It is calculated from the header and cached.
+     *
+     * @return hash (internal byte order)
+     */
+    public byte[] getHash() {
+        if (this.blockHash == null) {
+            this.blockHash = BitcoinUtil.hashTwice(ByteBuffer.wrap(this.raw, OFFSET_VERSION, BitcoinBlockView.HEADER_SIZE));
+        }
+        return this.blockHash.clone();
+    }
+
+    /**
+     * Copies the Merkle root and the hash of the previous block to an array, eg to create the usual 64 byte key of the input formats
+     *
+     * @param dest   destination
+     * @param offset offset in destination
+     */
+    public void getKey(byte[] dest, int offset) {
+        System.arraycopy(this.raw, OFFSET_MERKLEROOT, dest, offset, 32);
+        System.arraycopy(this.raw, OFFSET_PREVBLOCK, dest, offset + 32, 32);
+    }
+
+    @Override
+    public void write(DataOutput dataOutput) throws IOException {
+        dataOutput.write(this.raw);
+        dataOutput.writeLong(this.transactionCount);
+        dataOutput.writeInt(this.height);
+    }
+
+    @Override
+    public void readFields(DataInput dataInput) throws IOException {
+        dataInput.readFully(this.raw);
+        this.transactionCount = dataInput.readLong();
+        this.height = dataInput.readInt();
+        this.blockHash = null;
+    }
+
+    private long getUInt32(int offset) {
+        return LE.getUInt32(ByteBuffer.wrap(this.raw), offset);
+    }
+}
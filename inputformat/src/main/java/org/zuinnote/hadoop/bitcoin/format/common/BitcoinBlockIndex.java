@@ -0,0 +1,287 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Writable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Index of the blocks contained in one Bitcoin blk*.dat file. It is stored as a sidecar file next to the block file
+ * (e.g. blk00000.dat.idx) and records for every block its offset in the file, its size (including magic and block size),
+ * its hash, the hash of the previous block and its height in the chain if known (-1 otherwise).
+ * </p>
+ * <p>
+ * The index allows to create splits that start exactly at block boundaries, so that record readers do not need to seek
+ * for the start of a block (cf. {@link BitcoinBlockReader#seekBlockStart()}).
+ * </p>
+ **/
+public class BitcoinBlockIndex implements Writable {
+
+    public static final String FILE_EXTENSION = ".idx";
+    public static final int UNKNOWN_HEIGHT = -1;
+
+    private static final int FORMAT_MAGIC = 0x42494458; // BIDX
+    private static final int FORMAT_VERSION = 1;
+    private static final int INITIAL_CAPACITY = 128;
+
+    private long fileLength;
+    private int size;
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    private int[] blockSizes = new int[INITIAL_CAPACITY];
+    private int[] heights = new int[INITIAL_CAPACITY];
+    private byte[] hashes = new byte[INITIAL_CAPACITY * 32];
+    private byte[] prevHashes = new byte[INITIAL_CAPACITY * 32];
+
+    public BitcoinBlockIndex() {
+    }
+
+    /**
+     * Creates an empty index
+     *
+     * @param fileLength length of the indexed file at the time of indexing
+     */
+    public BitcoinBlockIndex(long fileLength) {
+        this.fileLength = fileLength;
+    }
+
+    /**
+     * Returns the path of the sidecar index of a block file
+     *
+     * @param blockFile block file
+     * @return path of the index
+     */
+    public static Path getIndexPath(Path blockFile) {
+        return new Path(blockFile.getParent(), blockFile.getName() + FILE_EXTENSION);
+    }
+
+    /**
+     * Reads the sidecar index of a block file
+     *
+     * @param fs        file system
+     * @param blockFile block file
+     * @return index or null if no index exists
+     * @throws IOException in case of errors reading the index
+     */
+    public static BitcoinBlockIndex read(FileSystem fs, Path blockFile) throws IOException {
+        Path indexPath = getIndexPath(blockFile);
+        BitcoinBlockIndex result = new BitcoinBlockIndex();
+        try (FSDataInputStream in = fs.open(indexPath)) {
+            result.readFields(in);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Writes this index as sidecar index of a block file. The index is written to a temporary file first and renamed afterwards.
+     *
+     * @param fs        file system
+     * @param blockFile block file
+     * @throws IOException in case of errors writing the index
+     */
+    public void write(FileSystem fs, Path blockFile) throws IOException {
+        Path indexPath = getIndexPath(blockFile);
+        Path tmpPath = new Path(indexPath.getParent(), "." + indexPath.getName() + ".tmp");
+        try (FSDataOutputStream out = fs.create(tmpPath, true)) {
+            write(out);
+        }
+        fs.delete(indexPath, false);
+        if (!fs.rename(tmpPath, indexPath)) {
+            throw new IOException("Cannot rename " + tmpPath + " to " + indexPath);
+        }
+    }
+
+    /**
+     * Adds a block to the index
+     *
+     * @param offset    offset of the block (start of magic) in the file
+     * @param blockSize size of the block including magic and block size
+     * @param hash      hash of the block (internal byte order)
+     * @param prevHash  hash of the previous block (internal byte order)
+     * @param height    height of the block or {@link #UNKNOWN_HEIGHT}
+     */
+    public void add(long offset, int blockSize, byte[] hash, byte[] prevHash, int height) {
+        if ((this.size > 0) && (offset < this.offsets[this.size - 1] + this.blockSizes[this.size - 1])) {
+            throw new IllegalArgumentException("Blocks must be added in ascending order of their offset");
+        }
+        ensureCapacity(this.size + 1);
+        this.offsets[this.size] = offset;
+        this.blockSizes[this.size] = blockSize;
+        this.heights[this.size] = height;
+        System.arraycopy(hash, 0, this.hashes, this.size * 32, 32);
+        System.arraycopy(prevHash, 0, this.prevHashes, this.size * 32, 32);
+        this.size++;
+    }
+
+    /**
+     * Adds a raw block as returned by {@link BitcoinBlockReader#readRawBlock()} to the index. The block hash is calculated from the header.
+     *
+     * @param offset   offset of the block (start of magic) in the file
+     * @param rawBlock raw block, the position of the buffer is not changed
+     */
+    public void add(long offset, ByteBuffer rawBlock) {
+        int start = rawBlock.position();
+        ByteBuffer header = rawBlock.duplicate();
+        header.position(start + 8);
+        header.limit(start + 8 + BitcoinBlockView.HEADER_SIZE);
+        byte[] prevHash = new byte[32];
+        for (int i = 0; i < 32; i++) {
+            prevHash[i] = rawBlock.get(start + 12 + i);
+        }
+        add(offset, rawBlock.remaining(), BitcoinUtil.hashTwice(header), prevHash, UNKNOWN_HEIGHT);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public long getFileLength() {
+        return this.fileLength;
+    }
+
+    public long getOffset(int block) {
+        checkIndex(block);
+        return this.offsets[block];
+    }
+
+    public int getBlockSize(int block) {
+        checkIndex(block);
+        return this.blockSizes[block];
+    }
+
+    public byte[] getHash(int block) {
+        checkIndex(block);
+        return Arrays.copyOfRange(this.hashes, block * 32, block * 32 + 32);
+    }
+
+    public byte[] getPrevHash(int block) {
+        checkIndex(block);
+        return Arrays.copyOfRange(this.prevHashes, block * 32, block * 32 + 32);
+    }
+
+    public int getHeight(int block) {
+        checkIndex(block);
+        return this.heights[block];
+    }
+
+    public void setHeight(int block, int height) {
+        checkIndex(block);
+        this.heights[block] = height;
+    }
+
+    /**
+     * Returns the end of the last indexed block
+     *
+     * @return offset after the last block or 0 if the index is empty
+     */
+    public long getEndOfBlocks() {
+        if (this.size == 0) {
+            return 0;
+        }
+        return this.offsets[this.size - 1] + this.blockSizes[this.size - 1];
+    }
+
+    /**
+     * Groups the indexed blocks into splits of approximately the given size. Every split starts exactly at a block and
+     * contains at least one block. A split ends where the next split starts, the last split ends after the last block.
+     *
+     * @param splitSize targeted size of a split
+     * @return boundaries of the splits: split i starts at boundaries[i] and ends (exclusive) at boundaries[i+1]. Empty if the index contains no blocks
+     */
+    public long[] getSplitBoundaries(long splitSize) {
+        if (this.size == 0) {
+            return new long[0];
+        }
+        long[] boundaries = new long[this.size + 1];
+        int splits = 0;
+        boundaries[splits++] = this.offsets[0];
+        for (int i = 1; i < this.size; i++) {
+            if (this.offsets[i] + this.blockSizes[i] - boundaries[splits - 1] > splitSize) {
+                boundaries[splits++] = this.offsets[i];
+            }
+        }
+        boundaries[splits++] = getEndOfBlocks();
+        return Arrays.copyOf(boundaries, splits);
+    }
+
+    @Override
+    public void write(DataOutput dataOutput) throws IOException {
+        dataOutput.writeInt(FORMAT_MAGIC);
+        dataOutput.writeInt(FORMAT_VERSION);
+        dataOutput.writeLong(this.fileLength);
+        dataOutput.writeInt(this.size);
+        for (int i = 0; i < this.size; i++) {
+            dataOutput.writeLong(this.offsets[i]);
+            dataOutput.writeInt(this.blockSizes[i]);
+            dataOutput.write(this.hashes, i * 32, 32);
+            dataOutput.write(this.prevHashes, i * 32, 32);
+            dataOutput.writeInt(this.heights[i]);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput dataInput) throws IOException {
+        if (dataInput.readInt() != FORMAT_MAGIC) {
+            throw new IOException("Not a Bitcoin block index");
+        }
+        int version = dataInput.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported version of Bitcoin block index: " + version);
+        }
+        this.fileLength = dataInput.readLong();
+        int noOfBlocks = dataInput.readInt();
+        this.size = 0;
+        ensureCapacity(noOfBlocks);
+        for (int i = 0; i < noOfBlocks; i++) {
+            this.offsets[i] = dataInput.readLong();
+            this.blockSizes[i] = dataInput.readInt();
+            dataInput.readFully(this.hashes, i * 32, 32);
+            dataInput.readFully(this.prevHashes, i * 32, 32);
+            this.heights[i] = dataInput.readInt();
+        }
+        this.size = noOfBlocks;
+    }
+
+    private void checkIndex(int block) {
+        if ((block < 0) || (block >= this.size)) {
+            throw new IndexOutOfBoundsException("Block " + block + " is not contained in index with " + this.size + " blocks");
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (this.offsets.length < required) {
+            int newCapacity = Math.max(required, this.offsets.length * 2);
+            this.offsets = Arrays.copyOf(this.offsets, newCapacity);
+            this.blockSizes = Arrays.copyOf(this.blockSizes, newCapacity);
+            this.heights = Arrays.copyOf(this.heights, newCapacity);
+            this.hashes = Arrays.copyOf(this.hashes, newCapacity * 32);
+            this.prevHashes = Arrays.copyOf(this.prevHashes, newCapacity * 32);
+        }
+    }
+}
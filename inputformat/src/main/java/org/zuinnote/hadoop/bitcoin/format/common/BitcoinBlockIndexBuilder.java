@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Builds a {@link BitcoinBlockIndex} by reading a block file sequentially from its beginning.
+ **/
+public class BitcoinBlockIndexBuilder {
+
+    private static final Log LOG = LogFactory.getLog(BitcoinBlockIndexBuilder.class.getName());
+
+    private BitcoinBlockIndexBuilder() {
+    }
+
+    /**
+     * Indexes all blocks in a stream. The stream must start with a block (as blk*.dat files do). Blocks with a magic not
+     * contained in specificMagicByteArray and zero padding at the end of the stream are skipped.
+     *
+     * @param in                     stream containing blocks
+     * @param fileLength             length of the file
+     * @param maxSizeBitcoinBlock    maximum size of a block
+     * @param bufferSize             size of the read buffer
+     * @param specificMagicByteArray magics of the blocks to index
+     * @return index
+     * @throws IOException in case of errors reading the blocks
+     */
+    public static BitcoinBlockIndex build(InputStream in, long fileLength, int maxSizeBitcoinBlock, int bufferSize, byte[][] specificMagicByteArray) throws IOException {
+        BitcoinBlockReader bbr = new BitcoinBlockReader(in, maxSizeBitcoinBlock, bufferSize, specificMagicByteArray, false);
+        BitcoinBlockIndex result = new BitcoinBlockIndex(fileLength);
+        ByteBuffer rawBlock;
+        while ((rawBlock = bbr.readRawBlock()) != null) {
+            result.add(bbr.getLastBlockPosition(), rawBlock);
+        }
+        return result;
+    }
+
+    /**
+     * Indexes a block file and stores the index as sidecar file (cf. {@link BitcoinBlockIndex#getIndexPath(Path)})
+     *
+     * @param fs                     file system
+     * @param blockFile              block file
+     * @param maxSizeBitcoinBlock    maximum size of a block
+     * @param bufferSize             size of the read buffer
+     * @param specificMagicByteArray magics of the blocks to index
+     * @return index
+     * @throws IOException in case of errors reading the blocks or writing the index
+     */
+    public static BitcoinBlockIndex buildSidecar(FileSystem fs, Path blockFile, int maxSizeBitcoinBlock, int bufferSize, byte[][] specificMagicByteArray) throws IOException {
+        long fileLength = fs.getFileStatus(blockFile).getLen();
+        BitcoinBlockIndex index;
+        try (FSDataInputStream in = fs.open(blockFile)) {
+            index = build(in, fileLength, maxSizeBitcoinBlock, bufferSize, specificMagicByteArray);
+        }
+        index.write(fs, blockFile);
+        LOG.info("Indexed " + index.size() + " blocks of " + blockFile);
+        return index;
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.zuinnote.hadoop.bitcoin.format.exception.BitcoinBlockReadException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes the blocks of a {@link BitcoinBlockReader} in parallel.
+ * <p>
+ * A framing thread reads raw blocks with {@link BitcoinBlockReader#readRawBlock()} as long as the {@link Boundary} allows it.
+ * The raw blocks are parsed (and optionally hashed) by a pool of decoder threads. {@link #next()} returns the blocks in the
+ * order of the stream. At most queueDepth blocks are read ahead, which limits the memory used.
+ * </p>
+ * <p>
+ * The decoder threads do not use the BitcoinBlockReader, but a parser with a snapshot of its settings taken by {@link #start()}
+ * (cf. {@link BitcoinBlockReader#createParser()}). After {@link #start()} the BitcoinBlockReader must not be used by other threads
+ * until {@link #close()} has returned. The only exception is closing it after {@link #stop()}, which unblocks a framing thread
+ * waiting for data of the stream.
+ * </p>
+ **/
+public class BitcoinBlockPipeline implements Closeable {
+
+    private static final AtomicInteger PIPELINE_COUNTER = new AtomicInteger();
+
+    /**
+     * Defines where the framing thread stops reading blocks, eg the end of a split
+     */
+    public interface Boundary {
+
+        /**
+         * @return current position of the stream underlying the BitcoinBlockReader
+         * @throws IOException in case the position cannot be determined
+         */
+        long getPosition() throws IOException;
+
+        /**
+         * @return true if a block starting at the given position should still be read
+         */
+        boolean hasMoreBlocks(long position);
+    }
+
+    private static final class DecodedBlock {
+        private final Future<BitcoinBlock> block;
+        private final long blockPosition;
+        private final long positionAfterBlock;
+        private final IOException error;
+
+        private DecodedBlock(Future<BitcoinBlock> block, long blockPosition, long positionAfterBlock, IOException error) {
+            this.block = block;
+            this.blockPosition = blockPosition;
+            this.positionAfterBlock = positionAfterBlock;
+            this.error = error;
+        }
+    }
+
+    private final BitcoinBlockReader bbr;
+    private final Boundary boundary;
+    private final boolean hashBlocks;
+    private final BlockingQueue<DecodedBlock> queue;
+    private final ExecutorService decoders;
+    private final Thread framer;
+    private BitcoinBlockReader parser;
+    private volatile boolean closed;
+    private boolean finished;
+    private long position;
+    private long lastBlockPosition = -1;
+
+    /**
+     * Creates a pipeline. Call {@link #start()} to start reading.
+     *
+     * @param bbr            reader of the raw blocks
+     * @param boundary       defines where reading stops
+     * @param decoderThreads number of threads parsing the blocks
+     * @param queueDepth     maximum number of blocks read ahead
+     * @param hashBlocks     true if the decoder threads should also calculate the block hash and the transaction hashes (txid, wtxid), which are cached in the objects
+     */
+    public BitcoinBlockPipeline(BitcoinBlockReader bbr, Boundary boundary, int decoderThreads, int queueDepth, boolean hashBlocks) {
+        if (decoderThreads < 1) {
+            throw new IllegalArgumentException("Number of decoder threads must be at least 1");
+        }
+        if (queueDepth < 1) {
+            throw new IllegalArgumentException("Queue depth must be at least 1");
+        }
+        this.bbr = bbr;
+        this.boundary = boundary;
+        this.hashBlocks = hashBlocks;
+        this.queue = new ArrayBlockingQueue<>(queueDepth);
+        final String name = "bitcoin-block-pipeline-" + PIPELINE_COUNTER.incrementAndGet();
+        this.decoders = Executors.newFixedThreadPool(decoderThreads, new ThreadFactory() {
+            private final AtomicInteger threadCounter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-decoder-" + this.threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.framer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                frame();
+            }
+        }, name + "-framer");
+        this.framer.setDaemon(true);
+    }
+
+    /**
+     * Starts reading blocks
+     *
+     * @throws IOException in case the position of the stream cannot be determined
+     */
+    public void start() throws IOException {
+        this.position = this.boundary.getPosition();
+        this.parser = this.bbr.createParser();
+        this.framer.start();
+    }
+
+    /**
+     * Returns the next block in the order of the stream
+     *
+     * @return block or null if no further block is available within the boundary
+     * @throws IOException in case of errors reading or parsing the block
+     */
+    public BitcoinBlock next() throws IOException {
+        if (this.finished) {
+            return null;
+        }
+        DecodedBlock decodedBlock;
+        try {
+            decodedBlock = this.queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the next block");
+        }
+        if (decodedBlock.block == null) {
+            this.finished = true;
+            if (decodedBlock.error != null) {
+                throw decodedBlock.error;
+            }
+            return null;
+        }
+        BitcoinBlock result;
+        try {
+            result = decodedBlock.block.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decoding block");
+        } catch (ExecutionException e) {
+            this.finished = true;
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new BitcoinBlockReadException("Error: Could not decode block: " + e.getCause());
+        }
+        this.lastBlockPosition = decodedBlock.blockPosition;
+        this.position = decodedBlock.positionAfterBlock;
+        return result;
+    }
+
+    /**
+     * Returns the position of the stream after the block returned last by {@link #next()}. The underlying stream is ahead of
+     * it, because blocks are read in advance.
+     *
+     * @return position as defined by {@link Boundary#getPosition()}
+     */
+    public long getPosition() {
+        return this.position;
+    }
+
+    /**
+     * Returns the position relative to the start of the stream of the block returned last by {@link #next()}
+     *
+     * @return position of the last block (start of magic) or -1 if no block has been returned yet
+     */
+    public long getLastBlockPosition() {
+        return this.lastBlockPosition;
+    }
+
+    /**
+     * Signals the framing and decoder threads to stop without waiting for them. A framing thread blocked in
+     * {@link BitcoinBlockReader#readRawBlock()} only stops once the read returns, eg because the underlying stream has been closed.
+     */
+    public void stop() {
+        this.closed = true;
+        this.framer.interrupt();
+        // unblock the framing thread if it waits for space in the queue
+        this.queue.clear();
+        this.decoders.shutdownNow();
+    }
+
+    /**
+     * Stops the framing and decoder threads and waits for the framing thread to terminate. The BitcoinBlockReader is not closed.
+     *
+     * @throws IOException if the framing thread did not terminate, ie it may still use the BitcoinBlockReader
+     */
+    @Override
+    public void close() throws IOException {
+        stop();
+        try {
+            this.framer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the framing thread of the block pipeline");
+        }
+        if (this.framer.isAlive()) {
+            throw new IOException("Framing thread of block pipeline did not terminate");
+        }
+    }
+
+    /**
+     * Reads the raw blocks and submits them to the decoders. Runs in the framing thread.
+     */
+    private void frame() {
+        IOException error = null;
+        try {
+            long currentPosition = this.boundary.getPosition();
+            while (!this.closed && this.boundary.hasMoreBlocks(currentPosition)) {
+                ByteBuffer rawBlock = this.bbr.readRawBlock();
+                if (rawBlock == null) {
+                    break;
+                }
+                if (this.bbr.isReuseBuffer()) {
+                    // the buffer of the reader is reused for the next block
+                    ByteBuffer copy = ByteBuffer.allocate(rawBlock.remaining());
+                    copy.put(rawBlock).flip();
+                    rawBlock = copy.order(ByteOrder.LITTLE_ENDIAN);
+                }
+                long blockPosition = this.bbr.getLastBlockPosition();
+                currentPosition = this.boundary.getPosition();
+                Future<BitcoinBlock> block = this.decoders.submit(new Decoder(rawBlock));
+                this.queue.put(new DecodedBlock(block, blockPosition, currentPosition, null));
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            error = new BitcoinBlockReadException("Error: Could not read block: " + e);
+        } catch (InterruptedException e) {
+            return;
+        }
+        if (this.closed) {
+            return;
+        }
+        try {
+            this.queue.put(new DecodedBlock(null, -1, -1, error));
+        } catch (InterruptedException e) {
+            // closed while waiting
+        }
+    }
+
+    private final class Decoder implements Callable<BitcoinBlock> {
+        private final ByteBuffer rawBlock;
+
+        private Decoder(ByteBuffer rawBlock) {
+            this.rawBlock = rawBlock;
+        }
+
+        @Override
+        public BitcoinBlock call() {
+            BitcoinBlock block = BitcoinBlockPipeline.this.parser.parseBlock(this.rawBlock);
+            if (BitcoinBlockPipeline.this.hashBlocks) {
+                block.getHash();
+                for (BitcoinTransaction transaction : block.getTransactions()) {
+                    transaction.getTransactionHash();
+                    transaction.getTransactionHashSegwit();
+                }
+            }
+            return block;
+        }
+    }
+}
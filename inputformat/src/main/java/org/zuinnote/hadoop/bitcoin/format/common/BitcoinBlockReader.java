@@ -21,16 +21,17 @@ import org.apache.commons.logging.LogFactory;
 import org.zuinnote.hadoop.bitcoin.format.exception.BitcoinBlockReadException;
 import org.zuinnote.hadoop.bitcoin.format.littleendian.*;
 import org.zuinnote.hadoop.bitcoin.format.util.Bytes;
+import org.zuinnote.hadoop.bitcoin.format.util.CountingInputStream;
+import org.zuinnote.hadoop.bitcoin.format.util.XorInputStream;
 import org.zuinnote.hadoop.ethereum.format.common.EthereumUtil;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 
 /**
@@ -40,14 +41,22 @@ import java.util.List;
 public class BitcoinBlockReader {
 
     private static final Log LOG = LogFactory.getLog(BitcoinBlockReader.class.getName());
+    private static final int MAGIC_SCAN_CHUNK_SIZE = 64 * 1024;
 
     private int maxSizeBitcoinBlock = 0;
     private boolean useDirectBuffer = false;
     private boolean readAuxPow = false;
     private boolean filterSpecificMagic = false;
     private byte[][] specificMagicByteArray;
-    private ByteBuffer preAllocatedDirectByteBuffer;
-    private InputStream bin;
+    private BitcoinMagicScanner magicScanner;
+    private boolean reuseBuffer = false;
+    private ByteBuffer reusableBuffer;
+    private InputStream source;
+    private CountingInputStream bin;
+    private long lastBlockPosition = -1;
+    private boolean recordTransactionRanges = false;
+    private EnumSet<BitcoinBlockSection> projection = EnumSet.allOf(BitcoinBlockSection.class);
+    private boolean fullProjection = true;
 
     /**
      * Create a BitcoinBlock reader that reads from the given stream and uses the given parameters for configuration.
@@ -57,7 +66,7 @@ public class BitcoinBlockReader {
      * @param maxSizeBitcoinBlock    Maximum size of a Bitcoinblock.
      * @param bufferSize             size of the memory buffer for the givenInputStream
      * @param specificMagicByteArray filters by specific block magic numbers if not null.
-     * @param useDirectBuffer        experimental feature to use a DirectByteBuffer instead of a HeapByteBuffer
+     * @param useDirectBuffer        experimental feature to use a DirectByteBuffer instead of a HeapByteBuffer. The DirectByteBuffer is reused for all blocks (cf. {@link #setReuseBuffer(boolean)})
      **/
     public BitcoinBlockReader(InputStream in, int maxSizeBitcoinBlock, int bufferSize, byte[][] specificMagicByteArray, boolean useDirectBuffer) {
         this(in, maxSizeBitcoinBlock, bufferSize, specificMagicByteArray, useDirectBuffer, false);
@@ -70,7 +79,7 @@ public class BitcoinBlockReader {
      * @param maxSizeBitcoinBlock    Maximum size of a Bitcoinblock.
      * @param bufferSize             size of the memory buffer for the givenInputStream
      * @param specificMagicByteArray filters by specific block magic numbers if not null.
-     * @param useDirectBuffer        experimental feature to use a DirectByteBuffer instead of a HeapByteBuffer
+     * @param useDirectBuffer        experimental feature to use a DirectByteBuffer instead of a HeapByteBuffer. The DirectByteBuffer is reused for all blocks (cf. {@link #setReuseBuffer(boolean)})
      * @param readAuxPow             true if auxPow information should be parsed, false if not
      **/
     public BitcoinBlockReader(InputStream in, int maxSizeBitcoinBlock, int bufferSize, byte[][] specificMagicByteArray, boolean useDirectBuffer, boolean readAuxPow) {
@@ -79,18 +88,113 @@ public class BitcoinBlockReader {
         this.useDirectBuffer = useDirectBuffer;
         if (specificMagicByteArray != null) {
             this.filterSpecificMagic = true;
+            this.magicScanner = new BitcoinMagicScanner(specificMagicByteArray);
         }
         if (bufferSize == 0) { // use original stream
-            this.bin = in;
+            this.source = in;
         } else {
-            this.bin = new BufferedInputStream(in, bufferSize);
-        }
-        if (this.useDirectBuffer) { // in case of a DirectByteBuffer we do allocation only once for the maximum size of one block, otherwise we will have a high cost for reallocation
-            preAllocatedDirectByteBuffer = ByteBuffer.allocateDirect(this.maxSizeBitcoinBlock);
+            this.source = new BufferedInputStream(in, bufferSize);
         }
+        this.bin = new CountingInputStream(this.source);
+        this.readAuxPow = readAuxPow;
+    }
+
+    /**
+     * Create a BitcoinBlock reader without a stream. It can only be used to parse blocks and transactions from buffers (eg for deserialization).
+     *
+     * @param readAuxPow true if auxPow information should be parsed, false if not
+     */
+    BitcoinBlockReader(boolean readAuxPow) {
         this.readAuxPow = readAuxPow;
     }
 
+    /**
+     * Creates a reader without a stream that parses blocks like this reader, ie with its current AuxPOW, projection and
+     * transaction range settings. Later changes of the settings of this reader do not affect it. The parser does not reuse
+     * buffers and its settings are not changed afterwards, so {@link #parseBlock(ByteBuffer)} can be called by several threads
+     * concurrently, provided that each thread parses its own buffer.
+     *
+     * @return parser
+     */
+    BitcoinBlockReader createParser() {
+        BitcoinBlockReader result = new BitcoinBlockReader(this.readAuxPow);
+        result.setRecordTransactionRanges(this.recordTransactionRanges);
+        result.setProjection(this.projection);
+        return result;
+    }
+
+    /**
+     * Enables recording of the byte range of each parsed transaction in the raw block. Transaction hashes (txid, wtxid) are then
+     * calculated directly from the raw block instead of serializing the transaction again and they are cached. Note that parsed
+     * transactions keep a reference to the raw block (or a copy of their bytes in case of a DirectByteBuffer) as long as they are referenced.
+     *
+     * @param recordTransactionRanges true if transaction ranges should be recorded, false if not (default)
+     */
+    public void setRecordTransactionRanges(boolean recordTransactionRanges) {
+        this.recordTransactionRanges = recordTransactionRanges;
+    }
+
+    public boolean isRecordTransactionRanges() {
+        return this.recordTransactionRanges;
+    }
+
+    /**
+     * Removes the XOR obfuscation of block files of newer Bitcoin Core versions (key in xor.dat of the blocks directory) while
+     * reading. The key is applied depending on the offset in the file, so the stream may start anywhere in the file, eg at the
+     * start of a split. This must be called before anything is read.
+     *
+     * @param xorKey key (8 bytes) or null if the data is not obfuscated
+     * @param offset offset in the block file of the first byte of the stream given to this reader
+     */
+    public void setXorKey(byte[] xorKey, long offset) {
+        if (this.bin.getPosition() != 0) {
+            throw new IllegalStateException("XOR key must be set before reading");
+        }
+        if ((xorKey == null) || XorInputStream.isIdentity(xorKey)) {
+            this.bin = new CountingInputStream(this.source);
+        } else {
+            this.bin = new CountingInputStream(new XorInputStream(this.source, xorKey, offset));
+        }
+    }
+
+    /**
+     * Enables reading of blocks directly into a single buffer, which grows on demand up to the maximum block size, instead of
+     * allocating a new array for every block. The buffer returned by {@link #readRawBlock()} is then only valid until the next
+     * call of {@link #readRawBlock()} or {@link #readBlock()}. Blocks parsed by {@link #readBlock()} remain valid, but transactions
+     * with a recorded byte range (cf. {@link #setRecordTransactionRanges(boolean)}) keep a copy of their bytes.
+     * DirectByteBuffers are always reused.
+     *
+     * @param reuseBuffer true if the buffer should be reused, false if not (default)
+     */
+    public void setReuseBuffer(boolean reuseBuffer) {
+        this.reuseBuffer = reuseBuffer;
+    }
+
+    /**
+     * @return true if the buffer returned by {@link #readRawBlock()} is only valid until the next block is read
+     */
+    public boolean isReuseBuffer() {
+        return this.reuseBuffer || this.useDirectBuffer;
+    }
+
+    /**
+     * Defines which sections of a block are parsed by {@link #parseBlock(ByteBuffer)}. Sections that are not selected are skipped
+     * by their length prefixes, ie the corresponding lists are empty or null (AuxPOW). If transactions are not fully parsed,
+     * their byte range in the raw block is always recorded (cf. {@link #setRecordTransactionRanges(boolean)}), so that their
+     * hashes and serialization are still correct.
+     *
+     * @param projection sections to parse (cf. {@link BitcoinBlockSection#parseProjection(String)}), the header is always parsed
+     */
+    public void setProjection(EnumSet<BitcoinBlockSection> projection) {
+        this.projection = EnumSet.copyOf(projection);
+        this.projection.add(BitcoinBlockSection.HEADER);
+        this.fullProjection = this.projection.containsAll(EnumSet.allOf(BitcoinBlockSection.class));
+    }
+
+    public EnumSet<BitcoinBlockSection> getProjection() {
+        return EnumSet.copyOf(this.projection);
+    }
+
     /**
      * Seek for a valid block start according to the following algorithm:
      * (1) find the magic of the block
@@ -121,18 +225,44 @@ public class BitcoinBlockReader {
         if (buffer == null) {
             return null;
         }
+        return parseBlock(buffer);
+    }
+
+    /**
+     * Parses a raw block as returned by {@link #readRawBlock()} (starting with the magic) into a Java object of the class Bitcoin Block.
+     *
+     * @param buffer ByteBuffer (little endian) positioned at the magic of the block
+     * @return an instance of BitcoinBlock
+     */
+    public BitcoinBlock parseBlock(ByteBuffer buffer) {
         Magic magicNo = new Magic(buffer);
         UInt32 blockSize = new UInt32(buffer);
+        byte[] rawHeader = new byte[BitcoinBlockView.HEADER_SIZE];
+        buffer.mark();
+        buffer.get(rawHeader);
+        buffer.reset();
         UInt32 version = new UInt32(buffer);
         HashSHA256 hashPrevBlock = new HashSHA256(buffer);
         HashSHA256 hashMerkleRoot = new HashSHA256(buffer);
         EpochDatetime time = new EpochDatetime(buffer);
         UInt32 bits = new UInt32(buffer);
         UInt32 nonce = new UInt32(buffer);
-        BitcoinAuxPOW auxPOW = parseAuxPow(buffer);
-        List<BitcoinTransaction> transactions = parseTransactions(buffer);
-        return new BitcoinBlock(blockSize, magicNo, version, time, bits, nonce, hashPrevBlock,
+        BitcoinAuxPOW auxPOW = null;
+        if (this.projection.contains(BitcoinBlockSection.AUXPOW)) {
+            auxPOW = parseAuxPow(buffer);
+        } else {
+            skipAuxPow(buffer);
+        }
+        List<BitcoinTransaction> transactions;
+        if (this.projection.contains(BitcoinBlockSection.TRANSACTIONS)) {
+            transactions = parseTransactions(buffer);
+        } else {
+            transactions = new ArrayList<>();
+        }
+        BitcoinBlock result = new BitcoinBlock(blockSize, magicNo, version, time, bits, nonce, hashPrevBlock,
                                         hashMerkleRoot, transactions, auxPOW);
+        result.setRawHeader(rawHeader);
+        return result;
     }
 
     /**
@@ -142,40 +272,23 @@ public class BitcoinBlockReader {
      * @return
      */
     public BitcoinAuxPOW parseAuxPow(ByteBuffer buffer) {
-        if (!this.readAuxPow) {
-            return null;
-        }
-        // in case it does not contain auxpow we need to reset
-        buffer.mark();
-        UInt32 version = new UInt32(buffer);
-        UIntVar inCounter = new UIntVar(buffer);
-        byte[] currentTransactionInputPrevTransactionHash = new byte[32];
-        buffer.get(currentTransactionInputPrevTransactionHash, 0, 32);
-        byte[] prevTxOutIdx = new byte[4];
-        buffer.get(prevTxOutIdx, 0, 4);
         // detect auxPow
-        buffer.reset();
-        byte[] expectedPrevTransactionHash = new byte[]{0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00};
-        byte[] expectedPrevOutIdx = new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
-
-        if ((!(Arrays.equals(prevTxOutIdx, expectedPrevOutIdx)) || (!(Arrays.equals(currentTransactionInputPrevTransactionHash, expectedPrevTransactionHash))))) {
+        if (!isAuxPow(buffer)) {
             return null;
         }
         // continue reading auxPow
         // txIn (for all of them)
-        version = new UInt32(buffer);
+        long version = LE.readUInt32(buffer);
 
-        inCounter = new UIntVar(buffer);
-        List<BitcoinTransactionInput> inputs = parseTransactionInputs(buffer, inCounter.intValue());
+        long inCounter = LE.readVarInt(buffer);
+        List<BitcoinTransactionInput> inputs = parseTransactionInputs(buffer, inCounter);
 
         // txOut (for all of them)
-        UIntVar outCounter = new UIntVar(buffer);
-//        byte[] currentOutCounterVarInt = BitcoinUtil.convertVarIntByteBufferToByteArray(buffer);
-//        long currentNoOfOutput = BitcoinUtil.getVarInt(currentOutCounterVarInt);
-        List<BitcoinTransactionOutput> outputs = parseTransactionOutputs(buffer, outCounter.intValue());
-        EpochDatetime lockTime = new EpochDatetime(buffer);
+        long outCounter = LE.readVarInt(buffer);
+        List<BitcoinTransactionOutput> outputs = parseTransactionOutputs(buffer, outCounter);
+        long lockTime = LE.readUInt32(buffer);
         BitcoinTransaction coinbaseTransaction =
-                new BitcoinTransaction(version, inCounter, outCounter, inputs, outputs, null, lockTime);
+                new BitcoinTransaction(version, (byte) 0x01, (byte) 0x00, inCounter, outCounter, inputs, outputs, null, lockTime);
 
         // read branches
         // coinbase branch
@@ -207,7 +320,51 @@ public class BitcoinBlockReader {
         int parentBlockNonce = buffer.getInt();
         BitcoinAuxPOWBlockHeader parentBlockheader = new BitcoinAuxPOWBlockHeader(parentBlockVersion, parentBlockHashPrevBlock, parentBlockHashMerkleRoot, parentBlockTime, parentBlockBits, parentBlockNonce);
 
-        return new BitcoinAuxPOW(version, coinbaseTransaction, coinbaseParentBlockHeaderHash, coinbaseBranch, auxChainBranch, parentBlockheader);
+        return new BitcoinAuxPOW(new UInt32(version), coinbaseTransaction, coinbaseParentBlockHeaderHash, coinbaseBranch, auxChainBranch, parentBlockheader);
+    }
+
+    /**
+     * Checks if the buffer is positioned at AuxPOW information, ie a coinbase transaction. Does not change the position of the buffer.
+     *
+     * @param buffer buffer positioned after the block header
+     * @return true if reading AuxPOW information is enabled and the buffer contains AuxPOW information
+     */
+    private boolean isAuxPow(ByteBuffer buffer) {
+        if (!this.readAuxPow) {
+            return false;
+        }
+        // version, input counter (1 byte) and prev transaction hash (all zero) and prev tx out index (all 0xFF)
+        int pos = buffer.position() + 4;
+        pos += LE.varIntSize(buffer.get(pos));
+        for (int i = 0; i < 32; i++) {
+            if (buffer.get(pos + i) != 0) {
+                return false;
+            }
+        }
+        return buffer.getInt(pos + 32) == -1;
+    }
+
+    /**
+     * Skips AuxPOW information without creating objects for it
+     *
+     * @param buffer buffer positioned after the block header
+     */
+    private void skipAuxPow(ByteBuffer buffer) {
+        if (!isAuxPow(buffer)) {
+            return;
+        }
+        // coinbase transaction
+        skip(buffer, 4);
+        skipTransactionInputs(buffer, LE.readVarInt(buffer));
+        skipTransactionOutputs(buffer, LE.readVarInt(buffer));
+        skip(buffer, 4);
+        // parent block header hash
+        skip(buffer, 32);
+        // coinbase branch and auxchain branch: links and side bitmask
+        skip(buffer, (int) LE.readVarInt(buffer) * 32 + 4);
+        skip(buffer, (int) LE.readVarInt(buffer) * 32 + 4);
+        // parent block header
+        skip(buffer, BitcoinBlockView.HEADER_SIZE);
     }
 
     /**
@@ -238,59 +395,107 @@ public class BitcoinBlockReader {
      * @return Array of transactions
      */
     public List<BitcoinTransaction> parseTransactions(ByteBuffer buffer) {
-        long noOfTransactions = new UIntVar(buffer).longValue();
+        long noOfTransactions = LE.readVarInt(buffer);
         ArrayList<BitcoinTransaction> result = new ArrayList<>((int) noOfTransactions);
         for (int k = 0; k < noOfTransactions; k++) {
-            UInt32 version = new UInt32(buffer);
-            UIntVar inCounter = new UIntVar(buffer);
-
-            boolean segwit = false;
-            byte marker = 1;
-            byte flag = 0;
-            // check segwit marker
-            if (inCounter.intValue() == 0) {
-                // this seems to be segwit - lets be sure
-                // check segwit flag
-                buffer.mark();
-                byte segwitFlag = buffer.get();
-                if (segwitFlag != 0) {
-                    // load the real number of inputs
-                    segwit = true;
-                    marker = 0;
-                    flag = segwitFlag;
-                    inCounter = new UIntVar(buffer);
-                } else {
-                    //TODO Exception/assertion?
-                    LOG.warn("It seems a block with 0 transaction inputs was found");
-                    buffer.reset();
-                }
+            result.add(parseTransaction(buffer));
+        }
+        return result;
+    }
+
+    /**
+     * Parses a single Bitcoin transaction in a byte buffer.
+     *
+     * @param buffer ByteBuffer positioned at the start of the transaction
+     * @return transaction
+     */
+    public BitcoinTransaction parseTransaction(ByteBuffer buffer) {
+        int start = buffer.position();
+        long version = LE.readUInt32(buffer);
+        long inCounter = LE.readVarInt(buffer);
+
+        boolean segwit = false;
+        byte marker = 1;
+        byte flag = 0;
+        // check segwit marker
+        if (inCounter == 0) {
+            // this seems to be segwit - lets be sure
+            // check segwit flag
+            buffer.mark();
+            byte segwitFlag = buffer.get();
+            if (segwitFlag != 0) {
+                // load the real number of inputs
+                segwit = true;
+                marker = 0;
+                flag = segwitFlag;
+                inCounter = LE.readVarInt(buffer);
+            } else {
+                //TODO Exception/assertion?
+                LOG.warn("It seems a block with 0 transaction inputs was found");
+                buffer.reset();
             }
+        }
 
-            List<BitcoinTransactionInput> inputs = parseTransactionInputs(buffer, inCounter.intValue());
-            UIntVar outCounter = new UIntVar(buffer);
-            List<BitcoinTransactionOutput> outputs = parseTransactionOutputs(buffer, outCounter.intValue());
-
-            List<BitcoinScriptWitnessItem> scriptWitnessItems;
-            if (segwit) {
-                scriptWitnessItems = new ArrayList<>();
-                for (int i = 0; i < inCounter.intValue(); i++) {
-                    UIntVar witnessCounter = new UIntVar(buffer);
-                    List<BitcoinScriptWitness> currentTransactionSegwit = new ArrayList<>(witnessCounter.intValue());
-                    for (int j = 0; j < witnessCounter.intValue(); j++) {
-                        UIntVar segwitScriptLength = new UIntVar(buffer);
-                        // read segwit script
-                        byte[] currentTransactionInSegwitScript = new byte[segwitScriptLength.intValue()];
-                        buffer.get(currentTransactionInSegwitScript, 0, segwitScriptLength.intValue());
-                        currentTransactionSegwit.add(new BitcoinScriptWitness(segwitScriptLength, currentTransactionInSegwitScript));
-                    }
-                    scriptWitnessItems.add(new BitcoinScriptWitnessItem(witnessCounter, currentTransactionSegwit));
+        int bodyStart = segwit ? start + 6 : start + 4;
+        List<BitcoinTransactionInput> inputs;
+        if (this.projection.contains(BitcoinBlockSection.INPUTS)) {
+            inputs = parseTransactionInputs(buffer, inCounter);
+        } else {
+            inputs = new ArrayList<>();
+            skipTransactionInputs(buffer, inCounter);
+        }
+        long outCounter = LE.readVarInt(buffer);
+        List<BitcoinTransactionOutput> outputs;
+        if (this.projection.contains(BitcoinBlockSection.OUTPUTS)) {
+            outputs = parseTransactionOutputs(buffer, outCounter);
+        } else {
+            outputs = new ArrayList<>();
+            skipTransactionOutputs(buffer, outCounter);
+        }
+        int outputsEnd = buffer.position();
+
+        List<BitcoinScriptWitnessItem> scriptWitnessItems;
+        if (segwit && !this.projection.contains(BitcoinBlockSection.WITNESSES)) {
+            scriptWitnessItems = new ArrayList<>();
+            for (long i = 0; i < inCounter; i++) {
+                long witnessCounter = LE.readVarInt(buffer);
+                for (long j = 0; j < witnessCounter; j++) {
+                    skip(buffer, (int) LE.readVarInt(buffer));
+                }
+            }
+        } else if (segwit) {
+            scriptWitnessItems = new ArrayList<>();
+            for (long i = 0; i < inCounter; i++) {
+                long witnessCounter = LE.readVarInt(buffer);
+                List<BitcoinScriptWitness> currentTransactionSegwit = new ArrayList<>((int) witnessCounter);
+                for (long j = 0; j < witnessCounter; j++) {
+                    // read segwit script
+                    byte[] currentTransactionInSegwitScript = new byte[(int) LE.readVarInt(buffer)];
+                    buffer.get(currentTransactionInSegwitScript);
+                    currentTransactionSegwit.add(new BitcoinScriptWitness(currentTransactionInSegwitScript));
                 }
+                scriptWitnessItems.add(new BitcoinScriptWitnessItem(witnessCounter, currentTransactionSegwit));
+            }
+        } else {
+            scriptWitnessItems = new ArrayList<>();
+        }
+        long lockTime = LE.readUInt32(buffer);
+        BitcoinTransaction result = new BitcoinTransaction(version, marker, flag, inCounter, outCounter,
+                                                            inputs, outputs, scriptWitnessItems, lockTime);
+        // transactions that are not fully parsed can only be hashed and serialized from the raw block
+        if (this.recordTransactionRanges || !this.fullProjection) {
+            int end = buffer.position();
+            if (buffer.hasArray() && !isReusableBuffer(buffer)) {
+                int offset = buffer.arrayOffset();
+                result.setRawRange(buffer.array(), offset + start, offset + bodyStart, offset + outputsEnd, offset + end);
             } else {
-                scriptWitnessItems = new ArrayList<>();
+                // the buffer is reused for the next block
+                byte[] rawTransaction = new byte[end - start];
+                ByteBuffer source = buffer.duplicate();
+                source.position(start);
+                source.get(rawTransaction);
+                result.setRawRange(rawTransaction, 0, bodyStart - start, outputsEnd - start, end - start);
             }
-            EpochDatetime lockTime = new EpochDatetime(buffer);
-            result.add(new BitcoinTransaction(version, marker, flag, inCounter, outCounter,
-                                                                inputs, outputs, scriptWitnessItems, lockTime));
         }
         return result;
     }
@@ -306,20 +511,41 @@ public class BitcoinBlockReader {
         ArrayList<BitcoinTransactionInput> inputs = new ArrayList<>((int) numInputs);
         for (int i = 0; i < numInputs; i++) {
             HashSHA256 prevTransactionHash = new HashSHA256(buffer);
-            UInt32 prevTxOutIdx = new UInt32(buffer);
+            long prevTxOutIdx = LE.readUInt32(buffer);
 
             // read inScript
-            UIntVar inScriptLength = new UIntVar(buffer);
-            byte[] inScript = new byte[inScriptLength.intValue()];
-            buffer.get(inScript, 0, inScriptLength.intValue());
+            byte[] inScript = new byte[(int) LE.readVarInt(buffer)];
+            buffer.get(inScript);
 
-            UInt32 seqNo = new UInt32(buffer);
+            long seqNo = LE.readUInt32(buffer);
 
-            inputs.add(new BitcoinTransactionInput(prevTransactionHash, prevTxOutIdx, inScriptLength, inScript, seqNo));
+            inputs.add(new BitcoinTransactionInput(prevTransactionHash, prevTxOutIdx, inScript, seqNo));
         }
         return inputs;
     }
 
+    private void skipTransactionInputs(ByteBuffer buffer, long numInputs) {
+        for (long i = 0; i < numInputs; i++) {
+            // prev transaction hash and prev tx out index
+            skip(buffer, 36);
+            // inScript and seqNo
+            skip(buffer, (int) LE.readVarInt(buffer) + 4);
+        }
+    }
+
+    private void skipTransactionOutputs(ByteBuffer buffer, long numOutputs) {
+        for (long i = 0; i < numOutputs; i++) {
+            // value
+            skip(buffer, 8);
+            // script
+            skip(buffer, (int) LE.readVarInt(buffer));
+        }
+    }
+
+    private static void skip(ByteBuffer buffer, int length) {
+        buffer.position(buffer.position() + length);
+    }
+
     /**
      * Parses the Bitcoin transaction outputs in a byte buffer.
      *
@@ -334,11 +560,8 @@ public class BitcoinBlockReader {
         ArrayList<BitcoinTransactionOutput> outputs = new ArrayList<>((int) (numOutputs));
         for (int i = 0; i < numOutputs; i++) {
 
-            // read value
-            byte[] currentTransactionOutputValueArray = new byte[8];
-            buffer.get(currentTransactionOutputValueArray);
-            BigInteger value =
-                    new BigInteger(1, BitcoinUtil.reverseByteArray(currentTransactionOutputValueArray));
+            // read value (little endian)
+            long value = LE.readInt64(buffer);
 
             BitcoinScript outScript = new BitcoinScript(buffer);
 
@@ -365,40 +588,158 @@ public class BitcoinBlockReader {
             }
             rawBlockSize = skipBlocksNotInFilter();
         }
+        this.lastBlockPosition = this.bin.getPosition();
         int blockSize = rawBlockSize.intValue() + 8;
         assert blockSize > 0;
         if (blockSize > this.maxSizeBitcoinBlock) {
             throw new BitcoinBlockReadException("Error: Block size is larger then defined in configuration - Please increase it if this is a valid block");
         }
 
-        // read full block into ByteBuffer
-        byte[] fullBlock = new byte[blockSize];
-        int totalByteRead = 0;
-        int readByte;
-        while ((readByte = this.bin.read(fullBlock, totalByteRead, blockSize - totalByteRead)) > -1) {
-            totalByteRead += readByte;
-            if (totalByteRead >= blockSize) {
-                break;
+        // read full block directly into the ByteBuffer
+        ByteBuffer result;
+        if (isReuseBuffer()) {
+            result = getReusableBuffer(blockSize);
+        } else {
+            result = ByteBuffer.allocate(blockSize);
+        }
+        while (result.hasRemaining()) {
+            if (this.bin.read(result) < 0) {
+                throw new BitcoinBlockReadException("Error: Could not read full block");
             }
         }
-        if (totalByteRead != blockSize) {
-            throw new BitcoinBlockReadException("Error: Could not read full block");
+        result.flip();
+        result.order(ByteOrder.LITTLE_ENDIAN);
+        return result;
+    }
+
+    /**
+     * Reads only the magic, the block size and the header (80 bytes) of the next block. The remaining part of the block
+     * (AuxPOW and transactions) is skipped without copying it. This allows to process the headers of many blocks quickly,
+     * eg to build a {@link BitcoinChainIndex}.
+     *
+     * @return ByteBuffer containing magic, block size and header (88 bytes) or null if no further block is available
+     *
+     * @throws org.zuinnote.hadoop.bitcoin.format.exception.BitcoinBlockReadException in case of format errors of the Bitcoin Blockchain data
+     **/
+    public ByteBuffer readRawBlockHeader() throws IOException {
+        ByteBuffer result = readRawHeaderOfNextBlock();
+        if (result != null) {
+            skipRestOfBlock(result, 0);
         }
+        return result;
+    }
 
-        ByteBuffer result;
-        if (!(this.useDirectBuffer)) {
-            result = ByteBuffer.wrap(fullBlock);
-        } else {
-            preAllocatedDirectByteBuffer.clear(); // clear out old bytebuffer
-            preAllocatedDirectByteBuffer.limit(fullBlock.length); // limit the bytebuffer
-            result = preAllocatedDirectByteBuffer;
-            result.put(fullBlock);
-            result.flip(); // put in read mode
+    /**
+     * Reads the header and the number of transactions of the next block. Transactions are skipped without reading them,
+     * unless AuxPOW information is read: the number of transactions follows the AuxPOW information, so the full block has
+     * to be read in this case.
+     *
+     * @return header or null if no further block is available
+     *
+     * @throws org.zuinnote.hadoop.bitcoin.format.exception.BitcoinBlockReadException in case of format errors of the Bitcoin Blockchain data
+     **/
+    public BitcoinBlockHeader readBlockHeader() throws IOException {
+        if (this.readAuxPow) {
+            ByteBuffer rawBlock = readRawBlock();
+            if (rawBlock == null) {
+                return null;
+            }
+            ByteBuffer body = rawBlock.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            body.position(rawBlock.position() + 8 + BitcoinBlockView.HEADER_SIZE);
+            skipAuxPow(body);
+            return new BitcoinBlockHeader(rawBlock, LE.readVarInt(body));
+        }
+        ByteBuffer rawHeader = readRawHeaderOfNextBlock();
+        if (rawHeader == null) {
+            return null;
+        }
+        long transactionCount = 0;
+        int varIntSize = 0;
+        if (LE.getUInt32(rawHeader, 4) > BitcoinBlockView.HEADER_SIZE) {
+            int firstByte = this.bin.read();
+            if (firstByte < 0) {
+                throw new BitcoinBlockReadException("Error: Could not read number of transactions");
+            }
+            varIntSize = LE.varIntSize((byte) firstByte);
+            ByteBuffer varInt = ByteBuffer.allocate(9).order(ByteOrder.LITTLE_ENDIAN);
+            varInt.put((byte) firstByte);
+            varInt.limit(varIntSize);
+            while (varInt.hasRemaining()) {
+                if (this.bin.read(varInt) < 0) {
+                    throw new BitcoinBlockReadException("Error: Could not read number of transactions");
+                }
+            }
+            transactionCount = LE.getVarInt(varInt, 0);
         }
+        skipRestOfBlock(rawHeader, varIntSize);
+        return new BitcoinBlockHeader(rawHeader, transactionCount);
+    }
+
+    /**
+     * Reads magic, block size and header of the next block
+     *
+     * @return buffer containing 88 bytes or null if no further block is available
+     */
+    private ByteBuffer readRawHeaderOfNextBlock() throws IOException {
+        Long rawBlockSize = null;
+        while (rawBlockSize == null) {
+            if (this.bin.available() < 1) {
+                return null;
+            }
+            rawBlockSize = skipBlocksNotInFilter();
+        }
+        this.lastBlockPosition = this.bin.getPosition();
+        if (rawBlockSize + 8 > this.maxSizeBitcoinBlock) {
+            throw new BitcoinBlockReadException("Error: Block size is larger then defined in configuration - Please increase it if this is a valid block");
+        }
+        if (rawBlockSize < BitcoinBlockView.HEADER_SIZE) {
+            throw new BitcoinBlockReadException("Error: Block is smaller than a block header");
+        }
+        ByteBuffer result = ByteBuffer.allocate(8 + BitcoinBlockView.HEADER_SIZE);
+        while (result.hasRemaining()) {
+            if (this.bin.read(result) < 0) {
+                throw new BitcoinBlockReadException("Error: Could not read block header");
+            }
+        }
+        result.flip();
         result.order(ByteOrder.LITTLE_ENDIAN);
         return result;
     }
 
+    /**
+     * Skips the remaining part of a block after its header
+     *
+     * @param rawHeader   magic, block size and header of the block
+     * @param alreadyRead number of bytes already read after the header
+     */
+    private void skipRestOfBlock(ByteBuffer rawHeader, long alreadyRead) throws IOException {
+        long remaining = LE.getUInt32(rawHeader, 4) - BitcoinBlockView.HEADER_SIZE - alreadyRead;
+        if (skipFully(remaining) != remaining) {
+            throw new BitcoinBlockReadException("Error: Could not read full block");
+        }
+    }
+
+    private boolean isReusableBuffer(ByteBuffer buffer) {
+        return (this.reusableBuffer != null) && this.reusableBuffer.hasArray() && (buffer.array() == this.reusableBuffer.array());
+    }
+
+    /**
+     * Returns the reusable buffer with a limit of the given size. The buffer grows by doubling its capacity, but not beyond
+     * the maximum block size.
+     *
+     * @param size size of the block to read
+     * @return cleared buffer
+     */
+    private ByteBuffer getReusableBuffer(int size) {
+        if ((this.reusableBuffer == null) || (this.reusableBuffer.capacity() < size)) {
+            int capacity = this.reusableBuffer == null ? size : (int) Math.min(Math.max(size, 2L * this.reusableBuffer.capacity()), this.maxSizeBitcoinBlock);
+            this.reusableBuffer = this.useDirectBuffer ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        }
+        this.reusableBuffer.clear();
+        this.reusableBuffer.limit(size);
+        return this.reusableBuffer;
+    }
+
     /**
      * This function is used to read from a raw Bitcoin block some identifier. Note: Does not change ByteBuffer position
      *
@@ -419,6 +760,24 @@ public class BitcoinBlockReader {
         return new Bytes(hashMerkleRoot, hashPrevBlock).getBytes();
     }
 
+    /**
+     * Returns the number of bytes consumed from the stream given to this reader, ie the position relative to the start of the stream
+     *
+     * @return position
+     */
+    public long getPosition() {
+        return this.bin.getPosition();
+    }
+
+    /**
+     * Returns the position relative to the start of the stream of the block returned last by {@link #readRawBlock()} or {@link #readBlock()}
+     *
+     * @return position of the last block (start of magic) or -1 if no block has been read yet
+     */
+    public long getLastBlockPosition() {
+        return this.lastBlockPosition;
+    }
+
     /**
      * Closes the reader
      *
@@ -429,48 +788,53 @@ public class BitcoinBlockReader {
     }
 
     /**
-     * Finds the start of a block by looking for the specified magics in the current InputStream
+     * Finds the start of a block by looking for the specified magics in the current InputStream. The stream is read in chunks,
+     * which are searched for all magics at once, and is positioned at the first magic found.
      *
      * @throws org.zuinnote.hadoop.bitcoin.format.exception.BitcoinBlockReadException in case of errors reading Blockchain data
      *
      */
     private void findMagic() throws IOException {
-        // search if first byte of any magic matches
         // search up to maximum size of a bitcoin block
-        int currentSeek = 0;
-        while (currentSeek != this.maxSizeBitcoinBlock) {
-            int firstByte = -1;
-            this.bin.mark(4); // magic is always 4 bytes
-            firstByte = this.bin.read();
-            if (firstByte == -1) {
-                throw new BitcoinBlockReadException("Error: Did not find defined magic within current stream");
+        byte[] chunk = new byte[(int) Math.min(MAGIC_SCAN_CHUNK_SIZE, this.maxSizeBitcoinBlock + 3L)];
+        long currentSeek = 0;
+        while (currentSeek < this.maxSizeBitcoinBlock) {
+            // the last 3 bytes of a chunk are read again with the next chunk in case a magic crosses the chunk border
+            int toRead = (int) Math.min(chunk.length, this.maxSizeBitcoinBlock - currentSeek + 3);
+            this.bin.mark(toRead);
+            int totalByteRead = 0;
+            int readByte;
+            while ((totalByteRead < toRead) && ((readByte = this.bin.read(chunk, totalByteRead, toRead - totalByteRead)) > -1)) {
+                totalByteRead += readByte;
             }
-            if (checkForMagicBytes(firstByte)) {
-                return;
+            this.bin.reset();
+            if (totalByteRead < 4) {
+                throw new BitcoinBlockReadException("Error: Did not find defined magic within current stream");
             }
-            if (currentSeek == this.maxSizeBitcoinBlock) {
-                throw new BitcoinBlockReadException("Error: Cannot seek to a block start, because no valid block found within the maximum size of a Bitcoin block. Check data or increase maximum size of Bitcoin block.");
+            int magicPos = this.magicScanner.indexOf(chunk, 0, totalByteRead);
+            int advance = magicPos >= 0 ? magicPos : totalByteRead - 3;
+            if (skipFully(advance) != advance) {
+                throw new BitcoinBlockReadException("Error cannot skip " + advance + " bytes in InputStream");
             }
-            // increase by one byte if magic not found yet
-            this.bin.reset();
-            if (this.bin.skip(1) != 1) {
-                throw new BitcoinBlockReadException("Error cannot skip 1 byte in InputStream");
+            if (magicPos >= 0) {
+                return;
             }
-            currentSeek++;
+            currentSeek += advance;
         }
+        throw new BitcoinBlockReadException("Error: Cannot seek to a block start, because no valid block found within the maximum size of a Bitcoin block. Check data or increase maximum size of Bitcoin block.");
     }
 
     /**
-     * Checks if there is a full Bitcoin Block at the current position of the InputStream
+     * Checks if there is a full Bitcoin Block at the current position of the InputStream. The block is skipped and not copied.
      *
      * @throws org.zuinnote.hadoop.bitcoin.format.exception.BitcoinBlockReadException in case of errors reading Blockchain data
      *
      */
     private void checkFullBlock() throws IOException {
-        // now we can check that we have a full block
-        this.bin.mark(this.maxSizeBitcoinBlock);
+        // now we can check that we have a full block (magic, block size and block)
+        this.bin.mark(this.maxSizeBitcoinBlock + 8);
         // skip maigc
-        long skipMagic = this.bin.skip(4);
+        long skipMagic = skipFully(4);
         if (skipMagic != 4) {
             throw new BitcoinBlockReadException("Error: Cannot seek to a block start, because no valid block found. Cannot skip forward magic");
         }
@@ -479,22 +843,37 @@ public class BitcoinBlockReader {
         if (blockSize.getValue() > this.maxSizeBitcoinBlock) {
             throw new BitcoinBlockReadException("Error: Cannot seek to a block start, because no valid block found. Max bitcoin block size is smaller than current block size.");
         }
-
-        int readByte, totalByteRead = 0;
-        byte[] blockRead = new byte[blockSize.intValue()];
-        while ((readByte = this.bin.read(blockRead, totalByteRead, blockSize.intValue() - totalByteRead)) > -1) {
-            totalByteRead += readByte;
-            if (totalByteRead >= blockSize.intValue()) {
-                break;
-            }
-        }
-        if (totalByteRead != blockSize.intValue()) {
+        if (skipFully(blockSize.getValue()) != blockSize.getValue()) {
             throw new BitcoinBlockReadException("Error: Cannot seek to a block start, because no valid block found. Cannot skip to end of block");
         }
         this.bin.reset();
         // it is a full block
     }
 
+    /**
+     * Skips exactly the given number of bytes unless the end of the stream is reached. In contrast to InputStream.skip this does
+     * not return early if the underlying stream skips less bytes.
+     *
+     * @param bytesToSkip number of bytes to skip
+     * @return number of bytes skipped
+     * @throws java.io.IOException in case of errors reading from InputStream
+     */
+    private long skipFully(long bytesToSkip) throws IOException {
+        long totalSkipped = 0;
+        while (totalSkipped < bytesToSkip) {
+            long skipped = this.bin.skip(bytesToSkip - totalSkipped);
+            if (skipped <= 0) {
+                // skip may return 0 without having reached the end of the stream
+                if (this.bin.read() == -1) {
+                    break;
+                }
+                skipped = 1;
+            }
+            totalSkipped += skipped;
+        }
+        return totalSkipped;
+    }
+
     /**
      * Read the magic and blockSize fields in the header and return the raw block size as Long,
      * or null iff filterSpecificMagic is true, and the magic read does not match any of those specified
@@ -515,50 +894,10 @@ public class BitcoinBlockReader {
                     return blockSize.getValue();
                 }
             }
-            bin.skip(blockSize.getValue() + 8);
+            skipFully(blockSize.getValue() + 8);
             return null;
         } else {
             return blockSize.getValue();
         }
     }
-
-    /**
-     * Checks in BufferedInputStream (bin) for the magic(s) specified in specificMagicByteArray
-     *
-     * @param firstByte first byte (as int) of the byteBuffer
-     * @throws java.io.IOException in case of issues reading from BufferedInputStream
-     * @retrun true if one of the magics has been identified, false if not
-     */
-    private boolean checkForMagicBytes(int firstByte) throws IOException {
-        byte[] fullMagic = null;
-        for (int i = 0; i < this.specificMagicByteArray.length; i++) {
-            // compare first byte and decide if we want to read full magic
-            int currentMagicFirstbyte = this.specificMagicByteArray[i][0] & 0xFF;
-            if (firstByte == currentMagicFirstbyte) {
-                if (fullMagic == null) { // read full magic
-                    fullMagic = new byte[4];
-                    fullMagic[0] = this.specificMagicByteArray[i][0];
-                    int maxByteRead = 4;
-                    int totalByteRead = 1;
-                    int readByte;
-                    while ((readByte = this.bin.read(fullMagic, totalByteRead, maxByteRead - totalByteRead)) > -1) {
-                        totalByteRead += readByte;
-                        if (totalByteRead >= maxByteRead) {
-                            break;
-                        }
-                    }
-                    if (totalByteRead != maxByteRead) {
-                        return false;
-                    }
-                }
-                // compare full magics
-                if (new Magic(fullMagic).equals(new Magic(specificMagicByteArray[i]))) {
-                    this.bin.reset();
-                    return true;
-                }
-            }
-
-        }
-        return false;
-    }
 }
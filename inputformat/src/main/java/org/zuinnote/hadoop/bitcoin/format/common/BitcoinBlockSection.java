@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import java.util.EnumSet;
+import java.util.Locale;
+
+/**
+ * Sections of a Bitcoin block, which can be selected for parsing (projection). Sections that are not selected are skipped
+ * by their length prefixes without creating any objects for them.
+ **/
+public enum BitcoinBlockSection {
+    /** block header, it is always parsed **/
+    HEADER,
+    /** transactions with version, counters and lock time, but without inputs, outputs and witnesses **/
+    TRANSACTIONS,
+    /** inputs of the transactions **/
+    INPUTS,
+    /** outputs of the transactions **/
+    OUTPUTS,
+    /** script witnesses of segwit transactions **/
+    WITNESSES,
+    /** AuxPOW information of merged-mined blocks (if reading AuxPOW is enabled) **/
+    AUXPOW;
+
+    public static final String ALL = "all";
+
+    /**
+     * Parses a projection, ie a comma-separated list of sections (case insensitive), eg "header,outputs". The header is always
+     * included. Inputs, outputs and witnesses imply transactions.
+     *
+     * @param projection comma-separated list of sections. If null, empty or "all" all sections are returned
+     * @return selected sections
+     * @throws IllegalArgumentException if the projection contains an unknown section
+     */
+    public static EnumSet<BitcoinBlockSection> parseProjection(String projection) {
+        if ((projection == null) || (projection.trim().isEmpty()) || ALL.equalsIgnoreCase(projection.trim())) {
+            return EnumSet.allOf(BitcoinBlockSection.class);
+        }
+        EnumSet<BitcoinBlockSection> result = EnumSet.of(HEADER);
+        for (String section : projection.split(",")) {
+            String name = section.trim();
+            if (!name.isEmpty()) {
+                result.add(BitcoinBlockSection.valueOf(name.toUpperCase(Locale.ROOT)));
+            }
+        }
+        if (result.contains(INPUTS) || result.contains(OUTPUTS) || result.contains(WITNESSES)) {
+            result.add(TRANSACTIONS);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.zuinnote.hadoop.bitcoin.format.littleendian.LE;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Flyweight view over a raw Bitcoin block as returned by {@link BitcoinBlockReader#readRawBlock()}.
+ * </p>
+ *
+ * <p>
+ * In contrast to {@link BitcoinBlock} no object graph is created. When a buffer is attached with {@link #reset(ByteBuffer)}
+ * the block is walked once and only the offsets of transactions, inputs and outputs are recorded in int arrays, which
+ * are reused for subsequent blocks. All getters read directly from the underlying buffer. This means that a view is
+ * only valid as long as the buffer is not modified, e.g. if direct buffers are used the view is only valid until the
+ * next block is read.
+ * </p>
+ **/
+public class BitcoinBlockView implements Writable {
+
+    public static final int HEADER_SIZE = 80;
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_BLOCKSIZE = 4;
+    private static final int OFFSET_VERSION = 8;
+    private static final int OFFSET_HASHPREVBLOCK = 12;
+    private static final int OFFSET_HASHMERKLEROOT = 44;
+    private static final int OFFSET_TIME = 76;
+    private static final int OFFSET_BITS = 80;
+    private static final int OFFSET_NONCE = 84;
+    private static final int OFFSET_AUXPOW = 88;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private boolean readAuxPow;
+    private ByteBuffer buffer;
+    private int base;
+    private int auxPowOffset;
+    private int transactionCounterOffset;
+    private int transactionCount;
+    // per transaction: start, start of input counter (after segwit marker and flag), end of outputs
+    private int[] transactionOffsets = new int[INITIAL_CAPACITY + 1];
+    private int[] transactionBodyOffsets = new int[INITIAL_CAPACITY];
+    private int[] transactionOutputsEnd = new int[INITIAL_CAPACITY];
+    private int[] transactionFirstInput = new int[INITIAL_CAPACITY + 1];
+    private int[] transactionFirstOutput = new int[INITIAL_CAPACITY + 1];
+    private int[] inputOffsets = new int[INITIAL_CAPACITY];
+    private int[] outputOffsets = new int[INITIAL_CAPACITY];
+    private int inputCount;
+    private int outputCount;
+    private final BitcoinTransactionView transactionView = new BitcoinTransactionView(this);
+    private byte[] serializationBuffer;
+
+    public BitcoinBlockView() {
+        this(false);
+    }
+
+    /**
+     * Creates an empty view
+     *
+     * @param readAuxPow true if blocks may contain AuxPOW information (cf. {@link BitcoinBlockReader#parseAuxPow(ByteBuffer)}), false if not
+     */
+    public BitcoinBlockView(boolean readAuxPow) {
+        this.readAuxPow = readAuxPow;
+    }
+
+    /**
+     * Attaches the view to a raw block. The buffer must contain the block starting at its current position including
+     * magic and block size (as returned by {@link BitcoinBlockReader#readRawBlock()}). The position of the buffer is
+     * not changed.
+     *
+     * @param rawBlock raw block
+     * @return this view
+     * @throws IndexOutOfBoundsException if the block is truncated
+     */
+    public BitcoinBlockView reset(ByteBuffer rawBlock) {
+        this.buffer = rawBlock.order() == ByteOrder.LITTLE_ENDIAN ? rawBlock : rawBlock.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.base = rawBlock.position();
+        this.inputCount = 0;
+        this.outputCount = 0;
+        int pos = this.base + OFFSET_AUXPOW;
+        this.auxPowOffset = -1;
+        if (this.readAuxPow && isAuxPow(pos)) {
+            this.auxPowOffset = pos;
+            pos = skipAuxPow(pos);
+        }
+        this.transactionCounterOffset = pos;
+        long noOfTransactions = readVarInt(this.buffer, pos);
+        pos += varIntSize(this.buffer, pos);
+        this.transactionCount = (int) noOfTransactions;
+        ensureTransactionCapacity(this.transactionCount);
+        for (int i = 0; i < this.transactionCount; i++) {
+            this.transactionOffsets[i] = pos;
+            pos = indexTransaction(i, pos);
+        }
+        this.transactionOffsets[this.transactionCount] = pos;
+        this.transactionFirstInput[this.transactionCount] = this.inputCount;
+        this.transactionFirstOutput[this.transactionCount] = this.outputCount;
+        return this;
+    }
+
+    /**
+     * Returns the buffer this view is attached to
+     *
+     * @return buffer in little endian order
+     */
+    public ByteBuffer getBuffer() {
+        return this.buffer;
+    }
+
+    public byte[] getMagicNo() {
+        byte[] result = new byte[4];
+        copy(this.base + OFFSET_MAGIC, result, 0, 4);
+        return result;
+    }
+
+    public long getBlockSize() {
+        return readUInt32(this.base + OFFSET_BLOCKSIZE);
+    }
+
+    public long getVersion() {
+        return readUInt32(this.base + OFFSET_VERSION);
+    }
+
+    public long getTime() {
+        return readUInt32(this.base + OFFSET_TIME);
+    }
+
+    public long getBits() {
+        return readUInt32(this.base + OFFSET_BITS);
+    }
+
+    public long getNonce() {
+        return readUInt32(this.base + OFFSET_NONCE);
+    }
+
+    /**
+     * Copies the hash of the previous block (in internal byte order) to the given array
+     *
+     * @param dest   destination
+     * @param offset offset in destination
+     */
+    public void getHashPrevBlock(byte[] dest, int offset) {
+        copy(this.base + OFFSET_HASHPREVBLOCK, dest, offset, 32);
+    }
+
+    /**
+     * Copies the merkle root stored in the header (in internal byte order) to the given array
+     *
+     * @param dest   destination
+     * @param offset offset in destination
+     */
+    public void getHashMerkleRoot(byte[] dest, int offset) {
+        copy(this.base + OFFSET_HASHMERKLEROOT, dest, offset, 32);
+    }
+
+    /**
+     * Returns a slice containing the 80 byte block header
+     *
+     * @return slice
+     */
+    public ByteBuffer headerSlice() {
+        return slice(this.base + OFFSET_VERSION, HEADER_SIZE);
+    }
+
+    /**
+     * Returns a slice containing the AuxPOW information
+     *
+     * @return slice or null if the block does not contain AuxPOW information
+     */
+    public ByteBuffer auxPowSlice() {
+        if (this.auxPowOffset < 0) {
+            return null;
+        }
+        return slice(this.auxPowOffset, this.transactionCounterOffset - this.auxPowOffset);
+    }
+
+    /**
+     * Calculates the block hash (double SHA256 of the header) in internal byte order.
+     *
+     * @return hash of the block
+     */
+    public byte[] getBlockHash() {
+        return BitcoinUtil.hashTwice(headerSlice());
+    }
+
+    public int getTransactionCount() {
+        return this.transactionCount;
+    }
+
+    /**
+     * Positions the flyweight transaction view of this block at the given transaction. Note that the same instance is
+     * returned on every call, i.e. it is only valid until this method is called again.
+     *
+     * @param index index of the transaction in the block
+     * @return transaction view
+     */
+    public BitcoinTransactionView getTransaction(int index) {
+        if ((index < 0) || (index >= this.transactionCount)) {
+            throw new IndexOutOfBoundsException("Transaction " + index + " does not exist in block with " + this.transactionCount + " transactions");
+        }
+        this.transactionView.setIndex(index);
+        return this.transactionView;
+    }
+
+    /**
+     * Serializes the raw block prefixed by its length
+     *
+     * @param dataOutput output
+     * @throws IOException in case of errors writing
+     */
+    @Override
+    public void write(DataOutput dataOutput) throws IOException {
+        int length = this.transactionOffsets[this.transactionCount] - this.base;
+        WritableUtils.writeVInt(dataOutput, length);
+        if (this.buffer.hasArray()) {
+            dataOutput.write(this.buffer.array(), this.buffer.arrayOffset() + this.base, length);
+        } else {
+            byte[] rawBlock = new byte[length];
+            copy(this.base, rawBlock, 0, length);
+            dataOutput.write(rawBlock);
+        }
+    }
+
+    /**
+     * Reads a raw block serialized by {@link #write(DataOutput)}. The internal array is reused if it is large enough.
+     *
+     * @param dataInput input
+     * @throws IOException in case of errors reading
+     */
+    @Override
+    public void readFields(DataInput dataInput) throws IOException {
+        int length = WritableUtils.readVInt(dataInput);
+        if ((this.serializationBuffer == null) || (this.serializationBuffer.length < length)) {
+            this.serializationBuffer = new byte[length];
+        }
+        dataInput.readFully(this.serializationBuffer, 0, length);
+        reset(ByteBuffer.wrap(this.serializationBuffer, 0, length).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    // methods used by the transaction view
+
+    int getTransactionOffset(int transaction) {
+        return this.transactionOffsets[transaction];
+    }
+
+    int getTransactionEnd(int transaction) {
+        return this.transactionOffsets[transaction + 1];
+    }
+
+    int getTransactionBodyOffset(int transaction) {
+        return this.transactionBodyOffsets[transaction];
+    }
+
+    int getTransactionOutputsEnd(int transaction) {
+        return this.transactionOutputsEnd[transaction];
+    }
+
+    int getFirstInput(int transaction) {
+        return this.transactionFirstInput[transaction];
+    }
+
+    int getFirstOutput(int transaction) {
+        return this.transactionFirstOutput[transaction];
+    }
+
+    int getInputOffset(int input) {
+        return this.inputOffsets[input];
+    }
+
+    int getOutputOffset(int output) {
+        return this.outputOffsets[output];
+    }
+
+    long readUInt32(int index) {
+        return LE.getUInt32(this.buffer, index);
+    }
+
+    void copy(int index, byte[] dest, int offset, int length) {
+        ByteBuffer source = this.buffer.duplicate();
+        source.position(index);
+        source.get(dest, offset, length);
+    }
+
+    ByteBuffer slice(int index, int length) {
+        ByteBuffer result = this.buffer.duplicate();
+        result.limit(index + length);
+        result.position(index);
+        return result.slice();
+    }
+
+    /**
+     * Reads a variable length integer (https://en.bitcoin.it/wiki/Protocol_documentation#Variable_length_integer) at
+     * an absolute position without changing the position of the buffer
+     *
+     * @param buffer buffer in little endian order
+     * @param index  absolute position
+     * @return value of the variable length integer
+     */
+    static long readVarInt(ByteBuffer buffer, int index) {
+        return LE.getVarInt(buffer, index);
+    }
+
+    /**
+     * Size of a variable length integer including its marker
+     *
+     * @param buffer buffer
+     * @param index  absolute position
+     * @return 1, 3, 5 or 9
+     */
+    static int varIntSize(ByteBuffer buffer, int index) {
+        return LE.varIntSize(buffer.get(index));
+    }
+
+    private int indexTransaction(int transaction, int start) {
+        int pos = start + 4; // version
+        boolean segwit = false;
+        // an input counter of 0 followed by a non-zero flag indicates segwit
+        if ((this.buffer.get(pos) == 0) && (this.buffer.get(pos + 1) != 0)) {
+            segwit = true;
+            pos += 2;
+        }
+        this.transactionBodyOffsets[transaction] = pos;
+        long noOfInputs = readVarInt(this.buffer, pos);
+        pos += varIntSize(this.buffer, pos);
+        this.transactionFirstInput[transaction] = this.inputCount;
+        ensureInputCapacity(this.inputCount + (int) noOfInputs);
+        for (int i = 0; i < noOfInputs; i++) {
+            this.inputOffsets[this.inputCount++] = pos;
+            pos = skipInput(pos);
+        }
+        long noOfOutputs = readVarInt(this.buffer, pos);
+        pos += varIntSize(this.buffer, pos);
+        this.transactionFirstOutput[transaction] = this.outputCount;
+        ensureOutputCapacity(this.outputCount + (int) noOfOutputs);
+        for (int i = 0; i < noOfOutputs; i++) {
+            this.outputOffsets[this.outputCount++] = pos;
+            pos = skipOutput(pos);
+        }
+        this.transactionOutputsEnd[transaction] = pos;
+        if (segwit) {
+            for (int i = 0; i < noOfInputs; i++) {
+                long noOfItems = readVarInt(this.buffer, pos);
+                pos += varIntSize(this.buffer, pos);
+                for (int j = 0; j < noOfItems; j++) {
+                    pos = skipVarBytes(pos);
+                }
+            }
+        }
+        return pos + 4; // lockTime
+    }
+
+    private int skipInput(int pos) {
+        // prevTransactionHash, previousTxOutIndex, script and sequence number
+        return skipVarBytes(pos + 36) + 4;
+    }
+
+    private int skipOutput(int pos) {
+        // value and script
+        return skipVarBytes(pos + 8);
+    }
+
+    private int skipVarBytes(int pos) {
+        long length = readVarInt(this.buffer, pos);
+        return pos + varIntSize(this.buffer, pos) + (int) length;
+    }
+
+    private boolean isAuxPow(int pos) {
+        // AuxPOW starts with a coinbase transaction, ie an input with an empty prevTransactionHash and index 0xFFFFFFFF
+        int inputPos = pos + 4;
+        inputPos += varIntSize(this.buffer, inputPos);
+        for (int i = 0; i < 32; i++) {
+            if (this.buffer.get(inputPos + i) != 0) {
+                return false;
+            }
+        }
+        return this.buffer.getInt(inputPos + 32) == 0xFFFFFFFF;
+    }
+
+    private int skipAuxPow(int start) {
+        // coinbase transaction
+        int pos = start + 4;
+        long noOfInputs = readVarInt(this.buffer, pos);
+        pos += varIntSize(this.buffer, pos);
+        for (int i = 0; i < noOfInputs; i++) {
+            pos = skipInput(pos);
+        }
+        long noOfOutputs = readVarInt(this.buffer, pos);
+        pos += varIntSize(this.buffer, pos);
+        for (int i = 0; i < noOfOutputs; i++) {
+            pos = skipOutput(pos);
+        }
+        pos += 4; // lockTime
+        pos += 32; // parent block header hash
+        for (int branch = 0; branch < 2; branch++) { // coinbase branch and aux chain branch
+            long noOfLinks = readVarInt(this.buffer, pos);
+            pos += varIntSize(this.buffer, pos) + (int) noOfLinks * 32 + 4;
+        }
+        return pos + HEADER_SIZE; // parent block header
+    }
+
+    private void ensureTransactionCapacity(int required) {
+        if (this.transactionBodyOffsets.length < required) {
+            int newCapacity = Math.max(required, this.transactionBodyOffsets.length * 2);
+            this.transactionOffsets = Arrays.copyOf(this.transactionOffsets, newCapacity + 1);
+            this.transactionBodyOffsets = Arrays.copyOf(this.transactionBodyOffsets, newCapacity);
+            this.transactionOutputsEnd = Arrays.copyOf(this.transactionOutputsEnd, newCapacity);
+            this.transactionFirstInput = Arrays.copyOf(this.transactionFirstInput, newCapacity + 1);
+            this.transactionFirstOutput = Arrays.copyOf(this.transactionFirstOutput, newCapacity + 1);
+        }
+    }
+
+    private void ensureInputCapacity(int required) {
+        if (this.inputOffsets.length < required) {
+            this.inputOffsets = Arrays.copyOf(this.inputOffsets, Math.max(required, this.inputOffsets.length * 2));
+        }
+    }
+
+    private void ensureOutputCapacity(int required) {
+        if (this.outputOffsets.length < required) {
+            this.outputOffsets = Arrays.copyOf(this.outputOffsets, Math.max(required, this.outputOffsets.length * 2));
+        }
+    }
+}
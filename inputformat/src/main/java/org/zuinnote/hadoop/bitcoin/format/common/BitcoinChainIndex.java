@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Writable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Height of every block of the best chain, ie the chain with the most cumulative work. Blocks not contained in the index
+ * are stale (orphan) blocks or have not been known when the index was built. The index is built by
+ * {@link BitcoinChainIndexBuilder} from the headers of all blocks.
+ * </p>
+ * <p>
+ * The index is stored compactly as the hashes of the blocks of the best chain in the order of their height, starting
+ * with the genesis block. When it is read, an open-addressing hash table of the first 8 bytes of the hashes is created,
+ * so that the height of a block can be looked up without creating objects per block.
+ * </p>
+ **/
+public class BitcoinChainIndex implements Writable {
+
+    public static final int UNKNOWN_HEIGHT = BitcoinBlockIndex.UNKNOWN_HEIGHT;
+
+    private static final int FORMAT_MAGIC = 0x42434958; // BCIX
+    private static final int FORMAT_VERSION = 1;
+
+    private static BitcoinChainIndex cachedIndex;
+    private static String cachedKey;
+
+    private int size;
+    // hashes of the blocks (internal byte order) in the order of their height
+    private byte[] hashes = new byte[0];
+    private long[] tablePrefixes;
+    private int[] tableHeights;
+    private int tableMask;
+
+    public BitcoinChainIndex() {
+        buildTable();
+    }
+
+    /**
+     * Creates an index of a chain
+     *
+     * @param hashes hashes (internal byte order) of the blocks of the chain in the order of their height, 32 bytes per block starting with the genesis block
+     */
+    public BitcoinChainIndex(byte[] hashes) {
+        if (hashes.length % 32 != 0) {
+            throw new IllegalArgumentException("Length of hashes is not a multiple of 32");
+        }
+        this.hashes = hashes;
+        this.size = hashes.length / 32;
+        buildTable();
+    }
+
+    /**
+     * Reads an index
+     *
+     * @param fs   file system
+     * @param path path of the index
+     * @return index
+     * @throws IOException in case of errors reading the index
+     */
+    public static BitcoinChainIndex read(FileSystem fs, Path path) throws IOException {
+        BitcoinChainIndex result = new BitcoinChainIndex();
+        try (FSDataInputStream in = fs.open(path)) {
+            result.readFields(in);
+        }
+        return result;
+    }
+
+    /**
+     * Reads an index or returns the index read last if it has not been modified since. This avoids reading the index for every
+     * split processed in the same JVM.
+     *
+     * @param fs   file system
+     * @param path path of the index
+     * @return index, which must not be modified
+     * @throws IOException in case of errors reading the index
+     */
+    public static synchronized BitcoinChainIndex readCached(FileSystem fs, Path path) throws IOException {
+        FileStatus status = fs.getFileStatus(path);
+        String key = status.getPath() + "@" + status.getModificationTime() + ":" + status.getLen();
+        if (!key.equals(cachedKey)) {
+            cachedIndex = read(fs, path);
+            cachedKey = key;
+        }
+        return cachedIndex;
+    }
+
+    /**
+     * Writes this index. The index is written to a temporary file first and renamed afterwards.
+     *
+     * @param fs   file system
+     * @param path path of the index
+     * @throws IOException in case of errors writing the index
+     */
+    public void write(FileSystem fs, Path path) throws IOException {
+        Path tmpPath = new Path(path.getParent(), "." + path.getName() + ".tmp");
+        try (FSDataOutputStream out = fs.create(tmpPath, true)) {
+            write(out);
+        }
+        fs.delete(path, false);
+        if (!fs.rename(tmpPath, path)) {
+            throw new IOException("Cannot rename " + tmpPath + " to " + path);
+        }
+    }
+
+    /**
+     * @return number of blocks in the best chain
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return height of the tip of the best chain or {@link #UNKNOWN_HEIGHT} if the index is empty
+     */
+    public int getBestHeight() {
+        return this.size - 1;
+    }
+
+    /**
+     * Returns the hash of the block of the best chain at the given height
+     *
+     * @param height height
+     * @return hash (internal byte order)
+     */
+    public byte[] getHash(int height) {
+        if ((height < 0) || (height >= this.size)) {
+            throw new IndexOutOfBoundsException("Height " + height + " is not contained in chain with " + this.size + " blocks");
+        }
+        return Arrays.copyOfRange(this.hashes, height * 32, height * 32 + 32);
+    }
+
+    /**
+     * Returns the height of a block
+     *
+     * @param hash hash of the block (internal byte order, cf. {@link BitcoinBlock#getHash()})
+     * @return height or {@link #UNKNOWN_HEIGHT} if the block is not part of the best chain
+     */
+    public int getHeight(byte[] hash) {
+        long prefix = ByteBuffer.wrap(hash).getLong();
+        for (int slot = slot(prefix); this.tableHeights[slot] != UNKNOWN_HEIGHT; slot = (slot + 1) & this.tableMask) {
+            int height = this.tableHeights[slot];
+            if ((this.tablePrefixes[slot] == prefix) && equalsHash(height, hash)) {
+                return height;
+            }
+        }
+        return UNKNOWN_HEIGHT;
+    }
+
+    /**
+     * @param hash hash of the block (internal byte order)
+     * @return true if the block is part of the best chain
+     */
+    public boolean contains(byte[] hash) {
+        return getHeight(hash) != UNKNOWN_HEIGHT;
+    }
+
+    @Override
+    public void write(DataOutput dataOutput) throws IOException {
+        dataOutput.writeInt(FORMAT_MAGIC);
+        dataOutput.writeInt(FORMAT_VERSION);
+        dataOutput.writeInt(this.size);
+        dataOutput.write(this.hashes, 0, this.size * 32);
+    }
+
+    @Override
+    public void readFields(DataInput dataInput) throws IOException {
+        if (dataInput.readInt() != FORMAT_MAGIC) {
+            throw new IOException("Not a Bitcoin chain index");
+        }
+        int version = dataInput.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported version of Bitcoin chain index: " + version);
+        }
+        int noOfBlocks = dataInput.readInt();
+        byte[] newHashes = new byte[noOfBlocks * 32];
+        dataInput.readFully(newHashes);
+        this.hashes = newHashes;
+        this.size = noOfBlocks;
+        buildTable();
+    }
+
+    private void buildTable() {
+        // load factor of at most 0.5
+        int capacity = Integer.highestOneBit(Math.max(this.size, 1) * 2 - 1) * 2;
+        this.tablePrefixes = new long[capacity];
+        this.tableHeights = new int[capacity];
+        Arrays.fill(this.tableHeights, UNKNOWN_HEIGHT);
+        this.tableMask = capacity - 1;
+        ByteBuffer hashBuffer = ByteBuffer.wrap(this.hashes);
+        for (int height = 0; height < this.size; height++) {
+            long prefix = hashBuffer.getLong(height * 32);
+            int slot = slot(prefix);
+            while (this.tableHeights[slot] != UNKNOWN_HEIGHT) {
+                slot = (slot + 1) & this.tableMask;
+            }
+            this.tablePrefixes[slot] = prefix;
+            this.tableHeights[slot] = height;
+        }
+    }
+
+    private int slot(long prefix) {
+        // hashes are uniformly distributed, so their first bytes can be used directly
+        return (int) (prefix ^ (prefix >>> 32)) & this.tableMask;
+    }
+
+    private boolean equalsHash(int height, byte[] hash) {
+        int offset = height * 32;
+        for (int i = 8; i < 32; i++) {
+            if (this.hashes[offset + i] != hash[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
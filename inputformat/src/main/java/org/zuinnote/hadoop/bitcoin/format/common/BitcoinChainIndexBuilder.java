@@ -0,0 +1,219 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds a {@link BitcoinChainIndex} from the headers of blocks, which may be added in any order (as they are stored in
+ * blk*.dat files). Blocks are linked by the hash of their previous block. The best chain is the chain starting with a
+ * genesis block (previous block hash of zeros) that has the most cumulative work, as calculated from the difficulty
+ * target (bits) of the headers. If several chains have the same work, the chain whose tip has been added first wins.
+ **/
+public class BitcoinChainIndexBuilder {
+
+    private static final Log LOG = LogFactory.getLog(BitcoinChainIndexBuilder.class.getName());
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final BigInteger TWO_TO_256 = BigInteger.ONE.shiftLeft(256);
+    private static final int UNRESOLVED = -2;
+
+    private final Map<ByteBuffer, Integer> blocks = new HashMap<>();
+    private int size;
+    private byte[] hashes = new byte[INITIAL_CAPACITY * 32];
+    private byte[] prevHashes = new byte[INITIAL_CAPACITY * 32];
+    private long[] bits = new long[INITIAL_CAPACITY];
+
+    public BitcoinChainIndexBuilder() {
+        // nothing needed here
+    }
+
+    /**
+     * Adds a block
+     *
+     * @param hash     hash of the block (internal byte order)
+     * @param prevHash hash of the previous block (internal byte order)
+     * @param bits     difficulty target in compact format
+     * @return true if the block has been added, false if it had been added before
+     */
+    public boolean add(byte[] hash, byte[] prevHash, long bits) {
+        ensureCapacity(this.size + 1);
+        System.arraycopy(hash, 0, this.hashes, this.size * 32, 32);
+        if (this.blocks.putIfAbsent(ByteBuffer.wrap(this.hashes, this.size * 32, 32).slice(), this.size) != null) {
+            return false;
+        }
+        System.arraycopy(prevHash, 0, this.prevHashes, this.size * 32, 32);
+        this.bits[this.size] = bits;
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Adds a block from a buffer starting with magic, block size and header as returned by {@link BitcoinBlockReader#readRawBlock()}
+     * or {@link BitcoinBlockReader#readRawBlockHeader()}. The position of the buffer is not changed.
+     *
+     * @param rawBlock raw block or raw block header
+     * @return true if the block has been added, false if it had been added before
+     */
+    public boolean add(ByteBuffer rawBlock) {
+        int start = rawBlock.position();
+        ByteBuffer header = rawBlock.duplicate();
+        header.position(start + 8);
+        header.limit(start + 8 + BitcoinBlockView.HEADER_SIZE);
+        byte[] prevHash = new byte[32];
+        for (int i = 0; i < 32; i++) {
+            prevHash[i] = rawBlock.get(start + 12 + i);
+        }
+        long blockBits = rawBlock.getInt(start + 80) & 0xFFFFFFFFL;
+        return add(BitcoinUtil.hashTwice(header), prevHash, blockBits);
+    }
+
+    /**
+     * Adds the headers of all remaining blocks of a reader. The transactions of the blocks are skipped.
+     *
+     * @param bbr reader
+     * @return number of blocks read
+     * @throws IOException in case of errors reading the blocks
+     */
+    public int addBlocks(BitcoinBlockReader bbr) throws IOException {
+        int count = 0;
+        ByteBuffer rawHeader;
+        while ((rawHeader = bbr.readRawBlockHeader()) != null) {
+            add(rawHeader);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return number of distinct blocks added
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Calculates the best chain of all blocks added so far
+     *
+     * @return index of the best chain
+     */
+    public BitcoinChainIndex build() {
+        int[] parents = new int[this.size];
+        for (int i = 0; i < this.size; i++) {
+            Integer parent = this.blocks.get(ByteBuffer.wrap(this.prevHashes, i * 32, 32).slice());
+            parents[i] = parent == null ? -1 : parent;
+        }
+        int[] heights = new int[this.size];
+        Arrays.fill(heights, UNRESOLVED);
+        BigInteger[] chainWork = new BigInteger[this.size];
+        int[] path = new int[Math.min(this.size, INITIAL_CAPACITY)];
+        int tip = -1;
+        for (int i = 0; i < this.size; i++) {
+            // walk back to a block with a known height (or a block without known parent) and resolve the path forward
+            int pathLength = 0;
+            for (int current = i; (current >= 0) && (heights[current] == UNRESOLVED); current = parents[current]) {
+                if (pathLength == path.length) {
+                    path = Arrays.copyOf(path, Math.min(this.size, path.length * 2));
+                }
+                path[pathLength++] = current;
+            }
+            for (int j = pathLength - 1; j >= 0; j--) {
+                resolve(path[j], parents, heights, chainWork);
+            }
+            if ((heights[i] != BitcoinChainIndex.UNKNOWN_HEIGHT) && ((tip < 0) || (chainWork[i].compareTo(chainWork[tip]) > 0))) {
+                tip = i;
+            }
+        }
+        if (tip < 0) {
+            LOG.warn("No chain starting with a genesis block found in " + this.size + " blocks");
+            return new BitcoinChainIndex();
+        }
+        byte[] chain = new byte[(heights[tip] + 1) * 32];
+        for (int current = tip; current >= 0; current = parents[current]) {
+            System.arraycopy(this.hashes, current * 32, chain, heights[current] * 32, 32);
+        }
+        LOG.info("Best chain has a height of " + heights[tip] + ", " + (this.size - heights[tip] - 1) + " of " + this.size + " blocks are not part of it");
+        return new BitcoinChainIndex(chain);
+    }
+
+    private void resolve(int block, int[] parents, int[] heights, BigInteger[] chainWork) {
+        int parent = parents[block];
+        if (parent < 0) {
+            if (isGenesis(block)) {
+                heights[block] = 0;
+                chainWork[block] = getWork(this.bits[block]);
+            } else {
+                heights[block] = BitcoinChainIndex.UNKNOWN_HEIGHT;
+            }
+        } else if (heights[parent] == BitcoinChainIndex.UNKNOWN_HEIGHT) {
+            heights[block] = BitcoinChainIndex.UNKNOWN_HEIGHT;
+        } else {
+            heights[block] = heights[parent] + 1;
+            chainWork[block] = chainWork[parent].add(getWork(this.bits[block]));
+        }
+    }
+
+    private boolean isGenesis(int block) {
+        for (int i = block * 32; i < block * 32 + 32; i++) {
+            if (this.prevHashes[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculates the work of a block from its difficulty target, ie 2^256 / (target + 1)
+     *
+     * @param bits difficulty target in compact format
+     * @return expected number of hashes to find a block with the target, 0 for invalid targets
+     */
+    public static BigInteger getWork(long bits) {
+        int exponent = (int) ((bits >>> 24) & 0xFF);
+        long mantissa = bits & 0x007FFFFFL;
+        if ((mantissa == 0) || ((bits & 0x00800000L) != 0)) {
+            return BigInteger.ZERO;
+        }
+        BigInteger target = BigInteger.valueOf(mantissa);
+        target = exponent <= 3 ? target.shiftRight(8 * (3 - exponent)) : target.shiftLeft(8 * (exponent - 3));
+        if ((target.signum() == 0) || (target.bitLength() > 256)) {
+            return BigInteger.ZERO;
+        }
+        return TWO_TO_256.divide(target.add(BigInteger.ONE));
+    }
+
+    private void ensureCapacity(int required) {
+        if (this.bits.length < required) {
+            int newCapacity = Math.max(required, this.bits.length * 2);
+            this.hashes = Arrays.copyOf(this.hashes, newCapacity * 32);
+            this.prevHashes = Arrays.copyOf(this.prevHashes, newCapacity * 32);
+            this.bits = Arrays.copyOf(this.bits, newCapacity);
+            // keys of the map are slices of the hashes
+            this.blocks.clear();
+            for (int i = 0; i < this.size; i++) {
+                this.blocks.put(ByteBuffer.wrap(this.hashes, i * 32, 32).slice(), i);
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Writable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * Manifest of the block files already processed by previous runs of a job. For every file it records the offset up to
+ * which all blocks have been processed (ie the end of the last processed block) and the offset and hash of the last
+ * processed block. Compressed files cannot be read from an offset, for them the length and modification time are recorded
+ * instead, so that unchanged compressed files are skipped.
+ * </p>
+ * <p>
+ * Input formats configured with a manifest (cf. hadoopcryptoledger.bitcoinblockinputformat.manifest) only create splits
+ * for blocks after the recorded offsets, ie for new files and for blocks appended to files that have grown since.
+ * The hash of the last processed block detects files that have been rewritten in the meantime, such files are processed again completely.
+ * </p>
+ **/
+public class BitcoinIngestManifest implements Writable {
+
+    private static final int FORMAT_MAGIC = 0x42494d46; // BIMF
+    private static final int FORMAT_VERSION = 2;
+
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    public BitcoinIngestManifest() {
+    }
+
+    /**
+     * Creates a manifest containing all entries of another manifest
+     *
+     * @param other manifest to copy
+     */
+    public BitcoinIngestManifest(BitcoinIngestManifest other) {
+        this.entries.putAll(other.entries);
+    }
+
+    /**
+     * Reads a manifest
+     *
+     * @param fs   file system
+     * @param path path of the manifest
+     * @return manifest or null if no manifest exists
+     * @throws IOException in case of errors reading the manifest
+     */
+    public static BitcoinIngestManifest read(FileSystem fs, Path path) throws IOException {
+        BitcoinIngestManifest result = new BitcoinIngestManifest();
+        try (FSDataInputStream in = fs.open(path)) {
+            result.readFields(in);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Writes this manifest. It is written to a temporary file first and renamed afterwards.
+     *
+     * @param fs   file system
+     * @param path path of the manifest
+     * @throws IOException in case of errors writing the manifest
+     */
+    public void write(FileSystem fs, Path path) throws IOException {
+        Path tmpPath = new Path(path.getParent(), "." + path.getName() + ".tmp");
+        try (FSDataOutputStream out = fs.create(tmpPath, true)) {
+            write(out);
+        }
+        fs.delete(path, false);
+        if (!fs.rename(tmpPath, path)) {
+            throw new IOException("Cannot rename " + tmpPath + " to " + path);
+        }
+    }
+
+    /**
+     * Returns the key of a block file in the manifest. Scheme and authority are ignored, so that the same file is found
+     * independent of how its path has been specified.
+     *
+     * @param file block file
+     * @return key
+     */
+    public static String getKey(Path file) {
+        return file.toUri().getPath();
+    }
+
+    /**
+     * @param file block file
+     * @return entry of the file or null if no block of the file has been processed
+     */
+    public Entry get(Path file) {
+        return this.entries.get(getKey(file));
+    }
+
+    public void put(Path file, Entry entry) {
+        this.entries.put(getKey(file), entry);
+    }
+
+    public void remove(Path file) {
+        this.entries.remove(getKey(file));
+    }
+
+    /**
+     * @return keys of all files contained in the manifest
+     */
+    public Set<String> getFiles() {
+        return Collections.unmodifiableSet(this.entries.keySet());
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    @Override
+    public void write(DataOutput dataOutput) throws IOException {
+        dataOutput.writeInt(FORMAT_MAGIC);
+        dataOutput.writeInt(FORMAT_VERSION);
+        dataOutput.writeInt(this.entries.size());
+        for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+            dataOutput.writeUTF(entry.getKey());
+            dataOutput.writeLong(entry.getValue().getOffset());
+            dataOutput.writeLong(entry.getValue().getLastBlockOffset());
+            dataOutput.write(entry.getValue().lastBlockHash);
+            dataOutput.writeLong(entry.getValue().getModificationTime());
+        }
+    }
+
+    @Override
+    public void readFields(DataInput dataInput) throws IOException {
+        if (dataInput.readInt() != FORMAT_MAGIC) {
+            throw new IOException("Not a Bitcoin ingest manifest");
+        }
+        int version = dataInput.readInt();
+        if ((version < 1) || (version > FORMAT_VERSION)) {
+            throw new IOException("Unsupported version of Bitcoin ingest manifest: " + version);
+        }
+        this.entries.clear();
+        int noOfEntries = dataInput.readInt();
+        for (int i = 0; i < noOfEntries; i++) {
+            String file = dataInput.readUTF();
+            long offset = dataInput.readLong();
+            long lastBlockOffset = dataInput.readLong();
+            byte[] lastBlockHash = new byte[32];
+            dataInput.readFully(lastBlockHash);
+            // version 1 did not record the modification time
+            long modificationTime = version > 1 ? dataInput.readLong() : 0;
+            this.entries.put(file, new Entry(offset, lastBlockOffset, lastBlockHash, modificationTime));
+        }
+    }
+
+    /**
+     * Processing state of one block file
+     */
+    public static class Entry {
+
+        private final long offset;
+        private final long lastBlockOffset;
+        private final byte[] lastBlockHash;
+        private final long modificationTime;
+
+        /**
+         * @param offset          end of the last processed block, new blocks start here
+         * @param lastBlockOffset offset of the last processed block (start of magic)
+         * @param lastBlockHash   hash of the last processed block (internal byte order)
+         */
+        public Entry(long offset, long lastBlockOffset, byte[] lastBlockHash) {
+            this(offset, lastBlockOffset, lastBlockHash, 0);
+        }
+
+        /**
+         * @param offset           end of the last processed block, new blocks start here. The length of a compressed file.
+         * @param lastBlockOffset  offset of the last processed block (start of magic), -1 for a compressed file
+         * @param lastBlockHash    hash of the last processed block (internal byte order), zero for a compressed file
+         * @param modificationTime modification time of the file when it was processed
+         */
+        public Entry(long offset, long lastBlockOffset, byte[] lastBlockHash, long modificationTime) {
+            if (lastBlockHash.length != 32) {
+                throw new IllegalArgumentException("Hash of the last block has not a length of 32 bytes");
+            }
+            this.offset = offset;
+            this.lastBlockOffset = lastBlockOffset;
+            this.lastBlockHash = lastBlockHash.clone();
+            this.modificationTime = modificationTime;
+        }
+
+        public long getOffset() {
+            return this.offset;
+        }
+
+        public long getLastBlockOffset() {
+            return this.lastBlockOffset;
+        }
+
+        public byte[] getLastBlockHash() {
+            return this.lastBlockHash.clone();
+        }
+
+        public long getModificationTime() {
+            return this.modificationTime;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Searches a chunk of bytes for any of a set of 4 byte block magics.
+ * <p>
+ * The chunk is processed a word (8 bytes) at a time: the first bytes of all magics are tested against all 8 bytes of a
+ * word in parallel (SWAR). Only words that contain a candidate first byte are compared byte by byte with the full magics.
+ * </p>
+ **/
+public class BitcoinMagicScanner {
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    private final int[] magics;
+    private final long[] firstBytePatterns;
+
+    /**
+     * @param magicByteArray magics to search for, each exactly 4 bytes
+     */
+    public BitcoinMagicScanner(byte[][] magicByteArray) {
+        this.magics = new int[magicByteArray.length];
+        long[] patterns = new long[magicByteArray.length];
+        int distinct = 0;
+        for (int i = 0; i < magicByteArray.length; i++) {
+            byte[] magic = magicByteArray[i];
+            if (magic.length != 4) {
+                throw new IllegalArgumentException("Magic " + i + " has not a length of 4 bytes");
+            }
+            this.magics[i] = ByteBuffer.wrap(magic).getInt();
+            long pattern = (magic[0] & 0xFFL) * ONES;
+            boolean known = false;
+            for (int j = 0; j < distinct; j++) {
+                known |= patterns[j] == pattern;
+            }
+            if (!known) {
+                patterns[distinct++] = pattern;
+            }
+        }
+        this.firstBytePatterns = new long[distinct];
+        System.arraycopy(patterns, 0, this.firstBytePatterns, 0, distinct);
+    }
+
+    /**
+     * Returns the position of the first magic in the given range of a byte array
+     *
+     * @param data   data to search in
+     * @param offset start of the range
+     * @param length length of the range
+     * @return absolute index in data of the first magic found or -1 if the range contains no magic
+     */
+    public int indexOf(byte[] data, int offset, int length) {
+        int end = offset + length;
+        int lastStart = end - 4;
+        ByteBuffer words = ByteBuffer.wrap(data);
+        int pos = offset;
+        // word-at-a-time while a full word is available
+        for (; pos + 8 <= end; pos += 8) {
+            if (containsFirstByte(words.getLong(pos))) {
+                int found = checkCandidates(data, pos, Math.min(pos + 7, lastStart));
+                if (found >= 0) {
+                    return found;
+                }
+            }
+        }
+        // tail
+        return checkCandidates(data, pos, lastStart);
+    }
+
+    /**
+     * Returns the position of the first magic in the given range of a ByteBuffer (eg a memory-mapped file) without changing
+     * its position
+     *
+     * @param data   data to search in
+     * @param offset absolute start of the range
+     * @param length length of the range
+     * @return absolute index in data of the first magic found or -1 if the range contains no magic
+     */
+    public int indexOf(ByteBuffer data, int offset, int length) {
+        int end = offset + length;
+        int lastStart = end - 4;
+        int pos = offset;
+        // the test for first bytes does not depend on the byte order of the buffer
+        for (; pos + 8 <= end; pos += 8) {
+            if (containsFirstByte(data.getLong(pos))) {
+                int found = checkCandidates(data, pos, Math.min(pos + 7, lastStart));
+                if (found >= 0) {
+                    return found;
+                }
+            }
+        }
+        return checkCandidates(data, pos, lastStart);
+    }
+
+    private boolean containsFirstByte(long word) {
+        for (long pattern : this.firstBytePatterns) {
+            long x = word ^ pattern;
+            // non-zero if (at least) one byte of x is zero, ie one byte of word equals the first byte of a magic
+            if (((x - ONES) & ~x & HIGHS) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int checkCandidates(byte[] data, int from, int to) {
+        for (int i = from; i <= to; i++) {
+            int candidate = ((data[i] & 0xFF) << 24) | ((data[i + 1] & 0xFF) << 16) | ((data[i + 2] & 0xFF) << 8) | (data[i + 3] & 0xFF);
+            for (int magic : this.magics) {
+                if (candidate == magic) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int checkCandidates(ByteBuffer data, int from, int to) {
+        for (int i = from; i <= to; i++) {
+            int candidate = ((data.get(i) & 0xFF) << 24) | ((data.get(i + 1) & 0xFF) << 16) | ((data.get(i + 2) & 0xFF) << 8) | (data.get(i + 3) & 0xFF);
+            for (int magic : this.magics) {
+                if (candidate == magic) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.zuinnote.hadoop.bitcoin.format.common;
 
+import org.zuinnote.hadoop.bitcoin.format.littleendian.LE;
 import org.zuinnote.hadoop.bitcoin.format.littleendian.UIntVar;
 import org.zuinnote.hadoop.bitcoin.format.util.Byteable;
 import org.zuinnote.hadoop.bitcoin.format.util.Bytes;
@@ -24,13 +25,13 @@ import java.nio.ByteBuffer;
 
 public class BitcoinScript implements Byteable {
 
-    private UIntVar length;
+    private long length;
     private Bytes script;
 
     public BitcoinScript(ByteBuffer input) {
-        length = new UIntVar(input);
-        byte[] scriptBytes = new byte[length.intValue()];
-        input.get(scriptBytes, 0, length.intValue());
+        length = LE.readVarInt(input);
+        byte[] scriptBytes = new byte[(int) length];
+        input.get(scriptBytes, 0, scriptBytes.length);
         script = new Bytes(scriptBytes);
     }
 
@@ -42,11 +43,11 @@ public class BitcoinScript implements Byteable {
     }
 
     public long getLength() {
-        return length.longValue();
+        return length;
     }
 
     public void setLength(UIntVar length) {
-        this.length = length;
+        this.length = length.getValue();
     }
 
     public void setScript(Bytes script) {
@@ -55,7 +56,7 @@ public class BitcoinScript implements Byteable {
 
     @Override
     public byte[] getBytes() {
-        return new Bytes(length, script).getBytes();
+        return new Bytes(new UIntVar(length), script).getBytes();
     }
 
 }
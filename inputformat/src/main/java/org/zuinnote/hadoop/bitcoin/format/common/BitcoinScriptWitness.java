@@ -25,16 +25,21 @@ public class BitcoinScriptWitness implements Serializable, Byteable {
 
     private static final long serialVersionUID = 273511143914429994L;
 
-    private UIntVar witnessScriptLength;
     private byte[] witnessScript;
 
     public BitcoinScriptWitness(UIntVar witnessScriptLength, byte[] witnessScript) {
-        this.witnessScriptLength = witnessScriptLength;
+        this(witnessScript);
+    }
+
+    /**
+     * @param witnessScript witness script (its length is derived from the array)
+     */
+    public BitcoinScriptWitness(byte[] witnessScript) {
         this.witnessScript = witnessScript;
     }
 
     public UIntVar getWitnessScriptLength() {
-        return this.witnessScriptLength;
+        return new UIntVar(this.witnessScript.length);
     }
 
     public byte[] getWitnessScript() {
@@ -42,6 +47,6 @@ public class BitcoinScriptWitness implements Serializable, Byteable {
     }
 
     public byte[] getBytes() {
-        return new Bytes(witnessScriptLength, witnessScript).getBytes();
+        return new Bytes(getWitnessScriptLength(), witnessScript).getBytes();
     }
 }
@@ -31,16 +31,24 @@ public class BitcoinScriptWitnessItem implements Serializable, Byteable {
      *
      */
     private static final long serialVersionUID = -8500521021303513414L;
-    private UIntVar stackItemCounter;
+    private long stackItemCounter;
     private List<BitcoinScriptWitness> scriptWitnessList;
 
     public BitcoinScriptWitnessItem(UIntVar stackItemCounter, List<BitcoinScriptWitness> scriptWitnessList) {
+        this(stackItemCounter.getValue(), scriptWitnessList);
+    }
+
+    /**
+     * @param stackItemCounter  number of stack items
+     * @param scriptWitnessList stack items
+     */
+    public BitcoinScriptWitnessItem(long stackItemCounter, List<BitcoinScriptWitness> scriptWitnessList) {
         this.stackItemCounter = stackItemCounter;
         this.scriptWitnessList = scriptWitnessList;
     }
 
     public UIntVar getStackItemCounter() {
-        return this.stackItemCounter;
+        return new UIntVar(this.stackItemCounter);
     }
 
     public List<BitcoinScriptWitness> getScriptWitnessList() {
@@ -49,6 +57,6 @@ public class BitcoinScriptWitnessItem implements Serializable, Byteable {
 
     @Override
     public byte[] getBytes() {
-        return new Bytes(stackItemCounter, scriptWitnessList).getBytes();
+        return new Bytes(getStackItemCounter(), scriptWitnessList).getBytes();
     }
 }
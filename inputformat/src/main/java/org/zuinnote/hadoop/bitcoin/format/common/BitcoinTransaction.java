@@ -19,48 +19,75 @@ package org.zuinnote.hadoop.bitcoin.format.common;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
 import org.zuinnote.hadoop.bitcoin.format.littleendian.EpochDatetime;
 import org.zuinnote.hadoop.bitcoin.format.littleendian.UInt32;
 import org.zuinnote.hadoop.bitcoin.format.littleendian.UIntVar;
+import org.zuinnote.hadoop.bitcoin.format.util.Byteable;
 import org.zuinnote.hadoop.bitcoin.format.util.Bytes;
 
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.List;
 
-public class BitcoinTransaction implements Serializable, Writable {
+/**
+ * A Bitcoin transaction. The Writable serialization is the length of the transaction (vint) followed by the transaction
+ * in the Bitcoin wire format (cf. {@link #getBytes()}).
+ */
+public class BitcoinTransaction implements Serializable, Writable, Byteable {
 
-    private UInt32 version;
+    // integers are stored as primitives, the little endian objects are only created on demand
+    private long version;
     private byte marker = 0x01;
     private byte flag = 0x00;
-    private UIntVar inCounter;
-    private UIntVar outCounter;
+    private long inCounter;
+    private long outCounter;
     private List<BitcoinTransactionInput> inputs;
     private List<BitcoinTransactionOutput> outputs;
     private List<BitcoinScriptWitnessItem> scriptWitnessItems;
-    private EpochDatetime lockTime;
+    private long lockTime;
+
+    private transient byte[] serializationBuffer;
+    // byte range of the transaction in the raw block, if recorded by BitcoinBlockReader
+    private transient byte[] rawData;
+    private transient int rawStart;
+    private transient int rawBodyStart;
+    private transient int rawOutputsEnd;
+    private transient int rawEnd;
+    private transient byte[] transactionHash;
+    private transient byte[] transactionHashSegwit;
 
     private static transient final Log LOG = LogFactory.getLog(BitcoinTransaction.class.getName());
+    private static final BitcoinBlockReader PARSER = new BitcoinBlockReader(false);
 
     public BitcoinTransaction() {
     }
 
     public BitcoinTransaction(UInt32 version, UIntVar inCounter, UIntVar outCounter, List<BitcoinTransactionInput> inputs, List<BitcoinTransactionOutput> outputs, List<BitcoinScriptWitnessItem> scriptWitnessItems, EpochDatetime lockTime) {
-        this.version = version;
-        this.marker = marker;
-        this.flag = flag;
-        this.inCounter = inCounter;
-        this.outCounter = outCounter;
-        this.inputs = inputs;
-        this.outputs = outputs;
-        this.scriptWitnessItems = scriptWitnessItems;
-        this.lockTime = lockTime;
-        this.marker = 0x01;
-        this.flag = 0x00;
+        this(version, (byte) 0x01, (byte) 0x00, inCounter, outCounter, inputs, outputs, scriptWitnessItems, lockTime);
     }
 
     public BitcoinTransaction(UInt32 version, byte marker, byte flag, UIntVar inCounter, UIntVar outCounter, List<BitcoinTransactionInput> inputs, List<BitcoinTransactionOutput> outputs, List<BitcoinScriptWitnessItem> scriptWitnessItems, EpochDatetime lockTime) {
+        this(version.getValue(), marker, flag, inCounter.getValue(), outCounter.getValue(), inputs, outputs, scriptWitnessItems, lockTime.getValue());
+    }
+
+    /**
+     * @param version            version
+     * @param marker             segwit marker (0x00 for segwit, 0x01 otherwise)
+     * @param flag               segwit flag (non-zero for segwit)
+     * @param inCounter          number of inputs
+     * @param outCounter         number of outputs
+     * @param inputs             inputs
+     * @param outputs            outputs
+     * @param scriptWitnessItems witness data (segwit only)
+     * @param lockTime           lock time
+     */
+    public BitcoinTransaction(long version, byte marker, byte flag, long inCounter, long outCounter, List<BitcoinTransactionInput> inputs, List<BitcoinTransactionOutput> outputs, List<BitcoinScriptWitnessItem> scriptWitnessItems, long lockTime) {
         this.version = version;
         this.marker = marker;
         this.flag = flag;
@@ -73,7 +100,7 @@ public class BitcoinTransaction implements Serializable, Writable {
     }
 
     public long getVersion() {
-        return this.version.longValue();
+        return this.version;
     }
 
     public byte getMarker() {
@@ -85,7 +112,7 @@ public class BitcoinTransaction implements Serializable, Writable {
     }
 
     public UIntVar getInCounter() {
-        return this.inCounter;
+        return new UIntVar(this.inCounter);
     }
 
     public List<BitcoinTransactionInput> getListOfInputs() {
@@ -93,7 +120,7 @@ public class BitcoinTransaction implements Serializable, Writable {
     }
 
     public UIntVar getOutCounter() {
-        return this.outCounter;
+        return new UIntVar(this.outCounter);
     }
 
     public List<BitcoinTransactionOutput> getListOfOutputs() {
@@ -105,29 +132,111 @@ public class BitcoinTransaction implements Serializable, Writable {
     }
 
     public long getLockTime() {
-        return this.lockTime.getValue();
+        return this.lockTime;
+    }
+
+    /**
+     * Sets the byte range of the transaction in a raw block, which is used to calculate the transaction hashes
+     *
+     * @param rawData       raw data containing the transaction
+     * @param start         start of the transaction
+     * @param bodyStart     start of the inputs (after version and segwit marker and flag)
+     * @param outputsEnd    end of the outputs (start of witness data in case of segwit)
+     * @param end           end of the transaction (after lock time)
+     */
+    void setRawRange(byte[] rawData, int start, int bodyStart, int outputsEnd, int end) {
+        this.rawData = rawData;
+        this.rawStart = start;
+        this.rawBodyStart = bodyStart;
+        this.rawOutputsEnd = outputsEnd;
+        this.rawEnd = end;
+        this.transactionHash = null;
+        this.transactionHashSegwit = null;
+    }
+
+    private void clearRawRange() {
+        setRawRange(null, 0, 0, 0, 0);
     }
 
     public void set(BitcoinTransaction newTransaction) {
-        this.version = new UInt32(newTransaction.getVersion());
-        this.marker = newTransaction.getMarker();
-        this.flag = newTransaction.getFlag();
-        this.inCounter = newTransaction.getInCounter();
-        this.inputs = newTransaction.getListOfInputs();
-        this.outCounter = newTransaction.getOutCounter();
-        this.outputs = newTransaction.getListOfOutputs();
-        this.scriptWitnessItems = newTransaction.getBitcoinScriptWitness();
-        this.lockTime = new EpochDatetime(newTransaction.getLockTime());
+        this.version = newTransaction.version;
+        this.marker = newTransaction.marker;
+        this.flag = newTransaction.flag;
+        this.inCounter = newTransaction.inCounter;
+        this.inputs = newTransaction.inputs;
+        this.outCounter = newTransaction.outCounter;
+        this.outputs = newTransaction.outputs;
+        this.scriptWitnessItems = newTransaction.scriptWitnessItems;
+        this.lockTime = newTransaction.lockTime;
+        // the raw range is needed to hash transactions that have not been fully parsed (projection)
+        this.rawData = newTransaction.rawData;
+        this.rawStart = newTransaction.rawStart;
+        this.rawBodyStart = newTransaction.rawBodyStart;
+        this.rawOutputsEnd = newTransaction.rawOutputsEnd;
+        this.rawEnd = newTransaction.rawEnd;
+        this.transactionHash = newTransaction.transactionHash;
+        this.transactionHashSegwit = newTransaction.transactionHashSegwit;
+    }
+
+    /**
+     * Returns true if the transaction is serialized with segwit marker, flag and witness data
+     *
+     * @return true if segwit serialization, false if not
+     */
+    public boolean isSegwit() {
+        return (getMarker() == 0) && (getFlag() != 0);
+    }
+
+    /**
+     * Serializes the transaction in the Bitcoin wire format, ie exactly as it is contained in a block (including witness data in case of segwit)
+     *
+     * @return serialized transaction
+     */
+    @Override
+    public byte[] getBytes() {
+        if (this.rawData != null) {
+            return Arrays.copyOfRange(this.rawData, this.rawStart, this.rawEnd);
+        }
+        Bytes buffer = new Bytes();
+        buffer.write(new UInt32(version));
+        if (isSegwit()) {
+            buffer.write(marker, flag);
+        }
+        buffer.write(getInCounter(), inputs, getOutCounter(), outputs);
+        if (isSegwit()) {
+            buffer.write(scriptWitnessItems);
+        }
+        buffer.write(new UInt32(lockTime));
+        return buffer.getBytes();
     }
 
     @Override
-    public void write(DataOutput dataOutput) {
-        throw new UnsupportedOperationException("write unsupported");
+    public void write(DataOutput dataOutput) throws IOException {
+        byte[] rawTransaction = getBytes();
+        WritableUtils.writeVInt(dataOutput, rawTransaction.length);
+        dataOutput.write(rawTransaction);
     }
 
     @Override
-    public void readFields(DataInput dataInput) {
-        throw new UnsupportedOperationException("readFields unsupported");
+    public void readFields(DataInput dataInput) throws IOException {
+        int length = WritableUtils.readVInt(dataInput);
+        if ((this.serializationBuffer == null) || (this.serializationBuffer.length < length)) {
+            this.serializationBuffer = new byte[length];
+        }
+        dataInput.readFully(this.serializationBuffer, 0, length);
+        ByteBuffer rawTransaction = ByteBuffer.wrap(this.serializationBuffer, 0, length);
+        rawTransaction.order(ByteOrder.LITTLE_ENDIAN);
+        BitcoinTransaction transaction = PARSER.parseTransaction(rawTransaction);
+        this.version = transaction.version;
+        this.marker = transaction.marker;
+        this.flag = transaction.flag;
+        this.inCounter = transaction.inCounter;
+        this.inputs = transaction.inputs;
+        this.outCounter = transaction.outCounter;
+        this.outputs = transaction.outputs;
+        this.scriptWitnessItems = transaction.scriptWitnessItems;
+        this.lockTime = transaction.lockTime;
+        clearRawRange();
     }
 
     /**
@@ -139,7 +248,18 @@ public class BitcoinTransaction implements Serializable, Writable {
      * @return byte array containing the hash of the transaction.
      */
     public byte[] getTransactionHash() {
-        return new Bytes(version, inCounter, inputs, outCounter, outputs, lockTime).hashTwice();
+        if (this.transactionHash == null) {
+            if (this.rawData != null) {
+                // hash directly from the raw block without segwit marker, flag and witness data
+                this.transactionHash = BitcoinUtil.hashTwice(
+                        ByteBuffer.wrap(this.rawData, this.rawStart, 4),
+                        ByteBuffer.wrap(this.rawData, this.rawBodyStart, this.rawOutputsEnd - this.rawBodyStart),
+                        ByteBuffer.wrap(this.rawData, this.rawEnd - 4, 4));
+            } else {
+                return new Bytes(new UInt32(version), getInCounter(), inputs, getOutCounter(), outputs, new UInt32(lockTime)).hashTwice();
+            }
+        }
+        return this.transactionHash.clone();
     }
 
     /**
@@ -154,36 +274,41 @@ public class BitcoinTransaction implements Serializable, Writable {
      * @return byte array containing the hash of the transaction.
      */
     public byte[] getTransactionHashSegwit() {
-        Bytes buffer = new Bytes();
-        buffer.write(version);
         // check if segwit
-        boolean segwit = false;
-        if ((getMarker() == 0) && (getFlag() != 0)) {
-            segwit = true;
-            // we still need to check the case that all witness script stack items for all input transactions are
-            // of size 0 => traditional transaction hash calculation
-            // cf. https://github.com/bitcoin/bips/blob/master/bip-0141.mediawiki
-            // A non-witness program (defined hereinafter) txin MUST be associated with an empty witness field,
-            // represented by a 0x00. If all txins are not witness program, a transaction's
-            // wtxid is equal to its txid.
-            boolean emptyWitness = true;
-            for (BitcoinScriptWitnessItem currentItem : scriptWitnessItems) {
-                if (currentItem.getStackItemCounter().getValue() > 0) {
-                    emptyWitness = false;
-                    break;
-                }
-            }
-            if (emptyWitness) {
-                return getTransactionHash();
+        if (!isSegwit()) {
+            return getTransactionHash();
+        }
+        // we still need to check the case that all witness script stack items for all input transactions are
+        // of size 0 => traditional transaction hash calculation
+        // cf. https://github.com/bitcoin/bips/blob/master/bip-0141.mediawiki
+        // A non-witness program (defined hereinafter) txin MUST be associated with an empty witness field,
+        // represented by a 0x00. If all txins are not witness program, a transaction's
+        // wtxid is equal to its txid.
+        if (hasEmptyWitness()) {
+            return getTransactionHash();
+        }
+        if (this.transactionHashSegwit == null) {
+            if (this.rawData != null) {
+                // the raw transaction is exactly the serialization used for the wtxid
+                this.transactionHashSegwit = BitcoinUtil.hashTwice(ByteBuffer.wrap(this.rawData, this.rawStart, this.rawEnd - this.rawStart));
+            } else {
+                return new Bytes(new UInt32(version), marker, flag, getInCounter(), inputs, getOutCounter(), outputs, scriptWitnessItems, new UInt32(lockTime)).hashTwice();
             }
-            buffer.write(marker, flag);
         }
-        buffer.write(inCounter, inputs, outCounter, outputs);
-        if (segwit) {
-            buffer.write(scriptWitnessItems);
+        return this.transactionHashSegwit.clone();
+    }
+
+    private boolean hasEmptyWitness() {
+        if (this.rawData != null) {
+            // each empty witness is a single stack item counter of 0, witnesses may not have been parsed (projection)
+            return (this.rawEnd - 4 - this.rawOutputsEnd) == this.inCounter;
+        }
+        for (BitcoinScriptWitnessItem currentItem : scriptWitnessItems) {
+            if (currentItem.getStackItemCounter().getValue() > 0) {
+                return false;
+            }
         }
-        buffer.write(lockTime);
-        return buffer.hashTwice();
+        return true;
     }
 
 }
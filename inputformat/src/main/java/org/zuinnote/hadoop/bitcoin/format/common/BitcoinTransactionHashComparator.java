@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+/**
+ * Compares serialized {@link BytesWritable} keys that start with a 32 byte transaction hash (as returned by {@link BitcoinTransaction#getTransactionHash()})
+ * optionally followed by a 4 byte output index in little endian (ie an outpoint as referenced by {@link BitcoinTransactionInput}), without deserializing them.
+ * Keys are sorted by transaction hash and then by the numeric output index. Keys without output index sort before all keys with the same transaction hash and an output index.
+ * <p>
+ * Use {@link BitcoinTransactionHashGroupingComparator} as grouping comparator to group all outputs of a transaction in one reduce call.
+ * </p>
+ **/
+public class BitcoinTransactionHashComparator extends WritableComparator {
+
+    /**
+     * Size of the length that precedes the key bytes in a serialized BytesWritable
+     */
+    static final int BYTESWRITABLE_LENGTH_SIZE = 4;
+    static final int HASH_SIZE = 32;
+    static final int OUTPUT_INDEX_SIZE = 4;
+
+    public BitcoinTransactionHashComparator() {
+        super(BytesWritable.class);
+    }
+
+    @Override
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+        return compareKeys(b1, s1 + BYTESWRITABLE_LENGTH_SIZE, l1 - BYTESWRITABLE_LENGTH_SIZE, b2, s2 + BYTESWRITABLE_LENGTH_SIZE, l2 - BYTESWRITABLE_LENGTH_SIZE);
+    }
+
+    @Override
+    public int compare(WritableComparable a, WritableComparable b) {
+        BytesWritable key1 = (BytesWritable) a;
+        BytesWritable key2 = (BytesWritable) b;
+        return compareKeys(key1.getBytes(), 0, key1.getLength(), key2.getBytes(), 0, key2.getLength());
+    }
+
+    private static int compareKeys(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+        int hashLength1 = Math.min(l1, HASH_SIZE);
+        int hashLength2 = Math.min(l2, HASH_SIZE);
+        int result = compareBytes(b1, s1, hashLength1, b2, s2, hashLength2);
+        if ((result != 0) || (hashLength1 < HASH_SIZE)) {
+            return result;
+        }
+        int indexStart1 = s1 + HASH_SIZE;
+        int indexStart2 = s2 + HASH_SIZE;
+        if ((l1 >= HASH_SIZE + OUTPUT_INDEX_SIZE) && (l2 >= HASH_SIZE + OUTPUT_INDEX_SIZE)) {
+            result = Long.compare(readOutputIndex(b1, indexStart1), readOutputIndex(b2, indexStart2));
+            if (result != 0) {
+                return result;
+            }
+            indexStart1 += OUTPUT_INDEX_SIZE;
+            indexStart2 += OUTPUT_INDEX_SIZE;
+        }
+        // remaining bytes (if any)
+        return compareBytes(b1, indexStart1, s1 + l1 - indexStart1, b2, indexStart2, s2 + l2 - indexStart2);
+    }
+
+    private static long readOutputIndex(byte[] b, int s) {
+        return (b[s] & 0xFFL) | ((b[s + 1] & 0xFFL) << 8) | ((b[s + 2] & 0xFFL) << 16) | ((b[s + 3] & 0xFFL) << 24);
+    }
+}
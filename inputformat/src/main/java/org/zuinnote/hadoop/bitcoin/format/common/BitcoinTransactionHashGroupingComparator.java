@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+/**
+ * Compares only the 32 byte transaction hash at the start of serialized {@link BytesWritable} keys (cf. {@link BitcoinTransactionHashComparator}), without deserializing them.
+ * Used as grouping comparator, all keys referring to the same transaction (eg outpoints of inputs spending outputs of the same transaction) are passed to the same reduce call.
+ **/
+public class BitcoinTransactionHashGroupingComparator extends WritableComparator {
+
+    public BitcoinTransactionHashGroupingComparator() {
+        super(BytesWritable.class);
+    }
+
+    @Override
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+        int offset = BitcoinTransactionHashComparator.BYTESWRITABLE_LENGTH_SIZE;
+        return compareHashes(b1, s1 + offset, l1 - offset, b2, s2 + offset, l2 - offset);
+    }
+
+    @Override
+    public int compare(WritableComparable a, WritableComparable b) {
+        BytesWritable key1 = (BytesWritable) a;
+        BytesWritable key2 = (BytesWritable) b;
+        return compareHashes(key1.getBytes(), 0, key1.getLength(), key2.getBytes(), 0, key2.getLength());
+    }
+
+    private static int compareHashes(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+        int hashSize = BitcoinTransactionHashComparator.HASH_SIZE;
+        return compareBytes(b1, s1, Math.min(l1, hashSize), b2, s2, Math.min(l2, hashSize));
+    }
+}
@@ -28,16 +28,25 @@ public class BitcoinTransactionInput implements Serializable, Byteable {
 
     private static final long serialVersionUID = 283893453089295979L;
 
+    // integers are stored as primitives, the little endian objects are only created on demand
     private HashSHA256 prevTransactionHash;
-    private UInt32 previousTxOutIndex;
-    private UIntVar txInScriptLength;
+    private long previousTxOutIndex;
     private byte[] txInScript;
-    private UInt32 seqNo;
+    private long seqNo;
 
     public BitcoinTransactionInput(HashSHA256 prevTransactionHash, UInt32 previousTxOutIndex, UIntVar txInScriptLength, byte[] txInScript, UInt32 seqNo) {
+        this(prevTransactionHash, previousTxOutIndex.getValue(), txInScript, seqNo.getValue());
+    }
+
+    /**
+     * @param prevTransactionHash hash of the transaction containing the spent output
+     * @param previousTxOutIndex  index of the spent output
+     * @param txInScript          input script (its length is derived from the array)
+     * @param seqNo               sequence number
+     */
+    public BitcoinTransactionInput(HashSHA256 prevTransactionHash, long previousTxOutIndex, byte[] txInScript, long seqNo) {
         this.prevTransactionHash = prevTransactionHash;
         this.previousTxOutIndex = previousTxOutIndex;
-        this.txInScriptLength = txInScriptLength;
         this.txInScript = txInScript;
         this.seqNo = seqNo;
     }
@@ -47,11 +56,11 @@ public class BitcoinTransactionInput implements Serializable, Byteable {
     }
 
     public long getPreviousTxOutIndex() {
-        return this.previousTxOutIndex.getValue();
+        return this.previousTxOutIndex;
     }
 
     public UIntVar getTxInScriptLength() {
-        return this.txInScriptLength;
+        return new UIntVar(this.txInScript.length);
     }
 
     public byte[] getTxInScript() {
@@ -59,13 +68,13 @@ public class BitcoinTransactionInput implements Serializable, Byteable {
     }
 
     public long getSeqNo() {
-        return this.seqNo.getValue();
+        return this.seqNo;
     }
 
     @Override
     public byte[] getBytes() {
-        return new Bytes(prevTransactionHash, previousTxOutIndex, txInScriptLength,
-                txInScript, seqNo)
+        return new Bytes(prevTransactionHash, new UInt32(previousTxOutIndex), getTxInScriptLength(),
+                txInScript, new UInt32(seqNo))
                 .getBytes();
     }
 
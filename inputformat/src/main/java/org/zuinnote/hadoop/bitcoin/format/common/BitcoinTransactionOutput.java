@@ -26,30 +26,65 @@ import org.zuinnote.hadoop.bitcoin.format.util.Bytes;
 
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public class BitcoinTransactionOutput implements Serializable, Byteable {
 
     private static final long serialVersionUID = 2854570630540937753L;
 
-    private BigInteger value;
+    private static final BigInteger TWO_POW_64 = BigInteger.ONE.shiftLeft(64);
+
+    // value as contained in the block (8 bytes little endian), the BigInteger is only created on demand
+    private long valueSatoshis;
+    private transient BigInteger value;
     private BitcoinScript outScript;
 
     //TODO Configure from magic?
     protected static NetworkParameters networkParameters = MainNetParams.get();
 
     public BitcoinTransactionOutput(BigInteger value, BitcoinScript outScript) { //UIntVar txOutScriptLength, byte[] txOutScript) {
+        this.valueSatoshis = value.longValue();
         this.value = value;
         this.outScript = outScript;
 //        this.txOutScriptLength = txOutScriptLength;
 //        this.txOutScript = txOutScript;
     }
 
+    /**
+     * @param valueSatoshis value in satoshis as contained in the block
+     * @param outScript     script of the output
+     */
+    public BitcoinTransactionOutput(long valueSatoshis, BitcoinScript outScript) {
+        this.valueSatoshis = valueSatoshis;
+        this.outScript = outScript;
+    }
+
+    /**
+     * Returns the value of the output. Prefer {@link #getValueSatoshis()}, which does not create an object.
+     *
+     * @return value in satoshis
+     */
     public BigInteger getValue() {
+        if (this.value == null) {
+            BigInteger result = BigInteger.valueOf(this.valueSatoshis);
+            // the 8 bytes of the block are interpreted as unsigned number
+            this.value = this.valueSatoshis < 0 ? result.add(TWO_POW_64) : result;
+        }
         return this.value;
     }
 
+    /**
+     * Returns the value of the output. Valid amounts (at most 21 million bitcoins) always fit in a long.
+     *
+     * @return value in satoshis
+     */
+    public long getValueSatoshis() {
+        return this.valueSatoshis;
+    }
+
     public UIntVar getTxOutScriptLength() {
-        return getTxOutScriptLength();
+        return new UIntVar(this.outScript.getLength());
     }
 
     public byte[] getTxOutScript() {
@@ -71,7 +106,7 @@ public class BitcoinTransactionOutput implements Serializable, Byteable {
 
     @Override
     public byte[] getBytes() {
-        return new Bytes(BitcoinUtil.convertBigIntegerToByteArray(getValue(), 8),
+        return new Bytes(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(this.valueSatoshis).array(),
                                 outScript).getBytes();
     }
 
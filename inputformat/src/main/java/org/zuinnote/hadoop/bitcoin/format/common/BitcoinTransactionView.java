@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flyweight view of a single transaction inside a {@link BitcoinBlockView}. Instances are obtained by
+ * {@link BitcoinBlockView#getTransaction(int)} and are repositioned on every call of that method.
+ * Inputs and outputs are addressed by their index within the transaction.
+ **/
+public class BitcoinTransactionView {
+
+    private final BitcoinBlockView block;
+    private int index;
+
+    BitcoinTransactionView(BitcoinBlockView block) {
+        this.block = block;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
+    }
+
+    public int getIndex() {
+        return this.index;
+    }
+
+    public long getVersion() {
+        return this.block.readUInt32(this.block.getTransactionOffset(this.index));
+    }
+
+    /**
+     * @return true if the transaction is serialized with segwit marker, flag and witness data
+     */
+    public boolean isSegwit() {
+        return this.block.getTransactionBodyOffset(this.index) != this.block.getTransactionOffset(this.index) + 4;
+    }
+
+    public int getInputCount() {
+        return this.block.getFirstInput(this.index + 1) - this.block.getFirstInput(this.index);
+    }
+
+    public int getOutputCount() {
+        return this.block.getFirstOutput(this.index + 1) - this.block.getFirstOutput(this.index);
+    }
+
+    public long getLockTime() {
+        return this.block.readUInt32(this.block.getTransactionEnd(this.index) - 4);
+    }
+
+    /**
+     * Copies the hash of the transaction referenced by an input (in internal byte order) to the given array
+     *
+     * @param input  index of the input
+     * @param dest   destination
+     * @param offset offset in destination
+     */
+    public void getPrevTransactionHash(int input, byte[] dest, int offset) {
+        this.block.copy(inputOffset(input), dest, offset, 32);
+    }
+
+    public long getPreviousTxOutIndex(int input) {
+        return this.block.readUInt32(inputOffset(input) + 32);
+    }
+
+    /**
+     * Returns a slice containing the script of an input (without its length)
+     *
+     * @param input index of the input
+     * @return slice
+     */
+    public ByteBuffer inputScriptSlice(int input) {
+        int pos = inputOffset(input) + 36;
+        ByteBuffer buffer = this.block.getBuffer();
+        return this.block.slice(pos + BitcoinBlockView.varIntSize(buffer, pos), (int) BitcoinBlockView.readVarInt(buffer, pos));
+    }
+
+    public long getSeqNo(int input) {
+        int pos = inputOffset(input) + 36;
+        ByteBuffer buffer = this.block.getBuffer();
+        return this.block.readUInt32(pos + BitcoinBlockView.varIntSize(buffer, pos) + (int) BitcoinBlockView.readVarInt(buffer, pos));
+    }
+
+    /**
+     * Returns the value of an output
+     *
+     * @param output index of the output
+     * @return value in satoshis
+     */
+    public long getValue(int output) {
+        return this.block.getBuffer().getLong(outputOffset(output));
+    }
+
+    /**
+     * Returns a slice containing the script of an output (without its length)
+     *
+     * @param output index of the output
+     * @return slice
+     */
+    public ByteBuffer scriptSlice(int output) {
+        int pos = outputOffset(output) + 8;
+        ByteBuffer buffer = this.block.getBuffer();
+        return this.block.slice(pos + BitcoinBlockView.varIntSize(buffer, pos), (int) BitcoinBlockView.readVarInt(buffer, pos));
+    }
+
+    /**
+     * Returns a slice containing the complete serialized transaction (including witness data if available)
+     *
+     * @return slice
+     */
+    public ByteBuffer rawSlice() {
+        int start = this.block.getTransactionOffset(this.index);
+        return this.block.slice(start, this.block.getTransactionEnd(this.index) - start);
+    }
+
+    /**
+     * Calculates the double SHA256 hash of the transaction without witness data (txid) directly from the underlying buffer
+     *
+     * @return hash in internal byte order
+     */
+    public byte[] getTransactionHash() {
+        int start = this.block.getTransactionOffset(this.index);
+        int body = this.block.getTransactionBodyOffset(this.index);
+        int outputsEnd = this.block.getTransactionOutputsEnd(this.index);
+        int end = this.block.getTransactionEnd(this.index);
+        return BitcoinUtil.hashTwice(this.block.slice(start, 4), this.block.slice(body, outputsEnd - body), this.block.slice(end - 4, 4));
+    }
+
+    /**
+     * Calculates the double SHA256 hash of the full transaction including witness data (wtxid) directly from the underlying buffer
+     *
+     * @return hash in internal byte order
+     */
+    public byte[] getTransactionHashSegwit() {
+        return BitcoinUtil.hashTwice(rawSlice());
+    }
+
+    private int inputOffset(int input) {
+        if ((input < 0) || (input >= getInputCount())) {
+            throw new IndexOutOfBoundsException("Input " + input + " does not exist in transaction " + this.index);
+        }
+        return this.block.getInputOffset(this.block.getFirstInput(this.index) + input);
+    }
+
+    private int outputOffset(int output) {
+        if ((output < 0) || (output >= getOutputCount())) {
+            throw new IndexOutOfBoundsException("Output " + output + " does not exist in transaction " + this.index);
+        }
+        return this.block.getOutputOffset(this.block.getFirstOutput(this.index) + output);
+    }
+}
@@ -124,6 +124,32 @@ public class BitcoinUtil {
 
     }
 
+    /**
+     * Converts a long to a variable length integer (https://en.bitcoin.it/wiki/Protocol_documentation#Variable_length_integer)
+     *
+     * @param value value (interpreted as unsigned)
+     * @return byte[] of the variable length integer (including marker)
+     */
+    public static byte[] convertLongToVarIntByteArray(long value) {
+        byte[] result;
+        if ((value >= 0) && (value < 0xFD)) {
+            return new byte[]{(byte) value};
+        } else if ((value >= 0) && (value <= 0xFFFF)) {
+            result = new byte[3];
+            result[0] = (byte) 0xFD;
+        } else if ((value >= 0) && (value <= 0xFFFFFFFFL)) {
+            result = new byte[5];
+            result[0] = (byte) 0xFE;
+        } else {
+            result = new byte[9];
+            result[0] = (byte) 0xFF;
+        }
+        for (int i = 1; i < result.length; i++) {
+            result[i] = (byte) (value >>> (8 * (i - 1)));
+        }
+        return result;
+    }
+
     /**
      * Converts a variable length integer (https://en.bitcoin.it/wiki/Protocol_documentation#Variable_length_integer) to BigInteger
      *
@@ -329,6 +355,18 @@ public class BitcoinUtil {
         return digest.digest(digest.digest());
     }
 
+    /**
+     * Calculates the hash of hash on the remaining bytes of the given buffers without copying them.
+     * Note: The positions of the buffers are advanced to their limits.
+     */
+    public static byte[] hashTwice(ByteBuffer... inputs) {
+        MessageDigest digest = newDigest();
+        for (ByteBuffer input : inputs) {
+            digest.update(input);
+        }
+        return digest.digest(digest.digest());
+    }
+
     public static byte[] hash(byte[] input) {
         MessageDigest digest = newDigest();
         return digest.digest(input);
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.zuinnote.hadoop.bitcoin.format.exception.BitcoinBlockReadException;
+import org.zuinnote.hadoop.bitcoin.format.littleendian.LE;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the blocks of a local blk*.dat file of a Bitcoin Core data directory by memory-mapping it.
+ * <p>
+ * The file is mapped in windows of a configurable size. {@link #nextRawBlock()} returns a slice of the mapped window per
+ * block (starting with the magic, as {@link BitcoinBlockReader#readRawBlock()}), ie the block is not copied. The slice can be
+ * parsed with {@link #parseBlock(ByteBuffer)} or the parse methods of the {@link BitcoinBlockReader} returned by
+ * {@link #getParser()}. Zero bytes, which Bitcoin Core preallocates at the end of a file, and blocks with other magics are skipped.
+ * </p>
+ * <p>
+ * An instance must only be used by one thread. {@link #processFiles(List, byte[][], int, boolean, int, BlockHandler)} processes several
+ * files in parallel. Note that mapped windows are only released by the garbage collector.
+ * </p>
+ **/
+public class MappedBitcoinBlockSource implements Closeable {
+
+    private static final Log LOG = LogFactory.getLog(MappedBitcoinBlockSource.class.getName());
+    private static final Pattern BLOCK_FILE_PATTERN = Pattern.compile("blk[0-9]+\\.dat");
+    private static final AtomicInteger DRIVER_COUNTER = new AtomicInteger();
+
+    public static final int DEFAULT_WINDOW_SIZE = 128 * 1024 * 1024;
+
+    /**
+     * Processes the raw blocks of a file, cf. {@link #processFiles(List, byte[][], int, boolean, int, BlockHandler)}
+     */
+    public interface BlockHandler {
+
+        /**
+         * Called for each block of a file in the order of the file. Calls for different files happen concurrently.
+         *
+         * @param source   source of the block, eg to parse it or to get its position
+         * @param rawBlock raw block, only valid until the method returns
+         * @throws IOException in case of errors processing the block, which stop the processing of all files
+         */
+        void handle(MappedBitcoinBlockSource source, ByteBuffer rawBlock) throws IOException;
+    }
+
+    private final File file;
+    private final int maxSizeBitcoinBlock;
+    private final int windowSize;
+    private final BitcoinMagicScanner magicScanner;
+    private final BitcoinBlockReader parser;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private long lastBlockPosition = -1;
+
+    /**
+     * Opens a blk*.dat file with the default window size
+     *
+     * @param file                blk*.dat file
+     * @param magics              magics of the blocks to read, each exactly 4 bytes
+     * @param maxSizeBitcoinBlock maximum size of a block
+     * @param readAuxPow          true if auxPow information should be parsed, false if not
+     * @throws IOException in case the file cannot be opened
+     */
+    public MappedBitcoinBlockSource(File file, byte[][] magics, int maxSizeBitcoinBlock, boolean readAuxPow) throws IOException {
+        this(file, magics, maxSizeBitcoinBlock, readAuxPow, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Opens a blk*.dat file
+     *
+     * @param file                blk*.dat file
+     * @param magics              magics of the blocks to read, each exactly 4 bytes
+     * @param maxSizeBitcoinBlock maximum size of a block
+     * @param readAuxPow          true if auxPow information should be parsed, false if not
+     * @param windowSize          size of the mapped windows, at least the maximum size of a block plus 8 bytes for magic and block size
+     * @throws IOException in case the file cannot be opened
+     */
+    public MappedBitcoinBlockSource(File file, byte[][] magics, int maxSizeBitcoinBlock, boolean readAuxPow, int windowSize) throws IOException {
+        if ((magics == null) || (magics.length == 0)) {
+            throw new IllegalArgumentException("At least one magic must be defined");
+        }
+        if (windowSize < maxSizeBitcoinBlock + 8L) {
+            throw new IllegalArgumentException("Window size must be at least the maximum size of a block plus 8 bytes");
+        }
+        this.file = file;
+        this.maxSizeBitcoinBlock = maxSizeBitcoinBlock;
+        this.windowSize = windowSize;
+        this.magicScanner = new BitcoinMagicScanner(magics);
+        this.parser = new BitcoinBlockReader(readAuxPow);
+        this.randomAccessFile = new RandomAccessFile(file, "r");
+        this.channel = this.randomAccessFile.getChannel();
+        this.fileSize = this.channel.size();
+    }
+
+    /**
+     * Lists the block files (blk*.dat) of a directory, eg the blocks directory of Bitcoin Core, in the order of their names
+     *
+     * @param directory directory
+     * @return block files
+     * @throws IOException in case the directory cannot be listed
+     */
+    public static List<File> listBlockFiles(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list directory " + directory);
+        }
+        List<File> result = new ArrayList<>();
+        for (File currentFile : files) {
+            if (currentFile.isFile() && BLOCK_FILE_PATTERN.matcher(currentFile.getName()).matches()) {
+                result.add(currentFile);
+            }
+        }
+        File[] sorted = result.toArray(new File[0]);
+        Arrays.sort(sorted);
+        return Arrays.asList(sorted);
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Returns the parser of this source, eg to define a projection or to record transaction ranges. Transactions with a recorded
+     * range keep a copy of their bytes, because the mapped file is not backed by an array.
+     *
+     * @return parser
+     */
+    public BitcoinBlockReader getParser() {
+        return this.parser;
+    }
+
+    /**
+     * Returns the position in the file behind the block returned last
+     *
+     * @return position
+     */
+    public long getPosition() {
+        return this.position;
+    }
+
+    /**
+     * Returns the position in the file of the block returned last by {@link #nextRawBlock()} or {@link #nextBlock()}
+     *
+     * @return position of the last block (start of magic) or -1 if no block has been read yet
+     */
+    public long getLastBlockPosition() {
+        return this.lastBlockPosition;
+    }
+
+    /**
+     * Returns the next block as slice of the mapped file
+     *
+     * @return ByteBuffer (little endian) containing the block starting with the magic or null if there is no further block
+     * @throws BitcoinBlockReadException in case of format errors of the block file
+     * @throws IOException               in case of errors mapping the file
+     */
+    public ByteBuffer nextRawBlock() throws IOException {
+        if (!seekMagic()) {
+            return null;
+        }
+        ByteBuffer buffer = mapWindow(this.position, 8);
+        int index = (int) (this.position - this.windowStart);
+        long blockSize = LE.getUInt32(buffer, index + 4);
+        if (blockSize + 8 > this.maxSizeBitcoinBlock) {
+            throw new BitcoinBlockReadException("Error: Block size is larger then defined in configuration - Please increase it if this is a valid block");
+        }
+        int totalSize = (int) blockSize + 8;
+        if (this.position + totalSize > this.fileSize) {
+            throw new BitcoinBlockReadException("Error: Could not read full block");
+        }
+        buffer = mapWindow(this.position, totalSize);
+        index = (int) (this.position - this.windowStart);
+        ByteBuffer result = buffer.duplicate();
+        result.limit(index + totalSize);
+        result.position(index);
+        result = result.slice();
+        result.order(ByteOrder.LITTLE_ENDIAN);
+        this.lastBlockPosition = this.position;
+        this.position += totalSize;
+        return result;
+    }
+
+    /**
+     * Returns the next block parsed by {@link #getParser()}
+     *
+     * @return block or null if there is no further block
+     * @throws BitcoinBlockReadException in case of format errors of the block file
+     * @throws IOException               in case of errors mapping the file
+     */
+    public BitcoinBlock nextBlock() throws IOException {
+        ByteBuffer rawBlock = nextRawBlock();
+        if (rawBlock == null) {
+            return null;
+        }
+        return parseBlock(rawBlock);
+    }
+
+    /**
+     * Parses a raw block returned by {@link #nextRawBlock()} with {@link #getParser()}
+     *
+     * @param rawBlock raw block
+     * @return block
+     */
+    public BitcoinBlock parseBlock(ByteBuffer rawBlock) {
+        return this.parser.parseBlock(rawBlock);
+    }
+
+    /**
+     * Positions the source at the next magic
+     *
+     * @return true if a magic has been found, false if the end of the file has been reached
+     * @throws IOException in case of errors mapping the file
+     */
+    private boolean seekMagic() throws IOException {
+        while (this.position + 8 <= this.fileSize) {
+            int length = (int) Math.min(this.windowSize, this.fileSize - this.position);
+            ByteBuffer buffer = mapWindow(this.position, length);
+            int index = (int) (this.position - this.windowStart);
+            int found = this.magicScanner.indexOf(buffer, index, length);
+            if (found == index) {
+                return true;
+            }
+            if (found > index) {
+                LOG.debug("Skipped " + (found - index) + " bytes in " + this.file + " at position " + this.position);
+                this.position += found - index;
+                return this.position + 8 <= this.fileSize;
+            }
+            // a magic may cross the end of the window
+            this.position += Math.max(1, length - 3);
+        }
+        this.position = this.fileSize;
+        return false;
+    }
+
+    /**
+     * Returns a window containing the given range of the file
+     *
+     * @param start  start of the range in the file
+     * @param length length of the range
+     * @return mapped window (its index 0 corresponds to windowStart)
+     * @throws IOException in case of errors mapping the file
+     */
+    private ByteBuffer mapWindow(long start, int length) throws IOException {
+        if ((this.window == null) || (start < this.windowStart) || (start + length > this.windowStart + this.window.capacity())) {
+            this.windowStart = start;
+            long size = Math.min(this.windowSize, this.fileSize - start);
+            this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        }
+        return this.window;
+    }
+
+    /**
+     * Closes the file. Slices returned by {@link #nextRawBlock()} remain readable until the mapped windows are garbage collected.
+     *
+     * @throws IOException in case of errors closing the file
+     */
+    @Override
+    public void close() throws IOException {
+        this.window = null;
+        if (this.randomAccessFile != null) {
+            this.randomAccessFile.close();
+            this.randomAccessFile = null;
+            this.channel = null;
+        }
+    }
+
+    /**
+     * Reads the given block files in parallel, each file by one thread. The blocks of one file are handled in the order of the file.
+     *
+     * @param files               block files, eg from {@link #listBlockFiles(File)}
+     * @param magics              magics of the blocks to read
+     * @param maxSizeBitcoinBlock maximum size of a block
+     * @param readAuxPow          true if auxPow information should be parsed, false if not
+     * @param threads             number of threads, eg the number of cores
+     * @param handler             called for each block
+     * @return number of blocks processed
+     * @throws IOException in case of errors reading a file or handling a block. The remaining files are not processed.
+     */
+    public static long processFiles(List<File> files, final byte[][] magics, final int maxSizeBitcoinBlock, final boolean readAuxPow, int threads, final BlockHandler handler) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+        }
+        final String name = "bitcoin-mapped-source-" + DRIVER_COUNTER.incrementAndGet();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, files.size())), new ThreadFactory() {
+            private final AtomicInteger threadCounter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + this.threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<Long>> results = new ArrayList<>(files.size());
+            for (final File currentFile : files) {
+                results.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws IOException {
+                        long blocks = 0;
+                        try (MappedBitcoinBlockSource source = new MappedBitcoinBlockSource(currentFile, magics, maxSizeBitcoinBlock, readAuxPow)) {
+                            ByteBuffer rawBlock;
+                            while (!Thread.currentThread().isInterrupted() && ((rawBlock = source.nextRawBlock()) != null)) {
+                                handler.handle(source, rawBlock);
+                                blocks++;
+                            }
+                        }
+                        return blocks;
+                    }
+                }));
+            }
+            long total = 0;
+            for (Future<Long> result : results) {
+                total += result.get();
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while processing block files");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new BitcoinBlockReadException("Error: Could not process block file: " + e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -44,9 +44,7 @@ public class HashSHA256 implements Byteable, Serializable {
     }
 
     public void setValue(ByteBuffer buffer) {
-        for (int i = 0; i < NUM_BYTES; i++) {
-            rawData[i] = buffer.get();
-        }
+        buffer.get(rawData, 0, NUM_BYTES);
     }
 
     public String toString() {
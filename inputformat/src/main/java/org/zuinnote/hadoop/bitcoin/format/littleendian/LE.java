@@ -0,0 +1,201 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.littleendian;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Static codec for the little endian integers of the Bitcoin wire format. In contrast to {@link UInt32} and
+ * {@link UIntVar} the methods work on primitives and do not allocate, so that they can be used on hot paths such as
+ * parsing of transactions. Results are independent of the byte order set on the buffer.
+ **/
+public final class LE {
+
+    public static final long UINT32_MASK = 0xFFFFFFFFL;
+
+    private LE() {
+    }
+
+    /**
+     * Reads an unsigned 16 bit integer and advances the buffer
+     *
+     * @param buffer buffer positioned at the integer
+     * @return value
+     */
+    public static int readUInt16(ByteBuffer buffer) {
+        return toLittleEndian(buffer, buffer.getShort()) & 0xFFFF;
+    }
+
+    /**
+     * Reads an unsigned 32 bit integer and advances the buffer
+     *
+     * @param buffer buffer positioned at the integer
+     * @return value
+     */
+    public static long readUInt32(ByteBuffer buffer) {
+        return toLittleEndian(buffer, buffer.getInt()) & UINT32_MASK;
+    }
+
+    /**
+     * Reads an unsigned 32 bit integer at an absolute index without changing the position of the buffer
+     *
+     * @param buffer buffer
+     * @param index  index of the integer
+     * @return value
+     */
+    public static long getUInt32(ByteBuffer buffer, int index) {
+        return toLittleEndian(buffer, buffer.getInt(index)) & UINT32_MASK;
+    }
+
+    /**
+     * Reads a 64 bit integer and advances the buffer. Values larger than Long.MAX_VALUE are returned as negative numbers.
+     *
+     * @param buffer buffer positioned at the integer
+     * @return value
+     */
+    public static long readInt64(ByteBuffer buffer) {
+        return toLittleEndian(buffer, buffer.getLong());
+    }
+
+    /**
+     * Reads a variable length integer (https://en.bitcoin.it/wiki/Protocol_documentation#Variable_length_integer) and
+     * advances the buffer behind it
+     *
+     * @param buffer buffer positioned at the var int
+     * @return value of the var int (values larger than Long.MAX_VALUE are returned as negative numbers)
+     */
+    public static long readVarInt(ByteBuffer buffer) {
+        int first = buffer.get() & 0xFF;
+        if (first < 0xFD) {
+            return first;
+        }
+        if (first == 0xFD) {
+            return readUInt16(buffer);
+        }
+        if (first == 0xFE) {
+            return readUInt32(buffer);
+        }
+        return readInt64(buffer);
+    }
+
+    /**
+     * Reads a variable length integer at an absolute index without changing the position of the buffer
+     *
+     * @param buffer buffer
+     * @param index  index of the first byte of the var int
+     * @return value of the var int
+     */
+    public static long getVarInt(ByteBuffer buffer, int index) {
+        int first = buffer.get(index) & 0xFF;
+        if (first < 0xFD) {
+            return first;
+        }
+        if (first == 0xFD) {
+            return toLittleEndian(buffer, buffer.getShort(index + 1)) & 0xFFFF;
+        }
+        if (first == 0xFE) {
+            return getUInt32(buffer, index + 1);
+        }
+        return toLittleEndian(buffer, buffer.getLong(index + 1));
+    }
+
+    /**
+     * Determines the encoded size of a variable length integer from its first byte
+     *
+     * @param firstByte first byte of the var int
+     * @return size including the first byte (1, 3, 5 or 9)
+     */
+    public static int varIntSize(byte firstByte) {
+        switch (firstByte & 0xFF) {
+            case 0xFD:
+                return 3;
+            case 0xFE:
+                return 5;
+            case 0xFF:
+                return 9;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Determines the size of the shortest encoding of a value as variable length integer
+     *
+     * @param value value (interpreted as unsigned)
+     * @return size including the first byte (1, 3, 5 or 9)
+     */
+    public static int varIntSizeOf(long value) {
+        if ((value >= 0) && (value < 0xFD)) {
+            return 1;
+        }
+        if ((value >= 0) && (value <= 0xFFFF)) {
+            return 3;
+        }
+        if ((value >= 0) && (value <= UINT32_MASK)) {
+            return 5;
+        }
+        return 9;
+    }
+
+    /**
+     * Writes an unsigned 32 bit integer and advances the buffer
+     *
+     * @param buffer buffer
+     * @param value  value (only the lower 32 bit are written)
+     */
+    public static void writeUInt32(ByteBuffer buffer, long value) {
+        buffer.putInt(toLittleEndian(buffer, (int) value));
+    }
+
+    /**
+     * Writes a value in the shortest encoding as variable length integer and advances the buffer
+     *
+     * @param buffer buffer
+     * @param value  value (interpreted as unsigned)
+     */
+    public static void writeVarInt(ByteBuffer buffer, long value) {
+        switch (varIntSizeOf(value)) {
+            case 1:
+                buffer.put((byte) value);
+                break;
+            case 3:
+                buffer.put((byte) 0xFD);
+                buffer.putShort(toLittleEndian(buffer, (short) value));
+                break;
+            case 5:
+                buffer.put((byte) 0xFE);
+                buffer.putInt(toLittleEndian(buffer, (int) value));
+                break;
+            default:
+                buffer.put((byte) 0xFF);
+                buffer.putLong(toLittleEndian(buffer, value));
+        }
+    }
+
+    private static short toLittleEndian(ByteBuffer buffer, short value) {
+        return buffer.order() == ByteOrder.LITTLE_ENDIAN ? value : Short.reverseBytes(value);
+    }
+
+    private static int toLittleEndian(ByteBuffer buffer, int value) {
+        return buffer.order() == ByteOrder.LITTLE_ENDIAN ? value : Integer.reverseBytes(value);
+    }
+
+    private static long toLittleEndian(ByteBuffer buffer, long value) {
+        return buffer.order() == ByteOrder.LITTLE_ENDIAN ? value : Long.reverseBytes(value);
+    }
+}
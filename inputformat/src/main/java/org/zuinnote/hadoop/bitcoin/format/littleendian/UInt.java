@@ -74,19 +74,15 @@ public abstract class UInt extends Number implements Byteable, Serializable {
     public abstract void setValue(long value);
 
     public void setValue(byte[] value) {
-        rawData.put(value, 0, getNumBytes());
+        System.arraycopy(value, 0, rawData.array(), 0, getNumBytes());
     }
 
     public void setValue(ByteBuffer buffer) {
-        for (int i = 0; i < getNumBytes(); i++) {
-            rawData.put(i, buffer.get());
-        }
+        buffer.get(rawData.array(), 0, getNumBytes());
     }
 
     public void setValue(DataInput input) throws IOException  {
-        for (int i = 0; i < getNumBytes(); i++) {
-            input.readByte();
-        }
+        input.readFully(rawData.array(), 0, getNumBytes());
     }
 
     public void setValue(InputStream input) throws IOException {
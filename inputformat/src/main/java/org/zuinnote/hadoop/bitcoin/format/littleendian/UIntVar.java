@@ -56,9 +56,9 @@ public class UIntVar extends UInt implements Serializable {
     public void setSizeFrom(long value) {
         if (value < 0xfd) {
             numBytes = 1;
-        } else if (value < 0xffff) {
+        } else if (value <= 0xffff) {
             numBytes = 2;
-        } else if (value < 0xffffffff) {
+        } else if (value <= LE.UINT32_MASK) {
             numBytes = 4;
         } else {
             numBytes = 8;
@@ -90,10 +90,8 @@ public class UIntVar extends UInt implements Serializable {
         byte firstByte = buffer.get();
         numBytes = getVarIntSize(firstByte);
         allocateBytes();
-        rawData.put(firstByte);
-        for(int i=1; i<rawData.capacity(); i++) {
-            rawData.put(buffer.get());
-        }
+        rawData.put(0, firstByte);
+        buffer.get(rawData.array(), 1, rawData.capacity() - 1);
     }
 
     @Override
@@ -103,14 +101,7 @@ public class UIntVar extends UInt implements Serializable {
 
     @Override
     public long getValue() {
-        long result = 0;
-        switch (numBytes) {
-            case 1: result = rawData.get(0); break;
-            case 2: result = rawData.getShort(1); break;
-            case 4: result = rawData.getInt(1); break;
-            case 8: result = rawData.getLong(1); break;
-        }
-        return result & getMaxValue();
+        return LE.getVarInt(rawData, 0);
     }
 
     @Override
@@ -122,11 +113,7 @@ public class UIntVar extends UInt implements Serializable {
     public void setValue(long value) {
         setSizeFrom(value);
         allocateBytes();
-        rawData.put(getSizeHeader(value));
-        switch (numBytes) {
-            case 2: rawData.putShort((short) value);
-            case 4: rawData.putInt((int) value);
-            case 8: rawData.putLong(value);
-        }
+        LE.writeVarInt(rawData, value);
+        rawData.rewind();
     }
 }
@@ -16,22 +16,41 @@
 
 package org.zuinnote.hadoop.bitcoin.format.mapred;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.CompressionCodecFactory;
 import org.apache.hadoop.io.compress.SplittableCompressionCodec;
 import org.apache.hadoop.mapred.*;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockIndex;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinIngestManifest;
+import org.zuinnote.hadoop.bitcoin.format.exception.HadoopCryptoLedgerConfigurationException;
+import org.zuinnote.hadoop.bitcoin.format.mapreduce.BitcoinIncrementalInput;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 
 public abstract class AbstractBitcoinFileInputFormat<K, V> extends FileInputFormat<K, V> implements JobConfigurable {
     public static final String CONF_ISSPLITABLE = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinFileInputFormat.CONF_ISSPLITABLE;
+    public static final String CONF_USEINDEX = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinFileInputFormat.CONF_USEINDEX;
+    public static final String CONF_MANIFEST = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinFileInputFormat.CONF_MANIFEST;
+    public static final String CONF_MANIFEST_OUTPUT = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinFileInputFormat.CONF_MANIFEST_OUTPUT;
     public static final boolean DEFAULT_ISSPLITABLE = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinFileInputFormat.DEFAULT_ISSPLITABLE;
+    public static final boolean DEFAULT_USEINDEX = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinFileInputFormat.DEFAULT_USEINDEX;
+
+    private static final Log LOG = LogFactory.getLog(AbstractBitcoinFileInputFormat.class.getName());
 
 
     private boolean isSplitable = DEFAULT_ISSPLITABLE;
+    private boolean useIndex = DEFAULT_USEINDEX;
     private CompressionCodecFactory compressionCodecs = null;
 
     @Override
@@ -42,6 +61,7 @@ public abstract class AbstractBitcoinFileInputFormat<K, V> extends FileInputForm
     public void configure(JobConf conf) {
         this.compressionCodecs = new CompressionCodecFactory(conf);
         this.isSplitable = conf.getBoolean(AbstractBitcoinFileInputFormat.CONF_ISSPLITABLE, AbstractBitcoinFileInputFormat.DEFAULT_ISSPLITABLE);
+        this.useIndex = conf.getBoolean(AbstractBitcoinFileInputFormat.CONF_USEINDEX, AbstractBitcoinFileInputFormat.DEFAULT_USEINDEX);
     }
 
     /**
@@ -60,5 +80,167 @@ public abstract class AbstractBitcoinFileInputFormat<K, V> extends FileInputForm
 
     }
 
+    /**
+     * Lists the input files without the sidecar indexes of block files
+     */
+    @Override
+    protected FileStatus[] listStatus(JobConf job) throws IOException {
+        FileStatus[] files = super.listStatus(job);
+        List<FileStatus> result = new ArrayList<>(files.length);
+        for (FileStatus file : files) {
+            if (!file.getPath().getName().endsWith(BitcoinBlockIndex.FILE_EXTENSION)) {
+                result.add(file);
+            }
+        }
+        return result.toArray(new FileStatus[result.size()]);
+    }
+
+    /**
+     * Creates the splits. If hadoopcryptoledger.bitcoinblockinputformat.useindex is true (default) and an uncompressed file has a sidecar index (cf. {@link BitcoinBlockIndex}) then its
+     * splits start and end exactly at block boundaries ({@link BitcoinBlockFileSplit}) and record readers do not seek for the start of a block. Such files are split independent of hadoopcryptoledeger.bitcoinblockinputformat.issplitable.
+     * All other files are split as usual.
+     * <p>
+     * If hadoopcryptoledger.bitcoinblockinputformat.manifest is the path of a {@link BitcoinIngestManifest} then only blocks that have not been processed according to the manifest are read (cf. {@link BitcoinIncrementalInput}), ie new files and blocks appended to files since the previous run.
+     * A missing manifest is treated as empty. The splits of uncompressed files then contain exactly these blocks, a block still being written at the end of a file is left for the next run. Compressed files are processed completely if they are new or their length or modification time has changed.
+     * The manifest describing the state after this run is written to hadoopcryptoledger.bitcoinblockinputformat.manifest.output (if specified). It should replace the manifest once the job has succeeded.
+     * </p>
+     */
+    @Override
+    public InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
+        String manifest = job.get(AbstractBitcoinFileInputFormat.CONF_MANIFEST, "");
+        if (!manifest.isEmpty()) {
+            return getIncrementalSplits(job, numSplits, new Path(manifest));
+        }
+        InputSplit[] splits = super.getSplits(job, numSplits);
+        if (!this.useIndex) {
+            return splits;
+        }
+        CompressionCodecFactory codecs = this.compressionCodecs != null ? this.compressionCodecs : new CompressionCodecFactory(job);
+        // same goal size as used by FileInputFormat for the splits of all files
+        long totalSize = 0;
+        for (InputSplit split : splits) {
+            totalSize += split.getLength();
+        }
+        long goalSize = totalSize / (numSplits == 0 ? 1 : numSplits);
+        Map<Path, List<InputSplit>> indexedSplits = new HashMap<>();
+        List<InputSplit> result = new ArrayList<>(splits.length);
+        for (InputSplit split : splits) {
+            Path file = ((FileSplit) split).getPath();
+            if (!indexedSplits.containsKey(file)) {
+                List<InputSplit> blockSplits = null;
+                if (codecs.getCodec(file) == null) {
+                    blockSplits = getBlockAlignedSplits(job, file, goalSize);
+                }
+                indexedSplits.put(file, blockSplits);
+                if (blockSplits != null) {
+                    result.addAll(blockSplits);
+                }
+            }
+            if (indexedSplits.get(file) == null) {
+                result.add(split);
+            }
+        }
+        return result.toArray(new InputSplit[result.size()]);
+    }
+
+    /**
+     * Creates block aligned splits from the sidecar index of a file
+     *
+     * @param job      job
+     * @param file     file
+     * @param goalSize targeted size of a split
+     * @return splits or null if the file has no (valid) index
+     * @throws IOException in case of errors reading the index
+     */
+    private List<InputSplit> getBlockAlignedSplits(JobConf job, Path file, long goalSize) throws IOException {
+        FileSystem fs = file.getFileSystem(job);
+        BitcoinBlockIndex index = BitcoinBlockIndex.read(fs, file);
+        if (index == null) {
+            return null;
+        }
+        FileStatus status = fs.getFileStatus(file);
+        if (status.getLen() < index.getFileLength()) {
+            LOG.warn("Ignoring index of " + file + ": file is shorter than the indexed file");
+            return null;
+        }
+        BlockLocation[] blkLocations = fs.getFileBlockLocations(status, 0, status.getLen());
+        long minSize = Math.max(job.getLong(org.apache.hadoop.mapreduce.lib.input.FileInputFormat.SPLIT_MINSIZE, 1), 1);
+        long splitSize = computeSplitSize(goalSize, minSize, status.getBlockSize());
+        List<InputSplit> result = new ArrayList<>();
+        addBlockAlignedSplits(result, file, blkLocations, index.getSplitBoundaries(splitSize));
+        // the file has grown since it has been indexed, the new data starts after the last indexed block
+        long endOfBlocks = index.getEndOfBlocks();
+        if (status.getLen() > index.getFileLength() && status.getLen() > endOfBlocks) {
+            int blkIndex = getBlockIndex(blkLocations, endOfBlocks);
+            result.add(new BitcoinBlockFileSplit(file, endOfBlocks, status.getLen() - endOfBlocks, blkLocations[blkIndex].getHosts()));
+        }
+        LOG.debug("Created " + result.size() + " block aligned splits for " + file);
+        return result;
+    }
+
+    /**
+     * Creates the splits of the blocks that have not been processed according to a manifest
+     *
+     * @param job       job
+     * @param numSplits targeted number of splits
+     * @param manifest  path of the manifest
+     * @return splits
+     * @throws IOException in case of errors reading the files or the manifest
+     */
+    private InputSplit[] getIncrementalSplits(JobConf job, int numSplits, Path manifest) throws IOException {
+        BitcoinIncrementalInput incrementalInput;
+        try {
+            incrementalInput = new BitcoinIncrementalInput(job, BitcoinIngestManifest.read(manifest.getFileSystem(job), manifest));
+        } catch (HadoopCryptoLedgerConfigurationException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        CompressionCodecFactory codecs = this.compressionCodecs != null ? this.compressionCodecs : new CompressionCodecFactory(job);
+        List<FileStatus> files = new ArrayList<>();
+        List<BitcoinBlockIndex> newBlocks = new ArrayList<>();
+        List<InputSplit> result = new ArrayList<>();
+        long totalSize = 0;
+        for (FileStatus status : listStatus(job)) {
+            Path file = status.getPath();
+            if (codecs.getCodec(file) != null) {
+                // compressed files are processed completely
+                if (!incrementalInput.isNewCompressedFile(status)) {
+                    continue;
+                }
+                BlockLocation[] blkLocations = file.getFileSystem(job).getFileBlockLocations(status, 0, status.getLen());
+                result.add(makeSplit(file, 0, status.getLen(), blkLocations.length > 0 ? blkLocations[0].getHosts() : new String[0]));
+                totalSize += status.getLen();
+                continue;
+            }
+            BitcoinBlockIndex blocks = incrementalInput.getNewBlocks(file.getFileSystem(job), status);
+            if (blocks.size() > 0) {
+                files.add(status);
+                newBlocks.add(blocks);
+                totalSize += blocks.getEndOfBlocks() - blocks.getOffset(0);
+            }
+        }
+        // same goal size as used by FileInputFormat for the splits of all files
+        long goalSize = totalSize / (numSplits == 0 ? 1 : numSplits);
+        long minSize = Math.max(job.getLong(org.apache.hadoop.mapreduce.lib.input.FileInputFormat.SPLIT_MINSIZE, 1), 1);
+        for (int i = 0; i < files.size(); i++) {
+            FileStatus status = files.get(i);
+            BlockLocation[] blkLocations = status.getPath().getFileSystem(job).getFileBlockLocations(status, 0, status.getLen());
+            long splitSize = computeSplitSize(goalSize, minSize, status.getBlockSize());
+            addBlockAlignedSplits(result, status.getPath(), blkLocations, newBlocks.get(i).getSplitBoundaries(splitSize));
+        }
+        String manifestOutput = job.get(AbstractBitcoinFileInputFormat.CONF_MANIFEST_OUTPUT, "");
+        if (!manifestOutput.isEmpty()) {
+            Path output = new Path(manifestOutput);
+            incrementalInput.getNextManifest().write(output.getFileSystem(job), output);
+        }
+        LOG.info("Created " + result.size() + " splits for new blocks");
+        return result.toArray(new InputSplit[result.size()]);
+    }
+
+    private void addBlockAlignedSplits(List<InputSplit> result, Path file, BlockLocation[] blkLocations, long[] boundaries) throws IOException {
+        for (int i = 0; i < boundaries.length - 1; i++) {
+            int blkIndex = getBlockIndex(blkLocations, boundaries[i]);
+            result.add(new BitcoinBlockFileSplit(file, boundaries[i], boundaries[i + 1] - boundaries[i], blkLocations[blkIndex].getHosts()));
+        }
+    }
 
 }
@@ -29,12 +29,18 @@ import org.apache.hadoop.mapred.FileSplit;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.RecordReader;
 import org.apache.hadoop.mapred.Reporter;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlock;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockHeader;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockReader;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockSection;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinChainIndex;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinUtil;
 import org.zuinnote.hadoop.bitcoin.format.exception.BitcoinBlockReadException;
 import org.zuinnote.hadoop.bitcoin.format.exception.HadoopCryptoLedgerConfigurationException;
+import org.zuinnote.hadoop.bitcoin.format.util.XorInputStream;
 
 import java.io.IOException;
+import java.util.EnumSet;
 
 public abstract class AbstractBitcoinRecordReader<K, V> implements RecordReader<K, V> {
     public static final String CONF_BUFFERSIZE = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.CONF_BUFFERSIZE;
@@ -42,11 +48,21 @@ public abstract class AbstractBitcoinRecordReader<K, V> implements RecordReader<
     public static final String CONF_FILTERMAGIC = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.CONF_FILTERMAGIC;
     public static final String CONF_USEDIRECTBUFFER = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.CONF_USEDIRECTBUFFER;
     public static final String CONF_READAUXPOW = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.CONF_READAUXPOW;
+    public static final String CONF_CACHETRANSACTIONHASH = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.CONF_CACHETRANSACTIONHASH;
+    public static final String CONF_PROJECTION = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.CONF_PROJECTION;
+    public static final String CONF_REUSEBUFFER = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.CONF_REUSEBUFFER;
+    public static final String CONF_XORKEY = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.CONF_XORKEY;
+    public static final String CONF_CHAININDEX = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.CONF_CHAININDEX;
+    public static final String CONF_DROPORPHANS = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.CONF_DROPORPHANS;
     public static final int DEFAULT_BUFFERSIZE = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.DEFAULT_BUFFERSIZE;
     public static final int DEFAULT_MAXSIZE_BITCOINBLOCK = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.DEFAULT_MAXSIZE_BITCOINBLOCK;
     public static final String DEFAULT_MAGIC = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.DEFAULT_MAGIC;
     public static final boolean DEFAULT_USEDIRECTBUFFER = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.DEFAULT_USEDIRECTBUFFER;
     public static final boolean DEFAULT_READAUXPOW = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.DEFAULT_READAUXPOW;
+    public static final boolean DEFAULT_CACHETRANSACTIONHASH = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.DEFAULT_CACHETRANSACTIONHASH;
+    public static final String DEFAULT_PROJECTION = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.DEFAULT_PROJECTION;
+    public static final boolean DEFAULT_DROPORPHANS = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.DEFAULT_DROPORPHANS;
+    public static final boolean DEFAULT_REUSEBUFFER = org.zuinnote.hadoop.bitcoin.format.mapreduce.AbstractBitcoinRecordReader.DEFAULT_REUSEBUFFER;
 
     private static final Log LOG = LogFactory.getLog(AbstractBitcoinRecordReader.class.getName());
 
@@ -54,6 +70,13 @@ public abstract class AbstractBitcoinRecordReader<K, V> implements RecordReader<
     private int maxSizeBitcoinBlock = 0;
     private boolean useDirectBuffer = false;
     private boolean readAuxPOW = false;
+    private boolean cacheTransactionHash = true;
+    private boolean reuseBuffer = false;
+    private byte[] xorKey;
+    private String chainIndexPath;
+    private boolean dropOrphans = true;
+    private BitcoinChainIndex chainIndex;
+    private EnumSet<BitcoinBlockSection> projection;
     private String specificMagic = "";
     private String[] specificMagicStringArray;
     private byte[][] specificMagicByteArray;
@@ -66,6 +89,7 @@ public abstract class AbstractBitcoinRecordReader<K, V> implements RecordReader<
     private long end;
     private final Seekable filePosition;
     private FSDataInputStream fileIn;
+    private boolean blockAligned;
     private BitcoinBlockReader bbr;
 
 
@@ -74,7 +98,7 @@ public abstract class AbstractBitcoinRecordReader<K, V> implements RecordReader<
      *
      * @param split    Split to use (assumed to be a file split)
      * @param job      Configuration:
-     *                 io.file.buffer.size: Size of in-memory  specified in the given Configuration. If io.file.buffer.size is not specified the default buffersize (maximum size of a bitcoin block) will be used. The configuration hadoopcryptoledger.bitcoinblockinputformat.filter.magic allows specifying the magic identifier of the block. The magic is a comma-separated list of Hex-values (e.g. F9BEB4D9,FABFB5DA,0B110907,0B110907). The default magic is always F9BEB4D9. One needs to specify at least one magic, otherwise it will be difficult to find blocks in splits. Furthermore, one may specify hadoopcryptoledger.bitcoinblockinputformat.maxblocksize, which defines the maximum size a bitcoin block may have. By default it is 8M). If you want to experiment with performance using DirectByteBuffer instead of HeapByteBuffer you can use "hadoopcryptoledeger.bitcoinblockinputformat.usedirectbuffer" (default: false). Note that it might have some unwanted consequences such as circumwenting Yarn memory management. The option is experimental and might be removed in future versions.
+     *                 io.file.buffer.size: Size of in-memory  specified in the given Configuration. If io.file.buffer.size is not specified the default buffersize (maximum size of a bitcoin block) will be used. The configuration hadoopcryptoledger.bitcoinblockinputformat.filter.magic allows specifying the magic identifier of the block. The magic is a comma-separated list of Hex-values (e.g. F9BEB4D9,FABFB5DA,0B110907,0B110907). The default magic is always F9BEB4D9. One needs to specify at least one magic, otherwise it will be difficult to find blocks in splits. Furthermore, one may specify hadoopcryptoledger.bitcoinblockinputformat.maxblocksize, which defines the maximum size a bitcoin block may have. By default it is 8M). If you want to experiment with performance using DirectByteBuffer instead of HeapByteBuffer you can use "hadoopcryptoledeger.bitcoinblockinputformat.usedirectbuffer" (default: false). Note that it might have some unwanted consequences such as circumwenting Yarn memory management. The option is experimental and might be removed in future versions. Transaction hashes are calculated directly from the raw block and cached ("hadoopcryptoledger.bitcoinblockinputformat.cachetransactionhash", default: true). Set it to false if transactions are kept longer than their block, because they reference the raw block. With "hadoopcryptoledger.bitcoinblockinputformat.projection" only the given sections of a block are parsed, eg "header,outputs" (default: all, cf. {@link org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockSection}). Skipped sections are empty. With "hadoopcryptoledger.bitcoinblockinputformat.reusebuffer" (default: false) all blocks are read into one buffer, which grows on demand, instead of a new array per block. Raw blocks (and block views) are then only valid until the next record is read. Block files of newer Bitcoin Core versions, which are obfuscated with the key in xor.dat, can be read directly by setting "hadoopcryptoledger.bitcoinblockinputformat.xorkey" to the key in Hex (eg 0102030405060708, default: not obfuscated). This is not supported in combination with splittable compression codecs. With "hadoopcryptoledger.bitcoinblockinputformat.chainindex" the path of a chain index (cf. {@link org.zuinnote.hadoop.bitcoin.format.common.BitcoinChainIndex}) can be specified (default: none). Parsed blocks and block headers are then annotated with their height in the best chain and stale (orphan) blocks (including their transactions) are dropped unless "hadoopcryptoledger.bitcoinblockinputformat.chainindex.droporphans" is false (default: true).
      * @param reporter Reporter
      * @throws java.io.IOException                                                                   in case of errors reading from the filestream provided by Hadoop
      * @throws org.zuinnote.hadoop.bitcoin.format.exception.HadoopCryptoLedgerConfigurationException in case of an invalid HadoopCryptoLedger-specific configuration of the inputformat
@@ -105,6 +129,26 @@ public abstract class AbstractBitcoinRecordReader<K, V> implements RecordReader<
         }
         this.useDirectBuffer = conf.getBoolean(AbstractBitcoinRecordReader.CONF_USEDIRECTBUFFER, AbstractBitcoinRecordReader.DEFAULT_USEDIRECTBUFFER);
         this.readAuxPOW = conf.getBoolean(AbstractBitcoinRecordReader.CONF_READAUXPOW, AbstractBitcoinRecordReader.DEFAULT_READAUXPOW);
+        this.cacheTransactionHash = conf.getBoolean(AbstractBitcoinRecordReader.CONF_CACHETRANSACTIONHASH, AbstractBitcoinRecordReader.DEFAULT_CACHETRANSACTIONHASH);
+        this.reuseBuffer = conf.getBoolean(AbstractBitcoinRecordReader.CONF_REUSEBUFFER, AbstractBitcoinRecordReader.DEFAULT_REUSEBUFFER);
+        String xorKeyString = conf.get(AbstractBitcoinRecordReader.CONF_XORKEY);
+        if ((xorKeyString != null) && (xorKeyString.length() > 0)) {
+            try {
+                this.xorKey = BitcoinUtil.convertHexStringToByteArray(xorKeyString);
+            } catch (IllegalArgumentException e) {
+                throw new HadoopCryptoLedgerConfigurationException("Error: Configuration. Invalid XOR key: " + e.getMessage());
+            }
+            if (this.xorKey.length != XorInputStream.KEY_SIZE) {
+                throw new HadoopCryptoLedgerConfigurationException("Error: Configuration. XOR key has not a length of " + XorInputStream.KEY_SIZE + " bytes");
+            }
+        }
+        this.chainIndexPath = conf.get(AbstractBitcoinRecordReader.CONF_CHAININDEX, "");
+        this.dropOrphans = conf.getBoolean(AbstractBitcoinRecordReader.CONF_DROPORPHANS, AbstractBitcoinRecordReader.DEFAULT_DROPORPHANS);
+        try {
+            this.projection = BitcoinBlockSection.parseProjection(conf.get(AbstractBitcoinRecordReader.CONF_PROJECTION, AbstractBitcoinRecordReader.DEFAULT_PROJECTION));
+        } catch (IllegalArgumentException e) {
+            throw new HadoopCryptoLedgerConfigurationException("Error: Configuration. Invalid projection: " + e.getMessage());
+        }
         // Initialize start and end of split
         start = split.getStart();
         end = start + split.getLength();
@@ -112,6 +156,10 @@ public abstract class AbstractBitcoinRecordReader<K, V> implements RecordReader<
         codec = new CompressionCodecFactory(job).getCodec(file);
         final FileSystem fs = file.getFileSystem(job);
         fileIn = fs.open(file);
+        if (this.chainIndexPath.length() > 0) {
+            Path chainIndexFile = new Path(this.chainIndexPath);
+            this.chainIndex = BitcoinChainIndex.readCached(chainIndexFile.getFileSystem(job), chainIndexFile);
+        }
         // open stream
         if (isCompressedInput()) { // decompress
             LOG.debug("Decompressing file");
@@ -119,6 +167,9 @@ public abstract class AbstractBitcoinRecordReader<K, V> implements RecordReader<
             if (codec instanceof SplittableCompressionCodec) {
                 LOG.debug("SplittableCompressionCodec");
                 final SplitCompressionInputStream cIn = ((SplittableCompressionCodec) codec).createInputStream(fileIn, decompressor, start, end, SplittableCompressionCodec.READ_MODE.CONTINUOUS);
+                if (this.xorKey != null) {
+                    throw new HadoopCryptoLedgerConfigurationException("Error: Configuration. XOR key is not supported for splittable compression codecs");
+                }
                 bbr = new BitcoinBlockReader(cIn, this.maxSizeBitcoinBlock, this.bufferSize, this.specificMagicByteArray, this.useDirectBuffer, this.readAuxPOW);
                 start = cIn.getAdjustedStart();
                 end = cIn.getAdjustedEnd();
@@ -126,23 +177,85 @@ public abstract class AbstractBitcoinRecordReader<K, V> implements RecordReader<
             } else {
                 LOG.debug("Not-splitable compression codec");
                 bbr = new BitcoinBlockReader(codec.createInputStream(fileIn, decompressor), this.maxSizeBitcoinBlock, this.bufferSize, this.specificMagicByteArray, this.useDirectBuffer, this.readAuxPOW);
+                // the decompressed stream starts at the beginning of the file
+                bbr.setXorKey(this.xorKey, 0);
                 filePosition = fileIn;
             }
         } else {
             LOG.debug("Processing file without compression");
             fileIn.seek(start);
             bbr = new BitcoinBlockReader(fileIn, this.maxSizeBitcoinBlock, this.bufferSize, this.specificMagicByteArray, this.useDirectBuffer, this.readAuxPOW);
+            bbr.setXorKey(this.xorKey, start);
             filePosition = fileIn;
         }
         // initialize reader
         // seek to block start (for the case a block overlaps a split)
-        LOG.debug("Seeking to block start");
-        this.reporter.setStatus("Seeking Block start");
-        bbr.seekBlockStart();
+        // transaction hashes are calculated from the raw block
+        bbr.setRecordTransactionRanges(this.cacheTransactionHash);
+        bbr.setProjection(this.projection);
+        bbr.setReuseBuffer(this.reuseBuffer);
+        if ((split instanceof BitcoinBlockFileSplit) && !isCompressedInput()) {
+            // split starts exactly at a block (cf. BitcoinBlockIndex), a block starting at the end of the split belongs to the next split
+            LOG.debug("Split is aligned to blocks");
+            blockAligned = true;
+            end = end - 1;
+        } else {
+            LOG.debug("Seeking to block start");
+            this.reporter.setStatus("Seeking Block start");
+            bbr.seekBlockStart();
+        }
         this.reporter.setStatus("Ready to read");
     }
 
 
+    /**
+     * Reads the next parsed block. If a chain index is configured the height of the block is set and stale blocks are skipped.
+     *
+     * @return block or null if no further block is available
+     * @throws java.io.IOException in case of errors reading from the filestream provided by Hadoop
+     */
+    protected BitcoinBlock readBlock() throws IOException {
+        BitcoinBlock block;
+        while ((block = this.bbr.readBlock()) != null) {
+            if (this.chainIndex == null) {
+                return block;
+            }
+            int height = this.chainIndex.getHeight(block.getHash().getBytes());
+            if ((height != BitcoinChainIndex.UNKNOWN_HEIGHT) || !this.dropOrphans) {
+                block.setHeight(height);
+                return block;
+            }
+            LOG.debug("Skipping block not contained in the best chain");
+            if (getFilePosition() > getEnd()) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the header of the next block of the split without reading its transactions. If a chain index is configured the
+     * height of the block is set and stale blocks are skipped.
+     *
+     * @return header or null if no further block is available in the split
+     * @throws java.io.IOException in case of errors reading from the filestream provided by Hadoop
+     */
+    protected BitcoinBlockHeader readBlockHeader() throws IOException {
+        while (getFilePosition() <= getEnd()) {
+            BitcoinBlockHeader header = this.bbr.readBlockHeader();
+            if ((header == null) || (this.chainIndex == null)) {
+                return header;
+            }
+            int height = this.chainIndex.getHeight(header.getHash());
+            if ((height != BitcoinChainIndex.UNKNOWN_HEIGHT) || !this.dropOrphans) {
+                header.setHeight(height);
+                return header;
+            }
+            LOG.debug("Skipping block not contained in the best chain");
+        }
+        return null;
+    }
+
     /**
      * Get the current file position in a compressed or uncompressed file.
      *
@@ -151,9 +264,23 @@ public abstract class AbstractBitcoinRecordReader<K, V> implements RecordReader<
      */
 
     public long getFilePosition() throws IOException {
+        if (this.blockAligned) {
+            // exact position of the block reader, the file position is ahead due to buffering
+            return this.start + this.bbr.getPosition();
+        }
         return filePosition.getPos();
     }
 
+    /**
+     * Returns the position in the file of the block read last. Only valid for uncompressed files.
+     *
+     * @return position of the last block (start of magic) or -1 if no block has been read yet
+     */
+    public long getLastBlockPosition() {
+        long lastBlockPosition = this.bbr.getLastBlockPosition();
+        return lastBlockPosition < 0 ? lastBlockPosition : this.start + lastBlockPosition;
+    }
+
     /**
      * Get the end of file
      *
@@ -173,6 +300,15 @@ public abstract class AbstractBitcoinRecordReader<K, V> implements RecordReader<
         return this.bbr;
     }
 
+    /**
+     * Returns if AuxPOW information is read
+     *
+     * @return true if AuxPOW information is read, false if not
+     */
+    public boolean isReadAuxPOW() {
+        return this.readAuxPOW;
+    }
+
 
     /*
      * Returns how much of the file has been processed in terms of bytes
@@ -210,7 +346,7 @@ public abstract class AbstractBitcoinRecordReader<K, V> implements RecordReader<
      */
     @Override
     public synchronized long getPos() throws IOException {
-        return filePosition.getPos();
+        return getFilePosition();
     }
 
     /*
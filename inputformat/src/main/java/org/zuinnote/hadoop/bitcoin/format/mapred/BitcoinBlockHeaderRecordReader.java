@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.mapred;
+
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockHeader;
+import org.zuinnote.hadoop.bitcoin.format.exception.BitcoinBlockReadException;
+import org.zuinnote.hadoop.bitcoin.format.exception.HadoopCryptoLedgerConfigurationException;
+
+import java.io.IOException;
+
+/**
+ * Reads records as headers of blocks of the bitcoin blockchain together with their number of transactions. The transactions
+ * are skipped by the size of the block without reading them, so that reading is bound by the I/O of the headers.
+ */
+public class BitcoinBlockHeaderRecordReader extends AbstractBitcoinRecordReader<BytesWritable, BitcoinBlockHeader> {
+    private static final Log LOG = LogFactory.getLog(BitcoinBlockHeaderRecordReader.class.getName());
+
+
+    public BitcoinBlockHeaderRecordReader(FileSplit split, JobConf job, Reporter reporter) throws IOException, HadoopCryptoLedgerConfigurationException, BitcoinBlockReadException {
+        super(split, job, reporter);
+    }
+
+
+    /**
+     * Create an empty key
+     *
+     * @return key
+     */
+    @Override
+    public BytesWritable createKey() {
+        return new BytesWritable();
+    }
+
+    /**
+     * Create an empty value
+     *
+     * @return value
+     */
+    @Override
+    public BitcoinBlockHeader createValue() {
+        return new BitcoinBlockHeader();
+    }
+
+
+    /**
+     * Read a next block header.
+     *
+     * @param key   is a 64 byte array (hashMerkleRoot and prevHashBlock)
+     * @param value is the header of the block
+     * @return true if next block is available, false if not
+     */
+    @Override
+    public boolean next(BytesWritable key, BitcoinBlockHeader value) throws IOException {
+        BitcoinBlockHeader header = readBlockHeader();
+        if (header == null) {
+            return false;
+        }
+        key.setSize(64);
+        header.getKey(key.getBytes(), 0);
+        value.set(header);
+        return true;
+    }
+
+
+}
@@ -75,7 +75,7 @@ public class BitcoinBlockRecordReader extends AbstractBitcoinRecordReader<BytesW
         while (getFilePosition() <= getEnd()) { // did we already went beyond the split (remote) or do we have no further data left?
             BitcoinBlock dataBlock = null;
 //            try {
-                dataBlock = getBbr().readBlock();
+                dataBlock = readBlock();
 
 //            } catch (BitcoinBlockReadException e) {
 //                 log
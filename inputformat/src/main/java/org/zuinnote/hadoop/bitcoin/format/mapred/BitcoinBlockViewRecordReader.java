@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.bitcoin.format.mapred;
+
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockView;
+import org.zuinnote.hadoop.bitcoin.format.exception.BitcoinBlockReadException;
+import org.zuinnote.hadoop.bitcoin.format.exception.HadoopCryptoLedgerConfigurationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads records as flyweight views of blocks of the bitcoin blockchain. The view only indexes the raw block, ie no
+ * Java objects are created for transactions, inputs and outputs. Note that a value is only valid until the next call of next.
+ */
+public class BitcoinBlockViewRecordReader extends AbstractBitcoinRecordReader<BytesWritable, BitcoinBlockView> {
+    private static final Log LOG = LogFactory.getLog(BitcoinBlockViewRecordReader.class.getName());
+
+
+    public BitcoinBlockViewRecordReader(FileSplit split, JobConf job, Reporter reporter) throws IOException, HadoopCryptoLedgerConfigurationException, BitcoinBlockReadException {
+        super(split, job, reporter);
+    }
+
+
+    /**
+     * Create an empty key
+     *
+     * @return key
+     */
+    @Override
+    public BytesWritable createKey() {
+        return new BytesWritable();
+    }
+
+    /**
+     * Create an empty value
+     *
+     * @return value
+     */
+    @Override
+    public BitcoinBlockView createValue() {
+        return new BitcoinBlockView(isReadAuxPOW());
+    }
+
+
+    /**
+     * Read a next block.
+     *
+     * @param key   is a 64 byte array (hashMerkleRoot and prevHashBlock)
+     * @param value is a view of the raw block
+     * @return true if next block is available, false if not
+     */
+    @Override
+    public boolean next(BytesWritable key, BitcoinBlockView value) throws IOException {
+        if (getFilePosition() > getEnd()) {
+            return false;
+        }
+        ByteBuffer dataBlock = getBbr().readRawBlock();
+        if (dataBlock == null) {
+            return false;
+        }
+        value.reset(dataBlock);
+        key.setSize(64);
+        value.getHashMerkleRoot(key.getBytes(), 0);
+        value.getHashPrevBlock(key.getBytes(), 32);
+        return true;
+    }
+
+
+}
@@ -76,7 +76,7 @@ public class BitcoinTransactionRecordReader extends AbstractBitcoinRecordReader<
         while (getFilePosition() <= getEnd()) { // did we already went beyond the split (remote) or do we have no further data left?
             if ((currentBitcoinBlock == null) || (currentBitcoinBlock.getTransactions().size() == currentTransactionCounterInBlock)) {
 //                try {
-                    currentBitcoinBlock = getBbr().readBlock();
+                    currentBitcoinBlock = readBlock();
                     currentTransactionCounterInBlock = 0;
 //                } catch (BitcoinBlockReadException e) {
                     // log
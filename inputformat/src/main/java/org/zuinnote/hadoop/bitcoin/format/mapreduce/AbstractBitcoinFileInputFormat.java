@@ -17,6 +17,11 @@
 package org.zuinnote.hadoop.bitcoin.format.mapreduce;
 
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.CompressionCodecFactory;
@@ -26,13 +31,28 @@ import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockIndex;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinIngestManifest;
+import org.zuinnote.hadoop.bitcoin.format.exception.HadoopCryptoLedgerConfigurationException;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 
 public abstract class AbstractBitcoinFileInputFormat<K, V> extends FileInputFormat<K, V> {
     public static final String CONF_ISSPLITABLE = "hadoopcryptoledeger.bitcoinblockinputformat.issplitable";
+    public static final String CONF_USEINDEX = "hadoopcryptoledger.bitcoinblockinputformat.useindex";
+    public static final String CONF_MANIFEST = "hadoopcryptoledger.bitcoinblockinputformat.manifest";
+    public static final String CONF_MANIFEST_OUTPUT = "hadoopcryptoledger.bitcoinblockinputformat.manifest.output";
     public static final boolean DEFAULT_ISSPLITABLE = false;
+    public static final boolean DEFAULT_USEINDEX = true;
+
+    private static final Log LOG = LogFactory.getLog(AbstractBitcoinFileInputFormat.class.getName());
 
 
     @Override
@@ -55,5 +75,147 @@ public abstract class AbstractBitcoinFileInputFormat<K, V> extends FileInputForm
         return codec instanceof SplittableCompressionCodec;
     }
 
+    /**
+     * Lists the input files without the sidecar indexes of block files
+     */
+    @Override
+    protected List<FileStatus> listStatus(JobContext job) throws IOException {
+        List<FileStatus> result = super.listStatus(job);
+        Iterator<FileStatus> it = result.iterator();
+        while (it.hasNext()) {
+            if (it.next().getPath().getName().endsWith(BitcoinBlockIndex.FILE_EXTENSION)) {
+                it.remove();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates the splits. If hadoopcryptoledger.bitcoinblockinputformat.useindex is true (default) and an uncompressed file has a sidecar index (cf. {@link BitcoinBlockIndex}) then its
+     * splits start and end exactly at block boundaries ({@link BitcoinBlockFileSplit}) and record readers do not seek for the start of a block. Such files are split independent of hadoopcryptoledeger.bitcoinblockinputformat.issplitable.
+     * All other files are split as usual.
+     * <p>
+     * If hadoopcryptoledger.bitcoinblockinputformat.manifest is the path of a {@link BitcoinIngestManifest} then only blocks that have not been processed according to the manifest are read (cf. {@link BitcoinIncrementalInput}), ie new files and blocks appended to files since the previous run.
+     * A missing manifest is treated as empty. The splits of uncompressed files then contain exactly these blocks, a block still being written at the end of a file is left for the next run. Compressed files are processed completely if they are new or their length or modification time has changed.
+     * The manifest describing the state after this run is written to hadoopcryptoledger.bitcoinblockinputformat.manifest.output (if specified). It should replace the manifest once the job has succeeded.
+     * </p>
+     */
+    @Override
+    public List<InputSplit> getSplits(JobContext job) throws IOException {
+        String manifest = job.getConfiguration().get(AbstractBitcoinFileInputFormat.CONF_MANIFEST, "");
+        if (!manifest.isEmpty()) {
+            return getIncrementalSplits(job, new Path(manifest));
+        }
+        List<InputSplit> splits = super.getSplits(job);
+        if (!job.getConfiguration().getBoolean(AbstractBitcoinFileInputFormat.CONF_USEINDEX, AbstractBitcoinFileInputFormat.DEFAULT_USEINDEX)) {
+            return splits;
+        }
+        CompressionCodecFactory compressionCodecs = new CompressionCodecFactory(job.getConfiguration());
+        Map<Path, List<InputSplit>> indexedSplits = new HashMap<>();
+        List<InputSplit> result = new ArrayList<>(splits.size());
+        for (InputSplit split : splits) {
+            Path file = ((FileSplit) split).getPath();
+            if (!indexedSplits.containsKey(file)) {
+                List<InputSplit> blockSplits = null;
+                if (compressionCodecs.getCodec(file) == null) {
+                    blockSplits = getBlockAlignedSplits(job, file);
+                }
+                indexedSplits.put(file, blockSplits);
+                if (blockSplits != null) {
+                    result.addAll(blockSplits);
+                }
+            }
+            if (indexedSplits.get(file) == null) {
+                result.add(split);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates block aligned splits from the sidecar index of a file
+     *
+     * @param job  job
+     * @param file file
+     * @return splits or null if the file has no (valid) index
+     * @throws IOException in case of errors reading the index
+     */
+    private List<InputSplit> getBlockAlignedSplits(JobContext job, Path file) throws IOException {
+        FileSystem fs = file.getFileSystem(job.getConfiguration());
+        BitcoinBlockIndex index = BitcoinBlockIndex.read(fs, file);
+        if (index == null) {
+            return null;
+        }
+        FileStatus status = fs.getFileStatus(file);
+        if (status.getLen() < index.getFileLength()) {
+            LOG.warn("Ignoring index of " + file + ": file is shorter than the indexed file");
+            return null;
+        }
+        BlockLocation[] blkLocations = fs.getFileBlockLocations(status, 0, status.getLen());
+        long splitSize = computeSplitSize(status.getBlockSize(), Math.max(getFormatMinSplitSize(), getMinSplitSize(job)), getMaxSplitSize(job));
+        List<InputSplit> result = new ArrayList<>();
+        addBlockAlignedSplits(result, file, blkLocations, index.getSplitBoundaries(splitSize));
+        // the file has grown since it has been indexed, the new data starts after the last indexed block
+        long endOfBlocks = index.getEndOfBlocks();
+        if (status.getLen() > index.getFileLength() && status.getLen() > endOfBlocks) {
+            int blkIndex = getBlockIndex(blkLocations, endOfBlocks);
+            result.add(new BitcoinBlockFileSplit(file, endOfBlocks, status.getLen() - endOfBlocks, blkLocations[blkIndex].getHosts()));
+        }
+        LOG.debug("Created " + result.size() + " block aligned splits for " + file);
+        return result;
+    }
+
+    /**
+     * Creates the splits of the blocks that have not been processed according to a manifest
+     *
+     * @param job      job
+     * @param manifest path of the manifest
+     * @return splits
+     * @throws IOException in case of errors reading the files or the manifest
+     */
+    private List<InputSplit> getIncrementalSplits(JobContext job, Path manifest) throws IOException {
+        BitcoinIncrementalInput incrementalInput;
+        try {
+            incrementalInput = new BitcoinIncrementalInput(job.getConfiguration(), BitcoinIngestManifest.read(manifest.getFileSystem(job.getConfiguration()), manifest));
+        } catch (HadoopCryptoLedgerConfigurationException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        CompressionCodecFactory compressionCodecs = new CompressionCodecFactory(job.getConfiguration());
+        List<InputSplit> result = new ArrayList<>();
+        List<FileStatus> compressedFiles = new ArrayList<>();
+        for (FileStatus status : listStatus(job)) {
+            Path file = status.getPath();
+            if (compressionCodecs.getCodec(file) != null) {
+                if (incrementalInput.isNewCompressedFile(status)) {
+                    compressedFiles.add(status);
+                }
+                continue;
+            }
+            FileSystem fs = file.getFileSystem(job.getConfiguration());
+            BitcoinBlockIndex newBlocks = incrementalInput.getNewBlocks(fs, status);
+            BlockLocation[] blkLocations = fs.getFileBlockLocations(status, 0, status.getLen());
+            long splitSize = computeSplitSize(status.getBlockSize(), Math.max(getFormatMinSplitSize(), getMinSplitSize(job)), getMaxSplitSize(job));
+            addBlockAlignedSplits(result, file, blkLocations, newBlocks.getSplitBoundaries(splitSize));
+        }
+        for (FileStatus status : compressedFiles) {
+            // splits of a compressed file are created by FileInputFormat
+            BlockLocation[] blkLocations = status.getPath().getFileSystem(job.getConfiguration()).getFileBlockLocations(status, 0, status.getLen());
+            result.add(makeSplit(status.getPath(), 0, status.getLen(), blkLocations.length > 0 ? blkLocations[0].getHosts() : new String[0]));
+        }
+        String manifestOutput = job.getConfiguration().get(AbstractBitcoinFileInputFormat.CONF_MANIFEST_OUTPUT, "");
+        if (!manifestOutput.isEmpty()) {
+            Path output = new Path(manifestOutput);
+            incrementalInput.getNextManifest().write(output.getFileSystem(job.getConfiguration()), output);
+        }
+        LOG.info("Created " + result.size() + " splits for new blocks");
+        return result;
+    }
+
+    private void addBlockAlignedSplits(List<InputSplit> result, Path file, BlockLocation[] blkLocations, long[] boundaries) throws IOException {
+        for (int i = 0; i < boundaries.length - 1; i++) {
+            int blkIndex = getBlockIndex(blkLocations, boundaries[i]);
+            result.add(new BitcoinBlockFileSplit(file, boundaries[i], boundaries[i + 1] - boundaries[i], blkLocations[blkIndex].getHosts()));
+        }
+    }
 
 }
@@ -29,12 +29,19 @@ import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlock;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockHeader;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockPipeline;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockReader;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockSection;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinChainIndex;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinUtil;
 import org.zuinnote.hadoop.bitcoin.format.exception.BitcoinBlockReadException;
 import org.zuinnote.hadoop.bitcoin.format.exception.HadoopCryptoLedgerConfigurationException;
+import org.zuinnote.hadoop.bitcoin.format.util.XorInputStream;
 
 import java.io.IOException;
+import java.util.EnumSet;
 
 public abstract class AbstractBitcoinRecordReader<K, V> extends RecordReader<K, V> {
     public static final String CONF_BUFFERSIZE = "io.file.buffer.size";
@@ -42,11 +49,27 @@ public abstract class AbstractBitcoinRecordReader<K, V> extends RecordReader<K,
     public static final String CONF_FILTERMAGIC = "hadoopcryptoledger.bitcoinblockinputformat.filter.magic";
     public static final String CONF_USEDIRECTBUFFER = "hadoopcryptoledeger.bitcoinblockinputformat.usedirectbuffer";
     public static final String CONF_READAUXPOW = "hadoopcryptoledger.bitcoinblockinputformat.readauxpow";
+    public static final String CONF_CACHETRANSACTIONHASH = "hadoopcryptoledger.bitcoinblockinputformat.cachetransactionhash";
+    public static final String CONF_PROJECTION = "hadoopcryptoledger.bitcoinblockinputformat.projection";
+    public static final String CONF_REUSEBUFFER = "hadoopcryptoledger.bitcoinblockinputformat.reusebuffer";
+    public static final String CONF_XORKEY = "hadoopcryptoledger.bitcoinblockinputformat.xorkey";
+    public static final String CONF_CHAININDEX = "hadoopcryptoledger.bitcoinblockinputformat.chainindex";
+    public static final String CONF_DROPORPHANS = "hadoopcryptoledger.bitcoinblockinputformat.chainindex.droporphans";
+    public static final String CONF_DECODERTHREADS = "hadoopcryptoledger.bitcoinblockinputformat.decoder.threads";
+    public static final String CONF_DECODERQUEUEDEPTH = "hadoopcryptoledger.bitcoinblockinputformat.decoder.queuedepth";
+    public static final String CONF_DECODERHASH = "hadoopcryptoledger.bitcoinblockinputformat.decoder.hash";
     public static final int DEFAULT_BUFFERSIZE = 64 * 1024;
     public static final int DEFAULT_MAXSIZE_BITCOINBLOCK = 8 * 1024 * 1024;
     public static final String DEFAULT_MAGIC = "F9BEB4D9";
     public static final boolean DEFAULT_USEDIRECTBUFFER = false;
     public static final boolean DEFAULT_READAUXPOW = false;
+    public static final boolean DEFAULT_CACHETRANSACTIONHASH = true;
+    public static final String DEFAULT_PROJECTION = BitcoinBlockSection.ALL;
+    public static final boolean DEFAULT_REUSEBUFFER = false;
+    public static final boolean DEFAULT_DROPORPHANS = true;
+    public static final int DEFAULT_DECODERTHREADS = 0;
+    public static final int DEFAULT_DECODERQUEUEDEPTH = 8;
+    public static final boolean DEFAULT_DECODERHASH = false;
 
     private static final Log LOG = LogFactory.getLog(AbstractBitcoinRecordReader.class.getName());
 
@@ -54,6 +77,16 @@ public abstract class AbstractBitcoinRecordReader<K, V> extends RecordReader<K,
     private int maxSizeBitcoinBlock = 0;
     private boolean useDirectBuffer = false;
     private boolean readAuxPOW = false;
+    private boolean cacheTransactionHash = true;
+    private boolean reuseBuffer = false;
+    private byte[] xorKey;
+    private String chainIndexPath;
+    private boolean dropOrphans = true;
+    private BitcoinChainIndex chainIndex;
+    private EnumSet<BitcoinBlockSection> projection;
+    private int decoderThreads = 0;
+    private int decoderQueueDepth = 0;
+    private boolean decoderHash = false;
     private String specificMagic = "";
     private String[] specificMagicStringArray;
     private byte[][] specificMagicByteArray;
@@ -63,14 +96,16 @@ public abstract class AbstractBitcoinRecordReader<K, V> extends RecordReader<K,
     private long start;
     private long end;
     private Seekable filePosition;
+    private boolean blockAligned;
     private BitcoinBlockReader bbr;
+    private BitcoinBlockPipeline pipeline;
 
 
     /**
      * Creates an Abstract Record Reader for Bitcoin blocks
      *
      * @param conf Configuration:
-     *             io.file.buffer.size: Size of in-memory  specified in the given Configuration. If io.file.buffer.size is not specified the default buffersize (maximum size of a bitcoin block) will be used. The configuration hadoopcryptoledger.bitcoinblockinputformat.filter.magic allows specifying the magic identifier of the block. The magic is a comma-separated list of Hex-values (e.g. F9BEB4D9,FABFB5DA,0B110907,0B110907). The default magic is always F9BEB4D9. One needs to specify at least one magic, otherwise it will be difficult to find blocks in splits. Furthermore, one may specify hadoopcryptoledger.bitcoinblockinputformat.maxblocksize, which defines the maximum size a bitcoin block may have. By default it is 8M). If you want to experiment with performance using DirectByteBuffer instead of HeapByteBuffer you can use "hadoopcryptoledeger.bitcoinblockinputformat.usedirectbuffer" (default: false). Note that it might have some unwanted consequences such as circumwenting Yarn memory management. The option is experimental and might be removed in future versions.
+     *             io.file.buffer.size: Size of in-memory  specified in the given Configuration. If io.file.buffer.size is not specified the default buffersize (maximum size of a bitcoin block) will be used. The configuration hadoopcryptoledger.bitcoinblockinputformat.filter.magic allows specifying the magic identifier of the block. The magic is a comma-separated list of Hex-values (e.g. F9BEB4D9,FABFB5DA,0B110907,0B110907). The default magic is always F9BEB4D9. One needs to specify at least one magic, otherwise it will be difficult to find blocks in splits. Furthermore, one may specify hadoopcryptoledger.bitcoinblockinputformat.maxblocksize, which defines the maximum size a bitcoin block may have. By default it is 8M). If you want to experiment with performance using DirectByteBuffer instead of HeapByteBuffer you can use "hadoopcryptoledeger.bitcoinblockinputformat.usedirectbuffer" (default: false). Note that it might have some unwanted consequences such as circumwenting Yarn memory management. The option is experimental and might be removed in future versions. Transaction hashes are calculated directly from the raw block and cached ("hadoopcryptoledger.bitcoinblockinputformat.cachetransactionhash", default: true). Set it to false if transactions are kept longer than their block, because they reference the raw block. With "hadoopcryptoledger.bitcoinblockinputformat.projection" only the given sections of a block are parsed, eg "header,outputs" (default: all, cf. {@link org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockSection}). Skipped sections are empty. With "hadoopcryptoledger.bitcoinblockinputformat.reusebuffer" (default: false) all blocks are read into one buffer, which grows on demand, instead of a new array per block. Raw blocks (and block views) are then only valid until the next record is read. Block files of newer Bitcoin Core versions, which are obfuscated with the key in xor.dat, can be read directly by setting "hadoopcryptoledger.bitcoinblockinputformat.xorkey" to the key in Hex (eg 0102030405060708, default: not obfuscated). This is not supported in combination with splittable compression codecs. With "hadoopcryptoledger.bitcoinblockinputformat.chainindex" the path of a chain index (cf. {@link org.zuinnote.hadoop.bitcoin.format.common.BitcoinChainIndex}) can be specified (default: none). Parsed blocks and block headers are then annotated with their height in the best chain and stale (orphan) blocks (including their transactions) are dropped unless "hadoopcryptoledger.bitcoinblockinputformat.chainindex.droporphans" is false (default: true). Blocks can be decoded in parallel by setting "hadoopcryptoledger.bitcoinblockinputformat.decoder.threads" to the number of decoder threads (default: 0, ie blocks are read and decoded sequentially). One thread then reads the raw blocks and at most "hadoopcryptoledger.bitcoinblockinputformat.decoder.queuedepth" blocks (default: 8) are decoded ahead. With "hadoopcryptoledger.bitcoinblockinputformat.decoder.hash" (default: false) the decoder threads calculate also the block hash and the transaction hashes. Parallel decoding is only used by readers of parsed blocks (cf. {@link #readBlock()}).
      * @throws org.zuinnote.hadoop.bitcoin.format.exception.HadoopCryptoLedgerConfigurationException in case of an invalid HadoopCryptoLedger-specific configuration of the inputformat
      */
     public AbstractBitcoinRecordReader(Configuration conf) throws HadoopCryptoLedgerConfigurationException {
@@ -95,6 +130,32 @@ public abstract class AbstractBitcoinRecordReader<K, V> extends RecordReader<K,
         }
         this.useDirectBuffer = conf.getBoolean(AbstractBitcoinRecordReader.CONF_USEDIRECTBUFFER, AbstractBitcoinRecordReader.DEFAULT_USEDIRECTBUFFER);
         this.readAuxPOW = conf.getBoolean(AbstractBitcoinRecordReader.CONF_READAUXPOW, AbstractBitcoinRecordReader.DEFAULT_READAUXPOW);
+        this.cacheTransactionHash = conf.getBoolean(AbstractBitcoinRecordReader.CONF_CACHETRANSACTIONHASH, AbstractBitcoinRecordReader.DEFAULT_CACHETRANSACTIONHASH);
+        this.reuseBuffer = conf.getBoolean(AbstractBitcoinRecordReader.CONF_REUSEBUFFER, AbstractBitcoinRecordReader.DEFAULT_REUSEBUFFER);
+        String xorKeyString = conf.get(AbstractBitcoinRecordReader.CONF_XORKEY);
+        if ((xorKeyString != null) && (xorKeyString.length() > 0)) {
+            try {
+                this.xorKey = BitcoinUtil.convertHexStringToByteArray(xorKeyString);
+            } catch (IllegalArgumentException e) {
+                throw new HadoopCryptoLedgerConfigurationException("Error: Configuration. Invalid XOR key: " + e.getMessage());
+            }
+            if (this.xorKey.length != XorInputStream.KEY_SIZE) {
+                throw new HadoopCryptoLedgerConfigurationException("Error: Configuration. XOR key has not a length of " + XorInputStream.KEY_SIZE + " bytes");
+            }
+        }
+        this.chainIndexPath = conf.get(AbstractBitcoinRecordReader.CONF_CHAININDEX, "");
+        this.dropOrphans = conf.getBoolean(AbstractBitcoinRecordReader.CONF_DROPORPHANS, AbstractBitcoinRecordReader.DEFAULT_DROPORPHANS);
+        try {
+            this.projection = BitcoinBlockSection.parseProjection(conf.get(AbstractBitcoinRecordReader.CONF_PROJECTION, AbstractBitcoinRecordReader.DEFAULT_PROJECTION));
+        } catch (IllegalArgumentException e) {
+            throw new HadoopCryptoLedgerConfigurationException("Error: Configuration. Invalid projection: " + e.getMessage());
+        }
+        this.decoderThreads = conf.getInt(AbstractBitcoinRecordReader.CONF_DECODERTHREADS, AbstractBitcoinRecordReader.DEFAULT_DECODERTHREADS);
+        this.decoderQueueDepth = conf.getInt(AbstractBitcoinRecordReader.CONF_DECODERQUEUEDEPTH, AbstractBitcoinRecordReader.DEFAULT_DECODERQUEUEDEPTH);
+        this.decoderHash = conf.getBoolean(AbstractBitcoinRecordReader.CONF_DECODERHASH, AbstractBitcoinRecordReader.DEFAULT_DECODERHASH);
+        if ((this.decoderThreads > 0) && (this.decoderQueueDepth < 1)) {
+            throw new HadoopCryptoLedgerConfigurationException("Error: Configuration. Queue depth of the decoder must be at least 1");
+        }
     }
 
 
@@ -116,10 +177,17 @@ public abstract class AbstractBitcoinRecordReader<K, V> extends RecordReader<K,
         codec = new CompressionCodecFactory(context.getConfiguration()).getCodec(file);
         final FileSystem fs = file.getFileSystem(context.getConfiguration());
         FSDataInputStream fileIn = fs.open(file);
+        if (this.chainIndexPath.length() > 0) {
+            Path chainIndexFile = new Path(this.chainIndexPath);
+            this.chainIndex = BitcoinChainIndex.readCached(chainIndexFile.getFileSystem(context.getConfiguration()), chainIndexFile);
+        }
         // open stream
         if (isCompressedInput()) { // decompress
             decompressor = CodecPool.getDecompressor(codec);
             if (codec instanceof SplittableCompressionCodec) {
+                if (this.xorKey != null) {
+                    throw new IOException("Error: Configuration. XOR key is not supported for splittable compression codecs");
+                }
                 final SplitCompressionInputStream cIn = ((SplittableCompressionCodec) codec).createInputStream(fileIn, decompressor, start, end, SplittableCompressionCodec.READ_MODE.CONTINUOUS);
                 bbr = new BitcoinBlockReader(cIn, this.maxSizeBitcoinBlock, this.bufferSize, this.specificMagicByteArray, this.useDirectBuffer, this.readAuxPOW);
                 start = cIn.getAdjustedStart();
@@ -127,20 +195,104 @@ public abstract class AbstractBitcoinRecordReader<K, V> extends RecordReader<K,
                 filePosition = cIn; // take pos from compressed stream
             } else {
                 bbr = new BitcoinBlockReader(codec.createInputStream(fileIn, decompressor), this.maxSizeBitcoinBlock, this.bufferSize, this.specificMagicByteArray, this.useDirectBuffer, readAuxPOW);
+                // the decompressed stream starts at the beginning of the file
+                bbr.setXorKey(this.xorKey, 0);
                 filePosition = fileIn;
             }
         } else {
             fileIn.seek(start);
             bbr = new BitcoinBlockReader(fileIn, this.maxSizeBitcoinBlock, this.bufferSize, this.specificMagicByteArray, this.useDirectBuffer, readAuxPOW);
+            bbr.setXorKey(this.xorKey, start);
             filePosition = fileIn;
         }
-        // seek to block start (for the case a block overlaps a split)
+        // transaction hashes are calculated from the raw block
+        bbr.setRecordTransactionRanges(this.cacheTransactionHash);
+        bbr.setProjection(this.projection);
+        bbr.setReuseBuffer(this.reuseBuffer);
+        if ((split instanceof BitcoinBlockFileSplit) && !isCompressedInput()) {
+            // split starts exactly at a block (cf. BitcoinBlockIndex), a block starting at the end of the split belongs to the next split
+            blockAligned = true;
+            end = end - 1;
+        } else {
+            // seek to block start (for the case a block overlaps a split)
 //        try {
             bbr.seekBlockStart();
 //        } catch (BitcoinBlockReadException bbre) {
 //            LOG.error("Error reading Bitcoin blockchhain data");
 //            LOG.error(bbre);
 //        }
+        }
+        if (this.decoderThreads > 0) {
+            this.pipeline = new BitcoinBlockPipeline(bbr, new BitcoinBlockPipeline.Boundary() {
+                @Override
+                public long getPosition() throws IOException {
+                    return getReaderPosition();
+                }
+
+                @Override
+                public boolean hasMoreBlocks(long position) {
+                    return position <= end;
+                }
+            }, this.decoderThreads, this.decoderQueueDepth, this.decoderHash);
+            this.pipeline.start();
+        }
+    }
+
+    /**
+     * Reads the next parsed block of the split. If decoder threads are configured the block has been decoded in parallel
+     * and the BitcoinBlockReader must not be used directly. If a chain index is configured the height of the block is set
+     * and stale blocks are skipped.
+     *
+     * @return block or null if no further block is available in the split
+     * @throws java.io.IOException in case of errors reading from the filestream provided by Hadoop
+     */
+    protected BitcoinBlock readBlock() throws IOException {
+        BitcoinBlock block;
+        while ((block = readNextBlock()) != null) {
+            if (this.chainIndex == null) {
+                return block;
+            }
+            int height = this.chainIndex.getHeight(block.getHash().getBytes());
+            if ((height != BitcoinChainIndex.UNKNOWN_HEIGHT) || !this.dropOrphans) {
+                block.setHeight(height);
+                return block;
+            }
+            LOG.debug("Skipping block not contained in the best chain");
+        }
+        return null;
+    }
+
+    /**
+     * Reads the header of the next block of the split without reading its transactions. If a chain index is configured the
+     * height of the block is set and stale blocks are skipped.
+     *
+     * @return header or null if no further block is available in the split
+     * @throws java.io.IOException in case of errors reading from the filestream provided by Hadoop
+     */
+    protected BitcoinBlockHeader readBlockHeader() throws IOException {
+        while (getFilePosition() <= getEnd()) {
+            BitcoinBlockHeader header = this.bbr.readBlockHeader();
+            if ((header == null) || (this.chainIndex == null)) {
+                return header;
+            }
+            int height = this.chainIndex.getHeight(header.getHash());
+            if ((height != BitcoinChainIndex.UNKNOWN_HEIGHT) || !this.dropOrphans) {
+                header.setHeight(height);
+                return header;
+            }
+            LOG.debug("Skipping block not contained in the best chain");
+        }
+        return null;
+    }
+
+    private BitcoinBlock readNextBlock() throws IOException {
+        if (this.pipeline != null) {
+            return this.pipeline.next();
+        }
+        if (getFilePosition() > getEnd()) {
+            return null;
+        }
+        return this.bbr.readBlock();
     }
 
 
@@ -153,6 +305,15 @@ public abstract class AbstractBitcoinRecordReader<K, V> extends RecordReader<K,
         return this.bbr;
     }
 
+    /**
+     * Returns if AuxPOW information is read
+     *
+     * @return true if AuxPOW information is read, false if not
+     */
+    public boolean isReadAuxPOW() {
+        return this.readAuxPOW;
+    }
+
 
     /*
      * Returns how much of the file has been processed in terms of bytes
@@ -188,9 +349,31 @@ public abstract class AbstractBitcoinRecordReader<K, V> extends RecordReader<K,
      */
 
     public long getFilePosition() throws IOException {
+        if (this.pipeline != null) {
+            // blocks are read ahead, so the position of the block returned last is used
+            return this.pipeline.getPosition();
+        }
+        return getReaderPosition();
+    }
+
+    private long getReaderPosition() throws IOException {
+        if (this.blockAligned) {
+            // exact position of the block reader, the file position is ahead due to buffering
+            return this.start + this.bbr.getPosition();
+        }
         return this.filePosition.getPos();
     }
 
+    /**
+     * Returns the position in the file of the block read last. Only valid for uncompressed files.
+     *
+     * @return position of the last block (start of magic) or -1 if no block has been read yet
+     */
+    public long getLastBlockPosition() {
+        long lastBlockPosition = this.pipeline != null ? this.pipeline.getLastBlockPosition() : this.bbr.getLastBlockPosition();
+        return lastBlockPosition < 0 ? lastBlockPosition : this.start + lastBlockPosition;
+    }
+
 
     /*
      * Clean up InputStream and Decompressor after use
@@ -202,9 +385,16 @@ public abstract class AbstractBitcoinRecordReader<K, V> extends RecordReader<K,
     @Override
     public synchronized void close() throws IOException {
         try {
+            if (pipeline != null) {
+                // closing the stream unblocks the framing thread if it waits for data
+                pipeline.stop();
+            }
             if (bbr != null) {
                 bbr.close();
             }
+            if (pipeline != null) {
+                pipeline.close();
+            }
         } finally {
             if (decompressor != null) {
                 CodecPool.returnDecompressor(decompressor);
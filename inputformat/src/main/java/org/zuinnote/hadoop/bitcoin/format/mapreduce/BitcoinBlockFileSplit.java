@@ -0,0 +1,35 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.bitcoin.format.mapreduce;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+/**
+ * A file split that starts exactly at the beginning of a block and ends exactly at the beginning of the next split (or after the last block).
+ * Record readers do not need to seek for the start of a block. Such splits are created from a {@link org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockIndex}.
+ */
+public class BitcoinBlockFileSplit extends FileSplit {
+
+    public BitcoinBlockFileSplit() {
+        super();
+    }
+
+    public BitcoinBlockFileSplit(Path file, long start, long length, String[] hosts) {
+        super(file, start, length, hosts);
+    }
+
+}
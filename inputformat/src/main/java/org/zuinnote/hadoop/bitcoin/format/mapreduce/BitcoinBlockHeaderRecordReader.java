@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.mapreduce;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.BytesWritable;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockHeader;
+import org.zuinnote.hadoop.bitcoin.format.exception.HadoopCryptoLedgerConfigurationException;
+
+import java.io.IOException;
+
+/**
+ * Reads records as headers of blocks of the bitcoin blockchain together with their number of transactions. The transactions
+ * are skipped by the size of the block without reading them, so that reading is bound by the I/O of the headers.
+ */
+public class BitcoinBlockHeaderRecordReader extends AbstractBitcoinRecordReader<BytesWritable, BitcoinBlockHeader> {
+
+    private static final Log LOG = LogFactory.getLog(BitcoinBlockHeaderRecordReader.class.getName());
+    private BytesWritable currentKey = new BytesWritable();
+    private BitcoinBlockHeader currentValue = new BitcoinBlockHeader();
+
+    public BitcoinBlockHeaderRecordReader(Configuration conf) throws HadoopCryptoLedgerConfigurationException {
+        super(conf);
+    }
+
+    /**
+     * get current key after calling next()
+     *
+     * @return key is a 64 byte array (hashMerkleRoot and prevHashBlock)
+     */
+    @Override
+    public BytesWritable getCurrentKey() {
+        return this.currentKey;
+    }
+
+    /**
+     * get current value after calling next()
+     *
+     * @return value is the header of the current block
+     */
+    @Override
+    public BitcoinBlockHeader getCurrentValue() {
+        return this.currentValue;
+    }
+
+    /**
+     * Read a next block header.
+     *
+     * @return true if next block is available, false if not
+     */
+    @Override
+    public boolean nextKeyValue() throws IOException {
+        BitcoinBlockHeader header = readBlockHeader();
+        if (header == null) {
+            return false;
+        }
+        this.currentKey.setSize(64);
+        header.getKey(this.currentKey.getBytes(), 0);
+        this.currentValue.set(header);
+        return true;
+    }
+
+}
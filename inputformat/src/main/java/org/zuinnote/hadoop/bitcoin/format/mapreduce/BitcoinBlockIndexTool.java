@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.mapreduce;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.output.NullOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockIndex;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockIndexBuilder;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinUtil;
+import org.zuinnote.hadoop.bitcoin.format.exception.HadoopCryptoLedgerConfigurationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Creates the sidecar indexes ({@link BitcoinBlockIndex}) of block files. The indexes are used by the input formats to create splits aligned to blocks.
+ * <p>
+ * Usage: BitcoinBlockIndexTool [-mapreduce] path...
+ * </p>
+ * Paths can be files or directories. By default the files are indexed sequentially by the tool itself. With -mapreduce a map-only job is started that indexes each file in a separate task.
+ * The configuration options hadoopcryptoledger.bitcoinblockinputformat.filter.magic, hadoopcryptoledger.bitcoinblockinputformat.maxblocksize and io.file.buffer.size of the input formats apply. Compressed files are not indexed.
+ **/
+public class BitcoinBlockIndexTool extends Configured implements Tool {
+
+    private static final Log LOG = LogFactory.getLog(BitcoinBlockIndexTool.class.getName());
+    private static final String OPTION_MAPREDUCE = "-mapreduce";
+
+    public BitcoinBlockIndexTool() {
+        // nothing needed here
+    }
+
+    @Override
+    public int run(String[] args) throws Exception {
+        boolean useMapReduce = false;
+        int firstPath = 0;
+        if ((args.length > 0) && (OPTION_MAPREDUCE.equals(args[0]))) {
+            useMapReduce = true;
+            firstPath = 1;
+        }
+        if (args.length <= firstPath) {
+            System.err.println("Usage: " + BitcoinBlockIndexTool.class.getSimpleName() + " [" + OPTION_MAPREDUCE + "] path...");
+            return 2;
+        }
+        Path[] paths = new Path[args.length - firstPath];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = new Path(args[firstPath + i]);
+        }
+        if (useMapReduce) {
+            return runJob(paths) ? 0 : 1;
+        }
+        indexFiles(getConf(), paths);
+        return 0;
+    }
+
+    /**
+     * Indexes the given block files and all block files contained in the given directories sequentially
+     *
+     * @param conf  configuration
+     * @param paths files or directories
+     * @return number of indexed files
+     * @throws IOException                               in case of errors reading the blocks or writing the indexes
+     * @throws HadoopCryptoLedgerConfigurationException in case of an invalid magic configuration
+     */
+    public static int indexFiles(Configuration conf, Path... paths) throws IOException, HadoopCryptoLedgerConfigurationException {
+        int maxSizeBitcoinBlock = conf.getInt(AbstractBitcoinRecordReader.CONF_MAXBLOCKSIZE, AbstractBitcoinRecordReader.DEFAULT_MAXSIZE_BITCOINBLOCK);
+        int bufferSize = conf.getInt(AbstractBitcoinRecordReader.CONF_BUFFERSIZE, AbstractBitcoinRecordReader.DEFAULT_BUFFERSIZE);
+        byte[][] magics = getMagics(conf);
+        CompressionCodecFactory codecs = new CompressionCodecFactory(conf);
+        int indexed = 0;
+        for (Path path : paths) {
+            FileSystem fs = path.getFileSystem(conf);
+            for (FileStatus status : fs.listStatus(path)) {
+                Path file = status.getPath();
+                if (status.isDirectory() || file.getName().endsWith(BitcoinBlockIndex.FILE_EXTENSION) || (codecs.getCodec(file) != null)) {
+                    LOG.debug("Skipping " + file);
+                    continue;
+                }
+                BitcoinBlockIndexBuilder.buildSidecar(fs, file, maxSizeBitcoinBlock, bufferSize, magics);
+                indexed++;
+            }
+        }
+        return indexed;
+    }
+
+    private boolean runJob(Path[] paths) throws IOException, InterruptedException, ClassNotFoundException {
+        Job job = Job.getInstance(getConf(), "hadoopcryptoledger-bitcoin-blockindex");
+        job.setJarByClass(BitcoinBlockIndexTool.class);
+        // one task per file, the index must not be used to split the files being indexed
+        job.getConfiguration().setBoolean(AbstractBitcoinFileInputFormat.CONF_ISSPLITABLE, false);
+        job.getConfiguration().setBoolean(AbstractBitcoinFileInputFormat.CONF_USEINDEX, false);
+        job.setMapSpeculativeExecution(false);
+        job.setNumReduceTasks(0);
+        job.setInputFormatClass(BlockOffsetInputFormat.class);
+        job.setMapperClass(IndexMapper.class);
+        job.setOutputFormatClass(NullOutputFormat.class);
+        job.setOutputKeyClass(NullWritable.class);
+        job.setOutputValueClass(NullWritable.class);
+        FileInputFormat.setInputPaths(job, paths);
+        return job.waitForCompletion(true);
+    }
+
+    static byte[][] getMagics(Configuration conf) throws HadoopCryptoLedgerConfigurationException {
+        String specificMagic = conf.get(AbstractBitcoinRecordReader.CONF_FILTERMAGIC);
+        if ((specificMagic == null) || (specificMagic.length() == 0)) {
+            specificMagic = AbstractBitcoinRecordReader.DEFAULT_MAGIC;
+        }
+        String[] specificMagicStringArray = specificMagic.split(",");
+        byte[][] result = new byte[specificMagicStringArray.length][];
+        for (int i = 0; i < specificMagicStringArray.length; i++) {
+            result[i] = BitcoinUtil.convertHexStringToByteArray(specificMagicStringArray[i]);
+            if (result[i].length != 4) {
+                throw new HadoopCryptoLedgerConfigurationException("Error: Configuration. Magic number has not a length of 4 bytes. Index: " + i);
+            }
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(ToolRunner.run(new Configuration(), new BitcoinBlockIndexTool(), args));
+    }
+
+    /**
+     * Raw block input format that returns the offset of the block in the file (8 bytes, big endian) as key
+     */
+    public static class BlockOffsetInputFormat extends BitcoinRawBlockFileInputFormat {
+
+        @Override
+        public RecordReader<BytesWritable, BytesWritable> createRecordReader(InputSplit split, TaskAttemptContext ctx) throws IOException {
+            try {
+                return new BitcoinRawBlockRecordReader(ctx.getConfiguration()) {
+                    private final BytesWritable offsetKey = new BytesWritable(new byte[8]);
+
+                    @Override
+                    public BytesWritable getCurrentKey() {
+                        ByteBuffer.wrap(this.offsetKey.getBytes()).putLong(getLastBlockPosition());
+                        return this.offsetKey;
+                    }
+                };
+            } catch (HadoopCryptoLedgerConfigurationException e) {
+                LOG.error(e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Collects the blocks of one file and writes the index of the file when the task finishes
+     */
+    public static class IndexMapper extends Mapper<BytesWritable, BytesWritable, NullWritable, NullWritable> {
+
+        private Path file;
+        private BitcoinBlockIndex index;
+
+        @Override
+        protected void setup(Context context) throws IOException {
+            this.file = ((FileSplit) context.getInputSplit()).getPath();
+            this.index = new BitcoinBlockIndex(this.file.getFileSystem(context.getConfiguration()).getFileStatus(this.file).getLen());
+        }
+
+        @Override
+        protected void map(BytesWritable key, BytesWritable value, Context context) {
+            long offset = ByteBuffer.wrap(key.getBytes()).getLong();
+            this.index.add(offset, ByteBuffer.wrap(value.getBytes(), 0, value.getLength()).order(ByteOrder.LITTLE_ENDIAN));
+        }
+
+        @Override
+        protected void cleanup(Context context) throws IOException {
+            this.index.write(this.file.getFileSystem(context.getConfiguration()), this.file);
+            LOG.info("Indexed " + this.index.size() + " blocks of " + this.file);
+        }
+    }
+}
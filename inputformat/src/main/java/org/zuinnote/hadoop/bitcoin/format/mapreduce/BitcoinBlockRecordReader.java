@@ -67,10 +67,7 @@ public class BitcoinBlockRecordReader extends AbstractBitcoinRecordReader<BytesW
      */
     @Override
     public boolean nextKeyValue() throws IOException {
-        if (getFilePosition() > getEnd()) {
-            return false;
-        }
-        BitcoinBlock block = getBbr().readBlock();
+        BitcoinBlock block = readBlock();
         if (block == null) {
             return false;
         }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.bitcoin.format.mapreduce;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.BytesWritable;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockView;
+import org.zuinnote.hadoop.bitcoin.format.exception.HadoopCryptoLedgerConfigurationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads records as flyweight views of blocks of the bitcoin blockchain. The view only indexes the raw block, ie no
+ * Java objects are created for transactions, inputs and outputs. Note that key and value are reused and only valid until the next call of nextKeyValue.
+ */
+public class BitcoinBlockViewRecordReader extends AbstractBitcoinRecordReader<BytesWritable, BitcoinBlockView> {
+
+    private static final Log LOG = LogFactory.getLog(BitcoinBlockViewRecordReader.class.getName());
+    private BytesWritable currentKey = new BytesWritable();
+    private BitcoinBlockView currentValue;
+
+    public BitcoinBlockViewRecordReader(Configuration conf) throws HadoopCryptoLedgerConfigurationException {
+        super(conf);
+        this.currentValue = new BitcoinBlockView(isReadAuxPOW());
+    }
+
+    /**
+     * get current key after calling next()
+     *
+     * @return key is a 64 byte array (hashMerkleRoot and prevHashBlock)
+     */
+    @Override
+    public BytesWritable getCurrentKey() {
+        return this.currentKey;
+    }
+
+    /**
+     * get current value after calling next()
+     *
+     * @return value is a view of the current raw block
+     */
+    @Override
+    public BitcoinBlockView getCurrentValue() {
+        return this.currentValue;
+    }
+
+    /**
+     * Read a next block.
+     *
+     * @return true if next block is available, false if not
+     */
+    @Override
+    public boolean nextKeyValue() throws IOException {
+        if (getFilePosition() > getEnd()) {
+            return false;
+        }
+        ByteBuffer dataBlock = getBbr().readRawBlock();
+        if (dataBlock == null) {
+            return false;
+        }
+        this.currentValue.reset(dataBlock);
+        this.currentKey.setSize(64);
+        this.currentValue.getHashMerkleRoot(this.currentKey.getBytes(), 0);
+        this.currentValue.getHashPrevBlock(this.currentKey.getBytes(), 32);
+        return true;
+    }
+
+}
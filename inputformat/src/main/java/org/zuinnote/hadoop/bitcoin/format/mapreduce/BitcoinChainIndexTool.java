@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.mapreduce;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockIndex;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockReader;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinChainIndex;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinChainIndexBuilder;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinUtil;
+import org.zuinnote.hadoop.bitcoin.format.exception.HadoopCryptoLedgerConfigurationException;
+import org.zuinnote.hadoop.bitcoin.format.util.XorInputStream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Creates a {@link BitcoinChainIndex}, which contains the height of every block of the best chain, in one pass over the headers of the blocks.
+ * The index is used by the input formats of parsed blocks to annotate blocks with their height and to drop stale blocks (cf. hadoopcryptoledger.bitcoinblockinputformat.chainindex).
+ * <p>
+ * Usage: BitcoinChainIndexTool output path...
+ * </p>
+ * Paths can be files or directories. All blocks of the best chain must be contained in the given files. Heights are also stored in existing sidecar indexes ({@link BitcoinBlockIndex}) of the files.
+ * The configuration options hadoopcryptoledger.bitcoinblockinputformat.filter.magic, hadoopcryptoledger.bitcoinblockinputformat.maxblocksize, hadoopcryptoledger.bitcoinblockinputformat.xorkey and io.file.buffer.size of the input formats apply. Compressed files are skipped.
+ **/
+public class BitcoinChainIndexTool extends Configured implements Tool {
+
+    private static final Log LOG = LogFactory.getLog(BitcoinChainIndexTool.class.getName());
+
+    public BitcoinChainIndexTool() {
+        // nothing needed here
+    }
+
+    @Override
+    public int run(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: " + BitcoinChainIndexTool.class.getSimpleName() + " output path...");
+            return 2;
+        }
+        Path[] paths = new Path[args.length - 1];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = new Path(args[i + 1]);
+        }
+        BitcoinChainIndex index = buildChainIndex(getConf(), paths);
+        Path output = new Path(args[0]);
+        index.write(output.getFileSystem(getConf()), output);
+        return 0;
+    }
+
+    /**
+     * Reads the headers of the given block files and of all block files contained in the given directories and calculates the best chain
+     *
+     * @param conf  configuration
+     * @param paths files or directories
+     * @return index of the best chain
+     * @throws IOException                               in case of errors reading the blocks or writing sidecar indexes
+     * @throws HadoopCryptoLedgerConfigurationException in case of an invalid magic or XOR key configuration
+     */
+    public static BitcoinChainIndex buildChainIndex(Configuration conf, Path... paths) throws IOException, HadoopCryptoLedgerConfigurationException {
+        int maxSizeBitcoinBlock = conf.getInt(AbstractBitcoinRecordReader.CONF_MAXBLOCKSIZE, AbstractBitcoinRecordReader.DEFAULT_MAXSIZE_BITCOINBLOCK);
+        int bufferSize = conf.getInt(AbstractBitcoinRecordReader.CONF_BUFFERSIZE, AbstractBitcoinRecordReader.DEFAULT_BUFFERSIZE);
+        byte[][] magics = BitcoinBlockIndexTool.getMagics(conf);
+        byte[] xorKey = getXorKey(conf);
+        List<Path> files = listBlockFiles(conf, paths);
+        BitcoinChainIndexBuilder builder = new BitcoinChainIndexBuilder();
+        for (Path file : files) {
+            try (FSDataInputStream in = file.getFileSystem(conf).open(file)) {
+                BitcoinBlockReader bbr = new BitcoinBlockReader(in, maxSizeBitcoinBlock, bufferSize, magics, false);
+                bbr.setXorKey(xorKey, 0);
+                LOG.info("Read " + builder.addBlocks(bbr) + " block headers of " + file);
+            }
+        }
+        BitcoinChainIndex index = builder.build();
+        for (Path file : files) {
+            updateSidecar(file.getFileSystem(conf), file, index);
+        }
+        return index;
+    }
+
+    private static List<Path> listBlockFiles(Configuration conf, Path[] paths) throws IOException {
+        CompressionCodecFactory codecs = new CompressionCodecFactory(conf);
+        List<Path> result = new ArrayList<>();
+        for (Path path : paths) {
+            FileSystem fs = path.getFileSystem(conf);
+            for (FileStatus status : fs.listStatus(path)) {
+                Path file = status.getPath();
+                if (status.isDirectory() || file.getName().endsWith(BitcoinBlockIndex.FILE_EXTENSION) || (codecs.getCodec(file) != null)) {
+                    LOG.debug("Skipping " + file);
+                    continue;
+                }
+                result.add(file);
+            }
+        }
+        // blocks are mostly stored in the order of the files, which matters only for chains with the same work
+        result.sort(Comparator.comparing(Path::toString));
+        return result;
+    }
+
+    private static void updateSidecar(FileSystem fs, Path file, BitcoinChainIndex index) throws IOException {
+        BitcoinBlockIndex sidecar = BitcoinBlockIndex.read(fs, file);
+        if (sidecar == null) {
+            return;
+        }
+        for (int i = 0; i < sidecar.size(); i++) {
+            sidecar.setHeight(i, index.getHeight(sidecar.getHash(i)));
+        }
+        sidecar.write(fs, file);
+    }
+
+    static byte[] getXorKey(Configuration conf) throws HadoopCryptoLedgerConfigurationException {
+        String xorKey = conf.get(AbstractBitcoinRecordReader.CONF_XORKEY);
+        if ((xorKey == null) || (xorKey.length() == 0)) {
+            return null;
+        }
+        byte[] result;
+        try {
+            result = BitcoinUtil.convertHexStringToByteArray(xorKey);
+        } catch (IllegalArgumentException e) {
+            throw new HadoopCryptoLedgerConfigurationException("Error: Configuration. Invalid XOR key: " + e.getMessage());
+        }
+        if (result.length != XorInputStream.KEY_SIZE) {
+            throw new HadoopCryptoLedgerConfigurationException("Error: Configuration. XOR key has not a length of " + XorInputStream.KEY_SIZE + " bytes");
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(ToolRunner.run(new Configuration(), new BitcoinChainIndexTool(), args));
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.zuinnote.hadoop.bitcoin.format.mapreduce;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockIndex;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockReader;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockView;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinIngestManifest;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinUtil;
+import org.zuinnote.hadoop.bitcoin.format.exception.BitcoinBlockReadException;
+import org.zuinnote.hadoop.bitcoin.format.exception.HadoopCryptoLedgerConfigurationException;
+import org.zuinnote.hadoop.bitcoin.format.littleendian.LE;
+import org.zuinnote.hadoop.bitcoin.format.util.XorInputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Determines the blocks of block files that have not been processed according to a {@link BitcoinIngestManifest} and
+ * records them in the manifest of the next run. Only the headers of new blocks are read, so the effort is proportional to
+ * the new blocks and not to the size of the files. Used by the input formats if hadoopcryptoledger.bitcoinblockinputformat.manifest is configured.
+ * <p>
+ * The configuration options hadoopcryptoledger.bitcoinblockinputformat.filter.magic, hadoopcryptoledger.bitcoinblockinputformat.maxblocksize,
+ * hadoopcryptoledger.bitcoinblockinputformat.xorkey and io.file.buffer.size of the input formats apply.
+ * </p>
+ **/
+public class BitcoinIncrementalInput {
+
+    private static final Log LOG = LogFactory.getLog(BitcoinIncrementalInput.class.getName());
+
+    private final BitcoinIngestManifest previous;
+    private final BitcoinIngestManifest next;
+    private final int maxSizeBitcoinBlock;
+    private final int bufferSize;
+    private final byte[][] magics;
+    private final byte[] xorKey;
+
+    /**
+     * @param conf     configuration
+     * @param previous manifest of the previous run or null if no file has been processed yet
+     * @throws HadoopCryptoLedgerConfigurationException in case of an invalid magic or XOR key configuration
+     */
+    public BitcoinIncrementalInput(Configuration conf, BitcoinIngestManifest previous) throws HadoopCryptoLedgerConfigurationException {
+        this.previous = previous != null ? previous : new BitcoinIngestManifest();
+        // files not contained in this run keep their state
+        this.next = new BitcoinIngestManifest(this.previous);
+        this.maxSizeBitcoinBlock = conf.getInt(AbstractBitcoinRecordReader.CONF_MAXBLOCKSIZE, AbstractBitcoinRecordReader.DEFAULT_MAXSIZE_BITCOINBLOCK);
+        this.bufferSize = conf.getInt(AbstractBitcoinRecordReader.CONF_BUFFERSIZE, AbstractBitcoinRecordReader.DEFAULT_BUFFERSIZE);
+        this.magics = BitcoinBlockIndexTool.getMagics(conf);
+        this.xorKey = BitcoinChainIndexTool.getXorKey(conf);
+    }
+
+    /**
+     * Returns the complete blocks of a file that have not been processed yet and records them as processed in the manifest
+     * of the next run. A block that is still being written at the end of the file is not returned, it is processed in the next run.
+     *
+     * @param fs     file system
+     * @param status status of an uncompressed block file
+     * @return index of the new blocks, empty if the file contains no new block
+     * @throws IOException in case of errors reading the file
+     */
+    public BitcoinBlockIndex getNewBlocks(FileSystem fs, FileStatus status) throws IOException {
+        Path file = status.getPath();
+        BitcoinIngestManifest.Entry entry = this.previous.get(file);
+        BitcoinBlockIndex result = new BitcoinBlockIndex(status.getLen());
+        if ((entry != null) && (status.getLen() < entry.getOffset())) {
+            LOG.warn("Processing " + file + " again: file is shorter than at the last run");
+            entry = null;
+        }
+        try (FSDataInputStream in = fs.open(file)) {
+            if ((entry != null) && !isLastBlock(in, entry)) {
+                LOG.warn("Processing " + file + " again: last processed block has changed");
+                entry = null;
+            }
+            long start = entry != null ? entry.getOffset() : 0;
+            readNewBlocks(in, start, status.getLen(), result);
+        }
+        if (result.size() > 0) {
+            int last = result.size() - 1;
+            this.next.put(file, new BitcoinIngestManifest.Entry(result.getEndOfBlocks(), result.getOffset(last), result.getHash(last), status.getModificationTime()));
+        } else if (entry == null) {
+            // nothing processed, eg the file has been rewritten and contains no complete block yet
+            this.next.remove(file);
+        }
+        LOG.debug("Found " + result.size() + " new blocks in " + file);
+        return result;
+    }
+
+    /**
+     * Checks if a compressed file has to be processed and records it as processed in the manifest of the next run. Compressed
+     * files cannot be read from an offset, so they are processed completely if they are new or their length or modification
+     * time has changed since the previous run.
+     *
+     * @param status status of a compressed block file
+     * @return true if the file has to be processed, false if it is unchanged
+     */
+    public boolean isNewCompressedFile(FileStatus status) {
+        Path file = status.getPath();
+        BitcoinIngestManifest.Entry entry = this.previous.get(file);
+        if ((entry != null) && (entry.getOffset() == status.getLen()) && (entry.getModificationTime() == status.getModificationTime())) {
+            LOG.debug("Skipping unchanged compressed file " + file);
+            return false;
+        }
+        this.next.put(file, new BitcoinIngestManifest.Entry(status.getLen(), -1, new byte[32], status.getModificationTime()));
+        return true;
+    }
+
+    /**
+     * @return manifest containing all blocks returned by {@link #getNewBlocks(FileSystem, FileStatus)} and all blocks of the previous manifest
+     */
+    public BitcoinIngestManifest getNextManifest() {
+        return this.next;
+    }
+
+    private BitcoinBlockReader openReader(FSDataInputStream in, long start) throws IOException {
+        in.seek(start);
+        BitcoinBlockReader result = new BitcoinBlockReader(in, this.maxSizeBitcoinBlock, this.bufferSize, this.magics, false);
+        result.setXorKey(this.xorKey, start);
+        return result;
+    }
+
+    /**
+     * Checks if the last block of the manifest entry is still stored at its offset, ie the file has only been appended to
+     *
+     * @param in    block file
+     * @param entry manifest entry of the file, its offset is not beyond the end of the file
+     * @return true if size and hash of the block at the offset of the last block correspond to the manifest entry
+     */
+    private boolean isLastBlock(FSDataInputStream in, BitcoinIngestManifest.Entry entry) throws IOException {
+        if (entry.getOffset() - entry.getLastBlockOffset() < 8 + BitcoinBlockView.HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = readRaw(in, entry.getLastBlockOffset(), 8 + BitcoinBlockView.HEADER_SIZE);
+        return (entry.getLastBlockOffset() + getFrameSize(header) == entry.getOffset())
+                && Arrays.equals(getHash(header), entry.getLastBlockHash());
+    }
+
+    private void readNewBlocks(FSDataInputStream in, long start, long fileLength, BitcoinBlockIndex result) throws IOException {
+        BitcoinBlockReader bbr = openReader(in, start);
+        ByteBuffer header;
+        long frameOffset = start;
+        try {
+            while ((header = bbr.readRawBlockHeader()) != null) {
+                long offset = start + bbr.getLastBlockPosition();
+                int blockSize = getBlockSize(header);
+                if (offset + blockSize > fileLength) {
+                    break;
+                }
+                byte[] prevHash = new byte[32];
+                for (int i = 0; i < prevHash.length; i++) {
+                    prevHash[i] = header.get(12 + i);
+                }
+                result.add(offset, blockSize, getHash(header), prevHash, BitcoinBlockIndex.UNKNOWN_HEIGHT);
+                frameOffset = start + bbr.getPosition();
+            }
+        } catch (BitcoinBlockReadException e) {
+            // frames of other networks may have been skipped before the failing one
+            frameOffset = Math.max(frameOffset, start + bbr.getLastBlockPosition());
+            if (!isIncompleteFrame(in, frameOffset, fileLength)) {
+                throw e;
+            }
+            // the block at the end of the file is still being written
+            LOG.debug("Incomplete block at offset " + frameOffset + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param in          block file
+     * @param frameOffset offset of the magic of a block
+     * @param fileLength  length of the file
+     * @return true if magic, size or block of the frame are not completely contained in the file
+     */
+    private boolean isIncompleteFrame(FSDataInputStream in, long frameOffset, long fileLength) throws IOException {
+        if (frameOffset + 8 > fileLength) {
+            return true;
+        }
+        return frameOffset + getFrameSize(readRaw(in, frameOffset, 8)) > fileLength;
+    }
+
+    /**
+     * Reads a range of the file without changing the position of the stream and removes the XOR obfuscation
+     */
+    private ByteBuffer readRaw(FSDataInputStream in, long offset, int length) throws IOException {
+        byte[] raw = new byte[length];
+        in.readFully(offset, raw);
+        if (this.xorKey != null) {
+            for (int i = 0; i < raw.length; i++) {
+                raw[i] ^= this.xorKey[(int) ((offset + i) % XorInputStream.KEY_SIZE)];
+            }
+        }
+        return ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long getFrameSize(ByteBuffer rawHeader) {
+        return LE.getUInt32(rawHeader, 4) + 8;
+    }
+
+    private static int getBlockSize(ByteBuffer rawHeader) {
+        return (int) LE.getUInt32(rawHeader, 4) + 8;
+    }
+
+    private static byte[] getHash(ByteBuffer rawHeader) {
+        ByteBuffer header = rawHeader.duplicate();
+        header.position(8);
+        header.limit(8 + BitcoinBlockView.HEADER_SIZE);
+        return BitcoinUtil.hashTwice(header);
+    }
+}
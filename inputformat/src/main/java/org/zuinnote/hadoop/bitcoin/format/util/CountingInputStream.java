@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.util;
+
+import org.apache.hadoop.fs.ByteBufferReadable;
+import org.apache.hadoop.fs.FSDataInputStream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * InputStream that keeps track of the number of bytes consumed from the underlying stream. Marking and resetting the
+ * stream is taken into account, ie the position is reset as well.
+ * <p>
+ * The stream can also be read as {@link ReadableByteChannel}. If the underlying stream supports reading into ByteBuffers
+ * (eg a FSDataInputStream on HDFS), bytes are transferred without an intermediate array.
+ * </p>
+ */
+public class CountingInputStream extends FilterInputStream implements ReadableByteChannel {
+
+    private static final int TRANSFER_SIZE = 8 * 1024;
+
+    private final boolean byteBufferReadable;
+    private long position;
+    private long markPosition;
+    private byte[] transferBuffer;
+    private boolean open = true;
+
+    public CountingInputStream(InputStream in) {
+        super(in);
+        this.byteBufferReadable = isByteBufferReadable(in);
+    }
+
+    private static boolean isByteBufferReadable(InputStream in) {
+        if (in instanceof FSDataInputStream) {
+            // FSDataInputStream implements ByteBufferReadable, but fails if the wrapped stream does not
+            return ((FSDataInputStream) in).getWrappedStream() instanceof ByteBufferReadable;
+        }
+        return in instanceof ByteBufferReadable;
+    }
+
+    /**
+     * Returns the number of bytes consumed since the stream has been created
+     *
+     * @return position relative to the start of the stream
+     */
+    public long getPosition() {
+        return this.position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int result = this.in.read();
+        if (result != -1) {
+            this.position++;
+        }
+        return result;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int result = this.in.read(b, off, len);
+        if (result > 0) {
+            this.position += result;
+        }
+        return result;
+    }
+
+    /**
+     * Reads bytes into the remaining space of a buffer
+     *
+     * @param dst buffer
+     * @return number of bytes read or -1 at the end of the stream
+     * @throws IOException in case of errors reading from the underlying stream
+     */
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int result;
+        if (dst.hasArray()) {
+            result = this.in.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            if (result > 0) {
+                dst.position(dst.position() + result);
+            }
+        } else if (this.byteBufferReadable) {
+            result = ((ByteBufferReadable) this.in).read(dst);
+        } else {
+            if (this.transferBuffer == null) {
+                this.transferBuffer = new byte[TRANSFER_SIZE];
+            }
+            result = this.in.read(this.transferBuffer, 0, Math.min(TRANSFER_SIZE, dst.remaining()));
+            if (result > 0) {
+                dst.put(this.transferBuffer, 0, result);
+            }
+        }
+        if (result > 0) {
+            this.position += result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.open = false;
+        super.close();
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long result = this.in.skip(n);
+        this.position += result;
+        return result;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        this.in.mark(readlimit);
+        this.markPosition = this.position;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        this.in.reset();
+        this.position = this.markPosition;
+    }
+}
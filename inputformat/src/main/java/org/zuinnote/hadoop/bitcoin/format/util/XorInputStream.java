@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * InputStream that removes the XOR obfuscation of the block files of newer Bitcoin Core versions (cf. xor.dat in the blocks
+ * directory). The byte at file offset p is XORed with byte p % 8 of the key. The offset of the first byte of the underlying
+ * stream has to be given, so that splits and seeks still work. Marking and resetting the stream is taken into account.
+ * <p>
+ * Bulk reads are processed a word (8 bytes) at a time.
+ * </p>
+ */
+public class XorInputStream extends FilterInputStream {
+
+    public static final int KEY_SIZE = 8;
+
+    private final byte[] key;
+    // key rotated by 0 to 7 bytes as words (big endian), ie keyWords[r] applies to a word starting at an offset with offset % 8 == r
+    private final long[] keyWords = new long[KEY_SIZE];
+    private long offset;
+    private long markOffset;
+
+    /**
+     * @param in     obfuscated stream
+     * @param key    key, exactly 8 bytes
+     * @param offset offset in the file of the first byte of the stream
+     */
+    public XorInputStream(InputStream in, byte[] key, long offset) {
+        super(in);
+        if ((key == null) || (key.length != KEY_SIZE)) {
+            throw new IllegalArgumentException("XOR key must have a length of " + KEY_SIZE + " bytes");
+        }
+        this.key = key.clone();
+        this.offset = offset;
+        for (int r = 0; r < KEY_SIZE; r++) {
+            long word = 0;
+            for (int i = 0; i < KEY_SIZE; i++) {
+                word = (word << 8) | (key[(r + i) % KEY_SIZE] & 0xFFL);
+            }
+            this.keyWords[r] = word;
+        }
+    }
+
+    /**
+     * @param key key
+     * @return true if all bytes of the key are zero, ie the data is not obfuscated
+     */
+    public static boolean isIdentity(byte[] key) {
+        for (byte b : key) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies the key to a range of an array in place
+     *
+     * @param data       data
+     * @param off        start of the range
+     * @param len        length of the range
+     * @param fileOffset offset in the file of the first byte of the range
+     */
+    public void apply(byte[] data, int off, int len, long fileOffset) {
+        int rotation = (int) (fileOffset % KEY_SIZE);
+        int end = off + len;
+        int pos = off;
+        if (len >= KEY_SIZE) {
+            ByteBuffer words = ByteBuffer.wrap(data);
+            long keyWord = this.keyWords[rotation];
+            for (; pos + KEY_SIZE <= end; pos += KEY_SIZE) {
+                words.putLong(pos, words.getLong(pos) ^ keyWord);
+            }
+        }
+        for (; pos < end; pos++) {
+            data[pos] ^= this.key[(rotation + pos - off) % KEY_SIZE];
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int result = this.in.read();
+        if (result != -1) {
+            result = (result ^ this.key[(int) (this.offset % KEY_SIZE)]) & 0xFF;
+            this.offset++;
+        }
+        return result;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int result = this.in.read(b, off, len);
+        if (result > 0) {
+            apply(b, off, result, this.offset);
+            this.offset += result;
+        }
+        return result;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long result = this.in.skip(n);
+        this.offset += result;
+        return result;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        this.in.mark(readlimit);
+        this.markOffset = this.offset;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        this.in.reset();
+        this.offset = this.markOffset;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.ethereum.format.common;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Entry of the access list of a typed transaction (EIP-2930): an address and the storage keys of the address that the
+ * transaction accesses
+ */
+public class EthereumAccessListItem implements Serializable {
+
+    private static final long serialVersionUID = -4727186478497451925L;
+    private byte[] address;
+    private List<byte[]> storageKeys;
+
+    public EthereumAccessListItem() {
+        // please use setter to set the data
+    }
+
+    public EthereumAccessListItem(byte[] address, List<byte[]> storageKeys) {
+        this.address = address;
+        this.storageKeys = storageKeys;
+    }
+
+    public byte[] getAddress() {
+        return address;
+    }
+
+    public void setAddress(byte[] address) {
+        this.address = address;
+    }
+
+    public List<byte[]> getStorageKeys() {
+        return storageKeys;
+    }
+
+    public void setStorageKeys(List<byte[]> storageKeys) {
+        this.storageKeys = storageKeys;
+    }
+
+}
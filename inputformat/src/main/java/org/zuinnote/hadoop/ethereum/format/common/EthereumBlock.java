@@ -28,6 +28,7 @@ public class EthereumBlock implements Writable, Serializable {
     private EthereumBlockHeader ethereumBlockHeader;
     private List<EthereumTransaction> ethereumTransactions;
     private List<EthereumBlockHeader> uncleHeaders;
+    private List<EthereumWithdrawal> withdrawals;
 
 
     public EthereumBlock() {
@@ -40,6 +41,11 @@ public class EthereumBlock implements Writable, Serializable {
         this.uncleHeaders = uncleHeaders;
     }
 
+    public EthereumBlock(EthereumBlockHeader ethereumBlockHeader, List<EthereumTransaction> ethereumTransactions, List<EthereumBlockHeader> uncleHeaders, List<EthereumWithdrawal> withdrawals) {
+        this(ethereumBlockHeader, ethereumTransactions, uncleHeaders);
+        this.withdrawals = withdrawals;
+    }
+
     public EthereumBlockHeader getEthereumBlockHeader() {
         return ethereumBlockHeader;
     }
@@ -54,10 +60,18 @@ public class EthereumBlock implements Writable, Serializable {
         return ethereumTransactions;
     }
 
+    /**
+     * @return withdrawals of blocks since Shanghai (EIP-4895), null for older blocks
+     */
+    public List<EthereumWithdrawal> getWithdrawals() {
+        return withdrawals;
+    }
+
     public void set(EthereumBlock newBlock) {
         this.ethereumBlockHeader = newBlock.getEthereumBlockHeader();
         this.uncleHeaders = newBlock.getUncleHeaders();
         this.ethereumTransactions = newBlock.getEthereumTransactions();
+        this.withdrawals = newBlock.getWithdrawals();
     }
 
     @Override
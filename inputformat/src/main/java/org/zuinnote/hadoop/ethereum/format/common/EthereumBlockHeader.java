@@ -45,6 +45,13 @@ public class EthereumBlockHeader implements Serializable {
     private byte[] mixHash;
     private byte[] extraData;
     private byte[] nonce;
+    private BigInteger baseFeePerGas;
+    private byte[] baseFeePerGasRaw;
+    private byte[] withdrawalsRoot;
+    private byte[] blobGasUsedRaw;
+    private byte[] excessBlobGasRaw;
+    private byte[] parentBeaconBlockRoot;
+    private byte[] requestsHash;
 
 
     public EthereumBlockHeader() {
@@ -230,6 +237,13 @@ public class EthereumBlockHeader implements Serializable {
         this.mixHash = newEthereumBlockHeader.getMixHash();
         this.extraData = newEthereumBlockHeader.getExtraData();
         this.nonce = newEthereumBlockHeader.getNonce();
+        this.baseFeePerGasRaw = newEthereumBlockHeader.getBaseFeePerGasRaw();
+        this.baseFeePerGas = newEthereumBlockHeader.getBaseFeePerGas();
+        this.withdrawalsRoot = newEthereumBlockHeader.getWithdrawalsRoot();
+        this.blobGasUsedRaw = newEthereumBlockHeader.getBlobGasUsedRaw();
+        this.excessBlobGasRaw = newEthereumBlockHeader.getExcessBlobGasRaw();
+        this.parentBeaconBlockRoot = newEthereumBlockHeader.getParentBeaconBlockRoot();
+        this.requestsHash = newEthereumBlockHeader.getRequestsHash();
     }
 
 
@@ -263,4 +277,95 @@ public class EthereumBlockHeader implements Serializable {
     }
 
 
+    /**
+     * @return base fee per gas of blocks since London (EIP-1559), null for older blocks
+     */
+    public BigInteger getBaseFeePerGas() {
+        if ((baseFeePerGas == null) && (baseFeePerGasRaw != null)) {
+            this.baseFeePerGas = EthereumUtil.convertVarNumberToBigInteger(this.baseFeePerGasRaw);
+        }
+        return baseFeePerGas;
+    }
+
+
+    public void setBaseFeePerGas(BigInteger baseFeePerGas) {
+        this.baseFeePerGas = baseFeePerGas;
+    }
+
+
+    public byte[] getBaseFeePerGasRaw() {
+        return baseFeePerGasRaw;
+    }
+
+
+    public void setBaseFeePerGasRaw(byte[] baseFeePerGasRaw) {
+        this.baseFeePerGasRaw = baseFeePerGasRaw;
+    }
+
+
+    /**
+     * @return root of the withdrawals trie of blocks since Shanghai (EIP-4895), null for older blocks
+     */
+    public byte[] getWithdrawalsRoot() {
+        return withdrawalsRoot;
+    }
+
+
+    public void setWithdrawalsRoot(byte[] withdrawalsRoot) {
+        this.withdrawalsRoot = withdrawalsRoot;
+    }
+
+
+    /**
+     * @return blob gas used of blocks since Cancun (EIP-4844), null for older blocks
+     */
+    public byte[] getBlobGasUsedRaw() {
+        return blobGasUsedRaw;
+    }
+
+
+    public void setBlobGasUsedRaw(byte[] blobGasUsedRaw) {
+        this.blobGasUsedRaw = blobGasUsedRaw;
+    }
+
+
+    /**
+     * @return excess blob gas of blocks since Cancun (EIP-4844), null for older blocks
+     */
+    public byte[] getExcessBlobGasRaw() {
+        return excessBlobGasRaw;
+    }
+
+
+    public void setExcessBlobGasRaw(byte[] excessBlobGasRaw) {
+        this.excessBlobGasRaw = excessBlobGasRaw;
+    }
+
+
+    /**
+     * @return root of the parent beacon block of blocks since Cancun (EIP-4788), null for older blocks
+     */
+    public byte[] getParentBeaconBlockRoot() {
+        return parentBeaconBlockRoot;
+    }
+
+
+    public void setParentBeaconBlockRoot(byte[] parentBeaconBlockRoot) {
+        this.parentBeaconBlockRoot = parentBeaconBlockRoot;
+    }
+
+
+    /**
+     * @return hash of the execution layer requests of blocks since Prague (EIP-7685), null for older blocks
+     */
+    public byte[] getRequestsHash() {
+        return requestsHash;
+    }
+
+
+    public void setRequestsHash(byte[] requestsHash) {
+        this.requestsHash = requestsHash;
+    }
+
+
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.ethereum.format.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.zuinnote.hadoop.ethereum.format.common.rlp.RLPElement;
+import org.zuinnote.hadoop.ethereum.format.common.rlp.RLPList;
+import org.zuinnote.hadoop.ethereum.format.common.rlp.RLPObject;
+import org.zuinnote.hadoop.ethereum.format.exception.EthereumBlockReadException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Builds a {@link EthereumBlockIndex} by walking the RLP frames of a file of Ethereum blocks sequentially from its beginning.
+ * Only the headers of the blocks are read, transactions and uncles are skipped.
+ **/
+public class EthereumBlockIndexBuilder {
+
+    private static final Log LOG = LogFactory.getLog(EthereumBlockIndexBuilder.class.getName());
+    private static final int HEADER_NUMBER = 8;
+
+    private EthereumBlockIndexBuilder() {
+    }
+
+    /**
+     * Indexes all blocks in a stream. The stream must start with a block.
+     *
+     * @param in                   stream containing blocks
+     * @param fileLength           length of the file
+     * @param maxSizeEthereumBlock maximum size of a block
+     * @param bufferSize           size of the read buffer
+     * @return index
+     * @throws IOException                in case of errors reading the blocks
+     * @throws EthereumBlockReadException in case of format errors of the blocks
+     */
+    public static EthereumBlockIndex build(InputStream in, long fileLength, int maxSizeEthereumBlock, int bufferSize) throws IOException, EthereumBlockReadException {
+        EthereumBlockReader ebr = new EthereumBlockReader(in, maxSizeEthereumBlock, bufferSize, false);
+        EthereumBlockIndex result = new EthereumBlockIndex(fileLength);
+        ByteBuffer rawHeader;
+        while ((rawHeader = ebr.readRawBlockHeader()) != null) {
+            result.add(ebr.getLastBlockPosition(), (int) (ebr.getPosition() - ebr.getLastBlockPosition()), getNumber(rawHeader));
+        }
+        return result;
+    }
+
+    /**
+     * Indexes a block file and stores the index as sidecar file (cf. {@link EthereumBlockIndex#getIndexPath(Path)})
+     *
+     * @param fs                   file system
+     * @param blockFile            block file
+     * @param maxSizeEthereumBlock maximum size of a block
+     * @param bufferSize           size of the read buffer
+     * @return index
+     * @throws IOException                in case of errors reading the blocks or writing the index
+     * @throws EthereumBlockReadException in case of format errors of the blocks
+     */
+    public static EthereumBlockIndex buildSidecar(FileSystem fs, Path blockFile, int maxSizeEthereumBlock, int bufferSize) throws IOException, EthereumBlockReadException {
+        long fileLength = fs.getFileStatus(blockFile).getLen();
+        EthereumBlockIndex index;
+        try (FSDataInputStream in = fs.open(blockFile)) {
+            index = build(in, fileLength, maxSizeEthereumBlock, bufferSize);
+        }
+        index.write(fs, blockFile);
+        LOG.info("Indexed " + index.size() + " blocks of " + blockFile);
+        return index;
+    }
+
+    private static long getNumber(ByteBuffer rawHeader) throws EthereumBlockReadException {
+        RLPObject header = EthereumUtil.rlpDecodeNextItem(rawHeader);
+        if (!(header instanceof RLPList) || (((RLPList) header).getRlpList().size() <= HEADER_NUMBER)) {
+            throw new EthereumBlockReadException("Invalid Ethereum Block: Header is not encoded as RLPList");
+        }
+        return EthereumUtil.convertVarNumberToBigInteger(((RLPElement) ((RLPList) header).getRlpList().get(HEADER_NUMBER)).getRawData()).longValue();
+    }
+}
@@ -17,9 +17,6 @@ package org.zuinnote.hadoop.ethereum.format.common;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.zuinnote.hadoop.ethereum.format.common.rlp.RLPElement;
-import org.zuinnote.hadoop.ethereum.format.common.rlp.RLPList;
-import org.zuinnote.hadoop.ethereum.format.common.rlp.RLPObject;
 import org.zuinnote.hadoop.ethereum.format.exception.EthereumBlockReadException;
 
 import java.io.BufferedInputStream;
@@ -28,8 +25,6 @@ import java.io.InputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * This class parses Ethereum RLP-encoded blocks
@@ -38,11 +33,22 @@ import java.util.List;
 public class EthereumBlockReader implements Serializable {
 
     private static final Log LOG = LogFactory.getLog(EthereumBlockReader.class.getName());
+    private static final int SCAN_CHUNK_SIZE = 4096;
+    // list prefix of a block (up to 4 bytes) and of its header (3 bytes) and the prefix of the parentHash
+    private static final int MIN_CANDIDATE_SIZE = 8;
+    private static final int MAX_HEADER_FRAME_SIZE = 3 + 0xFFFF;
+    private static final int BLOCK_MIN_ITEMS = 3;
+    private static final int BLOCK_MAX_ITEMS = 4;
+    private static final int HEADER_MIN_FIELDS = 15;
+    private static final int HEADER_PARENTHASH_SIZE = 32;
+    private static final int HEADER_LOGSBLOOM_SIZE = 256;
     private InputStream in;
     private int bufferSize;
     private int maxSizeEthereumBlock;
     private boolean useDirectBuffer;
     private ByteBuffer preAllocatedDirectByteBuffer;
+    private long position;
+    private long lastBlockPosition = -1;
 
 
     /**
@@ -86,105 +92,393 @@ public class EthereumBlockReader implements Serializable {
      */
 
     public EthereumBlock readBlock() throws IOException, EthereumBlockReadException {
+        EthereumBlockView blockView = this.readBlockView(new EthereumBlockView());
+        if (blockView == null) {
+            return null;
+        }
+        try {
+            return blockView.toEthereumBlock();
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            // eg unsupported type of a typed transaction
+            throw new EthereumBlockReadException("Invalid Ethereum Block: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the next block into a reusable flyweight view. Only the offsets of the header fields, transactions and uncles
+     * are recorded, no Java objects are created for them. This is recommended for scanning many blocks when only some
+     * fields are needed. Note that the view is only valid until the next block is read if a direct buffer is used.
+     *
+     * @param reuse view to attach to the block
+     * @return reuse attached to the next block or null if no further block is available
+     * @throws IOException in case of errors reading from the InputStream
+     * @throws EthereumBlockReadException in case of format errors of the Ethereum block
+     */
+    public EthereumBlockView readBlockView(EthereumBlockView reuse) throws IOException, EthereumBlockReadException {
         ByteBuffer rawBlock = this.readRawBlock();
         if (rawBlock == null) {
             return null;
         }
-        RLPObject blockObject = EthereumUtil.rlpDecodeNextItem(rawBlock);
-        if ((blockObject == null) || (!(blockObject instanceof RLPList))) {
-            throw new EthereumBlockReadException("Invalid Ethereum Block: Not encoded RLPList");
-        }
-        RLPList block = (RLPList) blockObject;
-        // block header
-        RLPList rlpHeader = (RLPList) block.getRlpList().get(0);
-        // transactions
-        RLPList rlpTransactions = (RLPList) block.getRlpList().get(1);
-        // uncles
-        RLPList rlpUncles = (RLPList) block.getRlpList().get(2);
-        //// create header object
-        EthereumBlockHeader ethereumBlockHeader = parseRLPBlockHeader(rlpHeader);
-        List<EthereumTransaction> ethereumTransactions = parseRLPTransactions(rlpTransactions);
-        List<EthereumBlockHeader> uncleHeaders = parseRLPUncleHeaders(rlpUncles);
-        return new EthereumBlock(ethereumBlockHeader, ethereumTransactions, uncleHeaders);
-    }
-
-    /***
-     * Parses an RLP encoded Ethereum block header into a Java object
-     *
-     * @param rlpHeader RLP encoded ethereum block header
-     * @return object of type Ethereum Block Header
-     */
-
-    private EthereumBlockHeader parseRLPBlockHeader(RLPList rlpHeader) {
-        EthereumBlockHeader result = new EthereumBlockHeader();
-        result.setParentHash(((RLPElement) rlpHeader.getRlpList().get(0)).getRawData());
-        result.setUncleHash(((RLPElement) rlpHeader.getRlpList().get(1)).getRawData());
-        result.setCoinBase(((RLPElement) rlpHeader.getRlpList().get(2)).getRawData());
-        result.setStateRoot(((RLPElement) rlpHeader.getRlpList().get(3)).getRawData());
-        result.setTxTrieRoot(((RLPElement) rlpHeader.getRlpList().get(4)).getRawData());
-        result.setReceiptTrieRoot(((RLPElement) rlpHeader.getRlpList().get(5)).getRawData());
-        result.setLogsBloom(((RLPElement) rlpHeader.getRlpList().get(6)).getRawData());
-        result.setDifficulty(((RLPElement) rlpHeader.getRlpList().get(7)).getRawData());
-        result.setNumberRaw(((RLPElement) rlpHeader.getRlpList().get(8)).getRawData());
-        result.setGasLimitRaw(((RLPElement) rlpHeader.getRlpList().get(9)).getRawData());
-        result.setGasUsedRaw(((RLPElement) rlpHeader.getRlpList().get(10)).getRawData());
-        result.setTimestamp(EthereumUtil.convertVarNumberToLong(((RLPElement) rlpHeader.getRlpList().get(11))));
-        result.setExtraData(((RLPElement) rlpHeader.getRlpList().get(12)).getRawData());
-        result.setMixHash(((RLPElement) rlpHeader.getRlpList().get(13)).getRawData());
-        result.setNonce(((RLPElement) rlpHeader.getRlpList().get(14)).getRawData());
+        try {
+            return reuse.reset(rawBlock);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new EthereumBlockReadException("Invalid Ethereum Block: " + e.getMessage());
+        }
+    }
+
+
+    /*
+     * Reads a raw Ethereum block into a ByteBuffer. This method is recommended if you are only interested in a small part of the block and do not need the deserialization of the full block, ie in case you generally skip a lot of blocks
+     *
+     * @return
+     */
+    public ByteBuffer readRawBlock() throws IOException, EthereumBlockReadException {
+        // basically an Ethereum Block is simply a RLP encoded list
+        ByteBuffer result = null;
+        int blockSizeInt = readBlockSize();
+        if (blockSizeInt < 0) {
+            // no further block to read
+            return result;
+        }
+        // read block
+        byte[] fullBlock = new byte[blockSizeInt];
+        int totalByteRead = 0;
+        int readByte;
+        while ((readByte = this.in.read(fullBlock, totalByteRead, blockSizeInt - totalByteRead)) > -1) {
+            totalByteRead += readByte;
+            if (totalByteRead >= blockSizeInt) {
+                break;
+            }
+        }
+        if (totalByteRead != blockSizeInt) {
+            throw new EthereumBlockReadException("Error: Could not read full block");
+        }
+        this.lastBlockPosition = this.position;
+        this.position += blockSizeInt;
+        if (!(this.useDirectBuffer)) {
+            result = ByteBuffer.wrap(fullBlock);
+        } else {
+            preAllocatedDirectByteBuffer.clear(); // clear out old bytebuffer
+            preAllocatedDirectByteBuffer.limit(fullBlock.length); // limit the bytebuffer
+            result = preAllocatedDirectByteBuffer;
+            result.put(fullBlock);
+            result.flip(); // put in read mode
+        }
+        result.order(ByteOrder.LITTLE_ENDIAN);
         return result;
     }
 
-    /***
-     *  Parses an RLP encoded list of transactions into a list of Java objects of type EthereumTransaction
+    /**
+     * Reads a raw Ethereum block header (RLP encoded list) without the transactions and uncles of the block. These are skipped without copying them.
+     * This allows to process the headers of many blocks quickly, eg to build a {@link EthereumBlockIndex}.
      *
-     * @param rlpTransactions RLP encoded list of transactions
-     * @return List with Java objects of type EthereumTransaction
+     * @return ByteBuffer containing the RLP encoded header or null if no further block is available
+     * @throws IOException in case of errors reading from the InputStream
+     * @throws EthereumBlockReadException in case of format errors of the Ethereum block
      */
-    private List<EthereumTransaction> parseRLPTransactions(RLPList rlpTransactions) {
-        ArrayList<EthereumTransaction> result = new ArrayList<>(rlpTransactions.getRlpList().size());
-        for (int i = 0; i < rlpTransactions.getRlpList().size(); i++) {
-            RLPList currenTransactionRLP = (RLPList) rlpTransactions.getRlpList().get(i);
+    public ByteBuffer readRawBlockHeader() throws IOException, EthereumBlockReadException {
+        int blockSize = readBlockSize();
+        if (blockSize < 0) {
+            return null;
+        }
+        // prefix of the block list followed by the (larger) prefix of the header list
+        byte[] prefix = new byte[Math.min(20, blockSize)];
+        readFully(prefix, 0, prefix.length);
+        int blockPrefixSize = 1 + ((prefix[0] & 0xFF) - 0xf7);
+        long headerSize = -1;
+        if ((blockPrefixSize > 1) && (blockPrefixSize < prefix.length)) {
+            ByteBuffer headerPrefix = ByteBuffer.wrap(prefix);
+            headerPrefix.position(blockPrefixSize);
+            headerSize = EthereumUtil.getRLPListSize(headerPrefix);
+        }
+        if ((headerSize < prefix.length - blockPrefixSize) || (blockPrefixSize + headerSize > blockSize)) {
+            throw new EthereumBlockReadException("Error: Invalid block header");
+        }
+        byte[] header = new byte[(int) headerSize];
+        System.arraycopy(prefix, blockPrefixSize, header, 0, prefix.length - blockPrefixSize);
+        readFully(header, prefix.length - blockPrefixSize, header.length - (prefix.length - blockPrefixSize));
+        long remaining = blockSize - blockPrefixSize - headerSize;
+        if (skipFully(remaining) != remaining) {
+            throw new EthereumBlockReadException("Error: Could not read full block");
+        }
+        this.lastBlockPosition = this.position;
+        this.position += blockSize;
+        return ByteBuffer.wrap(header);
+    }
 
+    /**
+     * Seeks the start of the next block in the stream, eg at the beginning of a split that starts in the middle of a block. RLP encoded blocks
+     * have no magic, so candidates are searched heuristically: a list prefix (0xf9 or 0xfa) of a plausible block size directly followed by the
+     * list prefix of a block header and the prefix of a 32 byte parentHash. A candidate is accepted if its header decodes as block header
+     * (at least 15 fields, a 32 byte parentHash and a 256 byte logsBloom), the header is followed by the lists of transactions and uncles that
+     * fill the block exactly and the next frame starts with a valid block header as well
+     * (or the stream ends after the block). If the end of the stream is reached without a block, the reader is positioned at the end of the stream.
+     *
+     * @throws IOException                in case of errors reading from the InputStream
+     * @throws EthereumBlockReadException in case no block start is found within the maximum size of an Ethereum block
+     */
+    public void seekBlockStart() throws IOException, EthereumBlockReadException {
+        byte[] chunk = new byte[SCAN_CHUNK_SIZE];
+        long scanned = 0;
+        while (scanned <= this.maxSizeEthereumBlock) {
+            this.in.mark(chunk.length);
+            int totalRead = readAvailable(chunk, chunk.length);
+            this.in.reset();
+            if (totalRead < MIN_CANDIDATE_SIZE) {
+                // the remaining data cannot contain a block
+                this.position += skipFully(totalRead);
+                return;
+            }
+            int candidate = findCandidate(chunk, totalRead);
+            long advance;
+            if (candidate < 0) {
+                // the last bytes of a chunk are read again with the next chunk in case a candidate crosses the chunk border
+                advance = totalRead - (MIN_CANDIDATE_SIZE - 1);
+            } else {
+                this.position += skipFully(candidate);
+                scanned += candidate;
+                if (isBlockStart()) {
+                    return;
+                }
+                advance = 1;
+            }
+            long skipped = skipFully(advance);
+            if (skipped != advance) {
+                throw new EthereumBlockReadException("Error cannot skip " + advance + " bytes in InputStream");
+            }
+            this.position += skipped;
+            scanned += skipped;
+        }
+        throw new EthereumBlockReadException("Error: Cannot seek to a block start, because no valid block found within the maximum size of an Ethereum block. Check data or increase maximum size of Ethereum block.");
+    }
 
-            EthereumTransaction currentTransaction = new EthereumTransaction();
-            currentTransaction.setNonce(((RLPElement) currenTransactionRLP.getRlpList().get(0)).getRawData());
-            currentTransaction.setGasPriceRaw(((RLPElement) currenTransactionRLP.getRlpList().get(1)).getRawData());
-            currentTransaction.setGasLimitRaw(((RLPElement) currenTransactionRLP.getRlpList().get(2)).getRawData());
-            currentTransaction.setReceiveAddress(((RLPElement) currenTransactionRLP.getRlpList().get(3)).getRawData());
-            currentTransaction.setValueRaw(((RLPElement) currenTransactionRLP.getRlpList().get(4)).getRawData());
+    /**
+     * Returns the first position in a chunk that looks like the start of a block (prefix of block list, prefix of header list, prefix of parentHash)
+     *
+     * @param chunk  data
+     * @param length number of valid bytes in chunk
+     * @return position or -1 if there is no candidate
+     */
+    private static int findCandidate(byte[] chunk, int length) {
+        for (int i = 0; i <= length - MIN_CANDIDATE_SIZE; i++) {
+            int first = chunk[i] & 0xFF;
+            if ((first == 0xf9) || (first == 0xfa)) {
+                int header = i + 1 + (first - 0xf7);
+                if (((chunk[header] & 0xFF) == 0xf9) && ((chunk[header + 3] & 0xFF) == 0x80 + HEADER_PARENTHASH_SIZE)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if a valid block starts at the current position of the stream. The position is not changed.
+     *
+     * @return true if the current position is the start of a block
+     * @throws IOException in case of errors reading from the InputStream
+     */
+    private boolean isBlockStart() throws IOException {
+        this.in.mark(this.maxSizeEthereumBlock + 4 + MAX_HEADER_FRAME_SIZE);
+        try {
+            return (checkFrame(true) > 0) && (checkFrame(false) >= 0);
+        } finally {
+            this.in.reset();
+        }
+    }
+
+    /**
+     * Reads a frame from the stream and checks that it is a plausible block: a RLP list not larger than the maximum block size that starts with a block header
+     *
+     * @param fullFrame true if the complete frame must be available and consist of the header and the lists of transactions and uncles, false if it is sufficient that the header can be decoded
+     * @return size of the frame, 0 if the stream ends (only if fullFrame is false) or -1 if the data is not a plausible block
+     * @throws IOException in case of errors reading from the InputStream
+     */
+    private long checkFrame(boolean fullFrame) throws IOException {
+        int first = this.in.read();
+        if (first == -1) {
+            return fullFrame ? -1 : 0;
+        }
+        if ((first != 0xf9) && (first != 0xfa)) {
+            return -1;
+        }
+        int prefixSize = 1 + (first - 0xf7);
+        long frameSize = prefixSize + readLength(first - 0xf7);
+        if ((frameSize <= prefixSize) || (frameSize > this.maxSizeEthereumBlock)) {
+            return -1;
+        }
+        // headers are always larger than 255 bytes (logsBloom) and smaller than 64K
+        if (this.in.read() != 0xf9) {
+            return -1;
+        }
+        long headerLength = readLength(2);
+        if ((headerLength < 0) || (prefixSize + 3 + headerLength > frameSize)) {
+            return -1;
+        }
+        byte[] header = new byte[(int) headerLength];
+        if ((readAvailable(header, header.length) != header.length) || !isBlockHeader(header)) {
+            return -1;
+        }
+        if (fullFrame) {
+            // header is followed by the lists of transactions and uncles (and withdrawals since Shanghai), a list of uncle headers has at most two elements
+            long remaining = frameSize - prefixSize - 3 - headerLength;
+            int items = 1;
+            while (remaining > 0) {
+                int indicator = this.in.read();
+                if ((indicator < 0xc0) || (indicator > 0xfb)) {
+                    return -1;
+                }
+                int itemPrefixSize = indicator <= 0xf7 ? 1 : 1 + (indicator - 0xf7);
+                long itemLength = indicator <= 0xf7 ? indicator - 0xc0 : readLength(indicator - 0xf7);
+                if ((itemLength < 0) || (itemPrefixSize + itemLength > remaining) || (skipFully(itemLength) != itemLength)) {
+                    return -1;
+                }
+                remaining -= itemPrefixSize + itemLength;
+                items++;
+            }
+            if ((items < BLOCK_MIN_ITEMS) || (items > BLOCK_MAX_ITEMS)) {
+                return -1;
+            }
+        }
+        return frameSize;
+    }
 
-            currentTransaction.setData(((RLPElement) currenTransactionRLP.getRlpList().get(5)).getRawData());
-            if (((RLPElement) currenTransactionRLP.getRlpList().get(6)).getRawData().length > 0) {
-                currentTransaction.setSig_v(((RLPElement) currenTransactionRLP.getRlpList().get(6)).getRawData());
+    /**
+     * Checks if the payload of a RLP list is a block header: a list of at least 15 elements, the first (parentHash) of 32 bytes and the seventh (logsBloom) of 256 bytes
+     *
+     * @param payload payload of the list without the list prefix
+     * @return true if it is a block header
+     */
+    private static boolean isBlockHeader(byte[] payload) {
+        int pos = 0;
+        int fields = 0;
+        while (pos < payload.length) {
+            int indicator = payload[pos] & 0xFF;
+            int prefixSize;
+            long dataSize;
+            if (indicator <= 0x7f) {
+                prefixSize = 0;
+                dataSize = 1;
+            } else if (indicator <= 0xb7) {
+                prefixSize = 1;
+                dataSize = indicator - 0x80;
+            } else if (indicator <= 0xbf) {
+                prefixSize = 1 + (indicator - 0xb7);
+                if ((prefixSize > 4) || (pos + prefixSize > payload.length)) {
+                    return false;
+                }
+                dataSize = 0;
+                for (int i = 1; i < prefixSize; i++) {
+                    dataSize = (dataSize << 8) | (payload[pos + i] & 0xFF);
+                }
+            } else {
+                // header fields are never lists
+                return false;
+            }
+            if (((fields == 0) && (dataSize != HEADER_PARENTHASH_SIZE)) || ((fields == 6) && (dataSize != HEADER_LOGSBLOOM_SIZE))) {
+                return false;
+            }
+            pos += prefixSize + dataSize;
+            fields++;
+        }
+        return (pos == payload.length) && (fields >= HEADER_MIN_FIELDS);
+    }
 
-                currentTransaction.setSig_r(((RLPElement) currenTransactionRLP.getRlpList().get(7)).getRawData());
-                currentTransaction.setSig_s(((RLPElement) currenTransactionRLP.getRlpList().get(8)).getRawData());
+    /**
+     * Reads a big endian length of a RLP prefix
+     *
+     * @param noOfBytes size of the length in bytes
+     * @return length or -1 if the stream ends
+     * @throws IOException in case of errors reading from the InputStream
+     */
+    private long readLength(int noOfBytes) throws IOException {
+        long result = 0;
+        for (int i = 0; i < noOfBytes; i++) {
+            int b = this.in.read();
+            if (b == -1) {
+                return -1;
             }
-            result.add(currentTransaction);
+            result = (result << 8) | b;
         }
         return result;
     }
 
-    private List<EthereumBlockHeader> parseRLPUncleHeaders(RLPList rlpUncles) {
-        ArrayList<EthereumBlockHeader> result = new ArrayList<>(rlpUncles.getRlpList().size());
-        for (int i = 0; i < rlpUncles.getRlpList().size(); i++) {
-            RLPList currentUncleRLP = (RLPList) rlpUncles.getRlpList().get(i);
-            EthereumBlockHeader currentUncle = this.parseRLPBlockHeader(currentUncleRLP);
-            result.add(currentUncle);
+    /**
+     * Returns the number of bytes consumed from the stream given to this reader, ie the position relative to the start of the stream
+     *
+     * @return position
+     */
+    public long getPosition() {
+        return this.position;
+    }
+
+    /**
+     * Returns the position relative to the start of the stream of the block returned last by {@link #readRawBlock()}, {@link #readRawBlockHeader()} or {@link #readBlock()}
+     *
+     * @return position of the last block or -1 if no block has been read yet
+     */
+    public long getLastBlockPosition() {
+        return this.lastBlockPosition;
+    }
+
+    private void readFully(byte[] dest, int offset, int length) throws IOException, EthereumBlockReadException {
+        int totalRead = 0;
+        while (totalRead < length) {
+            int bRead = this.in.read(dest, offset + totalRead, length - totalRead);
+            if (bRead == -1) {
+                throw new EthereumBlockReadException("Error: Could not read full block");
+            }
+            totalRead += bRead;
         }
-        return result;
     }
 
+    /**
+     * Reads until the given number of bytes are read or the stream ends
+     *
+     * @return number of bytes read
+     */
+    private int readAvailable(byte[] dest, int length) throws IOException {
+        int totalRead = 0;
+        while (totalRead < length) {
+            int bRead = this.in.read(dest, totalRead, length - totalRead);
+            if (bRead == -1) {
+                break;
+            }
+            totalRead += bRead;
+        }
+        return totalRead;
+    }
+
+    /**
+     * Skips exactly the given number of bytes unless the end of the stream is reached. In contrast to InputStream.skip this does
+     * not return early if the underlying stream skips less bytes.
+     *
+     * @param bytesToSkip number of bytes to skip
+     * @return number of bytes skipped
+     * @throws IOException in case of errors reading from InputStream
+     */
+    private long skipFully(long bytesToSkip) throws IOException {
+        long totalSkipped = 0;
+        while (totalSkipped < bytesToSkip) {
+            long skipped = this.in.skip(bytesToSkip - totalSkipped);
+            if (skipped <= 0) {
+                // skip may return 0 without having reached the end of the stream
+                if (this.in.read() == -1) {
+                    break;
+                }
+                skipped = 1;
+            }
+            totalSkipped += skipped;
+        }
+        return totalSkipped;
+    }
 
-    /*
-     * Reads a raw Ethereum block into a ByteBuffer. This method is recommended if you are only interested in a small part of the block and do not need the deserialization of the full block, ie in case you generally skip a lot of blocks
+    /**
+     * Determines the size of the next block without consuming it
      *
-     * @return
+     * @return size of the block (RLP encoded list including its prefix) or -1 if no further block is available
      */
-    public ByteBuffer readRawBlock() throws IOException, EthereumBlockReadException {
-        // basically an Ethereum Block is simply a RLP encoded list
-        ByteBuffer result = null;
+    private int readBlockSize() throws IOException, EthereumBlockReadException {
         // get size of list
         this.in.mark(10);
         byte[] listHeader = new byte[10];
@@ -192,7 +486,7 @@ public class EthereumBlockReader implements Serializable {
         int bRead = this.in.read(listHeader);
         if (bRead == -1) {
             // no further block to read
-            return result;
+            return -1;
         } else {
             totalRead += bRead;
             while (totalRead < 10) {
@@ -216,31 +510,7 @@ public class EthereumBlockReader implements Serializable {
         if (blockSize > this.maxSizeEthereumBlock) {
             throw new EthereumBlockReadException("Error: Block size is larger then defined in configuration - Please increase it if this is a valid block");
         }
-        // read block
-        int blockSizeInt = (int) (blockSize);
-        byte[] fullBlock = new byte[blockSizeInt];
-        int totalByteRead = 0;
-        int readByte;
-        while ((readByte = this.in.read(fullBlock, totalByteRead, blockSizeInt - totalByteRead)) > -1) {
-            totalByteRead += readByte;
-            if (totalByteRead >= blockSize) {
-                break;
-            }
-        }
-        if (totalByteRead != blockSize) {
-            throw new EthereumBlockReadException("Error: Could not read full block");
-        }
-        if (!(this.useDirectBuffer)) {
-            result = ByteBuffer.wrap(fullBlock);
-        } else {
-            preAllocatedDirectByteBuffer.clear(); // clear out old bytebuffer
-            preAllocatedDirectByteBuffer.limit(fullBlock.length); // limit the bytebuffer
-            result = preAllocatedDirectByteBuffer;
-            result.put(fullBlock);
-            result.flip(); // put in read mode
-        }
-        result.order(ByteOrder.LITTLE_ENDIAN);
-        return result;
+        return (int) blockSize;
     }
 
     /**
@@ -0,0 +1,384 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.ethereum.format.common;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.bouncycastle.jcajce.provider.digest.Keccak;
+import org.zuinnote.hadoop.ethereum.format.common.rlp.RLPCursor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Flyweight view over a raw Ethereum block as returned by {@link EthereumBlockReader#readRawBlock()}.
+ * </p>
+ *
+ * <p>
+ * In contrast to {@link EthereumBlock} no object graph is created. When a buffer is attached with {@link #reset(ByteBuffer)}
+ * only the offsets and lengths of the header fields, transactions and uncles are recorded by {@link RLPCursor}s, which
+ * are reused for subsequent blocks. All getters read directly from the underlying buffer. This means that a view is
+ * only valid as long as the buffer is not modified, e.g. if direct buffers are used the view is only valid until the
+ * next block is read.
+ * </p>
+ **/
+public class EthereumBlockView implements Writable {
+
+    public static final int HEADER_PARENTHASH = 0;
+    public static final int HEADER_UNCLEHASH = 1;
+    public static final int HEADER_COINBASE = 2;
+    public static final int HEADER_STATEROOT = 3;
+    public static final int HEADER_TXTRIEROOT = 4;
+    public static final int HEADER_RECEIPTTRIEROOT = 5;
+    public static final int HEADER_LOGSBLOOM = 6;
+    public static final int HEADER_DIFFICULTY = 7;
+    public static final int HEADER_NUMBER = 8;
+    public static final int HEADER_GASLIMIT = 9;
+    public static final int HEADER_GASUSED = 10;
+    public static final int HEADER_TIMESTAMP = 11;
+    public static final int HEADER_EXTRADATA = 12;
+    public static final int HEADER_MIXHASH = 13;
+    public static final int HEADER_NONCE = 14;
+    // optional fields added by later forks, they are only present in blocks since the respective fork
+    public static final int HEADER_BASEFEEPERGAS = 15;
+    public static final int HEADER_WITHDRAWALSROOT = 16;
+    public static final int HEADER_BLOBGASUSED = 17;
+    public static final int HEADER_EXCESSBLOBGAS = 18;
+    public static final int HEADER_PARENTBEACONBLOCKROOT = 19;
+    public static final int HEADER_REQUESTSHASH = 20;
+
+    public static final int WITHDRAWAL_INDEX = 0;
+    public static final int WITHDRAWAL_VALIDATORINDEX = 1;
+    public static final int WITHDRAWAL_ADDRESS = 2;
+    public static final int WITHDRAWAL_AMOUNT = 3;
+
+    private static final int BLOCK_HEADER = 0;
+    private static final int BLOCK_TRANSACTIONS = 1;
+    private static final int BLOCK_UNCLES = 2;
+    private static final int BLOCK_WITHDRAWALS = 3;
+    private static final int HEADER_MIN_FIELDS = 15;
+
+    private final RLPCursor block = new RLPCursor();
+    private final RLPCursor header = new RLPCursor();
+    private final RLPCursor transactions = new RLPCursor();
+    private final RLPCursor uncles = new RLPCursor();
+    private final RLPCursor uncleHeader = new RLPCursor();
+    private final RLPCursor withdrawals = new RLPCursor();
+    private final RLPCursor withdrawal = new RLPCursor();
+    private boolean hasWithdrawals;
+    private Keccak.Digest256 digest;
+    private final EthereumTransactionView transactionView = new EthereumTransactionView(this);
+    private byte[] serializationBuffer;
+
+    /**
+     * Attaches the view to a raw block. The buffer must contain the RLP encoded block starting at its current position
+     * (as returned by {@link EthereumBlockReader#readRawBlock()}). The position of the buffer is not changed.
+     *
+     * @param rawBlock raw block
+     * @return this view
+     * @throws IllegalArgumentException if the block does not consist of a header, a list of transactions, a list of uncles and optionally a list of withdrawals
+     * @throws IndexOutOfBoundsException if the block is truncated
+     */
+    public EthereumBlockView reset(ByteBuffer rawBlock) {
+        this.block.reset(rawBlock);
+        if (this.block.size() <= BLOCK_UNCLES) {
+            throw new IllegalArgumentException("Ethereum block does not contain header, transactions and uncles");
+        }
+        this.block.getList(BLOCK_HEADER, this.header);
+        if (this.header.size() < HEADER_MIN_FIELDS) {
+            throw new IllegalArgumentException("Ethereum block header contains only " + this.header.size() + " fields");
+        }
+        this.block.getList(BLOCK_TRANSACTIONS, this.transactions);
+        this.block.getList(BLOCK_UNCLES, this.uncles);
+        this.hasWithdrawals = this.block.size() > BLOCK_WITHDRAWALS;
+        if (this.hasWithdrawals) {
+            this.block.getList(BLOCK_WITHDRAWALS, this.withdrawals);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the buffer this view is attached to
+     *
+     * @return buffer
+     */
+    public ByteBuffer getBuffer() {
+        return this.block.getBuffer();
+    }
+
+    /**
+     * Returns the cursor over the fields of the block header, eg to read fields without copying them by
+     * {@link RLPCursor#dataSlice(int)} using the HEADER_* constants of this class as index
+     *
+     * @return cursor of the header
+     */
+    public RLPCursor getHeader() {
+        return this.header;
+    }
+
+    /**
+     * Returns a slice containing the RLP encoded block header
+     *
+     * @return slice
+     */
+    public ByteBuffer headerSlice() {
+        return this.block.itemSlice(BLOCK_HEADER);
+    }
+
+    /**
+     * Calculates the block hash (Keccak-256 of the RLP encoded header)
+     *
+     * @return hash of the block
+     */
+    public byte[] getBlockHash() {
+        Keccak.Digest256 blockDigest = getDigest();
+        blockDigest.update(headerSlice());
+        return blockDigest.digest();
+    }
+
+    public void getParentHash(byte[] dest, int offset) {
+        this.header.getData(HEADER_PARENTHASH, dest, offset);
+    }
+
+    public byte[] getCoinBase() {
+        return this.header.getData(HEADER_COINBASE);
+    }
+
+    public BigInteger getDifficulty() {
+        return this.header.getBigInteger(HEADER_DIFFICULTY);
+    }
+
+    public long getNumber() {
+        return this.header.getLong(HEADER_NUMBER);
+    }
+
+    public long getGasLimit() {
+        return this.header.getLong(HEADER_GASLIMIT);
+    }
+
+    public long getGasUsed() {
+        return this.header.getLong(HEADER_GASUSED);
+    }
+
+    public long getTimestamp() {
+        return this.header.getLong(HEADER_TIMESTAMP);
+    }
+
+    /**
+     * @return base fee per gas of blocks since London (EIP-1559), null for older blocks
+     */
+    public BigInteger getBaseFeePerGas() {
+        return this.header.size() > HEADER_BASEFEEPERGAS ? this.header.getBigInteger(HEADER_BASEFEEPERGAS) : null;
+    }
+
+    public int getTransactionCount() {
+        return this.transactions.size();
+    }
+
+    /**
+     * Positions the flyweight transaction view of this block at the given transaction. Note that the same instance is
+     * returned on every call, i.e. it is only valid until this method is called again.
+     *
+     * @param index index of the transaction in the block
+     * @return transaction view
+     */
+    public EthereumTransactionView getTransaction(int index) {
+        if ((index < 0) || (index >= this.transactions.size())) {
+            throw new IndexOutOfBoundsException("Transaction " + index + " does not exist in block with " + this.transactions.size() + " transactions");
+        }
+        this.transactionView.setIndex(index);
+        return this.transactionView;
+    }
+
+    public int getUncleCount() {
+        return this.uncles.size();
+    }
+
+    /**
+     * Returns a cursor over the fields of an uncle header, which can be read using the HEADER_* constants of this class
+     * as index. Note that the same instance is returned on every call, i.e. it is only valid until this method is called again.
+     *
+     * @param index index of the uncle in the block
+     * @return cursor of the uncle header
+     */
+    public RLPCursor getUncleHeader(int index) {
+        return this.uncles.getList(index, this.uncleHeader);
+    }
+
+    /**
+     * @return true if the block contains a list of withdrawals, ie it has been created since Shanghai (EIP-4895)
+     */
+    public boolean hasWithdrawals() {
+        return this.hasWithdrawals;
+    }
+
+    /**
+     * @return number of withdrawals, 0 if the block does not contain a list of withdrawals
+     */
+    public int getWithdrawalCount() {
+        return this.hasWithdrawals ? this.withdrawals.size() : 0;
+    }
+
+    /**
+     * Returns a cursor over the fields of a withdrawal, which can be read using the WITHDRAWAL_* constants of this class
+     * as index. Note that the same instance is returned on every call, i.e. it is only valid until this method is called again.
+     *
+     * @param index index of the withdrawal in the block
+     * @return cursor of the withdrawal
+     */
+    public RLPCursor getWithdrawal(int index) {
+        if ((index < 0) || (index >= getWithdrawalCount())) {
+            throw new IndexOutOfBoundsException("Withdrawal " + index + " does not exist in block with " + getWithdrawalCount() + " withdrawals");
+        }
+        return this.withdrawals.getList(index, this.withdrawal);
+    }
+
+    /**
+     * Materializes the block as {@link EthereumBlock}. The fields are copied from the buffer exactly once.
+     *
+     * @return block
+     */
+    public EthereumBlock toEthereumBlock() {
+        EthereumBlockHeader ethereumBlockHeader = toEthereumBlockHeader(this.header);
+        List<EthereumTransaction> ethereumTransactions = new ArrayList<>(getTransactionCount());
+        for (int i = 0; i < getTransactionCount(); i++) {
+            ethereumTransactions.add(getTransaction(i).toEthereumTransaction());
+        }
+        List<EthereumBlockHeader> uncleHeaders = new ArrayList<>(getUncleCount());
+        for (int i = 0; i < getUncleCount(); i++) {
+            uncleHeaders.add(toEthereumBlockHeader(getUncleHeader(i)));
+        }
+        List<EthereumWithdrawal> ethereumWithdrawals = null;
+        if (this.hasWithdrawals) {
+            ethereumWithdrawals = new ArrayList<>(getWithdrawalCount());
+            for (int i = 0; i < getWithdrawalCount(); i++) {
+                RLPCursor rlpWithdrawal = getWithdrawal(i);
+                EthereumWithdrawal ethereumWithdrawal = new EthereumWithdrawal();
+                ethereumWithdrawal.setIndexRaw(rlpWithdrawal.getData(WITHDRAWAL_INDEX));
+                ethereumWithdrawal.setValidatorIndexRaw(rlpWithdrawal.getData(WITHDRAWAL_VALIDATORINDEX));
+                ethereumWithdrawal.setAddress(rlpWithdrawal.getData(WITHDRAWAL_ADDRESS));
+                ethereumWithdrawal.setAmountRaw(rlpWithdrawal.getData(WITHDRAWAL_AMOUNT));
+                ethereumWithdrawals.add(ethereumWithdrawal);
+            }
+        }
+        return new EthereumBlock(ethereumBlockHeader, ethereumTransactions, uncleHeaders, ethereumWithdrawals);
+    }
+
+    /**
+     * Materializes a block header
+     *
+     * @param rlpHeader cursor over the fields of the header, eg {@link #getHeader()} or {@link #getUncleHeader(int)}
+     * @return block header
+     */
+    public static EthereumBlockHeader toEthereumBlockHeader(RLPCursor rlpHeader) {
+        EthereumBlockHeader result = new EthereumBlockHeader();
+        result.setParentHash(rlpHeader.getData(HEADER_PARENTHASH));
+        result.setUncleHash(rlpHeader.getData(HEADER_UNCLEHASH));
+        result.setCoinBase(rlpHeader.getData(HEADER_COINBASE));
+        result.setStateRoot(rlpHeader.getData(HEADER_STATEROOT));
+        result.setTxTrieRoot(rlpHeader.getData(HEADER_TXTRIEROOT));
+        result.setReceiptTrieRoot(rlpHeader.getData(HEADER_RECEIPTTRIEROOT));
+        result.setLogsBloom(rlpHeader.getData(HEADER_LOGSBLOOM));
+        result.setDifficulty(rlpHeader.getData(HEADER_DIFFICULTY));
+        result.setNumberRaw(rlpHeader.getData(HEADER_NUMBER));
+        result.setGasLimitRaw(rlpHeader.getData(HEADER_GASLIMIT));
+        result.setGasUsedRaw(rlpHeader.getData(HEADER_GASUSED));
+        result.setTimestamp(rlpHeader.getLong(HEADER_TIMESTAMP));
+        result.setExtraData(rlpHeader.getData(HEADER_EXTRADATA));
+        result.setMixHash(rlpHeader.getData(HEADER_MIXHASH));
+        result.setNonce(rlpHeader.getData(HEADER_NONCE));
+        int size = rlpHeader.size();
+        if (size > HEADER_BASEFEEPERGAS) {
+            result.setBaseFeePerGasRaw(rlpHeader.getData(HEADER_BASEFEEPERGAS));
+        }
+        if (size > HEADER_WITHDRAWALSROOT) {
+            result.setWithdrawalsRoot(rlpHeader.getData(HEADER_WITHDRAWALSROOT));
+        }
+        if (size > HEADER_EXCESSBLOBGAS) {
+            result.setBlobGasUsedRaw(rlpHeader.getData(HEADER_BLOBGASUSED));
+            result.setExcessBlobGasRaw(rlpHeader.getData(HEADER_EXCESSBLOBGAS));
+        }
+        if (size > HEADER_PARENTBEACONBLOCKROOT) {
+            result.setParentBeaconBlockRoot(rlpHeader.getData(HEADER_PARENTBEACONBLOCKROOT));
+        }
+        if (size > HEADER_REQUESTSHASH) {
+            result.setRequestsHash(rlpHeader.getData(HEADER_REQUESTSHASH));
+        }
+        return result;
+    }
+
+    /**
+     * Serializes the raw block prefixed by its length
+     *
+     * @param dataOutput output
+     * @throws IOException in case of errors writing
+     */
+    @Override
+    public void write(DataOutput dataOutput) throws IOException {
+        ByteBuffer rawBlock = this.block.listSlice();
+        WritableUtils.writeVInt(dataOutput, rawBlock.remaining());
+        if (rawBlock.hasArray()) {
+            dataOutput.write(rawBlock.array(), rawBlock.arrayOffset() + rawBlock.position(), rawBlock.remaining());
+        } else {
+            byte[] copy = new byte[rawBlock.remaining()];
+            rawBlock.get(copy);
+            dataOutput.write(copy);
+        }
+    }
+
+    /**
+     * Reads a raw block serialized by {@link #write(DataOutput)}. The internal array is reused if it is large enough.
+     *
+     * @param dataInput input
+     * @throws IOException in case of errors reading
+     */
+    @Override
+    public void readFields(DataInput dataInput) throws IOException {
+        int length = WritableUtils.readVInt(dataInput);
+        if ((this.serializationBuffer == null) || (this.serializationBuffer.length < length)) {
+            this.serializationBuffer = new byte[length];
+        }
+        dataInput.readFully(this.serializationBuffer, 0, length);
+        try {
+            reset(ByteBuffer.wrap(this.serializationBuffer, 0, length));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Invalid Ethereum block: " + e.getMessage(), e);
+        }
+    }
+
+    // methods used by the transaction view
+
+    RLPCursor getTransactions() {
+        return this.transactions;
+    }
+
+    /**
+     * Digest reused for all hashes of this view, which is, like the view, not thread-safe. It is created on first use,
+     * so that views which are not hashed do not need Bouncy castle.
+     */
+    Keccak.Digest256 getDigest() {
+        if (this.digest == null) {
+            this.digest = new Keccak.Digest256();
+        }
+        return this.digest;
+    }
+}
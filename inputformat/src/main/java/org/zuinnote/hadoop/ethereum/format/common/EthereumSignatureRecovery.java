@@ -0,0 +1,398 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.ethereum.format.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.bouncycastle.asn1.sec.SECNamedCurves;
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.asn1.x9.X9IntegerConverter;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.crypto.params.ECDomainParameters;
+import org.bouncycastle.jcajce.provider.digest.Keccak;
+import org.bouncycastle.math.ec.ECAlgorithms;
+import org.bouncycastle.math.ec.ECMultiplier;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.bouncycastle.math.ec.FixedPointUtil;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>
+ * Recovers the sender address of Ethereum transactions from their secp256k1 signature (cf. {@link EthereumUtil#getSendAddress(EthereumTransaction, int)}).
+ * </p>
+ * <p>
+ * The curve parameters are created once. If available, the optimized secp256k1 implementation of Bouncy Castle is used:
+ * it works on fixed size field elements instead of BigIntegers and multiplies points using the GLV endomorphism with wNAF.
+ * Multiplications of the generator use a comb table that is precomputed once. When recovering the senders of many
+ * transactions with {@link #getSendAddresses(List, int)} the modular inversions of all signatures are replaced by a single
+ * inversion (Montgomery's trick) and the public keys are converted to affine coordinates with a single field inversion.
+ * If the optimized implementation is not available the generic implementation based on BigInteger arithmetic is used.
+ * Large lists of transactions can be processed in parallel by a ForkJoinPool with {@link #getSendAddresses(List, int, ForkJoinPool)}.
+ * </p>
+ **/
+public class EthereumSignatureRecovery {
+
+    private static final Log LOG = LogFactory.getLog(EthereumSignatureRecovery.class.getName());
+    private static final String CURVE_NAME = "secp256k1";
+    private static final ECDomainParameters GENERIC_CURVE;
+    private static final ECDomainParameters CURVE;
+    private static final boolean OPTIMIZED;
+    private static final ECMultiplier GENERATOR_MULTIPLIER = new FixedPointCombMultiplier();
+    // number of transactions that share one inversion when recovering in parallel
+    private static final int PARALLEL_BATCH_SIZE = 64;
+    private static final int INVALID_RECEIVER_ID = -1;
+
+    static {
+        X9ECParameters genericParams = SECNamedCurves.getByName(CURVE_NAME);
+        GENERIC_CURVE = new ECDomainParameters(genericParams.getCurve(), genericParams.getG(), genericParams.getN(), genericParams.getH());
+        ECDomainParameters optimizedCurve = null;
+        try {
+            X9ECParameters params = CustomNamedCurves.getByName(CURVE_NAME);
+            if (params != null) {
+                optimizedCurve = new ECDomainParameters(params.getCurve(), params.getG(), params.getN(), params.getH());
+                // the comb table is stored with the generator and reused by all multiplications of the generator
+                FixedPointUtil.precompute(optimizedCurve.getG());
+            }
+        } catch (RuntimeException | LinkageError e) {
+            LOG.warn("Optimized secp256k1 implementation not available, using generic implementation: " + e.getMessage());
+            optimizedCurve = null;
+        }
+        OPTIMIZED = optimizedCurve != null;
+        CURVE = OPTIMIZED ? optimizedCurve : GENERIC_CURVE;
+    }
+
+    private EthereumSignatureRecovery() {
+    }
+
+    /**
+     * @return true if the optimized secp256k1 implementation is used, false if the generic implementation is used
+     */
+    public static boolean isOptimized() {
+        return OPTIMIZED;
+    }
+
+    /**
+     * Calculates the sent address of a signed transaction
+     *
+     * @param eTrans  transaction
+     * @param chainId chain identifier (e.g. 1 main net)
+     * @return sent address as byte array or null if the signature does not correspond to a valid public key
+     */
+    public static byte[] getSendAddress(EthereumTransaction eTrans, int chainId) {
+        if (!OPTIMIZED) {
+            return getSendAddressGeneric(eTrans, chainId);
+        }
+        int receiverId = getReceiverId(eTrans);
+        BigInteger bR = new BigInteger(1, eTrans.getSig_r());
+        ECPoint r = decodeR(CURVE, bR, receiverId);
+        if (r == null) {
+            return null;
+        }
+        byte[] transactionHash = getSignatureHash(eTrans, chainId);
+        ECPoint q = multiply(r, transactionHash, new BigInteger(1, eTrans.getSig_s()), bR.modInverse(CURVE.getN()));
+        if (q.isInfinity()) {
+            return null;
+        }
+        return toAddress(q.normalize());
+    }
+
+    /**
+     * Calculates the sent addresses of several transactions, eg all transactions of a block, sharing the expensive
+     * inversions between all transactions
+     *
+     * @param transactions transactions
+     * @param chainId      chain identifier (e.g. 1 main net)
+     * @return sent addresses in the order of the transactions. An address is null if the transaction is not signed,
+     * if v of its signature is invalid or if its signature does not correspond to a valid public key
+     */
+    public static byte[][] getSendAddresses(List<EthereumTransaction> transactions, int chainId) {
+        int size = transactions.size();
+        byte[][] result = new byte[size][];
+        if (!OPTIMIZED) {
+            for (int i = 0; i < size; i++) {
+                EthereumTransaction eTrans = transactions.get(i);
+                if (isSigned(eTrans) && (toReceiverId(eTrans) != INVALID_RECEIVER_ID)) {
+                    result[i] = getSendAddressGeneric(eTrans, chainId);
+                }
+            }
+            return result;
+        }
+        BigInteger n = CURVE.getN();
+        BigInteger[] rValues = new BigInteger[size];
+        ECPoint[] rPoints = new ECPoint[size];
+        for (int i = 0; i < size; i++) {
+            EthereumTransaction eTrans = transactions.get(i);
+            int receiverId = isSigned(eTrans) ? toReceiverId(eTrans) : INVALID_RECEIVER_ID;
+            if (receiverId != INVALID_RECEIVER_ID) {
+                BigInteger bR = new BigInteger(1, eTrans.getSig_r());
+                if (bR.mod(n).signum() != 0) {
+                    rPoints[i] = decodeR(CURVE, bR, receiverId);
+                    rValues[i] = rPoints[i] == null ? null : bR;
+                }
+            }
+        }
+        BigInteger[] rInverses = invertAll(rValues, n);
+        ECPoint[] publicKeys = new ECPoint[size];
+        for (int i = 0; i < size; i++) {
+            if (rValues[i] != null) {
+                EthereumTransaction eTrans = transactions.get(i);
+                ECPoint q = multiply(rPoints[i], getSignatureHash(eTrans, chainId), new BigInteger(1, eTrans.getSig_s()), rInverses[i]);
+                // the point at infinity has no affine coordinates and no address
+                publicKeys[i] = q.isInfinity() ? null : q;
+            }
+        }
+        CURVE.getCurve().normalizeAll(publicKeys);
+        Keccak.Digest256 digest256 = new Keccak.Digest256();
+        for (int i = 0; i < size; i++) {
+            if (publicKeys[i] != null) {
+                result[i] = toAddress(publicKeys[i], digest256);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the sent addresses of several transactions in parallel. The transactions are split into batches
+     * that are processed by the tasks of the given pool, cf. {@link #getSendAddresses(List, int)}.
+     *
+     * @param transactions transactions
+     * @param chainId      chain identifier (e.g. 1 main net)
+     * @param pool         pool executing the batches
+     * @return sent addresses in the order of the transactions. An address is null if the transaction is not signed or
+     * if its signature does not correspond to a valid public key
+     */
+    public static byte[][] getSendAddresses(List<EthereumTransaction> transactions, int chainId, ForkJoinPool pool) {
+        if (transactions.size() <= PARALLEL_BATCH_SIZE) {
+            return getSendAddresses(transactions, chainId);
+        }
+        byte[][] result = new byte[transactions.size()][];
+        pool.invoke(new SendAddressTask(transactions, chainId, 0, transactions.size(), result));
+        return result;
+    }
+
+    /**
+     * Calculates the sent address of a signed transaction using the generic BigInteger based implementation of secp256k1.
+     * This is slower than {@link #getSendAddress(EthereumTransaction, int)} and mainly useful to verify the optimized implementation.
+     *
+     * @param eTrans  transaction
+     * @param chainId chain identifier (e.g. 1 main net)
+     * @return sent address as byte array or null if the signature does not correspond to a valid public key
+     */
+    public static byte[] getSendAddressGeneric(EthereumTransaction eTrans, int chainId) {
+        byte[] transactionHash = getSignatureHash(eTrans, chainId);
+        int receiverId = getReceiverId(eTrans);
+        BigInteger bR = new BigInteger(1, eTrans.getSig_r());
+        BigInteger bS = new BigInteger(1, eTrans.getSig_s());
+        BigInteger n = GENERIC_CURVE.getN();
+        ECPoint r = decodeR(GENERIC_CURVE, bR, receiverId);
+        if ((r == null) || (!r.multiply(n).isInfinity())) {
+            return null;
+        }
+        BigInteger e = new BigInteger(1, transactionHash);
+        BigInteger eInv = BigInteger.ZERO.subtract(e).mod(n);
+        BigInteger rInv = bR.modInverse(n);
+        BigInteger srInv = rInv.multiply(bS).mod(n);
+        BigInteger eInvrInv = rInv.multiply(eInv).mod(n);
+        ECPoint q = ECAlgorithms.sumOfTwoMultiplies(GENERIC_CURVE.getG(), eInvrInv, r, srInv);
+        if (q.isInfinity()) {
+            return null;
+        }
+        return toAddress(q.normalize());
+    }
+
+    private static boolean isSigned(EthereumTransaction eTrans) {
+        if ((eTrans.getSig_v() == null) || (eTrans.getSig_r() == null) || (eTrans.getSig_s() == null)) {
+            return false;
+        }
+        // the y parity of typed transactions is empty if it is 0
+        return (eTrans.getTransactionType() != EthereumTransaction.TYPE_LEGACY) || (eTrans.getSig_v().length > 0);
+    }
+
+    /**
+     * Determines the hash that has been signed. This depends on whether the transaction has been signed according to EIP-155 for the given chain.
+     */
+    private static byte[] getSignatureHash(EthereumTransaction eTrans, int chainId) {
+        if (eTrans.getTransactionType() != EthereumTransaction.TYPE_LEGACY) { // typed transactions always sign their chain id
+            return EthereumUtil.getTransactionHashWithoutSignature(eTrans);
+        }
+        if ((eTrans.getSig_v()[0] == chainId * 2 + EthereumUtil.CHAIN_ID_INC) || (eTrans.getSig_v()[0] == chainId * 2 + EthereumUtil.CHAIN_ID_INC + 1)) {  // transaction hash with dummy signature data
+            return EthereumUtil.getTransactionHashWithDummySignatureEIP155(eTrans);
+        }
+        // transaction hash without signature data
+        return EthereumUtil.getTransactionHashWithoutSignature(eTrans);
+    }
+
+    /**
+     * Determines the recovery id from v of the signature, which is the y parity for typed transactions
+     */
+    private static int getReceiverId(EthereumTransaction eTrans) {
+        int receiverId = toReceiverId(eTrans);
+        if (receiverId == INVALID_RECEIVER_ID) {
+            String message = eTrans.getTransactionType() != EthereumTransaction.TYPE_LEGACY ? "Invalid y parity of typed transaction" : "Header out of range";
+            LOG.error(message);
+            throw new RuntimeException(message);
+        }
+        return receiverId;
+    }
+
+    /**
+     * Determines the recovery id from v of the signature without failing, so that a single invalid transaction does not abort a batch
+     *
+     * @return recovery id or INVALID_RECEIVER_ID if v is invalid
+     */
+    private static int toReceiverId(EthereumTransaction eTrans) {
+        byte[] sigV = eTrans.getSig_v();
+        if (eTrans.getTransactionType() != EthereumTransaction.TYPE_LEGACY) {
+            if ((sigV.length == 0) || ((sigV.length == 1) && (sigV[0] == 1))) {
+                return sigV.length;
+            }
+            return INVALID_RECEIVER_ID;
+        }
+        byte v = sigV[0];
+        if (!((v == EthereumUtil.LOWER_REAL_V) || (v == (EthereumUtil.LOWER_REAL_V + 1)))) {
+            byte vReal = EthereumUtil.LOWER_REAL_V;
+            if (((int) v % 2 == 0)) {
+                v = (byte) (vReal + 0x01);
+            } else {
+                v = vReal;
+            }
+        }
+        // the following lines are inspired from ECKey.java of EthereumJ, but adapted to the hadoopcryptoledger context
+        if (v < 27 || v > 34) {
+            return INVALID_RECEIVER_ID;
+        }
+        if (v >= 31) {
+            v -= 4;
+        }
+        return v - 27;
+    }
+
+    /**
+     * Decompresses the point R of the signature from its x coordinate
+     *
+     * @return R or null if x is not a valid coordinate or not the x coordinate of a point on the curve
+     */
+    private static ECPoint decodeR(ECDomainParameters curve, BigInteger bR, int receiverId) {
+        BigInteger i = BigInteger.valueOf((long) receiverId / 2);
+        BigInteger x = bR.add(i.multiply(curve.getN()));
+        if (x.compareTo(curve.getCurve().getField().getCharacteristic()) >= 0) {
+            return null;
+        }
+        X9IntegerConverter x9 = new X9IntegerConverter();
+        byte[] compEnc = x9.integerToBytes(x, 1 + x9.getByteLength(curve.getCurve()));
+        boolean yBit = (receiverId & 1) == 1;
+        compEnc[0] = (byte) (yBit ? 0x03 : 0x02);
+        try {
+            // secp256k1 has cofactor 1, so every point decoded on the curve has order n
+            return curve.getCurve().decodePoint(compEnc);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Calculates the public key Q = r^-1 (sR - eG) using the comb table for the generator and GLV for R. The result is not normalized.
+     */
+    private static ECPoint multiply(ECPoint r, byte[] transactionHash, BigInteger bS, BigInteger rInv) {
+        BigInteger n = CURVE.getN();
+        BigInteger e = new BigInteger(1, transactionHash);
+        BigInteger eInvrInv = rInv.multiply(n.subtract(e.mod(n))).mod(n);
+        BigInteger srInv = rInv.multiply(bS).mod(n);
+        ECPoint eG = GENERATOR_MULTIPLIER.multiply(CURVE.getG(), eInvrInv);
+        ECPoint sR = CURVE.getCurve().getMultiplier().multiply(r, srInv);
+        return eG.add(sR);
+    }
+
+    /**
+     * Inverts all non-null values modulo n with a single modular inversion (Montgomery's trick)
+     *
+     * @param values values to invert, null values are ignored. All other values must be coprime to n
+     * @param n      modulus
+     * @return inverses, null for null values
+     */
+    static BigInteger[] invertAll(BigInteger[] values, BigInteger n) {
+        BigInteger[] result = new BigInteger[values.length];
+        // result[i] = product of all values before i
+        BigInteger product = BigInteger.ONE;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                result[i] = product;
+                product = product.multiply(values[i]).mod(n);
+            }
+        }
+        BigInteger inverse = product.modInverse(n);
+        for (int i = values.length - 1; i >= 0; i--) {
+            if (values[i] != null) {
+                BigInteger current = inverse.multiply(result[i]).mod(n);
+                inverse = inverse.multiply(values[i]).mod(n);
+                result[i] = current;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts a normalized public key into an Ethereum address, which is the last 20 bytes of the KECCAK-256 hash of the key
+     */
+    private static byte[] toAddress(ECPoint q) {
+        return toAddress(q, new Keccak.Digest256());
+    }
+
+    private static byte[] toAddress(ECPoint q, Keccak.Digest256 digest256) {
+        byte[] pubKey = q.getEncoded(false);
+        digest256.update(pubKey, 1, pubKey.length - 1);
+        byte[] kcck = digest256.digest();
+        return Arrays.copyOfRange(kcck, 12, kcck.length);
+    }
+
+    /**
+     * Splits a range of transactions until it fits into a batch
+     */
+    private static class SendAddressTask extends RecursiveAction {
+
+        private final List<EthereumTransaction> transactions;
+        private final int chainId;
+        private final int from;
+        private final int to;
+        private final byte[][] result;
+
+        SendAddressTask(List<EthereumTransaction> transactions, int chainId, int from, int to, byte[][] result) {
+            this.transactions = transactions;
+            this.chainId = chainId;
+            this.from = from;
+            this.to = to;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= PARALLEL_BATCH_SIZE) {
+                byte[][] batch = getSendAddresses(this.transactions.subList(this.from, this.to), this.chainId);
+                System.arraycopy(batch, 0, this.result, this.from, batch.length);
+            } else {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new SendAddressTask(this.transactions, this.chainId, this.from, middle, this.result),
+                        new SendAddressTask(this.transactions, this.chainId, middle, this.to, this.result));
+            }
+        }
+    }
+}
@@ -22,6 +22,7 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.util.List;
 
 /**
  *
@@ -29,6 +30,17 @@ import java.math.BigInteger;
  */
 public class EthereumTransaction implements Writable, Serializable {
 
+    /** legacy transaction, ie a plain RLP list without type byte **/
+    public static final int TYPE_LEGACY = 0;
+    /** access list transaction (EIP-2930) **/
+    public static final int TYPE_ACCESS_LIST = 1;
+    /** dynamic fee transaction (EIP-1559) **/
+    public static final int TYPE_DYNAMIC_FEE = 2;
+    /** blob transaction (EIP-4844) **/
+    public static final int TYPE_BLOB = 3;
+
+    private int transactionType;
+    private byte[] chainIdRaw;
     private byte[] nonce;
     private BigInteger value;
     private byte[] valueRaw;
@@ -37,11 +49,21 @@ public class EthereumTransaction implements Writable, Serializable {
     private byte[] gasPriceRaw;
     private BigInteger gasLimit;
     private byte[] gasLimitRaw;
+    private BigInteger maxPriorityFeePerGas;
+    private byte[] maxPriorityFeePerGasRaw;
+    private BigInteger maxFeePerGas;
+    private byte[] maxFeePerGasRaw;
+    private List<EthereumAccessListItem> accessList;
+    private BigInteger maxFeePerBlobGas;
+    private byte[] maxFeePerBlobGasRaw;
+    private List<byte[]> blobVersionedHashes;
 
     private byte[] data;
     private byte[] sig_v;
     private byte[] sig_r;
     private byte[] sig_s;
+    private byte[] sender;
+    private byte[] hash;
 
     public EthereumTransaction() {
         // please use setter to set the data
@@ -117,6 +139,8 @@ public class EthereumTransaction implements Writable, Serializable {
 
 
     public void set(EthereumTransaction newTransaction) {
+        this.transactionType = newTransaction.getTransactionType();
+        this.chainIdRaw = newTransaction.getChainIdRaw();
         this.nonce = newTransaction.getNonce();
         this.valueRaw = newTransaction.getValueRaw();
         this.value = newTransaction.getValue();
@@ -125,10 +149,20 @@ public class EthereumTransaction implements Writable, Serializable {
         this.gasPrice = newTransaction.getGasPrice();
         this.gasLimitRaw = newTransaction.getGasLimitRaw();
         this.gasLimit = newTransaction.getGasLimit();
+        this.maxPriorityFeePerGasRaw = newTransaction.getMaxPriorityFeePerGasRaw();
+        this.maxPriorityFeePerGas = newTransaction.getMaxPriorityFeePerGas();
+        this.maxFeePerGasRaw = newTransaction.getMaxFeePerGasRaw();
+        this.maxFeePerGas = newTransaction.getMaxFeePerGas();
+        this.accessList = newTransaction.getAccessList();
+        this.maxFeePerBlobGasRaw = newTransaction.getMaxFeePerBlobGasRaw();
+        this.maxFeePerBlobGas = newTransaction.getMaxFeePerBlobGas();
+        this.blobVersionedHashes = newTransaction.getBlobVersionedHashes();
         this.data = newTransaction.getData();
         this.sig_v = newTransaction.getSig_v();
         this.sig_r = newTransaction.getSig_r();
         this.sig_s = newTransaction.getSig_s();
+        this.sender = newTransaction.getSender();
+        this.hash = newTransaction.getHash();
     }
 
     public byte[] getSig_v() {
@@ -179,4 +213,150 @@ public class EthereumTransaction implements Writable, Serializable {
         this.gasLimitRaw = gasLimitRaw;
     }
 
+    /**
+     * Returns the type of the transaction (EIP-2718)
+     *
+     * @return TYPE_LEGACY for legacy transactions, otherwise the type byte of the typed transaction envelope
+     */
+    public int getTransactionType() {
+        return transactionType;
+    }
+
+    public void setTransactionType(int transactionType) {
+        this.transactionType = transactionType;
+    }
+
+    /**
+     * Returns the chain id of a typed transaction. For legacy transactions the chain id is encoded in sig_v, cf. EthereumUtil.calculateChainId
+     *
+     * @return chain id or null for legacy transactions
+     */
+    public byte[] getChainIdRaw() {
+        return chainIdRaw;
+    }
+
+    public void setChainIdRaw(byte[] chainIdRaw) {
+        this.chainIdRaw = chainIdRaw;
+    }
+
+    /**
+     * @return max priority fee per gas of dynamic fee and blob transactions, null for other transactions
+     */
+    public BigInteger getMaxPriorityFeePerGas() {
+        if ((maxPriorityFeePerGas == null) && (maxPriorityFeePerGasRaw != null)) {
+            this.maxPriorityFeePerGas = EthereumUtil.convertVarNumberToBigInteger(this.maxPriorityFeePerGasRaw);
+        }
+        return maxPriorityFeePerGas;
+    }
+
+    public void setMaxPriorityFeePerGas(BigInteger maxPriorityFeePerGas) {
+        this.maxPriorityFeePerGas = maxPriorityFeePerGas;
+    }
+
+    public byte[] getMaxPriorityFeePerGasRaw() {
+        return maxPriorityFeePerGasRaw;
+    }
+
+    public void setMaxPriorityFeePerGasRaw(byte[] maxPriorityFeePerGasRaw) {
+        this.maxPriorityFeePerGasRaw = maxPriorityFeePerGasRaw;
+    }
+
+    /**
+     * @return max fee per gas of dynamic fee and blob transactions, null for other transactions
+     */
+    public BigInteger getMaxFeePerGas() {
+        if ((maxFeePerGas == null) && (maxFeePerGasRaw != null)) {
+            this.maxFeePerGas = EthereumUtil.convertVarNumberToBigInteger(this.maxFeePerGasRaw);
+        }
+        return maxFeePerGas;
+    }
+
+    public void setMaxFeePerGas(BigInteger maxFeePerGas) {
+        this.maxFeePerGas = maxFeePerGas;
+    }
+
+    public byte[] getMaxFeePerGasRaw() {
+        return maxFeePerGasRaw;
+    }
+
+    public void setMaxFeePerGasRaw(byte[] maxFeePerGasRaw) {
+        this.maxFeePerGasRaw = maxFeePerGasRaw;
+    }
+
+    /**
+     * @return access list of typed transactions, null for legacy transactions
+     */
+    public List<EthereumAccessListItem> getAccessList() {
+        return accessList;
+    }
+
+    public void setAccessList(List<EthereumAccessListItem> accessList) {
+        this.accessList = accessList;
+    }
+
+    /**
+     * @return max fee per blob gas of blob transactions, null for other transactions
+     */
+    public BigInteger getMaxFeePerBlobGas() {
+        if ((maxFeePerBlobGas == null) && (maxFeePerBlobGasRaw != null)) {
+            this.maxFeePerBlobGas = EthereumUtil.convertVarNumberToBigInteger(this.maxFeePerBlobGasRaw);
+        }
+        return maxFeePerBlobGas;
+    }
+
+    public void setMaxFeePerBlobGas(BigInteger maxFeePerBlobGas) {
+        this.maxFeePerBlobGas = maxFeePerBlobGas;
+    }
+
+    public byte[] getMaxFeePerBlobGasRaw() {
+        return maxFeePerBlobGasRaw;
+    }
+
+    public void setMaxFeePerBlobGasRaw(byte[] maxFeePerBlobGasRaw) {
+        this.maxFeePerBlobGasRaw = maxFeePerBlobGasRaw;
+    }
+
+    /**
+     * @return versioned hashes of the blobs of blob transactions, null for other transactions
+     */
+    public List<byte[]> getBlobVersionedHashes() {
+        return blobVersionedHashes;
+    }
+
+    public void setBlobVersionedHashes(List<byte[]> blobVersionedHashes) {
+        this.blobVersionedHashes = blobVersionedHashes;
+    }
+
+    /**
+     * Returns the sender address if it has been calculated while reading the block (cf. hadoopcryptoledger.ethereumblockinputformat.calculatesender)
+     *
+     * @return sender address or null if it has not been calculated or the transaction is not signed
+     */
+    public byte[] getSender() {
+        return sender;
+    }
+
+    public void setSender(byte[] sender) {
+        this.sender = sender;
+    }
+
+    /**
+     * Returns the transaction hash. Transactions read by an EthereumTransactionRecordReader have their hash calculated over
+     * the encoded transaction in the raw block, for all other transactions it is null (cf. {@link EthereumUtil#getTransactionHash(EthereumTransaction)}).
+     *
+     * @return transaction hash or null if it has not been calculated yet
+     */
+    public byte[] getHash() {
+        return hash;
+    }
+
+    /**
+     * Sets the transaction hash. It must be reset to null if fields of the transaction are modified afterwards.
+     *
+     * @param hash transaction hash
+     */
+    public void setHash(byte[] hash) {
+        this.hash = hash;
+    }
+
 }
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.ethereum.format.common;
+
+import org.bouncycastle.jcajce.provider.digest.Keccak;
+import org.zuinnote.hadoop.ethereum.format.common.rlp.RLPCursor;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Flyweight view of a single transaction inside a {@link EthereumBlockView}. Instances are obtained by
+ * {@link EthereumBlockView#getTransaction(int)} and are repositioned on every call of that method.
+ * </p>
+ *
+ * <p>
+ * Legacy transactions are RLP lists, typed transactions (EIP-2718) are RLP strings containing the type byte followed by
+ * the RLP list of the fields. The position of a field in the list depends on the type, thus fields are addressed by the
+ * TX_* constants of this class, which are mapped to positions by {@link #getFieldIndex(int)}. The mapping is selected
+ * once by the type byte when the view is positioned, the fields of typed transactions are read in place as well.
+ * </p>
+ **/
+public class EthereumTransactionView {
+
+    public static final int TX_NONCE = 0;
+    public static final int TX_GASPRICE = 1;
+    public static final int TX_GASLIMIT = 2;
+    public static final int TX_RECEIVEADDRESS = 3;
+    public static final int TX_VALUE = 4;
+    public static final int TX_DATA = 5;
+    public static final int TX_SIG_V = 6;
+    public static final int TX_SIG_R = 7;
+    public static final int TX_SIG_S = 8;
+    public static final int TX_CHAINID = 9;
+    public static final int TX_MAXPRIORITYFEEPERGAS = 10;
+    public static final int TX_MAXFEEPERGAS = 11;
+    public static final int TX_ACCESSLIST = 12;
+    public static final int TX_MAXFEEPERBLOBGAS = 13;
+    public static final int TX_BLOBVERSIONEDHASHES = 14;
+
+    // position of the TX_* fields in the RLP list of each transaction type, -1 if the type does not have the field
+    private static final int[] LAYOUT_LEGACY = {0, 1, 2, 3, 4, 5, 6, 7, 8, -1, -1, -1, -1, -1, -1};
+    private static final int[] LAYOUT_ACCESS_LIST = {1, 2, 3, 4, 5, 6, 8, 9, 10, 0, -1, -1, 7, -1, -1};
+    private static final int[] LAYOUT_DYNAMIC_FEE = {1, -1, 4, 5, 6, 7, 9, 10, 11, 0, 2, 3, 8, -1, -1};
+    private static final int[] LAYOUT_BLOB = {1, -1, 4, 5, 6, 7, 11, 12, 13, 0, 2, 3, 8, 9, 10};
+
+    private final EthereumBlockView block;
+    private final RLPCursor fields = new RLPCursor();
+    private final RLPCursor nested = new RLPCursor();
+    private int index;
+    private int type;
+    private int[] layout;
+
+    EthereumTransactionView(EthereumBlockView block) {
+        this.block = block;
+    }
+
+    void setIndex(int index) {
+        RLPCursor transactions = this.block.getTransactions();
+        if (transactions.isList(index)) {
+            transactions.getList(index, this.fields);
+            this.type = EthereumTransaction.TYPE_LEGACY;
+            this.layout = LAYOUT_LEGACY;
+        } else {
+            int envelopeOffset = transactions.getDataOffset(index);
+            int envelopeEnd = envelopeOffset + transactions.getDataLength(index);
+            if (envelopeEnd == envelopeOffset) {
+                throw new IllegalArgumentException("Transaction " + index + " is empty");
+            }
+            this.type = transactions.getBuffer().get(envelopeOffset) & 0xFF;
+            switch (this.type) {
+                case EthereumTransaction.TYPE_ACCESS_LIST:
+                    this.layout = LAYOUT_ACCESS_LIST;
+                    break;
+                case EthereumTransaction.TYPE_DYNAMIC_FEE:
+                    this.layout = LAYOUT_DYNAMIC_FEE;
+                    break;
+                case EthereumTransaction.TYPE_BLOB:
+                    this.layout = LAYOUT_BLOB;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported type " + this.type + " of transaction " + index);
+            }
+            this.fields.reset(transactions.getBuffer(), envelopeOffset + 1);
+            if (this.fields.getEnd() != envelopeEnd) {
+                throw new IllegalArgumentException("Fields of typed transaction " + index + " do not fill its envelope");
+            }
+        }
+        this.index = index;
+    }
+
+    public int getIndex() {
+        return this.index;
+    }
+
+    /**
+     * @return type of the transaction, cf. EthereumTransaction.TYPE_*
+     */
+    public int getType() {
+        return this.type;
+    }
+
+    /**
+     * Returns the cursor over the fields of the transaction, eg to read fields without copying them by
+     * {@link RLPCursor#dataSlice(int)} using {@link #getFieldIndex(int)} as index. For typed transactions this is the
+     * list following the type byte.
+     *
+     * @return cursor of the transaction
+     */
+    public RLPCursor getFields() {
+        return this.fields;
+    }
+
+    /**
+     * Returns the position of a field in the RLP list of the fields of this transaction
+     *
+     * @param field one of the TX_* constants
+     * @return position or -1 if the type of this transaction does not have the field
+     */
+    public int getFieldIndex(int field) {
+        return this.layout[field];
+    }
+
+    /**
+     * Returns a slice containing the encoded transaction as it is hashed, ie the RLP list for legacy transactions and
+     * the type byte followed by the RLP list for typed transactions
+     *
+     * @return slice
+     */
+    public ByteBuffer rawSlice() {
+        if (this.type == EthereumTransaction.TYPE_LEGACY) {
+            return this.fields.listSlice();
+        }
+        ByteBuffer result = this.fields.getBuffer().duplicate();
+        result.limit(this.fields.getEnd());
+        result.position(this.fields.getOffset() - 1);
+        return result.slice();
+    }
+
+    /**
+     * Calculates the transaction hash (Keccak-256 of {@link #rawSlice()}) directly over the raw block, ie without
+     * encoding the fields again as {@link EthereumUtil#getTransactionHash(EthereumTransaction)} does
+     *
+     * @return transaction hash
+     */
+    public byte[] getTransactionHash() {
+        Keccak.Digest256 digest = this.block.getDigest();
+        digest.update(rawSlice());
+        return digest.digest();
+    }
+
+    public long getNonce() {
+        return this.fields.getLong(this.layout[TX_NONCE]);
+    }
+
+    /**
+     * @return gas price of legacy and access list transactions, null for other transactions
+     */
+    public BigInteger getGasPrice() {
+        return getBigInteger(TX_GASPRICE);
+    }
+
+    public BigInteger getGasLimit() {
+        return this.fields.getBigInteger(this.layout[TX_GASLIMIT]);
+    }
+
+    /**
+     * @return max priority fee per gas of dynamic fee and blob transactions, null for other transactions
+     */
+    public BigInteger getMaxPriorityFeePerGas() {
+        return getBigInteger(TX_MAXPRIORITYFEEPERGAS);
+    }
+
+    /**
+     * @return max fee per gas of dynamic fee and blob transactions, null for other transactions
+     */
+    public BigInteger getMaxFeePerGas() {
+        return getBigInteger(TX_MAXFEEPERGAS);
+    }
+
+    /**
+     * @return slice containing the receive address, empty for contract creations
+     */
+    public ByteBuffer receiveAddressSlice() {
+        return this.fields.dataSlice(this.layout[TX_RECEIVEADDRESS]);
+    }
+
+    public BigInteger getValue() {
+        return this.fields.getBigInteger(this.layout[TX_VALUE]);
+    }
+
+    public ByteBuffer dataSlice() {
+        return this.fields.dataSlice(this.layout[TX_DATA]);
+    }
+
+    /**
+     * @return true if the transaction contains a signature
+     */
+    public boolean isSigned() {
+        int sigS = this.layout[TX_SIG_S];
+        if (this.fields.size() <= sigS) {
+            return false;
+        }
+        // the y parity of typed transactions is empty if it is 0
+        return (this.type != EthereumTransaction.TYPE_LEGACY) || (this.fields.getDataLength(this.layout[TX_SIG_V]) > 0);
+    }
+
+    /**
+     * Materializes the transaction as {@link EthereumTransaction}. The hash is not calculated, cf. {@link #getTransactionHash()}
+     *
+     * @return transaction
+     */
+    public EthereumTransaction toEthereumTransaction() {
+        EthereumTransaction result = new EthereumTransaction();
+        result.setTransactionType(this.type);
+        result.setNonce(this.fields.getData(this.layout[TX_NONCE]));
+        result.setGasLimitRaw(this.fields.getData(this.layout[TX_GASLIMIT]));
+        result.setReceiveAddress(this.fields.getData(this.layout[TX_RECEIVEADDRESS]));
+        result.setValueRaw(this.fields.getData(this.layout[TX_VALUE]));
+        result.setData(this.fields.getData(this.layout[TX_DATA]));
+        if (this.type == EthereumTransaction.TYPE_LEGACY) {
+            result.setGasPriceRaw(this.fields.getData(TX_GASPRICE));
+            if (this.fields.getDataLength(TX_SIG_V) > 0) {
+                result.setSig_v(this.fields.getData(TX_SIG_V));
+                result.setSig_r(this.fields.getData(TX_SIG_R));
+                result.setSig_s(this.fields.getData(TX_SIG_S));
+            }
+            return result;
+        }
+        result.setChainIdRaw(this.fields.getData(this.layout[TX_CHAINID]));
+        result.setGasPriceRaw(getData(TX_GASPRICE));
+        result.setMaxPriorityFeePerGasRaw(getData(TX_MAXPRIORITYFEEPERGAS));
+        result.setMaxFeePerGasRaw(getData(TX_MAXFEEPERGAS));
+        result.setAccessList(getAccessList());
+        result.setMaxFeePerBlobGasRaw(getData(TX_MAXFEEPERBLOBGAS));
+        if (this.layout[TX_BLOBVERSIONEDHASHES] >= 0) {
+            result.setBlobVersionedHashes(getDataList(this.fields.getList(this.layout[TX_BLOBVERSIONEDHASHES], this.nested)));
+        }
+        if (isSigned()) {
+            result.setSig_v(this.fields.getData(this.layout[TX_SIG_V]));
+            result.setSig_r(this.fields.getData(this.layout[TX_SIG_R]));
+            result.setSig_s(this.fields.getData(this.layout[TX_SIG_S]));
+        }
+        return result;
+    }
+
+    /**
+     * Materializes the access list of a typed transaction
+     *
+     * @return access list or null for legacy transactions
+     */
+    public List<EthereumAccessListItem> getAccessList() {
+        if (this.layout[TX_ACCESSLIST] < 0) {
+            return null;
+        }
+        RLPCursor accessList = this.fields.getList(this.layout[TX_ACCESSLIST], this.nested);
+        List<EthereumAccessListItem> result = new ArrayList<>(accessList.size());
+        RLPCursor item = new RLPCursor();
+        RLPCursor storageKeys = new RLPCursor();
+        for (int i = 0; i < accessList.size(); i++) {
+            accessList.getList(i, item);
+            result.add(new EthereumAccessListItem(item.getData(0), getDataList(item.getList(1, storageKeys))));
+        }
+        return result;
+    }
+
+    private BigInteger getBigInteger(int field) {
+        int fieldIndex = this.layout[field];
+        return fieldIndex < 0 ? null : this.fields.getBigInteger(fieldIndex);
+    }
+
+    private byte[] getData(int field) {
+        int fieldIndex = this.layout[field];
+        return fieldIndex < 0 ? null : this.fields.getData(fieldIndex);
+    }
+
+    private static List<byte[]> getDataList(RLPCursor list) {
+        List<byte[]> result = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            result.add(list.getData(i));
+        }
+        return result;
+    }
+}
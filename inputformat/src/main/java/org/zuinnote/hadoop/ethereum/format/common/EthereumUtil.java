@@ -18,14 +18,7 @@ package org.zuinnote.hadoop.ethereum.format.common;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.bouncycastle.asn1.sec.SECNamedCurves;
-import org.bouncycastle.asn1.x9.X9ECParameters;
-import org.bouncycastle.asn1.x9.X9IntegerConverter;
-import org.bouncycastle.crypto.params.ECDomainParameters;
 import org.bouncycastle.jcajce.provider.digest.Keccak;
-import org.bouncycastle.math.ec.ECAlgorithms;
-import org.bouncycastle.math.ec.ECCurve;
-import org.bouncycastle.math.ec.ECPoint;
 import org.zuinnote.hadoop.ethereum.format.common.rlp.RLPElement;
 import org.zuinnote.hadoop.ethereum.format.common.rlp.RLPList;
 import org.zuinnote.hadoop.ethereum.format.common.rlp.RLPObject;
@@ -33,11 +26,13 @@ import org.zuinnote.hadoop.ethereum.format.common.rlp.RLPObject;
 import javax.xml.bind.DatatypeConverter;
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 
 /**
@@ -117,11 +112,10 @@ public class EthereumUtil {
     }
 
     private static long convertIndicatorToRLPSize(byte[] indicator) {
-        byte[] rawDataNumber = Arrays.copyOfRange(indicator, 1, indicator.length);
-        ArrayUtils.reverse(rawDataNumber);
+        // the size follows the first byte of the indicator as big endian number
         long RLPSize = 0;
-        for (int i = 0; i < rawDataNumber.length; i++) {
-            RLPSize += (rawDataNumber[i] & 0xFF) * Math.pow(256, i);
+        for (int i = 1; i < indicator.length; i++) {
+            RLPSize = (RLPSize << 8) | (indicator[i] & 0xFF);
         }
         return RLPSize;
     }
@@ -187,14 +181,8 @@ public class EthereumUtil {
             bb.order(ByteOrder.LITTLE_ENDIAN);
             bb.putInt(rawData.length);
             byte[] intArray = bb.array();
-            int intSize = 0;
-            for (int i = 0; i < intArray.length; i++) {
-                if (intArray[i] == 0) {
-                    break;
-                } else {
-                    intSize++;
-                }
-            }
+            // number of significant bytes of the length, zero bytes inside the length (eg 0x0100) are significant
+            int intSize = INT_SIZE - Integer.numberOfLeadingZeros(rawData.length) / 8;
             result = new byte[1 + intSize + rawData.length];
             result[0] = (byte) (0xb7 + intSize);
             byte[] rawDataNumber = Arrays.copyOfRange(intArray, 0, intSize);
@@ -211,7 +199,13 @@ public class EthereumUtil {
         return result;
     }
 
-    private static byte[] encodeRLPList(List<byte[]> rawElementList) {
+    /**
+     * Encodes a list of already RLP encoded items (eg by {@link #encodeRLPElement(byte[])} or nested calls of this method) as RLP list
+     *
+     * @param rawElementList RLP encoded items
+     * @return RLP encoded list
+     */
+    public static byte[] encodeRLPList(List<byte[]> rawElementList) {
         byte[] result;
         int totalSize = 0;
         if ((rawElementList == null) || (rawElementList.size() == 0)) {
@@ -230,14 +224,8 @@ public class EthereumUtil {
             bb.order(ByteOrder.LITTLE_ENDIAN);
             bb.putInt(totalSize);
             byte[] intArray = bb.array();
-            int intSize = 0;
-            for (int i = 0; i < intArray.length; i++) {
-                if (intArray[i] == 0) {
-                    break;
-                } else {
-                    intSize++;
-                }
-            }
+            // number of significant bytes of the length, zero bytes inside the length (eg 0x0100) are significant
+            int intSize = INT_SIZE - Integer.numberOfLeadingZeros(totalSize) / 8;
             result = new byte[1 + intSize + totalSize];
             result[0] = (byte) (0xf7 + intSize);
             byte[] rawDataNumber = Arrays.copyOfRange(intArray, 0, intSize);
@@ -321,9 +309,13 @@ public class EthereumUtil {
         }
         ArrayList<RLPObject> payloadList = new ArrayList<>();
         if (payloadSize > 0) {
-            byte[] payload = new byte[(int) payloadSize];
-            bb.get(payload);
-            ByteBuffer payloadBB = ByteBuffer.wrap(payload);
+            if (payloadSize > bb.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            // decode the items from a view of the payload instead of a copy
+            ByteBuffer payloadBB = bb.slice();
+            payloadBB.limit((int) payloadSize);
+            bb.position(bb.position() + (int) payloadSize);
             while (payloadBB.remaining() > 0) {
                 switch (EthereumUtil.detectRLPObjectType(payloadBB)) {
                     case EthereumUtil.RLP_OBJECTTYPE_ELEMENT:
@@ -352,6 +344,10 @@ public class EthereumUtil {
      * @return chainId: 0, Ethereum testnet (aka Olympic); 1: Ethereum mainet (aka Frontier, Homestead, Metropolis) - also Classic (from fork) -also Expanse (alternative Ethereum implementation), 2 Morden (Ethereum testnet, now Ethereum classic testnet), 3 Ropsten public cross-client Ethereum testnet, 4: Rinkeby Geth Ethereum testnet, 42 Kovan, public Parity Ethereum testnet, 7762959 Musicoin, music blockchain
      */
     public static Long calculateChainId(EthereumTransaction eTrans) {
+        if (eTrans.getTransactionType() != EthereumTransaction.TYPE_LEGACY) {
+            // typed transactions contain the chain id explicitly
+            return EthereumUtil.convertVarNumberToLong(new RLPElement(new byte[0], eTrans.getChainIdRaw()));
+        }
         Long result = null;
         long rawResult = EthereumUtil.convertVarNumberToLong(new RLPElement(new byte[0], eTrans.getSig_v()));
         if (!((rawResult == EthereumUtil.LOWER_REAL_V) || (rawResult == (LOWER_REAL_V + 1)))) {
@@ -363,11 +359,24 @@ public class EthereumUtil {
 
     /***
      * Calculates the hash of a transaction. Note this requires that you have Bouncy castle as a dependency in your project
+     * The hash of typed transactions (EIP-2718) is calculated over the type byte followed by the RLP encoded fields.
+     * If the transaction already contains a hash (cf. {@link EthereumTransaction#getHash()}), eg because it has been read by
+     * an EthereumTransactionRecordReader, this hash is returned. Otherwise the hash is calculated, but not stored on the transaction.
      *
      * @param eTrans transaction
      * @return transaction hash as KECCAK-256
      */
     public static byte[] getTransactionHash(EthereumTransaction eTrans) {
+        if (eTrans.getHash() != null) {
+            return eTrans.getHash();
+        }
+        return calculateTransactionHash(eTrans);
+    }
+
+    private static byte[] calculateTransactionHash(EthereumTransaction eTrans) {
+        if (eTrans.getTransactionType() != EthereumTransaction.TYPE_LEGACY) {
+            return keccak(encodeTypedTransaction(eTrans, true));
+        }
         ArrayList<byte[]> rlpTransaction = new ArrayList<>();
         rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getNonce()));
         rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getGasPriceRaw()));
@@ -386,11 +395,15 @@ public class EthereumUtil {
 
     /***
      * Calculates the hash of a transaction without signature. Note this requires that you have Bouncy castle as a dependency in your project
+     * For typed transactions (EIP-2718) this is the hash signed by the sender, ie it includes the chain id.
      *
      * @param eTrans transaction
      * @return transaction hash as KECCAK-256
      */
     public static byte[] getTransactionHashWithoutSignature(EthereumTransaction eTrans) {
+        if (eTrans.getTransactionType() != EthereumTransaction.TYPE_LEGACY) {
+            return keccak(encodeTypedTransaction(eTrans, false));
+        }
         ArrayList<byte[]> rlpTransaction = new ArrayList<>();
         rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getNonce()));
         rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getGasPriceRaw()));
@@ -429,80 +442,112 @@ public class EthereumUtil {
     }
 
     /**
-     * Calculates the sent address of an EthereumTransaction. Note this can be a costly operation to calculate. . This requires that you have Bouncy castle as a dependency in your project
+     * Encodes a typed transaction (EIP-2718) as type byte followed by the RLP list of its fields
      *
+     * @param eTrans        typed transaction
+     * @param withSignature true if the signature should be included
+     * @return encoded transaction
+     */
+    private static byte[] encodeTypedTransaction(EthereumTransaction eTrans, boolean withSignature) {
+        int type = eTrans.getTransactionType();
+        ArrayList<byte[]> rlpTransaction = new ArrayList<>();
+        rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getChainIdRaw()));
+        rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getNonce()));
+        switch (type) {
+            case EthereumTransaction.TYPE_ACCESS_LIST:
+                rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getGasPriceRaw()));
+                break;
+            case EthereumTransaction.TYPE_DYNAMIC_FEE:
+            case EthereumTransaction.TYPE_BLOB:
+                rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getMaxPriorityFeePerGasRaw()));
+                rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getMaxFeePerGasRaw()));
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported transaction type " + type);
+        }
+        rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getGasLimitRaw()));
+        rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getReceiveAddress()));
+        rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getValueRaw()));
+        rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getData()));
+        ArrayList<byte[]> rlpAccessList = new ArrayList<>();
+        if (eTrans.getAccessList() != null) {
+            for (EthereumAccessListItem item : eTrans.getAccessList()) {
+                ArrayList<byte[]> rlpItem = new ArrayList<>(2);
+                rlpItem.add(EthereumUtil.encodeRLPElement(item.getAddress()));
+                rlpItem.add(EthereumUtil.encodeRLPElements(item.getStorageKeys()));
+                rlpAccessList.add(EthereumUtil.encodeRLPList(rlpItem));
+            }
+        }
+        rlpTransaction.add(EthereumUtil.encodeRLPList(rlpAccessList));
+        if (type == EthereumTransaction.TYPE_BLOB) {
+            rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getMaxFeePerBlobGasRaw()));
+            rlpTransaction.add(EthereumUtil.encodeRLPElements(eTrans.getBlobVersionedHashes()));
+        }
+        if (withSignature) {
+            rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getSig_v()));
+            rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getSig_r()));
+            rlpTransaction.add(EthereumUtil.encodeRLPElement(eTrans.getSig_s()));
+        }
+        byte[] fields = EthereumUtil.encodeRLPList(rlpTransaction);
+        byte[] result = new byte[fields.length + 1];
+        result[0] = (byte) type;
+        System.arraycopy(fields, 0, result, 1, fields.length);
+        return result;
+    }
+
+    private static byte[] encodeRLPElements(List<byte[]> rawDataList) {
+        ArrayList<byte[]> rlpElements = new ArrayList<>();
+        if (rawDataList != null) {
+            for (byte[] rawData : rawDataList) {
+                rlpElements.add(EthereumUtil.encodeRLPElement(rawData));
+            }
+        }
+        return EthereumUtil.encodeRLPList(rlpElements);
+    }
+
+    private static byte[] keccak(byte[] data) {
+        Keccak.Digest256 digest = new Keccak.Digest256();
+        digest.update(data, 0, data.length);
+        return digest.digest();
+    }
+
+    /**
+     * Calculates the sent address of an EthereumTransaction. Note this can be a costly operation to calculate. . This requires that you have Bouncy castle as a dependency in your project
+     * The optimized secp256k1 implementation of {@link EthereumSignatureRecovery} is used if available. To calculate the sent addresses of many transactions, eg of a block, {@link EthereumSignatureRecovery#getSendAddresses(List, int)} is faster.
      *
      * @param eTrans transaction
      * @param chainId chain identifier (e.g. 1 main net)
      * @return sent address as byte array
      */
     public static byte[] getSendAddress(EthereumTransaction eTrans, int chainId) {
-        // init, maybe we move this out to save time
-        X9ECParameters params = SECNamedCurves.getByName("secp256k1");
-        ECDomainParameters CURVE = new ECDomainParameters(params.getCurve(), params.getG(), params.getN(), params.getH());     // needed for getSentAddress
-
-
-        byte[] transactionHash;
-
-        if ((eTrans.getSig_v()[0] == chainId * 2 + EthereumUtil.CHAIN_ID_INC) || (eTrans.getSig_v()[0] == chainId * 2 + EthereumUtil.CHAIN_ID_INC + 1)) {  // transaction hash with dummy signature data
-            transactionHash = EthereumUtil.getTransactionHashWithDummySignatureEIP155(eTrans);
-        } else {  // transaction hash without signature data
-            transactionHash = EthereumUtil.getTransactionHashWithoutSignature(eTrans);
-        }
-        // signature to address
-        BigInteger bR = new BigInteger(1, eTrans.getSig_r());
-        BigInteger bS = new BigInteger(1, eTrans.getSig_s());
-        // calculate v for signature
-        byte v = (byte) (eTrans.getSig_v()[0]);
-        if (!((v == EthereumUtil.LOWER_REAL_V) || (v == (LOWER_REAL_V + 1)))) {
-            byte vReal = EthereumUtil.LOWER_REAL_V;
-            if (((int) v % 2 == 0)) {
-                v = (byte) (vReal + 0x01);
-            } else {
-                v = vReal;
-            }
-        }
+        return EthereumSignatureRecovery.getSendAddress(eTrans, chainId);
+    }
 
+    /**
+     * Calculates the sent addresses of all transactions of a block. This is considerably faster than calling {@link #getSendAddress(EthereumTransaction, int)}
+     * for every transaction, because expensive inversions are shared between the transactions and large blocks are processed in parallel by the common ForkJoinPool.
+     *
+     * @param block block
+     * @param chainId chain identifier (e.g. 1 main net)
+     * @return sent addresses in the order of the transactions of the block, null for transactions that are not signed
+     */
+    public static byte[][] getSendAddresses(EthereumBlock block, int chainId) {
+        return getSendAddresses(block, chainId, ForkJoinPool.commonPool());
+    }
 
-        // the following lines are inspired from ECKey.java of EthereumJ, but adapted to the hadoopcryptoledger context
-        if (v < 27 || v > 34) {
-            LOG.error("Header out of Range:  " + v);
-            throw new RuntimeException("Header out of range " + v);
-        }
-        if (v >= 31) {
-
-            v -= 4;
-        }
-        int receiverId = v - 27;
-        BigInteger n = CURVE.getN();
-        BigInteger i = BigInteger.valueOf((long) receiverId / 2);
-        BigInteger x = bR.add(i.multiply(n));
-        ECCurve.Fp curve = (ECCurve.Fp) CURVE.getCurve();
-        BigInteger prime = curve.getQ();
-        if (x.compareTo(prime) >= 0) {
-            return null;
-        }
-        // decompress Key
-        X9IntegerConverter x9 = new X9IntegerConverter();
-        byte[] compEnc = x9.integerToBytes(x, 1 + x9.getByteLength(CURVE.getCurve()));
-        boolean yBit = (receiverId & 1) == 1;
-        compEnc[0] = (byte) (yBit ? 0x03 : 0x02);
-        ECPoint R = CURVE.getCurve().decodePoint(compEnc);
-        if (!R.multiply(n).isInfinity()) {
-            return null;
-        }
-        BigInteger e = new BigInteger(1, transactionHash);
-        BigInteger eInv = BigInteger.ZERO.subtract(e).mod(n);
-        BigInteger rInv = bR.modInverse(n);
-        BigInteger srInv = rInv.multiply(bS).mod(n);
-        BigInteger eInvrInv = rInv.multiply(eInv).mod(n);
-        ECPoint.Fp q = (ECPoint.Fp) ECAlgorithms.sumOfTwoMultiplies(CURVE.getG(), eInvrInv, R, srInv);
-        byte[] pubKey = q.getEncoded(false);
-        // now we need to convert the public key into an ethereum send address which is the last 20 bytes of 32 byte KECCAK-256 Hash of the key.
-        Keccak.Digest256 digest256 = new Keccak.Digest256();
-        digest256.update(pubKey, 1, pubKey.length - 1);
-        byte[] kcck = digest256.digest();
-        return Arrays.copyOfRange(kcck, 12, kcck.length);
+    /**
+     * Calculates the sent addresses of all transactions of a block, cf. {@link #getSendAddresses(EthereumBlock, int)}
+     *
+     * @param block block
+     * @param chainId chain identifier (e.g. 1 main net)
+     * @param pool pool to process large blocks in parallel, null to process them in the calling thread
+     * @return sent addresses in the order of the transactions of the block, null for transactions that are not signed
+     */
+    public static byte[][] getSendAddresses(EthereumBlock block, int chainId, ForkJoinPool pool) {
+        if (pool == null) {
+            return EthereumSignatureRecovery.getSendAddresses(block.getEthereumTransactions(), chainId);
+        }
+        return EthereumSignatureRecovery.getSendAddresses(block.getEthereumTransactions(), chainId, pool);
     }
 
 
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.ethereum.format.common;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+
+/**
+ * Withdrawal of a validator from the beacon chain contained in blocks since Shanghai (EIP-4895). The amount is given in Gwei.
+ */
+public class EthereumWithdrawal implements Serializable {
+
+    private static final long serialVersionUID = 6139658212434960128L;
+    private byte[] indexRaw;
+    private byte[] validatorIndexRaw;
+    private byte[] address;
+    private byte[] amountRaw;
+
+    public EthereumWithdrawal() {
+        // please use setter to set the data
+    }
+
+    public BigInteger getIndex() {
+        return EthereumUtil.convertVarNumberToBigInteger(this.indexRaw);
+    }
+
+    public byte[] getIndexRaw() {
+        return indexRaw;
+    }
+
+    public void setIndexRaw(byte[] indexRaw) {
+        this.indexRaw = indexRaw;
+    }
+
+    public BigInteger getValidatorIndex() {
+        return EthereumUtil.convertVarNumberToBigInteger(this.validatorIndexRaw);
+    }
+
+    public byte[] getValidatorIndexRaw() {
+        return validatorIndexRaw;
+    }
+
+    public void setValidatorIndexRaw(byte[] validatorIndexRaw) {
+        this.validatorIndexRaw = validatorIndexRaw;
+    }
+
+    public byte[] getAddress() {
+        return address;
+    }
+
+    public void setAddress(byte[] address) {
+        this.address = address;
+    }
+
+    public BigInteger getAmount() {
+        return EthereumUtil.convertVarNumberToBigInteger(this.amountRaw);
+    }
+
+    public byte[] getAmountRaw() {
+        return amountRaw;
+    }
+
+    public void setAmountRaw(byte[] amountRaw) {
+        this.amountRaw = amountRaw;
+    }
+
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.ethereum.format.common.rlp;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Lazy cursor over an RLP encoded list in a ByteBuffer (https://github.com/ethereum/wiki/wiki/RLP).
+ * </p>
+ * <p>
+ * In contrast to {@link org.zuinnote.hadoop.ethereum.format.common.EthereumUtil#rlpDecodeNextItem(ByteBuffer)} no
+ * tree of {@link RLPList} and {@link RLPElement} is created. When a buffer is attached with {@link #reset(ByteBuffer, int)}
+ * only the offsets and lengths of the direct items of the list are recorded in int arrays, which are reused when the
+ * cursor is reset. Nested lists are decoded on demand with {@link #getList(int, RLPCursor)} and byte arrays are only
+ * created if explicitly requested, e.g. by {@link #getData(int)}. The cursor is only valid as long as the buffer is not modified.
+ * </p>
+ **/
+public class RLPCursor {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private ByteBuffer buffer;
+	private int offset;
+	private int end;
+	private int size;
+	private int[] itemOffsets = new int[INITIAL_CAPACITY + 1];
+	private int[] dataOffsets = new int[INITIAL_CAPACITY];
+	private int[] dataLengths = new int[INITIAL_CAPACITY];
+	private boolean[] lists = new boolean[INITIAL_CAPACITY];
+
+	/**
+	 * Attaches the cursor to the RLP encoded list starting at the current position of the buffer. The position of the buffer is not changed.
+	 *
+	 * @param buffer buffer containing the RLP encoded list
+	 * @return this cursor
+	 * @throws IllegalArgumentException if the buffer does not contain an RLP encoded list at its position
+	 * @throws IndexOutOfBoundsException if the list or one of its items is truncated
+	 */
+	public RLPCursor reset(ByteBuffer buffer) {
+		return reset(buffer, buffer.position());
+	}
+
+	/**
+	 * Attaches the cursor to the RLP encoded list starting at the given absolute offset of the buffer. The position of the buffer is not changed.
+	 *
+	 * @param buffer buffer containing the RLP encoded list
+	 * @param offset absolute offset of the prefix of the list
+	 * @return this cursor
+	 * @throws IllegalArgumentException if the buffer does not contain an RLP encoded list at offset
+	 * @throws IndexOutOfBoundsException if the list or one of its items is truncated
+	 */
+	public RLPCursor reset(ByteBuffer buffer, int offset) {
+		if ((buffer.get(offset) & 0xFF) < 0xc0) {
+			throw new IllegalArgumentException("No RLP encoded list at offset " + offset);
+		}
+		this.buffer = buffer;
+		this.offset = offset;
+		this.size = 0;
+		int pos = offset + prefixSize(buffer, offset);
+		this.end = checkEnd(pos, dataLength(buffer, offset), buffer.limit());
+		while (pos < this.end) {
+			ensureCapacity(this.size + 1);
+			int dataOffset = pos + prefixSize(buffer, pos);
+			int dataLength = dataLength(buffer, pos);
+			this.itemOffsets[this.size] = pos;
+			this.dataOffsets[this.size] = dataOffset;
+			this.dataLengths[this.size] = dataLength;
+			this.lists[this.size] = (buffer.get(pos) & 0xFF) >= 0xc0;
+			pos = checkEnd(dataOffset, dataLength, this.end);
+			this.size++;
+		}
+		this.itemOffsets[this.size] = this.end;
+		return this;
+	}
+
+	/**
+	 * Returns the size of the prefix (indicator) of the RLP encoded item at the given offset
+	 *
+	 * @param buffer buffer containing the item
+	 * @param offset absolute offset of the item
+	 * @return size of the prefix in bytes, 0 for single bytes below 0x80 that encode themselves
+	 */
+	public static int prefixSize(ByteBuffer buffer, int offset) {
+		int prefix = buffer.get(offset) & 0xFF;
+		if (prefix <= 0x7f) {
+			return 0;
+		} else if ((prefix <= 0xb7) || ((prefix >= 0xc0) && (prefix <= 0xf7))) {
+			return 1;
+		} else if (prefix <= 0xbf) {
+			return 1 + prefix - 0xb7;
+		}
+		return 1 + prefix - 0xf7;
+	}
+
+	/**
+	 * Returns the length of the data (payload) of the RLP encoded item at the given offset
+	 *
+	 * @param buffer buffer containing the item
+	 * @param offset absolute offset of the item
+	 * @return length of the data in bytes excluding the prefix
+	 * @throws IndexOutOfBoundsException if the length does not fit into an int
+	 */
+	public static int dataLength(ByteBuffer buffer, int offset) {
+		int prefix = buffer.get(offset) & 0xFF;
+		if (prefix <= 0x7f) {
+			return 1;
+		} else if (prefix <= 0xb7) {
+			return prefix - 0x80;
+		} else if (prefix <= 0xbf) {
+			return readLength(buffer, offset + 1, prefix - 0xb7);
+		} else if (prefix <= 0xf7) {
+			return prefix - 0xc0;
+		}
+		return readLength(buffer, offset + 1, prefix - 0xf7);
+	}
+
+	private static int readLength(ByteBuffer buffer, int offset, int noOfBytes) {
+		long result = 0;
+		for (int i = 0; i < noOfBytes; i++) {
+			result = (result << 8) | (buffer.get(offset + i) & 0xFF);
+			if (result > Integer.MAX_VALUE) {
+				throw new IndexOutOfBoundsException("Length of RLP item at offset " + (offset - 1) + " exceeds the maximum size");
+			}
+		}
+		return (int) result;
+	}
+
+	private int checkEnd(int dataOffset, int dataLength, int limit) {
+		if ((long) dataOffset + dataLength > limit) {
+			throw new IndexOutOfBoundsException("RLP item at offset " + dataOffset + " with length " + dataLength + " exceeds the enclosing data ending at " + limit);
+		}
+		return dataOffset + dataLength;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > this.dataOffsets.length) {
+			int newCapacity = Math.max(capacity, this.dataOffsets.length * 2);
+			this.itemOffsets = Arrays.copyOf(this.itemOffsets, newCapacity + 1);
+			this.dataOffsets = Arrays.copyOf(this.dataOffsets, newCapacity);
+			this.dataLengths = Arrays.copyOf(this.dataLengths, newCapacity);
+			this.lists = Arrays.copyOf(this.lists, newCapacity);
+		}
+	}
+
+	private void checkIndex(int index) {
+		if ((index < 0) || (index >= this.size)) {
+			throw new IndexOutOfBoundsException("Item " + index + " does not exist in RLP list with " + this.size + " items");
+		}
+	}
+
+	public ByteBuffer getBuffer() {
+		return this.buffer;
+	}
+
+	/**
+	 * @return absolute offset of the prefix of the list
+	 */
+	public int getOffset() {
+		return this.offset;
+	}
+
+	/**
+	 * @return absolute offset of the first byte after the list
+	 */
+	public int getEnd() {
+		return this.end;
+	}
+
+	/**
+	 * @return number of items in the list
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @param index index of the item
+	 * @return true if the item is a list, false if it is an element
+	 */
+	public boolean isList(int index) {
+		checkIndex(index);
+		return this.lists[index];
+	}
+
+	/**
+	 * @param index index of the item
+	 * @return absolute offset of the item including its prefix
+	 */
+	public int getItemOffset(int index) {
+		checkIndex(index);
+		return this.itemOffsets[index];
+	}
+
+	/**
+	 * @param index index of the item
+	 * @return length of the item including its prefix
+	 */
+	public int getItemLength(int index) {
+		checkIndex(index);
+		return this.itemOffsets[index + 1] - this.itemOffsets[index];
+	}
+
+	/**
+	 * @param index index of the item
+	 * @return absolute offset of the data of the item
+	 */
+	public int getDataOffset(int index) {
+		checkIndex(index);
+		return this.dataOffsets[index];
+	}
+
+	/**
+	 * @param index index of the item
+	 * @return length of the data of the item
+	 */
+	public int getDataLength(int index) {
+		checkIndex(index);
+		return this.dataLengths[index];
+	}
+
+	/**
+	 * Returns a slice containing the complete RLP encoded list including its prefix
+	 *
+	 * @return slice
+	 */
+	public ByteBuffer listSlice() {
+		return slice(this.offset, this.end - this.offset);
+	}
+
+	/**
+	 * Returns a slice containing the RLP encoded item including its prefix
+	 *
+	 * @param index index of the item
+	 * @return slice
+	 */
+	public ByteBuffer itemSlice(int index) {
+		return slice(getItemOffset(index), getItemLength(index));
+	}
+
+	/**
+	 * Returns a slice containing the data of the item without its prefix
+	 *
+	 * @param index index of the item
+	 * @return slice
+	 */
+	public ByteBuffer dataSlice(int index) {
+		return slice(getDataOffset(index), getDataLength(index));
+	}
+
+	/**
+	 * Copies the data of an item into a new byte array. This corresponds to {@link RLPElement#getRawData()}.
+	 *
+	 * @param index index of the item
+	 * @return data of the item
+	 */
+	public byte[] getData(int index) {
+		byte[] result = new byte[getDataLength(index)];
+		getData(index, result, 0);
+		return result;
+	}
+
+	/**
+	 * Copies the data of an item into an existing byte array
+	 *
+	 * @param index  index of the item
+	 * @param dest   destination
+	 * @param offset offset in destination
+	 * @return number of bytes copied
+	 */
+	public int getData(int index, byte[] dest, int offset) {
+		int length = getDataLength(index);
+		ByteBuffer data = this.buffer.duplicate();
+		data.position(this.dataOffsets[index]);
+		data.get(dest, offset, length);
+		return length;
+	}
+
+	/**
+	 * Interprets the data of an item as unsigned big endian number
+	 *
+	 * @param index index of the item
+	 * @return number, 0 if the item is empty
+	 * @throws ArithmeticException if the number has more than 8 bytes
+	 */
+	public long getLong(int index) {
+		int length = getDataLength(index);
+		if (length > 8) {
+			throw new ArithmeticException("Item " + index + " does not fit into a long");
+		}
+		int dataOffset = this.dataOffsets[index];
+		long result = 0;
+		for (int i = 0; i < length; i++) {
+			result = (result << 8) | (this.buffer.get(dataOffset + i) & 0xFF);
+		}
+		return result;
+	}
+
+	/**
+	 * Interprets the data of an item as unsigned big endian number
+	 *
+	 * @param index index of the item
+	 * @return number, BigInteger.ZERO if the item is empty
+	 */
+	public BigInteger getBigInteger(int index) {
+		if (getDataLength(index) == 0) {
+			return BigInteger.ZERO;
+		}
+		return new BigInteger(1, getData(index));
+	}
+
+	/**
+	 * Attaches a cursor to a nested list
+	 *
+	 * @param index index of the item
+	 * @param reuse cursor to attach
+	 * @return reuse
+	 * @throws IllegalArgumentException if the item is not a list
+	 */
+	public RLPCursor getList(int index, RLPCursor reuse) {
+		if (!isList(index)) {
+			throw new IllegalArgumentException("Item " + index + " is not an RLP encoded list");
+		}
+		return reuse.reset(this.buffer, this.itemOffsets[index]);
+	}
+
+	private ByteBuffer slice(int index, int length) {
+		ByteBuffer result = this.buffer.duplicate();
+		result.limit(index + length);
+		result.position(index);
+		return result.slice();
+	}
+}
@@ -15,37 +15,160 @@
  */
 package org.zuinnote.hadoop.ethereum.format.mapred;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
 import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.JobConfigurable;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumBlockIndex;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 
 /**
  *
  */
 public abstract class AbstractEthereumFileInputFormat<K, V> extends FileInputFormat<K, V> implements JobConfigurable {
+    public static final String CONF_ISSPLITABLE = org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumFileInputFormat.CONF_ISSPLITABLE;
+    public static final String CONF_USEINDEX = org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumFileInputFormat.CONF_USEINDEX;
+    public static final boolean DEFAULT_ISSPLITABLE = org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumFileInputFormat.DEFAULT_ISSPLITABLE;
+    public static final boolean DEFAULT_USEINDEX = org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumFileInputFormat.DEFAULT_USEINDEX;
+
+    private static final Log LOG = LogFactory.getLog(AbstractEthereumFileInputFormat.class.getName());
 
+    private boolean isSplitable = DEFAULT_ISSPLITABLE;
+    private boolean useIndex = DEFAULT_USEINDEX;
     private CompressionCodecFactory compressionCodecs = null;
 
     @Override
     public void configure(JobConf job) {
         this.compressionCodecs = new CompressionCodecFactory(job);
-
+        this.isSplitable = job.getBoolean(AbstractEthereumFileInputFormat.CONF_ISSPLITABLE, AbstractEthereumFileInputFormat.DEFAULT_ISSPLITABLE);
+        this.useIndex = job.getBoolean(AbstractEthereumFileInputFormat.CONF_USEINDEX, AbstractEthereumFileInputFormat.DEFAULT_USEINDEX);
     }
 
     /**
      *
-     * Ethereum blockchain data is not splitable by definition. However, you can export the blockchains in files of a certain size (recommended: HDFS blocksize) to benefit from parallelism. It is not necessary and not recommended to compress the blockchain files. Instead it is recommended to extract relevant data from the blockchain files once and store them in a format suitable for analytics (including compression), such as ORC or Parquet.
+     * Ethereum blockchain data is not splitable by definition, because the start of a RLP encoded block cannot be found from an arbitrary position. Files with a sidecar index (cf. {@link EthereumBlockIndex}) are nevertheless split at block boundaries by {@link #getSplits(JobConf, int)}. Without index you can export the blockchains in files of a certain size (recommended: HDFS blocksize) to benefit from parallelism. It is not necessary and not recommended to compress the blockchain files. Instead it is recommended to extract relevant data from the blockchain files once and store them in a format suitable for analytics (including compression), such as ORC or Parquet.
+     * If hadoopcryptoledger.ethereumblockinputformat.issplitable is true (default: false) then uncompressed files and files compressed with a splitable codec are split anyway. Record readers find the first block of a split heuristically (cf. {@link org.zuinnote.hadoop.ethereum.format.common.EthereumBlockReader#seekBlockStart()}).
      *
      */
     @Override
     protected boolean isSplitable(FileSystem fs, Path file) {
-        return false;
+        if (!(this.isSplitable)) {
+            return false;
+        }
+        final CompressionCodec codec = compressionCodecs.getCodec(file);
+        if (null == codec) {
+            return true;
+        }
+        return codec instanceof SplittableCompressionCodec;
 
     }
 
+    /**
+     * Lists the input files without the sidecar indexes of block files
+     */
+    @Override
+    protected FileStatus[] listStatus(JobConf job) throws IOException {
+        FileStatus[] files = super.listStatus(job);
+        List<FileStatus> result = new ArrayList<>(files.length);
+        for (FileStatus file : files) {
+            if (!file.getPath().getName().endsWith(EthereumBlockIndex.FILE_EXTENSION)) {
+                result.add(file);
+            }
+        }
+        return result.toArray(new FileStatus[result.size()]);
+    }
+
+    /**
+     * Creates the splits. If hadoopcryptoledger.ethereumblockinputformat.useindex is true (default) and an uncompressed file has a sidecar index (cf. {@link EthereumBlockIndex}) then
+     * it is split at block boundaries ({@link EthereumBlockFileSplit}). All other files are split as configured by hadoopcryptoledger.ethereumblockinputformat.issplitable.
+     */
+    @Override
+    public InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
+        InputSplit[] splits = super.getSplits(job, numSplits);
+        if (!this.useIndex) {
+            return splits;
+        }
+        CompressionCodecFactory codecs = this.compressionCodecs != null ? this.compressionCodecs : new CompressionCodecFactory(job);
+        // same goal size as used by FileInputFormat for the splits of all files
+        long totalSize = 0;
+        for (InputSplit split : splits) {
+            totalSize += split.getLength();
+        }
+        long goalSize = totalSize / (numSplits == 0 ? 1 : numSplits);
+        Map<Path, List<InputSplit>> indexedSplits = new HashMap<>();
+        List<InputSplit> result = new ArrayList<>(splits.length);
+        for (InputSplit split : splits) {
+            Path file = ((FileSplit) split).getPath();
+            if (!indexedSplits.containsKey(file)) {
+                List<InputSplit> blockSplits = null;
+                if (codecs.getCodec(file) == null) {
+                    blockSplits = getBlockAlignedSplits(job, file, goalSize);
+                }
+                indexedSplits.put(file, blockSplits);
+                if (blockSplits != null) {
+                    result.addAll(blockSplits);
+                }
+            }
+            if (indexedSplits.get(file) == null) {
+                result.add(split);
+            }
+        }
+        return result.toArray(new InputSplit[result.size()]);
+    }
+
+    /**
+     * Creates block aligned splits from the sidecar index of a file
+     *
+     * @param job      job
+     * @param file     file
+     * @param goalSize targeted size of a split
+     * @return splits or null if the file has no (valid) index
+     * @throws IOException in case of errors reading the index
+     */
+    private List<InputSplit> getBlockAlignedSplits(JobConf job, Path file, long goalSize) throws IOException {
+        FileSystem fs = file.getFileSystem(job);
+        EthereumBlockIndex index = EthereumBlockIndex.read(fs, file);
+        if (index == null) {
+            return null;
+        }
+        FileStatus status = fs.getFileStatus(file);
+        if (status.getLen() < index.getFileLength()) {
+            LOG.warn("Ignoring index of " + file + ": file is shorter than the indexed file");
+            return null;
+        }
+        BlockLocation[] blkLocations = fs.getFileBlockLocations(status, 0, status.getLen());
+        long minSize = Math.max(job.getLong(org.apache.hadoop.mapreduce.lib.input.FileInputFormat.SPLIT_MINSIZE, 1), 1);
+        long splitSize = computeSplitSize(goalSize, minSize, status.getBlockSize());
+        List<InputSplit> result = new ArrayList<>();
+        long[] boundaries = index.getSplitBoundaries(splitSize);
+        for (int i = 0; i < boundaries.length - 1; i++) {
+            int blkIndex = getBlockIndex(blkLocations, boundaries[i]);
+            result.add(new EthereumBlockFileSplit(file, boundaries[i], boundaries[i + 1] - boundaries[i], blkLocations[blkIndex].getHosts()));
+        }
+        // the file has grown since it has been indexed, the new data starts after the last indexed block
+        long endOfBlocks = index.getEndOfBlocks();
+        if (status.getLen() > index.getFileLength() && status.getLen() > endOfBlocks) {
+            int blkIndex = getBlockIndex(blkLocations, endOfBlocks);
+            result.add(new EthereumBlockFileSplit(file, endOfBlocks, status.getLen() - endOfBlocks, blkLocations[blkIndex].getHosts()));
+        }
+        LOG.debug("Created " + result.size() + " block aligned splits for " + file);
+        return result;
+    }
 
 }
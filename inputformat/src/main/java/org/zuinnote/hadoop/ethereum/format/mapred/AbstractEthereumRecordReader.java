@@ -27,9 +27,13 @@ import org.apache.hadoop.mapred.FileSplit;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.RecordReader;
 import org.apache.hadoop.mapred.Reporter;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumBlock;
 import org.zuinnote.hadoop.ethereum.format.common.EthereumBlockReader;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumUtil;
+import org.zuinnote.hadoop.ethereum.format.exception.EthereumBlockReadException;
 
 import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
 
 
 /**
@@ -39,9 +43,15 @@ public abstract class AbstractEthereumRecordReader<K, V> implements RecordReader
     public static final String CONF_BUFFERSIZE = org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumRecordReader.CONF_BUFFERSIZE;
     public static final String CONF_MAXBLOCKSIZE = org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumRecordReader.CONF_MAXBLOCKSIZE;
     public static final String CONF_USEDIRECTBUFFER = org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumRecordReader.CONF_USEDIRECTBUFFER;
+    public static final String CONF_CALCULATESENDER = org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumRecordReader.CONF_CALCULATESENDER;
+    public static final String CONF_CHAINID = org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumRecordReader.CONF_CHAINID;
+    public static final String CONF_SENDERPARALLELISM = org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumRecordReader.CONF_SENDERPARALLELISM;
     public static final int DEFAULT_BUFFERSIZE = org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumRecordReader.DEFAULT_BUFFERSIZE;
     public static final int DEFAULT_MAXSIZE_ETHEREUMBLOCK = org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumRecordReader.DEFAULT_MAXSIZE_ETHEREUMBLOCK;
     public static final boolean DEFAULT_USEDIRECTBUFFER = org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumRecordReader.DEFAULT_USEDIRECTBUFFER;
+    public static final boolean DEFAULT_CALCULATESENDER = org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumRecordReader.DEFAULT_CALCULATESENDER;
+    public static final int DEFAULT_CHAINID = org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumRecordReader.DEFAULT_CHAINID;
+    public static final int DEFAULT_SENDERPARALLELISM = org.zuinnote.hadoop.ethereum.format.mapreduce.AbstractEthereumRecordReader.DEFAULT_SENDERPARALLELISM;
 
     private static final Log LOG = LogFactory.getLog(AbstractEthereumRecordReader.class.getName());
 
@@ -59,6 +69,11 @@ public abstract class AbstractEthereumRecordReader<K, V> implements RecordReader
     private final Seekable filePosition;
     private FSDataInputStream fileIn;
     private EthereumBlockReader ebr;
+    private boolean exactPosition;
+    private boolean calculateSender;
+    private int chainId;
+    private ForkJoinPool senderPool;
+    private boolean dedicatedSenderPool;
 
 
     /**
@@ -66,6 +81,7 @@ public abstract class AbstractEthereumRecordReader<K, V> implements RecordReader
      * @param split Split to use (assumed to be a file split)
      * @param job Configuration:
      * io.file.buffer.size: Size of in-memory  specified in the given Configuration. If io.file.buffer.size is not specified the default buffersize will be used. Furthermore, one may specify hadoopcryptoledger.ethereumblockinputformat.maxblocksize, which defines the maximum size a Ethereum block may have. By default it is 1M). If you want to experiment with performance using DirectByteBuffer instead of HeapByteBuffer you can use "hadoopcryptoledeger.ethereumblockinputformat.usedirectbuffer" (default: false). Note that it might have some unwanted consequences such as circumwenting Yarn memory management. The option is experimental and might be removed in future versions.
+     * If hadoopcryptoledger.ethereumblockinputformat.calculatesender is true (default: false) the sender of every signed transaction is calculated while reading the block (cf. EthereumTransaction.getSender()) using the chain id hadoopcryptoledger.ethereumblockinputformat.chainid (default: 1, main net). hadoopcryptoledger.ethereumblockinputformat.senderparallelism defines the threads used for this: 0 (default) uses the common ForkJoinPool, 1 the thread of the record reader and values above 1 a dedicated ForkJoinPool with this number of threads.
      * @param reporter Reporter
      *
      *
@@ -81,6 +97,17 @@ public abstract class AbstractEthereumRecordReader<K, V> implements RecordReader
         this.bufferSize = conf.getInt(AbstractEthereumRecordReader.CONF_BUFFERSIZE, AbstractEthereumRecordReader.DEFAULT_BUFFERSIZE);
 
         this.useDirectBuffer = conf.getBoolean(AbstractEthereumRecordReader.CONF_USEDIRECTBUFFER, AbstractEthereumRecordReader.DEFAULT_USEDIRECTBUFFER);
+        this.calculateSender = conf.getBoolean(AbstractEthereumRecordReader.CONF_CALCULATESENDER, AbstractEthereumRecordReader.DEFAULT_CALCULATESENDER);
+        this.chainId = conf.getInt(AbstractEthereumRecordReader.CONF_CHAINID, AbstractEthereumRecordReader.DEFAULT_CHAINID);
+        if (this.calculateSender) {
+            int parallelism = conf.getInt(AbstractEthereumRecordReader.CONF_SENDERPARALLELISM, AbstractEthereumRecordReader.DEFAULT_SENDERPARALLELISM);
+            if (parallelism == 0) {
+                this.senderPool = ForkJoinPool.commonPool();
+            } else if (parallelism > 1) {
+                this.senderPool = new ForkJoinPool(parallelism);
+                this.dedicatedSenderPool = true;
+            }
+        }
         // Initialize start and end of split
         start = split.getStart();
         end = start + split.getLength();
@@ -110,6 +137,23 @@ public abstract class AbstractEthereumRecordReader<K, V> implements RecordReader
             ebr = new EthereumBlockReader(fileIn, this.maxSizeEthereumBlock, this.bufferSize, this.useDirectBuffer);
             filePosition = fileIn;
         }
+        try {
+            if (!isCompressedInput()) {
+                // exact position of the block reader, a block starting at the end of the split belongs to the next split
+                exactPosition = true;
+                end = end - 1;
+                if (!(split instanceof EthereumBlockFileSplit) && (start > 0)) {
+                    // split starts somewhere in a block, unless it is created from an index (cf. EthereumBlockIndex)
+                    ebr.seekBlockStart();
+                }
+            } else if (start > 0) {
+                // split of a file compressed with a splitable codec
+                ebr.seekBlockStart();
+            }
+        } catch (EthereumBlockReadException e) {
+            LOG.error(e);
+            throw new IOException(e.getMessage(), e);
+        }
         // initialize reader
 
         this.reporter.setStatus("Ready to read");
@@ -126,7 +170,11 @@ public abstract class AbstractEthereumRecordReader<K, V> implements RecordReader
      */
 
     public long getFilePosition() throws IOException {
-        return filePosition.getPos();
+        if (this.exactPosition) {
+            // the file position is ahead due to buffering
+            return this.start + this.ebr.getPosition();
+        }
+        return this.filePosition.getPos();
     }
 
     /**
@@ -150,6 +198,21 @@ public abstract class AbstractEthereumRecordReader<K, V> implements RecordReader
         return this.ebr;
     }
 
+    /**
+     * Calculates the senders of all transactions of a block if configured (cf. hadoopcryptoledger.ethereumblockinputformat.calculatesender)
+     *
+     * @param block block read by the block reader
+     */
+    protected void calculateSenders(EthereumBlock block) {
+        if (!this.calculateSender) {
+            return;
+        }
+        byte[][] senders = EthereumUtil.getSendAddresses(block, this.chainId, this.senderPool);
+        for (int i = 0; i < senders.length; i++) {
+            block.getEthereumTransactions().get(i).setSender(senders[i]);
+        }
+    }
+
 
     /*
      * Returns how much of the file has been processed in terms of bytes
@@ -187,7 +250,7 @@ public abstract class AbstractEthereumRecordReader<K, V> implements RecordReader
      */
     @Override
     public synchronized long getPos() throws IOException {
-        return filePosition.getPos();
+        return getFilePosition();
     }
 
     /*
@@ -208,6 +271,9 @@ public abstract class AbstractEthereumRecordReader<K, V> implements RecordReader
                 CodecPool.returnDecompressor(decompressor);
                 decompressor = null;
             }
+            if (this.dedicatedSenderPool) {
+                this.senderPool.shutdown();
+            }
         }
     }
 
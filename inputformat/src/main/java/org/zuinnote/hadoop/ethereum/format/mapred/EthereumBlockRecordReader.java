@@ -60,6 +60,7 @@ public class EthereumBlockRecordReader extends AbstractEthereumRecordReader<Byte
             if (dataBlock == null) {
                 return false;
             }
+            calculateSenders(dataBlock);
             byte[] newKey = dataBlock.getEthereumBlockHeader().getParentHash();
             key.set(newKey, 0, newKey.length);
             value.set(dataBlock);
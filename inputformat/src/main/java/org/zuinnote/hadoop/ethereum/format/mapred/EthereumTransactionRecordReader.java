@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.ethereum.format.mapred;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumBlock;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumBlockView;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumTransaction;
+import org.zuinnote.hadoop.ethereum.format.exception.EthereumBlockReadException;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads the transactions of all blocks starting in a split. The key is the transaction hash, which is calculated over
+ * the encoded transaction in the raw block.
+ */
+public class EthereumTransactionRecordReader extends AbstractEthereumRecordReader<BytesWritable, EthereumTransaction> {
+    private static final Log LOG = LogFactory.getLog(EthereumTransactionRecordReader.class.getName());
+
+    private int currentTransactionCounterInBlock = 0;
+    private EthereumBlock currentEthereumBlock;
+    private final EthereumBlockView currentEthereumBlockView = new EthereumBlockView();
+
+    public EthereumTransactionRecordReader(FileSplit split, JobConf job, Reporter reporter) throws IOException {
+        super(split, job, reporter);
+    }
+
+
+    /**
+     *
+     * Read a next transaction.
+     *
+     * @param key is a 32 byte array (transaction hash)
+     * @param value is a deserialized Java object of class EthereumTransaction
+     *
+     * @return true if next transaction is available, false if not
+     */
+    @Override
+    public boolean next(BytesWritable key, EthereumTransaction value) throws IOException {
+        // read all the blocks, if necessary a block overlapping a split
+        while ((this.currentEthereumBlock == null) || (this.currentEthereumBlock.getEthereumTransactions().size() == this.currentTransactionCounterInBlock)) {
+            if (getFilePosition() > getEnd()) { // did we already went beyond the split (remote)?
+                return false;
+            }
+            try {
+                this.currentEthereumBlock = readBlockWithTransactionHashes();
+            } catch (EthereumBlockReadException e) {
+                LOG.error(e);
+                throw new RuntimeException(e.toString());
+            }
+            if (this.currentEthereumBlock == null) {
+                return false;
+            }
+            calculateSenders(this.currentEthereumBlock);
+            this.currentTransactionCounterInBlock = 0;
+        }
+        EthereumTransaction currentTransaction = this.currentEthereumBlock.getEthereumTransactions().get(this.currentTransactionCounterInBlock);
+        byte[] newKey = currentTransaction.getHash();
+        key.set(newKey, 0, newKey.length);
+        value.set(currentTransaction);
+        this.currentTransactionCounterInBlock++;
+        return true;
+    }
+
+    /**
+     * Reads the next block and sets the hashes of its transactions, which are calculated directly over the raw block
+     *
+     * @return block or null if no further block is available
+     * @throws IOException in case of errors reading from the InputStream
+     * @throws EthereumBlockReadException in case of format errors of the Ethereum block
+     */
+    private EthereumBlock readBlockWithTransactionHashes() throws IOException, EthereumBlockReadException {
+        EthereumBlockView blockView = getEbr().readBlockView(this.currentEthereumBlockView);
+        if (blockView == null) {
+            return null;
+        }
+        EthereumBlock result = blockView.toEthereumBlock();
+        List<EthereumTransaction> transactions = result.getEthereumTransactions();
+        for (int i = 0; i < transactions.size(); i++) {
+            transactions.get(i).setHash(blockView.getTransaction(i).getTransactionHash());
+        }
+        return result;
+    }
+
+
+    @Override
+    public BytesWritable createKey() {
+        return new BytesWritable();
+    }
+
+    @Override
+    public EthereumTransaction createValue() {
+        return new EthereumTransaction();
+    }
+
+}
@@ -15,32 +15,144 @@
  */
 package org.zuinnote.hadoop.ethereum.format.mapreduce;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumBlockIndex;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 /**
  *
  */
 public abstract class AbstractEthereumFileInputFormat<K, V> extends FileInputFormat<K, V> {
+    public static final String CONF_ISSPLITABLE = "hadoopcryptoledger.ethereumblockinputformat.issplitable";
+    public static final String CONF_USEINDEX = "hadoopcryptoledger.ethereumblockinputformat.useindex";
+    public static final boolean DEFAULT_ISSPLITABLE = false;
+    public static final boolean DEFAULT_USEINDEX = true;
+
+    private static final Log LOG = LogFactory.getLog(AbstractEthereumFileInputFormat.class.getName());
 
     @Override
     public abstract RecordReader<K, V> createRecordReader(InputSplit split, TaskAttemptContext ctx) throws IOException;
 
 
     /***
-     * The Ethereum format is not splitable due to its RLP encoding which makes it difficult to find the start/end of a RLP encoded item. Instead it is recommended to export blocks to files of the size of a HDFS block.
-     *
+     * The Ethereum format is not splitable due to its RLP encoding which makes it difficult to find the start/end of a RLP encoded item. Files with a sidecar index (cf. {@link EthereumBlockIndex}) are nevertheless split at block boundaries by {@link #getSplits(JobContext)}. Without index it is recommended to export blocks to files of the size of a HDFS block.
+     * If hadoopcryptoledger.ethereumblockinputformat.issplitable is true (default: false) then uncompressed files and files compressed with a splitable codec are split anyway. Record readers find the first block of a split heuristically (cf. {@link org.zuinnote.hadoop.ethereum.format.common.EthereumBlockReader#seekBlockStart()}).
      *
      */
     @Override
     protected boolean isSplitable(JobContext context, Path file) {
-        return false;
+        if (!context.getConfiguration().getBoolean(AbstractEthereumFileInputFormat.CONF_ISSPLITABLE, AbstractEthereumFileInputFormat.DEFAULT_ISSPLITABLE)) {
+            return false;
+        }
+        final CompressionCodec codec = new CompressionCodecFactory(context.getConfiguration()).getCodec(file);
+        if (null == codec) {
+            return true;
+        }
+        return codec instanceof SplittableCompressionCodec;
+    }
+
+    /**
+     * Lists the input files without the sidecar indexes of block files
+     */
+    @Override
+    protected List<FileStatus> listStatus(JobContext job) throws IOException {
+        List<FileStatus> result = super.listStatus(job);
+        Iterator<FileStatus> it = result.iterator();
+        while (it.hasNext()) {
+            if (it.next().getPath().getName().endsWith(EthereumBlockIndex.FILE_EXTENSION)) {
+                it.remove();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates the splits. If hadoopcryptoledger.ethereumblockinputformat.useindex is true (default) and an uncompressed file has a sidecar index (cf. {@link EthereumBlockIndex}) then
+     * it is split at block boundaries ({@link EthereumBlockFileSplit}). All other files are split as configured by hadoopcryptoledger.ethereumblockinputformat.issplitable.
+     */
+    @Override
+    public List<InputSplit> getSplits(JobContext job) throws IOException {
+        List<InputSplit> splits = super.getSplits(job);
+        if (!job.getConfiguration().getBoolean(AbstractEthereumFileInputFormat.CONF_USEINDEX, AbstractEthereumFileInputFormat.DEFAULT_USEINDEX)) {
+            return splits;
+        }
+        CompressionCodecFactory compressionCodecs = new CompressionCodecFactory(job.getConfiguration());
+        Map<Path, List<InputSplit>> indexedSplits = new HashMap<>();
+        List<InputSplit> result = new ArrayList<>(splits.size());
+        for (InputSplit split : splits) {
+            Path file = ((FileSplit) split).getPath();
+            if (!indexedSplits.containsKey(file)) {
+                List<InputSplit> blockSplits = null;
+                if (compressionCodecs.getCodec(file) == null) {
+                    blockSplits = getBlockAlignedSplits(job, file);
+                }
+                indexedSplits.put(file, blockSplits);
+                if (blockSplits != null) {
+                    result.addAll(blockSplits);
+                }
+            }
+            if (indexedSplits.get(file) == null) {
+                result.add(split);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates block aligned splits from the sidecar index of a file
+     *
+     * @param job  job
+     * @param file file
+     * @return splits or null if the file has no (valid) index
+     * @throws IOException in case of errors reading the index
+     */
+    private List<InputSplit> getBlockAlignedSplits(JobContext job, Path file) throws IOException {
+        FileSystem fs = file.getFileSystem(job.getConfiguration());
+        EthereumBlockIndex index = EthereumBlockIndex.read(fs, file);
+        if (index == null) {
+            return null;
+        }
+        FileStatus status = fs.getFileStatus(file);
+        if (status.getLen() < index.getFileLength()) {
+            LOG.warn("Ignoring index of " + file + ": file is shorter than the indexed file");
+            return null;
+        }
+        BlockLocation[] blkLocations = fs.getFileBlockLocations(status, 0, status.getLen());
+        long splitSize = computeSplitSize(status.getBlockSize(), Math.max(getFormatMinSplitSize(), getMinSplitSize(job)), getMaxSplitSize(job));
+        List<InputSplit> result = new ArrayList<>();
+        long[] boundaries = index.getSplitBoundaries(splitSize);
+        for (int i = 0; i < boundaries.length - 1; i++) {
+            int blkIndex = getBlockIndex(blkLocations, boundaries[i]);
+            result.add(new EthereumBlockFileSplit(file, boundaries[i], boundaries[i + 1] - boundaries[i], blkLocations[blkIndex].getHosts()));
+        }
+        // the file has grown since it has been indexed, the new data starts after the last indexed block
+        long endOfBlocks = index.getEndOfBlocks();
+        if (status.getLen() > index.getFileLength() && status.getLen() > endOfBlocks) {
+            int blkIndex = getBlockIndex(blkLocations, endOfBlocks);
+            result.add(new EthereumBlockFileSplit(file, endOfBlocks, status.getLen() - endOfBlocks, blkLocations[blkIndex].getHosts()));
+        }
+        LOG.debug("Created " + result.size() + " block aligned splits for " + file);
+        return result;
     }
 
 }
@@ -27,9 +27,13 @@ import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumBlock;
 import org.zuinnote.hadoop.ethereum.format.common.EthereumBlockReader;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumUtil;
+import org.zuinnote.hadoop.ethereum.format.exception.EthereumBlockReadException;
 
 import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  *
@@ -38,9 +42,15 @@ public abstract class AbstractEthereumRecordReader<K, V> extends RecordReader<K,
     public static final String CONF_BUFFERSIZE = "io.file.buffer.size";
     public static final String CONF_MAXBLOCKSIZE = "hadoopcryptoledger.ethereumblockinputformat.maxblocksize";
     public static final String CONF_USEDIRECTBUFFER = "hadoopcryptoledeger.ethereumblockinputformat.usedirectbuffer";
+    public static final String CONF_CALCULATESENDER = "hadoopcryptoledger.ethereumblockinputformat.calculatesender";
+    public static final String CONF_CHAINID = "hadoopcryptoledger.ethereumblockinputformat.chainid";
+    public static final String CONF_SENDERPARALLELISM = "hadoopcryptoledger.ethereumblockinputformat.senderparallelism";
     public static final int DEFAULT_BUFFERSIZE = 64 * 1024;
     public static final int DEFAULT_MAXSIZE_ETHEREUMBLOCK = 1 * 1024 * 1024;
     public static final boolean DEFAULT_USEDIRECTBUFFER = false;
+    public static final boolean DEFAULT_CALCULATESENDER = false;
+    public static final int DEFAULT_CHAINID = 1;
+    public static final int DEFAULT_SENDERPARALLELISM = 0;
 
     private static final Log LOG = LogFactory.getLog(AbstractEthereumRecordReader.class.getName());
     private int bufferSize = 0;
@@ -52,6 +62,11 @@ public abstract class AbstractEthereumRecordReader<K, V> extends RecordReader<K,
     private long end;
     private Seekable filePosition;
     private EthereumBlockReader ebr;
+    private boolean exactPosition;
+    private boolean calculateSender;
+    private int chainId;
+    private ForkJoinPool senderPool;
+    private boolean dedicatedSenderPool;
 
     /***
      * Creates an Abstract RecordReader for Ethereum blocks
@@ -59,13 +74,24 @@ public abstract class AbstractEthereumRecordReader<K, V> extends RecordReader<K,
      *
      * @param conf Configuration:
      * io.file.buffer.size: Size of in-memory  specified in the given Configuration. If io.file.buffer.size is not specified the default buffersize will be used. Furthermore, one may specify hadoopcryptoledger.ethereumblockinputformat.maxblocksize, which defines the maximum size a Ethereum block may have. By default it is 1M). If you want to experiment with performance using DirectByteBuffer instead of HeapByteBuffer you can use "hadoopcryptoledeger.ethereumblockinputformat.usedirectbuffer" (default: false). Note that it might have some unwanted consequences such as circumwenting Yarn memory management. The option is experimental and might be removed in future versions.
+     * If hadoopcryptoledger.ethereumblockinputformat.calculatesender is true (default: false) the sender of every signed transaction is calculated while reading the block (cf. EthereumTransaction.getSender()) using the chain id hadoopcryptoledger.ethereumblockinputformat.chainid (default: 1, main net). hadoopcryptoledger.ethereumblockinputformat.senderparallelism defines the threads used for this: 0 (default) uses the common ForkJoinPool, 1 the thread of the record reader and values above 1 a dedicated ForkJoinPool with this number of threads.
 
      */
     public AbstractEthereumRecordReader(Configuration conf) {
         this.maxSizeEthereumBlock = conf.getInt(AbstractEthereumRecordReader.CONF_MAXBLOCKSIZE, AbstractEthereumRecordReader.DEFAULT_MAXSIZE_ETHEREUMBLOCK);
         this.bufferSize = conf.getInt(AbstractEthereumRecordReader.CONF_BUFFERSIZE, AbstractEthereumRecordReader.DEFAULT_BUFFERSIZE);
         this.useDirectBuffer = conf.getBoolean(AbstractEthereumRecordReader.CONF_USEDIRECTBUFFER, AbstractEthereumRecordReader.DEFAULT_USEDIRECTBUFFER);
-
+        this.calculateSender = conf.getBoolean(AbstractEthereumRecordReader.CONF_CALCULATESENDER, AbstractEthereumRecordReader.DEFAULT_CALCULATESENDER);
+        this.chainId = conf.getInt(AbstractEthereumRecordReader.CONF_CHAINID, AbstractEthereumRecordReader.DEFAULT_CHAINID);
+        if (this.calculateSender) {
+            int parallelism = conf.getInt(AbstractEthereumRecordReader.CONF_SENDERPARALLELISM, AbstractEthereumRecordReader.DEFAULT_SENDERPARALLELISM);
+            if (parallelism == 0) {
+                this.senderPool = ForkJoinPool.commonPool();
+            } else if (parallelism > 1) {
+                this.senderPool = new ForkJoinPool(parallelism);
+                this.dedicatedSenderPool = true;
+            }
+        }
     }
 
     /***
@@ -107,6 +133,23 @@ public abstract class AbstractEthereumRecordReader<K, V> extends RecordReader<K,
             ebr = new EthereumBlockReader(fileIn, this.maxSizeEthereumBlock, this.bufferSize, this.useDirectBuffer);
             filePosition = fileIn;
         }
+        try {
+            if (!isCompressedInput()) {
+                // exact position of the block reader, a block starting at the end of the split belongs to the next split
+                exactPosition = true;
+                end = end - 1;
+                if (!(split instanceof EthereumBlockFileSplit) && (start > 0)) {
+                    // split starts somewhere in a block, unless it is created from an index (cf. EthereumBlockIndex)
+                    ebr.seekBlockStart();
+                }
+            } else if (start > 0) {
+                // split of a file compressed with a splitable codec
+                ebr.seekBlockStart();
+            }
+        } catch (EthereumBlockReadException e) {
+            LOG.error(e);
+            throw new IOException(e.getMessage(), e);
+        }
     }
 
     /**
@@ -119,6 +162,21 @@ public abstract class AbstractEthereumRecordReader<K, V> extends RecordReader<K,
         return this.ebr;
     }
 
+    /**
+     * Calculates the senders of all transactions of a block if configured (cf. hadoopcryptoledger.ethereumblockinputformat.calculatesender)
+     *
+     * @param block block read by the block reader
+     */
+    protected void calculateSenders(EthereumBlock block) {
+        if (!this.calculateSender) {
+            return;
+        }
+        byte[][] senders = EthereumUtil.getSendAddresses(block, this.chainId, this.senderPool);
+        for (int i = 0; i < senders.length; i++) {
+            block.getEthereumTransactions().get(i).setSender(senders[i]);
+        }
+    }
+
 
     /*
      * Returns how much of the file has been processed in terms of bytes
@@ -157,6 +215,10 @@ public abstract class AbstractEthereumRecordReader<K, V> extends RecordReader<K,
      */
 
     public long getFilePosition() throws IOException {
+        if (this.exactPosition) {
+            // the file position is ahead due to buffering
+            return this.start + this.ebr.getPosition();
+        }
         return this.filePosition.getPos();
     }
 
@@ -179,6 +241,9 @@ public abstract class AbstractEthereumRecordReader<K, V> extends RecordReader<K,
                 CodecPool.returnDecompressor(decompressor);
                 decompressor = null;
             }
+            if (this.dedicatedSenderPool) {
+                this.senderPool.shutdown();
+            }
         }
     }
 
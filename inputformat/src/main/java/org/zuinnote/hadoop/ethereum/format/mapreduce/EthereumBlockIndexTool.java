@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.ethereum.format.mapreduce;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumBlockIndex;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumBlockIndexBuilder;
+import org.zuinnote.hadoop.ethereum.format.exception.EthereumBlockReadException;
+
+import java.io.IOException;
+
+/**
+ * Creates the sidecar indexes ({@link EthereumBlockIndex}) of files with RLP encoded Ethereum blocks. The indexes are used by the input formats to split the files at block boundaries.
+ * <p>
+ * Usage: EthereumBlockIndexTool path...
+ * </p>
+ * Paths can be files or directories. The files are indexed sequentially by walking the RLP frames of the blocks, only the block headers are decoded.
+ * The configuration options hadoopcryptoledger.ethereumblockinputformat.maxblocksize and io.file.buffer.size of the input formats apply. Compressed files are not indexed.
+ **/
+public class EthereumBlockIndexTool extends Configured implements Tool {
+
+    private static final Log LOG = LogFactory.getLog(EthereumBlockIndexTool.class.getName());
+
+    public EthereumBlockIndexTool() {
+        // nothing needed here
+    }
+
+    @Override
+    public int run(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: " + EthereumBlockIndexTool.class.getSimpleName() + " path...");
+            return 2;
+        }
+        Path[] paths = new Path[args.length];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = new Path(args[i]);
+        }
+        indexFiles(getConf(), paths);
+        return 0;
+    }
+
+    /**
+     * Indexes the given block files and all block files contained in the given directories sequentially
+     *
+     * @param conf  configuration
+     * @param paths files or directories
+     * @return number of indexed files
+     * @throws IOException                in case of errors reading the blocks or writing the indexes
+     * @throws EthereumBlockReadException in case of format errors of the blocks
+     */
+    public static int indexFiles(Configuration conf, Path... paths) throws IOException, EthereumBlockReadException {
+        int maxSizeEthereumBlock = conf.getInt(AbstractEthereumRecordReader.CONF_MAXBLOCKSIZE, AbstractEthereumRecordReader.DEFAULT_MAXSIZE_ETHEREUMBLOCK);
+        int bufferSize = conf.getInt(AbstractEthereumRecordReader.CONF_BUFFERSIZE, AbstractEthereumRecordReader.DEFAULT_BUFFERSIZE);
+        CompressionCodecFactory codecs = new CompressionCodecFactory(conf);
+        int indexed = 0;
+        for (Path path : paths) {
+            FileSystem fs = path.getFileSystem(conf);
+            for (FileStatus status : fs.listStatus(path)) {
+                Path file = status.getPath();
+                if (status.isDirectory() || file.getName().endsWith(EthereumBlockIndex.FILE_EXTENSION) || (codecs.getCodec(file) != null)) {
+                    LOG.debug("Skipping " + file);
+                    continue;
+                }
+                EthereumBlockIndexBuilder.buildSidecar(fs, file, maxSizeEthereumBlock, bufferSize);
+                indexed++;
+            }
+        }
+        return indexed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(ToolRunner.run(new Configuration(), new EthereumBlockIndexTool(), args));
+    }
+}
@@ -60,6 +60,7 @@ public class EthereumBlockRecordReader extends AbstractEthereumRecordReader<Byte
             if (dataBlock == null) {
                 return false;
             }
+            calculateSenders(dataBlock);
 
             byte[] newKey = dataBlock.getEthereumBlockHeader().getParentHash();
             this.currentKey.set(newKey, 0, newKey.length);
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.ethereum.format.mapreduce;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumTransaction;
+
+import java.io.IOException;
+
+/**
+ * Input format returning the transactions of Ethereum blocks with their transaction hash as key
+ */
+public class EthereumTransactionFileInputFormat extends AbstractEthereumFileInputFormat<BytesWritable, EthereumTransaction> {
+
+    @Override
+    public RecordReader<BytesWritable, EthereumTransaction> createRecordReader(InputSplit split, TaskAttemptContext ctx)
+            throws IOException {
+        /** Create reader **/
+        return new EthereumTransactionRecordReader(ctx.getConfiguration());
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BitcoinBlockIndexTest {
+
+    private static final byte[][] DEFAULT_MAGIC = {{(byte) 0xF9, (byte) 0xBE, (byte) 0xB4, (byte) 0xD9}};
+
+    private BitcoinBlockIndex buildIndex(String fileName) throws IOException {
+        File file = new File(Objects.requireNonNull(getClass().getClassLoader().getResource("testdata/" + fileName)).getFile());
+        try (InputStream in = new FileInputStream(file)) {
+            return BitcoinBlockIndexBuilder.build(in, file.length(), 8 * 1024 * 1024, 64 * 1024, DEFAULT_MAGIC);
+        }
+    }
+
+    @Test
+    public void buildIndexMultiBlock() throws IOException {
+        BitcoinBlockIndex index = buildIndex("multiblock.blk");
+        assertEquals(191973, index.getFileLength(), "File length of multiblock");
+        assertEquals(3, index.size(), "Multiblock contains three blocks");
+        assertEquals(0, index.getOffset(0), "Genesis block starts at the beginning of the file");
+        assertEquals(293, index.getBlockSize(0), "Size of genesis block including magic and block size");
+        assertEquals(293, index.getOffset(1), "Version 1 block follows the genesis block");
+        assertEquals(482, index.getBlockSize(1), "Size of version 1 block including magic and block size");
+        assertEquals(775, index.getOffset(2), "Version 2 block follows the version 1 block");
+        assertEquals(191973, index.getEndOfBlocks(), "Blocks end at the end of the file");
+        assertEquals("000000000019D6689C085AE165831E934FF763AE46A2A6C172B3F1B60A8CE26F", BitcoinUtil.convertByteArrayToHexString(BitcoinUtil.reverseByteArray(index.getHash(0))), "Hash of genesis block");
+        assertArrayEquals(new byte[32], index.getPrevHash(0), "Genesis block has no previous block");
+        assertEquals(BitcoinBlockIndex.UNKNOWN_HEIGHT, index.getHeight(0), "Height is not known after building the index");
+    }
+
+    @Test
+    public void writableRoundTrip() throws IOException {
+        BitcoinBlockIndex index = buildIndex("multiblock.blk");
+        index.setHeight(0, 0);
+        DataOutputBuffer out = new DataOutputBuffer();
+        index.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        BitcoinBlockIndex copy = new BitcoinBlockIndex();
+        copy.readFields(in);
+        assertEquals(index.getFileLength(), copy.getFileLength(), "File length is restored");
+        assertEquals(index.size(), copy.size(), "All blocks are restored");
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(index.getOffset(i), copy.getOffset(i), "Offset of block " + i + " is restored");
+            assertEquals(index.getBlockSize(i), copy.getBlockSize(i), "Size of block " + i + " is restored");
+            assertArrayEquals(index.getHash(i), copy.getHash(i), "Hash of block " + i + " is restored");
+            assertArrayEquals(index.getPrevHash(i), copy.getPrevHash(i), "Previous hash of block " + i + " is restored");
+            assertEquals(index.getHeight(i), copy.getHeight(i), "Height of block " + i + " is restored");
+        }
+    }
+
+    @Test
+    public void splitBoundaries() throws IOException {
+        BitcoinBlockIndex index = buildIndex("multiblock.blk");
+        assertArrayEquals(new long[]{0, 191973}, index.getSplitBoundaries(Long.MAX_VALUE), "One split for a large split size");
+        assertArrayEquals(new long[]{0, 775, 191973}, index.getSplitBoundaries(1000), "Version 2 block starts a new split");
+        assertArrayEquals(new long[]{0, 293, 775, 191973}, index.getSplitBoundaries(1), "Each block in its own split for a small split size");
+        assertArrayEquals(new long[0], new BitcoinBlockIndex(0).getSplitBoundaries(1000), "No splits for an empty index");
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BitcoinBlockViewTest {
+
+    static final int DEFAULT_BUFFERSIZE = 64 * 1024;
+    static final int DEFAULT_MAXSIZE_BITCOINBLOCK = 8 * 1024 * 1024;
+
+    static final byte[][] DEFAULT_MAGIC = {{(byte) 0xF9, (byte) 0xBE, (byte) 0xB4, (byte) 0xD9}};
+    static final byte[][] NAMECOIN_MAGIC = {{(byte) 0xF9, (byte) 0xBE, (byte) 0xB4, (byte) 0xFE}};
+
+    @Test
+    public void viewGenesisBlock() throws IOException {
+        BitcoinBlockReader bbr = openReader("genesis.blk", false, DEFAULT_MAGIC, false);
+        try {
+            BitcoinBlockView view = new BitcoinBlockView().reset(bbr.readRawBlock());
+            assertEquals(285, view.getBlockSize(), "Genesis block has a size of 285 bytes");
+            assertEquals(1, view.getTransactionCount(), "Genesis block contains one transaction");
+            assertEquals(BitcoinFormatReaderTest.GENESIS_HASH, BitcoinUtil.convertByteArrayToHexString(BitcoinUtil.reverseByteArray(view.getBlockHash())), "Genesis block hash is correct");
+            BitcoinTransactionView transaction = view.getTransaction(0);
+            assertEquals(1, transaction.getInputCount(), "Genesis transaction has one input");
+            assertEquals(1, transaction.getOutputCount(), "Genesis transaction has one output");
+            assertEquals(5000000000L, transaction.getValue(0), "Genesis transaction has a value of 50 BTC");
+            assertEquals(67, transaction.scriptSlice(0).remaining(), "Genesis output script has a length of 67 bytes");
+            assertThrows(IndexOutOfBoundsException.class, () -> view.getTransaction(1), "Genesis block has no second transaction");
+        } finally {
+            bbr.close();
+        }
+    }
+
+    @Test
+    public void viewMatchesBlockVersion4Heap() throws IOException {
+        assertViewMatchesBlocks("version4.blk", false, DEFAULT_MAGIC, false);
+    }
+
+    @Test
+    public void viewMatchesBlockVersion4Direct() throws IOException {
+        assertViewMatchesBlocks("version4.blk", true, DEFAULT_MAGIC, false);
+    }
+
+    @Test
+    public void viewMatchesBlockScriptWitness() throws IOException {
+        assertViewMatchesBlocks("scriptwitness2.blk", false, DEFAULT_MAGIC, false);
+    }
+
+    @Test
+    public void viewMatchesBlockMultiBlock() throws IOException {
+        assertViewMatchesBlocks("multiblock.blk", false, DEFAULT_MAGIC, false);
+    }
+
+    @Test
+    public void viewMatchesBlockNamecoinAuxPow() throws IOException {
+        assertViewMatchesBlocks("namecointhreedifferentopinoneblock.blk", false, NAMECOIN_MAGIC, true);
+    }
+
+    @Test
+    public void viewWritable() throws IOException {
+        BitcoinBlockReader bbr = openReader("scriptwitness2.blk", true, DEFAULT_MAGIC, false);
+        try {
+            BitcoinBlockView view = new BitcoinBlockView().reset(bbr.readRawBlock());
+            DataOutputBuffer out = new DataOutputBuffer();
+            view.write(out);
+            DataInputBuffer in = new DataInputBuffer();
+            in.reset(out.getData(), out.getLength());
+            BitcoinBlockView copy = new BitcoinBlockView();
+            copy.readFields(in);
+            assertEquals(view.getTransactionCount(), copy.getTransactionCount(), "Deserialized view has same number of transactions");
+            assertArrayEquals(view.getBlockHash(), copy.getBlockHash(), "Deserialized view has same block hash");
+            int last = view.getTransactionCount() - 1;
+            byte[] expectedHash = view.getTransaction(last).getTransactionHashSegwit();
+            assertArrayEquals(expectedHash, copy.getTransaction(last).getTransactionHashSegwit(), "Deserialized view has same last transaction");
+        } finally {
+            bbr.close();
+        }
+    }
+
+    private void assertViewMatchesBlocks(String fileName, boolean direct, byte[][] magic, boolean readAuxPow) throws IOException {
+        BitcoinBlockReader rawReader = openReader(fileName, direct, magic, readAuxPow);
+        BitcoinBlockReader blockReader = openReader(fileName, false, magic, readAuxPow);
+        try {
+            BitcoinBlockView view = new BitcoinBlockView(readAuxPow);
+            ByteBuffer rawBlock;
+            int blocks = 0;
+            while ((rawBlock = rawReader.readRawBlock()) != null) {
+                BitcoinBlock block = blockReader.readBlock();
+                assertNotNull(block, "Block " + blocks + " is available");
+                view.reset(rawBlock);
+                assertEquals(0, rawBlock.position(), "View does not change position of raw block");
+                assertViewEquals(block, view);
+                blocks++;
+            }
+            assertNull(blockReader.readBlock(), "No further block available");
+            assertTrue(blocks > 0, "At least one block has been read");
+        } finally {
+            rawReader.close();
+            blockReader.close();
+        }
+    }
+
+    private void assertViewEquals(BitcoinBlock block, BitcoinBlockView view) {
+        assertEquals(block.getBlockSize().getValue(), view.getBlockSize(), "Block size is equal");
+        assertEquals(block.getVersion().getValue(), view.getVersion(), "Version is equal");
+        assertEquals(block.getTime().longValue(), view.getTime(), "Time is equal");
+        assertEquals(block.getBits().getValue(), view.getBits(), "Bits are equal");
+        assertEquals(block.getNonce().getValue(), view.getNonce(), "Nonce is equal");
+        byte[] hash = new byte[32];
+        view.getHashPrevBlock(hash, 0);
+        assertArrayEquals(block.getHashPrevBlock().getBytes(), hash, "HashPrevBlock is equal");
+        view.getHashMerkleRoot(hash, 0);
+        assertArrayEquals(block.getHashMerkleRoot().getBytes(), hash, "HashMerkleRoot is equal");
+        assertEquals(block.getAuxPOW() != null, view.auxPowSlice() != null, "AuxPOW detected consistently");
+        assertEquals(block.getTransactions().size(), view.getTransactionCount(), "Number of transactions is equal");
+        for (int i = 0; i < view.getTransactionCount(); i++) {
+            BitcoinTransaction transaction = block.getTransactions().get(i);
+            BitcoinTransactionView transactionView = view.getTransaction(i);
+            assertEquals(transaction.getVersion(), transactionView.getVersion(), "Transaction version is equal");
+            assertEquals(transaction.getLockTime(), transactionView.getLockTime(), "Transaction lock time is equal");
+            assertEquals(transaction.getListOfInputs().size(), transactionView.getInputCount(), "Number of inputs is equal");
+            assertEquals(transaction.getListOfOutputs().size(), transactionView.getOutputCount(), "Number of outputs is equal");
+            for (int j = 0; j < transactionView.getInputCount(); j++) {
+                BitcoinTransactionInput input = transaction.getListOfInputs().get(j);
+                transactionView.getPrevTransactionHash(j, hash, 0);
+                assertArrayEquals(input.getPrevTransactionHash().getBytes(), hash, "Previous transaction hash is equal");
+                assertEquals(input.getPreviousTxOutIndex(), transactionView.getPreviousTxOutIndex(j), "Previous output index is equal");
+                assertEquals(input.getSeqNo(), transactionView.getSeqNo(j), "Sequence number is equal");
+                assertEquals(ByteBuffer.wrap(input.getTxInScript()), transactionView.inputScriptSlice(j), "Input script is equal");
+            }
+            for (int j = 0; j < transactionView.getOutputCount(); j++) {
+                BitcoinTransactionOutput output = transaction.getListOfOutputs().get(j);
+                assertEquals(output.getValue().longValue(), transactionView.getValue(j), "Output value is equal");
+                assertEquals(ByteBuffer.wrap(output.getTxOutScript()), transactionView.scriptSlice(j), "Output script is equal");
+            }
+            assertArrayEquals(transaction.getTransactionHash(), transactionView.getTransactionHash(), "Transaction hash is equal");
+            assertArrayEquals(transaction.getTransactionHashSegwit(), transactionView.getTransactionHashSegwit(), "Segwit transaction hash is equal");
+        }
+    }
+
+    private BitcoinBlockReader openReader(String fileName, boolean direct, byte[][] magic, boolean readAuxPow) throws IOException {
+        String fullFileName = Objects.requireNonNull(getClass().getClassLoader().getResource("testdata/" + fileName)).getFile();
+        FileInputStream fin = new FileInputStream(new File(fullFileName));
+        return new BitcoinBlockReader(fin, DEFAULT_MAXSIZE_BITCOINBLOCK, DEFAULT_BUFFERSIZE, magic, direct, readAuxPow);
+    }
+}
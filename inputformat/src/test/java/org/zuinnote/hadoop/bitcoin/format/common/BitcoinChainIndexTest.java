@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BitcoinChainIndexTest {
+
+    private static final int DEFAULT_MAXSIZE_BITCOINBLOCK = 8 * 1024 * 1024;
+    private static final byte[][] DEFAULT_MAGIC = {{(byte) 0xF9, (byte) 0xBE, (byte) 0xB4, (byte) 0xD9}};
+    private static final long EASY_BITS = 0x207fffffL;
+    private static final long HARD_BITS = 0x1f00ffffL;
+
+    /**
+     * Creates a block without transactions in the format of blk*.dat files
+     */
+    public static byte[] createBlock(byte[] prevHash, int id, long bits) {
+        ByteBuffer block = ByteBuffer.allocate(8 + 80 + 1).order(ByteOrder.LITTLE_ENDIAN);
+        block.put(DEFAULT_MAGIC[0]);
+        block.putInt(80 + 1);
+        block.putInt(1);
+        block.put(prevHash);
+        byte[] merkleRoot = new byte[32];
+        merkleRoot[0] = (byte) id;
+        block.put(merkleRoot);
+        block.putInt(1231006505 + id);
+        block.putInt((int) bits);
+        block.putInt(id);
+        block.put((byte) 0);
+        return block.array();
+    }
+
+    public static byte[] hashOf(byte[] block) {
+        return BitcoinUtil.hashTwice(ByteBuffer.wrap(block, 8, 80));
+    }
+
+    @Test
+    public void bestChainWithStaleBlockOutOfOrder() throws IOException {
+        byte[] genesis = createBlock(new byte[32], 0, EASY_BITS);
+        byte[] a1 = createBlock(hashOf(genesis), 1, EASY_BITS);
+        byte[] a2 = createBlock(hashOf(a1), 2, EASY_BITS);
+        byte[] a3 = createBlock(hashOf(a2), 3, EASY_BITS);
+        byte[] b2 = createBlock(hashOf(a1), 4, EASY_BITS);
+        byte[] unconnected = createBlock(hashOf(createBlock(new byte[32], 5, EASY_BITS)), 6, EASY_BITS);
+        BitcoinChainIndexBuilder builder = new BitcoinChainIndexBuilder();
+        for (byte[] block : new byte[][]{a3, b2, unconnected, genesis, a2, a1}) {
+            assertTrue(builder.add(ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN)), "Block is added");
+        }
+        assertFalse(builder.add(ByteBuffer.wrap(a2).order(ByteOrder.LITTLE_ENDIAN)), "Duplicate block is ignored");
+        assertEquals(6, builder.size(), "Six distinct blocks");
+        BitcoinChainIndex index = builder.build();
+        assertEquals(4, index.size(), "Best chain contains four blocks");
+        assertEquals(3, index.getBestHeight(), "Height of the tip");
+        assertEquals(0, index.getHeight(hashOf(genesis)), "Height of genesis block");
+        assertEquals(1, index.getHeight(hashOf(a1)), "Height of first block");
+        assertEquals(2, index.getHeight(hashOf(a2)), "Height of second block");
+        assertEquals(3, index.getHeight(hashOf(a3)), "Height of third block");
+        assertArrayEquals(hashOf(a3), index.getHash(3), "Hash of the tip");
+        assertFalse(index.contains(hashOf(b2)), "Stale block is not part of the best chain");
+        assertEquals(BitcoinChainIndex.UNKNOWN_HEIGHT, index.getHeight(hashOf(unconnected)), "Block without known ancestors is not part of the best chain");
+    }
+
+    @Test
+    public void bestChainByWorkNotLength() {
+        byte[] genesis = createBlock(new byte[32], 0, EASY_BITS);
+        byte[] a1 = createBlock(hashOf(genesis), 1, EASY_BITS);
+        byte[] a2 = createBlock(hashOf(a1), 2, EASY_BITS);
+        byte[] b1 = createBlock(hashOf(genesis), 3, HARD_BITS);
+        BitcoinChainIndexBuilder builder = new BitcoinChainIndexBuilder();
+        for (byte[] block : new byte[][]{genesis, a1, a2, b1}) {
+            builder.add(ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN));
+        }
+        BitcoinChainIndex index = builder.build();
+        assertEquals(1, index.getBestHeight(), "Shorter chain with more work is the best chain");
+        assertEquals(1, index.getHeight(hashOf(b1)), "Height of block with higher difficulty");
+        assertFalse(index.contains(hashOf(a2)), "Longer chain with less work is stale");
+    }
+
+    @Test
+    public void workOfGenesisBlock() {
+        assertEquals(BigInteger.valueOf(0x100010001L), BitcoinChainIndexBuilder.getWork(0x1d00ffffL), "Work of difficulty 1");
+        assertEquals(BigInteger.ZERO, BitcoinChainIndexBuilder.getWork(0x04800000L | 0x1234L), "Negative target has no work");
+    }
+
+    @Test
+    public void emptyWithoutGenesis() {
+        BitcoinChainIndexBuilder builder = new BitcoinChainIndexBuilder();
+        builder.add(ByteBuffer.wrap(createBlock(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32}, 1, EASY_BITS)).order(ByteOrder.LITTLE_ENDIAN));
+        BitcoinChainIndex index = builder.build();
+        assertEquals(0, index.size(), "No best chain");
+        assertEquals(BitcoinChainIndex.UNKNOWN_HEIGHT, index.getBestHeight(), "No tip");
+    }
+
+    @Test
+    public void manyBlocksAndWritableRoundTrip() throws IOException {
+        BitcoinChainIndexBuilder builder = new BitcoinChainIndexBuilder();
+        byte[] prevHash = new byte[32];
+        byte[][] hashes = new byte[3000][];
+        for (int i = 0; i < hashes.length; i++) {
+            byte[] block = createBlock(prevHash, i, EASY_BITS);
+            hashes[i] = hashOf(block);
+            prevHash = hashes[i];
+            builder.add(ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN));
+        }
+        BitcoinChainIndex index = builder.build();
+        DataOutputBuffer out = new DataOutputBuffer();
+        index.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        BitcoinChainIndex copy = new BitcoinChainIndex();
+        copy.readFields(in);
+        assertEquals(hashes.length, copy.size(), "All blocks are part of the best chain");
+        for (int i = 0; i < hashes.length; i++) {
+            assertEquals(i, copy.getHeight(hashes[i]), "Height of block " + i);
+        }
+    }
+
+    @Test
+    public void addBlockHeadersFromFile() throws IOException {
+        File file = new File(Objects.requireNonNull(getClass().getClassLoader().getResource("testdata/multiblock.blk")).getFile());
+        BitcoinBlockReader bbr = new BitcoinBlockReader(new FileInputStream(file), DEFAULT_MAXSIZE_BITCOINBLOCK, 64 * 1024, DEFAULT_MAGIC, false);
+        ByteBuffer rawHeader = bbr.readRawBlockHeader();
+        assertEquals(88, rawHeader.remaining(), "Magic, block size and header");
+        assertEquals(0, bbr.getLastBlockPosition(), "Position of the genesis block");
+        assertEquals(293, bbr.getPosition(), "Transactions of the genesis block are skipped");
+        BitcoinChainIndexBuilder builder = new BitcoinChainIndexBuilder();
+        builder.add(rawHeader);
+        assertEquals(2, builder.addBlocks(bbr), "Headers of the remaining blocks");
+        assertEquals(file.length(), bbr.getPosition(), "All blocks are read");
+        bbr.close();
+        BitcoinChainIndex index = builder.build();
+        // the other blocks of the file are not connected to the genesis block
+        assertEquals(1, index.size(), "Only the genesis block is part of the best chain");
+        assertEquals("000000000019D6689C085AE165831E934FF763AE46A2A6C172B3F1B60A8CE26F", BitcoinUtil.convertByteArrayToHexString(BitcoinUtil.reverseByteArray(index.getHash(0))), "Hash of genesis block");
+    }
+
+    @Test
+    public void writeBlocksAndReadHeaders() throws IOException {
+        byte[] genesis = createBlock(new byte[32], 0, EASY_BITS);
+        byte[] a1 = createBlock(hashOf(genesis), 1, EASY_BITS);
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(a1);
+        file.write(genesis);
+        BitcoinBlockReader bbr = new BitcoinBlockReader(new ByteArrayInputStream(file.toByteArray()), DEFAULT_MAXSIZE_BITCOINBLOCK, 0, DEFAULT_MAGIC, false);
+        BitcoinChainIndexBuilder builder = new BitcoinChainIndexBuilder();
+        assertEquals(2, builder.addBlocks(bbr), "Two blocks");
+        assertEquals(1, builder.build().getHeight(hashOf(a1)), "Height of the block stored before the genesis block");
+    }
+}
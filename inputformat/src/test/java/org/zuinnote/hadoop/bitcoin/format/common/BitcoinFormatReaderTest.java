@@ -16,21 +16,38 @@
 
 package org.zuinnote.hadoop.bitcoin.format.common;
 
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.junit.jupiter.api.Test;
 import org.zuinnote.hadoop.bitcoin.format.exception.BitcoinBlockReadException;
+import org.zuinnote.hadoop.bitcoin.format.littleendian.HashSHA256;
+import org.zuinnote.hadoop.bitcoin.format.littleendian.UInt32;
+import org.zuinnote.hadoop.bitcoin.format.util.Bytes;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.GregorianCalendar;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -603,12 +620,382 @@ public class BitcoinFormatReaderTest {
         assertEquals(GENESIS_MERKLE_ROOT, BitcoinUtil.convertByteArrayToHexString(root));
     }
 
+    @Test
+    public void verifyMerkleRoot() throws IOException {
+        for (String fileName : new String[]{"multiblock.blk", "scriptwitness2.blk"}) {
+            BitcoinBlockReader bbr = assertBlockReaderAvailable(fileName, false);
+            try {
+                BitcoinBlock block;
+                while ((block = bbr.readBlock()) != null) {
+                    List<byte[]> tree = block.buildMerkleTree();
+                    assertArrayEquals(tree.get(tree.size() - 1), block.calculateMerkleRoot(), "Merkle root is the root of the Merkle tree (" + block.getTransactions().size() + " transactions)");
+                    assertTrue(block.verifyMerkleRoot(), "Merkle root in header matches transactions");
+                }
+            } finally {
+                bbr.close();
+            }
+        }
+        BitcoinBlock block = assertBlockAvailable("version2.blk", false);
+        block.setHashMerkleRoot(new HashSHA256(new byte[32]));
+        assertFalse(block.verifyMerkleRoot(), "Invalid Merkle root in header is detected");
+    }
+
+    @Test
+    public void blockHashFromRawHeader() throws IOException {
+        BitcoinBlock block = assertBlockAvailable("version4.blk", false);
+        byte[] expected = new Bytes(new UInt32(block.getVersion().longValue()), block.getHashPrevBlock(), block.getHashMerkleRoot(), block.getTime(), block.getBits(), block.getNonce()).hashTwice();
+        assertArrayEquals(expected, block.getHash().getBytes(), "Hash of raw header equals hash of header fields");
+        assertArrayEquals(expected, block.getHash().getBytes(), "Cached hash");
+        block.setNonce(new UInt32(block.getNonce().longValue() + 1));
+        assertFalse(Arrays.equals(expected, block.getHash().getBytes()), "Hash is recalculated after header change");
+    }
+
     @Test
     public void testGenesisHash() throws IOException {
         BitcoinBlock genesisBlock = assertGenesisBlockAvailable();
         assertEquals(GENESIS_HASH, genesisBlock.getHashString());
     }
 
+    @Test
+    public void transactionHashFromRawBlockHeap() throws IOException {
+        assertTransactionHashFromRawBlock("scriptwitness2.blk", false);
+    }
+
+    @Test
+    public void transactionHashFromRawBlockDirect() throws IOException {
+        assertTransactionHashFromRawBlock("scriptwitness2.blk", true);
+    }
+
+    private void assertTransactionHashFromRawBlock(String fileName, boolean direct) throws IOException {
+        BitcoinBlockReader bbr = assertBlockReaderAvailable(fileName, false);
+        BitcoinBlockReader bbrRanges = assertBlockReaderAvailable(fileName, direct);
+        bbrRanges.setRecordTransactionRanges(true);
+        try {
+            // read all blocks first to make sure that a reused DirectByteBuffer does not affect the transactions
+            List<BitcoinBlock> blocks = new ArrayList<>();
+            List<BitcoinBlock> blocksRanges = new ArrayList<>();
+            BitcoinBlock block;
+            while ((block = bbr.readBlock()) != null) {
+                blocks.add(block);
+                blocksRanges.add(bbrRanges.readBlock());
+            }
+            assertNull(bbrRanges.readBlock(), "No further block");
+            assertTrue(blocks.size() > 1, "File contains several blocks");
+            for (int b = 0; b < blocks.size(); b++) {
+                List<BitcoinTransaction> transactions = blocks.get(b).getTransactions();
+                List<BitcoinTransaction> transactionsRanges = blocksRanges.get(b).getTransactions();
+                assertEquals(transactions.size(), transactionsRanges.size(), "Same number of transactions");
+                for (int i = 0; i < transactions.size(); i++) {
+                    BitcoinTransaction transaction = transactions.get(i);
+                    BitcoinTransaction transactionRanges = transactionsRanges.get(i);
+                    assertArrayEquals(transaction.getTransactionHash(), transactionRanges.getTransactionHash(), "Transaction hash from raw block " + i);
+                    assertArrayEquals(transaction.getTransactionHash(), transactionRanges.getTransactionHash(), "Cached transaction hash " + i);
+                    assertArrayEquals(transaction.getTransactionHashSegwit(), transactionRanges.getTransactionHashSegwit(), "Segwit transaction hash from raw block " + i);
+                    assertArrayEquals(transaction.getBytes(), transactionRanges.getBytes(), "Raw transaction " + i);
+                }
+                assertArrayEquals(blocks.get(b).calculateMerkleRoot(), blocksRanges.get(b).calculateMerkleRoot(), "Merkle root from raw block");
+            }
+        } finally {
+            bbr.close();
+            bbrRanges.close();
+        }
+    }
+
+    @Test
+    public void outputValueSatoshis() throws IOException {
+        BitcoinBlock block = assertBlockAvailable("genesis.blk", false, DEFAULT_MAGIC);
+        BitcoinTransactionOutput output = block.getTransactions().get(0).getListOfOutputs().get(0);
+        assertEquals(5000000000L, output.getValueSatoshis(), "Genesis block reward in satoshis");
+        assertEquals(BigInteger.valueOf(5000000000L), output.getValue(), "Genesis block reward as BigInteger");
+        assertEquals(67, output.getTxOutScriptLength().getValue(), "Length of output script");
+        BitcoinTransactionOutput large = new BitcoinTransactionOutput(new BigInteger("18446744073709551615"), new BitcoinScript());
+        assertEquals(-1L, large.getValueSatoshis(), "Value above long range keeps its 8 bytes");
+        assertEquals(new BigInteger("18446744073709551615"), new BitcoinTransactionOutput(-1L, new BitcoinScript()).getValue(), "8 bytes are an unsigned value");
+    }
+
+    @Test
+    public void parseProjection() {
+        assertEquals(EnumSet.allOf(BitcoinBlockSection.class), BitcoinBlockSection.parseProjection(null), "No projection means all sections");
+        assertEquals(EnumSet.allOf(BitcoinBlockSection.class), BitcoinBlockSection.parseProjection("all"), "All sections");
+        assertEquals(EnumSet.of(BitcoinBlockSection.HEADER), BitcoinBlockSection.parseProjection("header"), "Only header");
+        assertEquals(EnumSet.of(BitcoinBlockSection.HEADER, BitcoinBlockSection.TRANSACTIONS, BitcoinBlockSection.OUTPUTS), BitcoinBlockSection.parseProjection(" Header, outputs "), "Outputs imply transactions");
+        assertThrows(IllegalArgumentException.class, () -> BitcoinBlockSection.parseProjection("header,unknown"), "Unknown section");
+    }
+
+    @Test
+    public void readBlockProjectionHeaderOutputsHeap() throws IOException {
+        assertBlockProjection("scriptwitness2.blk", false);
+    }
+
+    @Test
+    public void readBlockProjectionHeaderOutputsDirect() throws IOException {
+        assertBlockProjection("scriptwitness2.blk", true);
+    }
+
+    private void assertBlockProjection(String fileName, boolean direct) throws IOException {
+        BitcoinBlockReader bbr = assertBlockReaderAvailable(fileName, false);
+        BitcoinBlockReader bbrOutputs = assertBlockReaderAvailable(fileName, direct);
+        bbrOutputs.setProjection(BitcoinBlockSection.parseProjection("header,outputs"));
+        BitcoinBlockReader bbrHeader = assertBlockReaderAvailable(fileName, direct);
+        bbrHeader.setProjection(BitcoinBlockSection.parseProjection("header"));
+        try {
+            BitcoinBlock block;
+            int blocks = 0;
+            while ((block = bbr.readBlock()) != null) {
+                blocks++;
+                BitcoinBlock blockOutputs = bbrOutputs.readBlock();
+                BitcoinBlock blockHeader = bbrHeader.readBlock();
+                assertArrayEquals(block.getHeader().getBytes(), blockHeader.getHeader().getBytes(), "Header is parsed without transactions");
+                assertTrue(blockHeader.getTransactions().isEmpty(), "Transactions are skipped");
+                assertArrayEquals(block.getHeader().getBytes(), blockOutputs.getHeader().getBytes(), "Header is parsed with outputs");
+                assertTrue(blockOutputs.verifyMerkleRoot(), "Merkle root can be verified without parsing inputs and witnesses");
+                assertEquals(block.getTransactions().size(), blockOutputs.getTransactions().size(), "Same number of transactions");
+                for (int i = 0; i < block.getTransactions().size(); i++) {
+                    BitcoinTransaction transaction = block.getTransactions().get(i);
+                    BitcoinTransaction transactionOutputs = blockOutputs.getTransactions().get(i);
+                    assertTrue(transactionOutputs.getListOfInputs().isEmpty(), "Inputs are skipped " + i);
+                    assertTrue(transactionOutputs.getBitcoinScriptWitness().isEmpty(), "Witnesses are skipped " + i);
+                    assertEquals(transaction.getInCounter().getValue(), transactionOutputs.getInCounter().getValue(), "Same number of inputs " + i);
+                    assertEquals(transaction.getListOfOutputs().size(), transactionOutputs.getListOfOutputs().size(), "Same number of outputs " + i);
+                    for (int j = 0; j < transaction.getListOfOutputs().size(); j++) {
+                        assertEquals(transaction.getListOfOutputs().get(j).getValue(), transactionOutputs.getListOfOutputs().get(j).getValue(), "Same value of output " + j);
+                        assertArrayEquals(transaction.getListOfOutputs().get(j).getTxOutScript(), transactionOutputs.getListOfOutputs().get(j).getTxOutScript(), "Same script of output " + j);
+                    }
+                    assertEquals(transaction.getLockTime(), transactionOutputs.getLockTime(), "Same lock time " + i);
+                    assertArrayEquals(transaction.getTransactionHash(), transactionOutputs.getTransactionHash(), "Transaction hash of projected transaction " + i);
+                    assertArrayEquals(transaction.getTransactionHashSegwit(), transactionOutputs.getTransactionHashSegwit(), "Segwit transaction hash of projected transaction " + i);
+                    BitcoinTransaction copy = new BitcoinTransaction();
+                    copy.set(transactionOutputs);
+                    assertArrayEquals(transaction.getBytes(), copy.getBytes(), "Copy of projected transaction keeps raw transaction " + i);
+                }
+            }
+            assertTrue(blocks > 1, "File contains several blocks");
+            assertNull(bbrOutputs.readBlock(), "No further block with outputs");
+            assertNull(bbrHeader.readBlock(), "No further block with header");
+        } finally {
+            bbr.close();
+            bbrOutputs.close();
+            bbrHeader.close();
+        }
+    }
+
+    @Test
+    public void readRawBlockReuseBufferHeap() throws IOException {
+        assertReuseBuffer("scriptwitness2.blk", false);
+    }
+
+    @Test
+    public void readRawBlockReuseBufferDirect() throws IOException {
+        assertReuseBuffer("scriptwitness2.blk", true);
+    }
+
+    private void assertReuseBuffer(String fileName, boolean direct) throws IOException {
+        BitcoinBlockReader bbr = assertBlockReaderAvailable(fileName, false);
+        BitcoinBlockReader bbrReuse = assertBlockReaderAvailable(fileName, direct);
+        bbrReuse.setReuseBuffer(true);
+        BitcoinBlockReader bbrBlocks = assertBlockReaderAvailable(fileName, direct);
+        bbrBlocks.setReuseBuffer(true);
+        bbrBlocks.setRecordTransactionRanges(true);
+        try {
+            assertTrue(bbrReuse.isReuseBuffer(), "Buffer is reused");
+            List<BitcoinBlock> blocks = new ArrayList<>();
+            List<byte[]> rawBlocks = new ArrayList<>();
+            ByteBuffer rawBlock;
+            ByteBuffer previousRawBlock = null;
+            while ((rawBlock = bbr.readRawBlock()) != null) {
+                rawBlocks.add(rawBlock.array());
+                ByteBuffer reusedRawBlock = bbrReuse.readRawBlock();
+                assertEquals(direct, reusedRawBlock.isDirect(), "Reused buffer is a DirectByteBuffer if configured");
+                assertEquals(rawBlock, reusedRawBlock, "Same content in reused buffer");
+                if ((previousRawBlock != null) && (reusedRawBlock.capacity() == previousRawBlock.capacity())) {
+                    assertSame(previousRawBlock, reusedRawBlock, "Buffer is reused if it is large enough");
+                }
+                previousRawBlock = reusedRawBlock;
+                blocks.add(bbrBlocks.readBlock());
+            }
+            assertTrue(rawBlocks.size() > 1, "File contains several blocks");
+            assertNull(bbrReuse.readRawBlock(), "No further reused block");
+            assertNull(bbrBlocks.readBlock(), "No further parsed block");
+            // parsed blocks remain valid after the buffer has been reused
+            BitcoinBlockReader parser = new BitcoinBlockReader(false);
+            for (int i = 0; i < blocks.size(); i++) {
+                BitcoinBlock expected = parser.parseBlock(ByteBuffer.wrap(rawBlocks.get(i)).order(ByteOrder.LITTLE_ENDIAN));
+                assertArrayEquals(expected.getHash().getBytes(), blocks.get(i).getHash().getBytes(), "Same block hash " + i);
+                for (int j = 0; j < expected.getTransactions().size(); j++) {
+                    BitcoinTransaction transaction = blocks.get(i).getTransactions().get(j);
+                    assertArrayEquals(expected.getTransactions().get(j).getBytes(), transaction.getBytes(), "Same raw transaction " + i + "/" + j);
+                    assertArrayEquals(expected.getTransactions().get(j).getTransactionHashSegwit(), transaction.getTransactionHashSegwit(), "Same segwit transaction hash " + i + "/" + j);
+                }
+            }
+        } finally {
+            bbr.close();
+            bbrReuse.close();
+            bbrBlocks.close();
+        }
+    }
+
+    @Test
+    public void readBlockHeaderMultiBlock() throws IOException {
+        assertBlockHeaders("multiblock.blk", DEFAULT_MAGIC, false);
+    }
+
+    @Test
+    public void readBlockHeaderScriptWitness() throws IOException {
+        assertBlockHeaders("scriptwitness2.blk", DEFAULT_MAGIC, false);
+    }
+
+    @Test
+    public void readBlockHeaderNamecoinAuxPow() throws IOException {
+        assertBlockHeaders("namecointhreedifferentopinoneblock.blk", new byte[][]{{(byte) 0xF9, (byte) 0xBE, (byte) 0xB4, (byte) 0xFE}}, true);
+    }
+
+    @Test
+    public void parserKeepsSettingsAndParsesConcurrently() throws IOException, InterruptedException, ExecutionException {
+        BitcoinBlockReader bbr = assertBlockReaderAvailable("scriptwitness2.blk", false);
+        bbr.setProjection(BitcoinBlockSection.parseProjection("header,outputs"));
+        final BitcoinBlockReader parser = bbr.createParser();
+        // changes of the reader do not affect the parser
+        bbr.setProjection(EnumSet.allOf(BitcoinBlockSection.class));
+        bbr.setReuseBuffer(true);
+        final List<byte[]> rawBlocks = new ArrayList<>();
+        List<BitcoinBlock> expected = new ArrayList<>();
+        try {
+            ByteBuffer rawBlock;
+            while ((rawBlock = bbr.readRawBlock()) != null) {
+                byte[] copy = new byte[rawBlock.remaining()];
+                rawBlock.get(copy);
+                rawBlocks.add(copy);
+                expected.add(bbr.parseBlock(ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN)));
+            }
+        } finally {
+            bbr.close();
+        }
+        assertTrue(rawBlocks.size() > 1, "File contains several blocks");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<BitcoinBlock>> parsed = new ArrayList<>();
+            for (int round = 0; round < 8; round++) {
+                for (final byte[] rawBlock : rawBlocks) {
+                    parsed.add(executor.submit(new Callable<BitcoinBlock>() {
+                        @Override
+                        public BitcoinBlock call() {
+                            return parser.parseBlock(ByteBuffer.wrap(rawBlock).order(ByteOrder.LITTLE_ENDIAN));
+                        }
+                    }));
+                }
+            }
+            for (int i = 0; i < parsed.size(); i++) {
+                BitcoinBlock block = parsed.get(i).get();
+                BitcoinBlock expectedBlock = expected.get(i % rawBlocks.size());
+                assertEquals(expectedBlock.getHashString(), block.getHashString(), "Same hash of block " + i);
+                assertEquals(expectedBlock.getTransactions().size(), block.getTransactions().size(), "Same number of transactions " + i);
+                for (int j = 0; j < block.getTransactions().size(); j++) {
+                    BitcoinTransaction transaction = block.getTransactions().get(j);
+                    assertTrue(transaction.getListOfInputs().isEmpty(), "Projection of the parser is kept " + i + "/" + j);
+                    assertArrayEquals(expectedBlock.getTransactions().get(j).getTransactionHashSegwit(), transaction.getTransactionHashSegwit(), "Same segwit transaction hash " + i + "/" + j);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void pipelineStopsFramerBlockedInRead() throws IOException {
+        final CountDownLatch closed = new CountDownLatch(1);
+        InputStream blockingStream = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                // like a socket stream, the read is not interrupted, but only unblocked by closing the stream
+                while (closed.getCount() > 0) {
+                    try {
+                        closed.await();
+                    } catch (InterruptedException e) {
+                        // ignored
+                    }
+                }
+                throw new IOException("Stream closed");
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+        final BitcoinBlockReader bbr = new BitcoinBlockReader(blockingStream, DEFAULT_MAXSIZE_BITCOINBLOCK, DEFAULT_BUFFERSIZE, DEFAULT_MAGIC, false);
+        BitcoinBlockPipeline pipeline = new BitcoinBlockPipeline(bbr, new BitcoinBlockPipeline.Boundary() {
+            @Override
+            public long getPosition() {
+                return bbr.getPosition();
+            }
+
+            @Override
+            public boolean hasMoreBlocks(long position) {
+                return true;
+            }
+        }, 2, 1, false);
+        pipeline.start();
+        pipeline.stop();
+        bbr.close();
+        // throws if the framing thread is still reading
+        pipeline.close();
+        assertEquals(0, closed.getCount(), "Stream has been closed");
+    }
+
+    private void assertBlockHeaders(String fileName, byte[][] magic, boolean readAuxPow) throws IOException {
+        File file = new File(getFullFilename(fileName));
+        BitcoinBlockReader bbr = new BitcoinBlockReader(new FileInputStream(file), DEFAULT_MAXSIZE_BITCOINBLOCK, DEFAULT_BUFFERSIZE, magic, false, readAuxPow);
+        BitcoinBlockReader bbrHeader = new BitcoinBlockReader(new FileInputStream(file), DEFAULT_MAXSIZE_BITCOINBLOCK, DEFAULT_BUFFERSIZE, magic, false, readAuxPow);
+        try {
+            BitcoinBlock block;
+            int blockCount = 0;
+            while ((block = bbr.readBlock()) != null) {
+                BitcoinBlockHeader header = bbrHeader.readBlockHeader();
+                assertNotNull(header, "Header of block " + blockCount);
+                assertEquals(bbr.getLastBlockPosition(), bbrHeader.getLastBlockPosition(), "Same position of block " + blockCount);
+                assertEquals(bbr.getPosition(), bbrHeader.getPosition(), "Rest of block " + blockCount + " is skipped");
+                assertArrayEquals(block.getMagicNo().getBytes(), header.getMagicNo(), "Magic of block " + blockCount);
+                assertEquals(block.getBlockSize().getValue(), header.getBlockSize(), "Size of block " + blockCount);
+                assertEquals(block.getVersion().getValue(), header.getVersion(), "Version of block " + blockCount);
+                assertEquals(block.getEpochTime(), header.getTime(), "Time of block " + blockCount);
+                assertEquals(block.getBits().getValue(), header.getBits(), "Bits of block " + blockCount);
+                assertEquals(block.getNonce().getValue(), header.getNonce(), "Nonce of block " + blockCount);
+                assertArrayEquals(block.getHashPrevBlock().getBytes(), header.getHashPrevBlock(), "Previous block of block " + blockCount);
+                assertArrayEquals(block.getHashMerkleRoot().getBytes(), header.getHashMerkleRoot(), "Merkle root of block " + blockCount);
+                assertArrayEquals(block.getHash().getBytes(), header.getHash(), "Hash of block " + blockCount);
+                assertEquals(block.getTransactions().size(), header.getTransactionCount(), "Number of transactions of block " + blockCount);
+                byte[] key = new byte[64];
+                header.getKey(key, 0);
+                assertArrayEquals(bbr.getKeyFromRawBlock(ByteBuffer.wrap(block.getBytes()).order(ByteOrder.LITTLE_ENDIAN)), key, "Key of block " + blockCount);
+                blockCount++;
+            }
+            assertTrue(blockCount > 0, "File contains blocks");
+            assertNull(bbrHeader.readBlockHeader(), "No further header");
+        } finally {
+            bbr.close();
+            bbrHeader.close();
+        }
+    }
+
+    @Test
+    public void blockHeaderWritableRoundTrip() throws IOException {
+        BitcoinBlockReader bbr = assertBlockReaderAvailable("genesis.blk", false);
+        BitcoinBlockHeader header = bbr.readBlockHeader();
+        bbr.close();
+        header.setHeight(0);
+        DataOutputBuffer out = new DataOutputBuffer();
+        header.write(out);
+        assertEquals(BitcoinBlockHeader.SERIALIZED_SIZE, out.getLength(), "Serialized header has a fixed size");
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        BitcoinBlockHeader copy = new BitcoinBlockHeader();
+        copy.readFields(in);
+        assertArrayEquals(header.getHeader(), copy.getHeader(), "Same header");
+        assertEquals(1, copy.getTransactionCount(), "Same number of transactions");
+        assertEquals(0, copy.getHeight(), "Same height");
+        assertEquals("000000000019D6689C085AE165831E934FF763AE46A2A6C172B3F1B60A8CE26F", BitcoinUtil.convertByteArrayToHexString(BitcoinUtil.reverseByteArray(copy.getHash())), "Hash of genesis block");
+    }
+
     @Test
     public void seekBlockStartHeap() throws IOException, BitcoinBlockReadException {
         BitcoinBlockReader bbr = null;
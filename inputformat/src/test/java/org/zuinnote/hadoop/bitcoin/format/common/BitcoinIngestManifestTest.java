@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BitcoinIngestManifestTest {
+
+    @Test
+    public void writableRoundTrip() throws IOException {
+        byte[] hash = new byte[32];
+        hash[0] = 1;
+        BitcoinIngestManifest manifest = new BitcoinIngestManifest();
+        manifest.put(new Path("hdfs://namenode:8020/blocks/blk00000.dat"), new BitcoinIngestManifest.Entry(775, 293, hash));
+        manifest.put(new Path("/blocks/blk00001.dat"), new BitcoinIngestManifest.Entry(191973, 775, new byte[32], 1500000000000L));
+        DataOutputBuffer out = new DataOutputBuffer();
+        manifest.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        BitcoinIngestManifest copy = new BitcoinIngestManifest();
+        copy.readFields(in);
+        assertEquals(2, copy.size(), "All files are restored");
+        BitcoinIngestManifest.Entry entry = copy.get(new Path("/blocks/blk00000.dat"));
+        assertNotNull(entry, "Files are found independent of scheme and authority");
+        assertEquals(775, entry.getOffset(), "Offset is restored");
+        assertEquals(293, entry.getLastBlockOffset(), "Offset of last block is restored");
+        assertArrayEquals(hash, entry.getLastBlockHash(), "Hash of last block is restored");
+        assertEquals(191973, copy.get(new Path("file:/blocks/blk00001.dat")).getOffset(), "Offset of second file is restored");
+        assertEquals(1500000000000L, copy.get(new Path("/blocks/blk00001.dat")).getModificationTime(), "Modification time is restored");
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        BitcoinIngestManifest manifest = new BitcoinIngestManifest();
+        manifest.put(new Path("/blocks/blk00000.dat"), new BitcoinIngestManifest.Entry(775, 293, new byte[32]));
+        BitcoinIngestManifest copy = new BitcoinIngestManifest(manifest);
+        copy.remove(new Path("/blocks/blk00000.dat"));
+        assertEquals(0, copy.size(), "File removed from copy");
+        assertEquals(1, manifest.size(), "Original manifest is not changed");
+    }
+
+    @Test
+    public void invalidHash() {
+        assertThrows(IllegalArgumentException.class, () -> new BitcoinIngestManifest.Entry(0, 0, new byte[31]), "Hash must have 32 bytes");
+    }
+}
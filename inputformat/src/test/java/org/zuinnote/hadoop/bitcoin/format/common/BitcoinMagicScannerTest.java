@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BitcoinMagicScannerTest {
+
+    private static final byte[][] DEFAULT_MAGIC = {{(byte) 0xF9, (byte) 0xBE, (byte) 0xB4, (byte) 0xD9}};
+    private static final byte[][] MULTINET_MAGIC = {{(byte) 0xF9, (byte) 0xBE, (byte) 0xB4, (byte) 0xD9}, {(byte) 0x0B, (byte) 0x11, (byte) 0x09, (byte) 0x07}};
+
+    @Test
+    public void findMagicAtEveryOffset() {
+        BitcoinMagicScanner scanner = new BitcoinMagicScanner(DEFAULT_MAGIC);
+        for (int i = 0; i <= 60; i++) {
+            byte[] data = new byte[64];
+            System.arraycopy(DEFAULT_MAGIC[0], 0, data, i, 4);
+            assertEquals(i, scanner.indexOf(data, 0, data.length), "Magic found at offset " + i);
+        }
+    }
+
+    @Test
+    public void findMagicInRange() {
+        BitcoinMagicScanner scanner = new BitcoinMagicScanner(DEFAULT_MAGIC);
+        byte[] data = new byte[64];
+        System.arraycopy(DEFAULT_MAGIC[0], 0, data, 10, 4);
+        System.arraycopy(DEFAULT_MAGIC[0], 0, data, 40, 4);
+        assertEquals(10, scanner.indexOf(data, 0, 64), "First magic is found");
+        assertEquals(40, scanner.indexOf(data, 11, 53), "Magic before range is ignored");
+        assertEquals(-1, scanner.indexOf(data, 11, 32), "Magic crossing the end of the range is ignored");
+        assertEquals(-1, scanner.indexOf(data, 0, 3), "Range shorter than a magic contains no magic");
+    }
+
+    @Test
+    public void findMultipleMagics() {
+        BitcoinMagicScanner scanner = new BitcoinMagicScanner(MULTINET_MAGIC);
+        byte[] data = new byte[100];
+        Arrays.fill(data, (byte) 0xF9);
+        data[50] = (byte) 0x0B;
+        data[51] = (byte) 0x11;
+        data[52] = (byte) 0x09;
+        data[53] = (byte) 0x07;
+        assertEquals(50, scanner.indexOf(data, 0, data.length), "Testnet magic is found between partial matches of the main net magic");
+    }
+
+    @Test
+    public void noMagic() {
+        BitcoinMagicScanner scanner = new BitcoinMagicScanner(DEFAULT_MAGIC);
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i += 4) {
+            data[i] = (byte) 0xF9;
+            data[i + 1] = (byte) 0xBE;
+            data[i + 2] = (byte) 0xB4;
+        }
+        assertEquals(-1, scanner.indexOf(data, 0, data.length), "Partial magics are not matched");
+    }
+
+    @Test
+    public void seekBlockStartAfterLargeGap() throws IOException {
+        String fileName = Objects.requireNonNull(getClass().getClassLoader().getResource("testdata/genesis.blk")).getFile();
+        byte[] genesis = Files.readAllBytes(Paths.get(fileName));
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        // garbage that is larger than one chunk and contains partial magics
+        for (int i = 0; i < 100000; i++) {
+            data.write(i % 7 == 0 ? 0xF9 : i);
+        }
+        data.write(genesis);
+        BitcoinBlockReader bbr = new BitcoinBlockReader(new ByteArrayInputStream(data.toByteArray()), 8 * 1024 * 1024, 64 * 1024, DEFAULT_MAGIC, false);
+        try {
+            bbr.seekBlockStart();
+            BitcoinBlock block = bbr.readBlock();
+            assertNotNull(block, "Genesis block found after gap");
+            assertEquals(1, block.getTransactions().size(), "Genesis block contains one transaction");
+            assertNull(bbr.readBlock(), "No further block");
+        } finally {
+            bbr.close();
+        }
+    }
+
+    @Test
+    public void seekBlockStartNoMagicWithinMaxSize() {
+        byte[] data = new byte[10000];
+        BitcoinBlockReader bbr = new BitcoinBlockReader(new ByteArrayInputStream(data), 1000, 64 * 1024, DEFAULT_MAGIC, false);
+        assertThrows(IOException.class, bbr::seekBlockStart, "No magic within maximum block size");
+    }
+}
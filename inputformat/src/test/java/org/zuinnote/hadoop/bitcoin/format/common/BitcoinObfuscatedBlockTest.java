@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.junit.jupiter.api.Test;
+import org.zuinnote.hadoop.bitcoin.format.util.XorInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BitcoinObfuscatedBlockTest {
+
+    private static final int DEFAULT_MAXSIZE_BITCOINBLOCK = 8 * 1024 * 1024;
+    private static final byte[][] DEFAULT_MAGIC = {{(byte) 0xF9, (byte) 0xBE, (byte) 0xB4, (byte) 0xD9}};
+    private static final byte[] KEY = {(byte) 0x1F, (byte) 0x2E, (byte) 0x3D, (byte) 0x4C, (byte) 0x5B, (byte) 0x6A, (byte) 0x79, (byte) 0x88};
+
+    private byte[] readFile(String fileName) throws IOException {
+        return Files.readAllBytes(new File(Objects.requireNonNull(getClass().getClassLoader().getResource("testdata/" + fileName)).getFile()).toPath());
+    }
+
+    private static byte[] obfuscate(byte[] data) {
+        byte[] result = new byte[data.length];
+        for (int i = 0; i < data.length; i++) {
+            result[i] = (byte) (data[i] ^ KEY[i % KEY.length]);
+        }
+        return result;
+    }
+
+    private static List<ByteBuffer> readRawBlocks(BitcoinBlockReader bbr) throws IOException {
+        List<ByteBuffer> result = new ArrayList<>();
+        try {
+            ByteBuffer rawBlock;
+            while ((rawBlock = bbr.readRawBlock()) != null) {
+                result.add(rawBlock);
+            }
+        } finally {
+            bbr.close();
+        }
+        return result;
+    }
+
+    @Test
+    public void applyMatchesBytewiseXorForAllAlignments() {
+        byte[] plain = new byte[67];
+        for (int i = 0; i < plain.length; i++) {
+            plain[i] = (byte) (i * 31);
+        }
+        for (int fileOffset = 0; fileOffset < 9; fileOffset++) {
+            for (int off = 0; off < 9; off++) {
+                byte[] data = plain.clone();
+                XorInputStream stream = new XorInputStream(new ByteArrayInputStream(new byte[0]), KEY, 0);
+                stream.apply(data, off, data.length - off, fileOffset);
+                for (int i = 0; i < data.length; i++) {
+                    byte expected = i < off ? plain[i] : (byte) (plain[i] ^ KEY[(fileOffset + i - off) % KEY.length]);
+                    assertEquals(expected, data[i], "Byte " + i + " for file offset " + fileOffset + " and array offset " + off);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void readObfuscatedMultiBlock() throws IOException {
+        byte[] plain = readFile("multiblock.blk");
+        List<ByteBuffer> expected = readRawBlocks(new BitcoinBlockReader(new ByteArrayInputStream(plain), DEFAULT_MAXSIZE_BITCOINBLOCK, 64 * 1024, DEFAULT_MAGIC, false));
+        BitcoinBlockReader bbr = new BitcoinBlockReader(new ByteArrayInputStream(obfuscate(plain)), DEFAULT_MAXSIZE_BITCOINBLOCK, 64 * 1024, DEFAULT_MAGIC, false);
+        bbr.setXorKey(KEY, 0);
+        assertEquals(expected, readRawBlocks(bbr), "Same blocks as in the plain file");
+    }
+
+    @Test
+    public void readObfuscatedMultiBlockFromOffset() throws IOException {
+        byte[] plain = readFile("multiblock.blk");
+        List<ByteBuffer> expected = readRawBlocks(new BitcoinBlockReader(new ByteArrayInputStream(plain), DEFAULT_MAXSIZE_BITCOINBLOCK, 64 * 1024, DEFAULT_MAGIC, false));
+        // start within the first block at an offset that is not aligned to the key, like a split
+        int start = 101;
+        byte[] obfuscated = obfuscate(plain);
+        InputStream in = new ByteArrayInputStream(Arrays.copyOfRange(obfuscated, start, obfuscated.length));
+        BitcoinBlockReader bbr = new BitcoinBlockReader(in, DEFAULT_MAXSIZE_BITCOINBLOCK, 64 * 1024, DEFAULT_MAGIC, false);
+        bbr.setXorKey(KEY, start);
+        bbr.seekBlockStart();
+        assertEquals(expected.subList(1, expected.size()), readRawBlocks(bbr), "All blocks after the first one");
+    }
+
+    @Test
+    public void zeroKeyIsIgnored() throws IOException {
+        byte[] plain = readFile("genesis.blk");
+        BitcoinBlockReader bbr = new BitcoinBlockReader(new ByteArrayInputStream(plain), DEFAULT_MAXSIZE_BITCOINBLOCK, 0, DEFAULT_MAGIC, false);
+        bbr.setXorKey(new byte[XorInputStream.KEY_SIZE], 0);
+        List<ByteBuffer> blocks = readRawBlocks(bbr);
+        assertEquals(1, blocks.size(), "Genesis block is read");
+        assertEquals(293, blocks.get(0).limit(), "Genesis block has a size of 293");
+    }
+
+    @Test
+    public void invalidKeyLength() {
+        assertThrows(IllegalArgumentException.class, () -> new XorInputStream(new ByteArrayInputStream(new byte[0]), new byte[4], 0), "Key of 4 bytes is rejected");
+    }
+}
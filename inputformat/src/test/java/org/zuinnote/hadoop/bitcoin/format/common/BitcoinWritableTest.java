@@ -0,0 +1,233 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BitcoinWritableTest {
+
+    private static final int DEFAULT_BUFFERSIZE = 64 * 1024;
+    private static final int DEFAULT_MAXSIZE_BITCOINBLOCK = 8 * 1024 * 1024;
+    private static final byte[][] DEFAULT_MAGIC = {{(byte) 0xF9, (byte) 0xBE, (byte) 0xB4, (byte) 0xD9}};
+    private static final byte[][] NAMECOIN_MAGIC = {{(byte) 0xF9, (byte) 0xBE, (byte) 0xB4, (byte) 0xFE}};
+
+    @Test
+    public void blockWritableRoundTripVersion4() throws IOException {
+        assertBlocksRoundTrip("version4.blk", DEFAULT_MAGIC, false);
+    }
+
+    @Test
+    public void blockWritableRoundTripMultiBlock() throws IOException {
+        assertBlocksRoundTrip("multiblock.blk", DEFAULT_MAGIC, false);
+    }
+
+    @Test
+    public void blockWritableRoundTripScriptWitness() throws IOException {
+        assertBlocksRoundTrip("scriptwitness2.blk", DEFAULT_MAGIC, false);
+    }
+
+    @Test
+    public void blockWritableRoundTripNamecoinAuxPow() throws IOException {
+        List<BitcoinBlock> blocks = assertBlocksRoundTrip("namecointhreedifferentopinoneblock.blk", NAMECOIN_MAGIC, true);
+        boolean auxPow = false;
+        for (BitcoinBlock block : blocks) {
+            auxPow |= block.getAuxPOW() != null;
+        }
+        assertTrue(auxPow, "AuxPOW information is serialized");
+    }
+
+    @Test
+    public void blockWritableRoundTripHeight() throws IOException {
+        BitcoinBlock block = readBlocks("genesis.blk", DEFAULT_MAGIC, false).get(0);
+        BitcoinBlock copy = new BitcoinBlock();
+        roundTrip(block, copy);
+        assertEquals(BitcoinChainIndex.UNKNOWN_HEIGHT, copy.getHeight(), "Unknown height is restored");
+        block.setHeight(123456);
+        roundTrip(block, copy);
+        assertEquals(123456, copy.getHeight(), "Height is restored");
+        assertArrayEquals(block.getBytes(), copy.getBytes(), "Block is restored in wire format");
+    }
+
+    @Test
+    public void blockWritableRoundTripProjection() throws IOException {
+        BitcoinBlockReader reader = openReader("multiblock.blk", DEFAULT_MAGIC, false);
+        reader.setProjection(EnumSet.of(BitcoinBlockSection.HEADER));
+        BitcoinBlock copy = new BitcoinBlock();
+        int blocks = 0;
+        try {
+            BitcoinBlock block;
+            while ((block = reader.readBlock()) != null) {
+                roundTrip(block, copy);
+                assertEquals(0, copy.getTransactions().size(), "Skipped transactions are not serialized");
+                assertEquals(copy.getBytes().length - 8, copy.getBlockSize().longValue(), "Block size of restored block " + blocks + " matches its content");
+                assertEquals(block.getHashString(), copy.getHashString(), "Hash of restored block " + blocks);
+                blocks++;
+            }
+        } finally {
+            reader.close();
+        }
+        assertTrue(blocks > 0, "Blocks are read");
+    }
+
+    @Test
+    public void transactionWritableRoundTripReusesObject() throws IOException {
+        BitcoinBlock block = readBlocks("scriptwitness2.blk", DEFAULT_MAGIC, false).get(0);
+        BitcoinTransaction copy = new BitcoinTransaction();
+        int segwitTransactions = 0;
+        for (BitcoinTransaction transaction : block.getTransactions()) {
+            roundTrip(transaction, copy);
+            assertArrayEquals(transaction.getBytes(), copy.getBytes(), "Transaction is restored in wire format");
+            assertArrayEquals(transaction.getTransactionHash(), copy.getTransactionHash(), "Transaction hash of restored transaction");
+            assertArrayEquals(transaction.getTransactionHashSegwit(), copy.getTransactionHashSegwit(), "Segwit transaction hash of restored transaction");
+            if (copy.isSegwit()) {
+                segwitTransactions++;
+            }
+        }
+        assertTrue(segwitTransactions > 0, "Block contains segwit transactions");
+    }
+
+    @Test
+    public void transactionHashComparatorOrder() {
+        BitcoinTransactionHashComparator comparator = new BitcoinTransactionHashComparator();
+        byte[] hashA = new byte[32];
+        byte[] hashB = new byte[32];
+        hashB[0] = 1;
+        BytesWritable a1 = outpoint(hashA, 1);
+        BytesWritable a256 = outpoint(hashA, 256);
+        BytesWritable b0 = outpoint(hashB, 0);
+        BytesWritable aNoIndex = new BytesWritable(hashA);
+        assertTrue(compareSerialized(comparator, a1, a256) < 0, "Output index is compared numerically");
+        assertTrue(compareSerialized(comparator, a256, b0) < 0, "Transaction hash is compared first");
+        assertTrue(compareSerialized(comparator, aNoIndex, a1) < 0, "Key without output index sorts first");
+        assertEquals(0, compareSerialized(comparator, a1, outpoint(hashA, 1)), "Equal keys");
+        assertTrue(comparator.compare(a1, a256) < 0, "Deserialized keys are compared like serialized keys");
+        assertTrue(comparator.compare(a256, b0) < 0, "Deserialized keys are compared by transaction hash first");
+    }
+
+    @Test
+    public void transactionHashGroupingComparator() {
+        BitcoinTransactionHashGroupingComparator comparator = new BitcoinTransactionHashGroupingComparator();
+        byte[] hashA = new byte[32];
+        byte[] hashB = new byte[32];
+        hashB[31] = 1;
+        assertEquals(0, compareSerialized(comparator, outpoint(hashA, 1), outpoint(hashA, 256)), "Outpoints of the same transaction are grouped");
+        assertEquals(0, compareSerialized(comparator, new BytesWritable(hashA), outpoint(hashA, 3)), "Transaction hash and outpoint of the same transaction are grouped");
+        assertTrue(compareSerialized(comparator, outpoint(hashA, 1), outpoint(hashB, 0)) < 0, "Different transactions are not grouped");
+        assertEquals(0, comparator.compare(outpoint(hashA, 1), outpoint(hashA, 2)), "Deserialized outpoints of the same transaction are grouped");
+    }
+
+    private List<BitcoinBlock> assertBlocksRoundTrip(String fileName, byte[][] magic, boolean readAuxPow) throws IOException {
+        List<BitcoinBlock> blocks = readBlocks(fileName, magic, readAuxPow);
+        List<ByteBuffer> rawBlocks = readRawBlocks(fileName, magic);
+        assertEquals(rawBlocks.size(), blocks.size(), "Raw and parsed blocks are read");
+        BitcoinBlock copy = new BitcoinBlock();
+        for (int i = 0; i < blocks.size(); i++) {
+            BitcoinBlock block = blocks.get(i);
+            ByteBuffer rawBlock = rawBlocks.get(i);
+            byte[] expected = new byte[rawBlock.remaining()];
+            rawBlock.get(expected);
+            assertArrayEquals(expected, block.getBytes(), "Serialized block " + i + " is identical to the block in the file");
+            // the same object is reused for all blocks
+            roundTrip(block, copy);
+            assertArrayEquals(expected, copy.getBytes(), "Restored block " + i + " is identical to the block in the file");
+            assertEquals(block.getHashString(), copy.getHashString(), "Hash of restored block " + i);
+            assertEquals(block.getTransactions().size(), copy.getTransactions().size(), "Transactions of restored block " + i);
+            assertEquals(block.getAuxPOW() != null, copy.getAuxPOW() != null, "AuxPOW of restored block " + i);
+        }
+        return blocks;
+    }
+
+    private static void roundTrip(Writable source, Writable target) throws IOException {
+        DataOutputBuffer out = new DataOutputBuffer();
+        source.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        target.readFields(in);
+        assertEquals(-1, in.read(), "Serialization is fully consumed");
+    }
+
+    private static BytesWritable outpoint(byte[] hash, int index) {
+        byte[] key = Arrays.copyOf(hash, 36);
+        key[32] = (byte) index;
+        key[33] = (byte) (index >>> 8);
+        key[34] = (byte) (index >>> 16);
+        key[35] = (byte) (index >>> 24);
+        return new BytesWritable(key);
+    }
+
+    private static int compareSerialized(WritableComparator comparator, BytesWritable a, BytesWritable b) {
+        try {
+            DataOutputBuffer outA = new DataOutputBuffer();
+            a.write(outA);
+            DataOutputBuffer outB = new DataOutputBuffer();
+            b.write(outB);
+            return comparator.compare(outA.getData(), 0, outA.getLength(), outB.getData(), 0, outB.getLength());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<BitcoinBlock> readBlocks(String fileName, byte[][] magic, boolean readAuxPow) throws IOException {
+        BitcoinBlockReader reader = openReader(fileName, magic, readAuxPow);
+        List<BitcoinBlock> result = new ArrayList<>();
+        try {
+            BitcoinBlock block;
+            while ((block = reader.readBlock()) != null) {
+                result.add(block);
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    private List<ByteBuffer> readRawBlocks(String fileName, byte[][] magic) throws IOException {
+        BitcoinBlockReader reader = openReader(fileName, magic, false);
+        List<ByteBuffer> result = new ArrayList<>();
+        try {
+            ByteBuffer block;
+            while ((block = reader.readRawBlock()) != null) {
+                result.add(block);
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    private BitcoinBlockReader openReader(String fileName, byte[][] magic, boolean readAuxPow) throws IOException {
+        File file = new File(Objects.requireNonNull(getClass().getClassLoader().getResource("testdata/" + fileName)).getFile());
+        return new BitcoinBlockReader(new FileInputStream(file), DEFAULT_MAXSIZE_BITCOINBLOCK, DEFAULT_BUFFERSIZE, magic, false, readAuxPow);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.junit.jupiter.api.Test;
+import org.zuinnote.hadoop.bitcoin.format.littleendian.LE;
+import org.zuinnote.hadoop.bitcoin.format.littleendian.UIntVar;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LittleEndianCodecTest {
+
+    private static final long[] VAR_INT_VALUES = {0L, 1L, 0xFCL, 0xFDL, 0xFFFFL, 0x10000L, 0xFFFFFFFFL, 0x100000000L, Long.MAX_VALUE};
+
+    @Test
+    public void readUInt32IndependentOfByteOrder() {
+        byte[] data = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01, 0x00, 0x00, 0x00};
+        ByteBuffer bigEndian = ByteBuffer.wrap(data);
+        ByteBuffer littleEndian = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(4294967295L, LE.readUInt32(bigEndian), "Max unsigned int in big endian buffer");
+        assertEquals(1L, LE.readUInt32(bigEndian), "Second int in big endian buffer");
+        assertEquals(4294967295L, LE.readUInt32(littleEndian), "Max unsigned int in little endian buffer");
+        assertEquals(1L, LE.getUInt32(littleEndian, 4), "Absolute read in little endian buffer");
+    }
+
+    @Test
+    public void varIntRoundTrip() {
+        for (long value : VAR_INT_VALUES) {
+            byte[] expected = BitcoinUtil.convertLongToVarIntByteArray(value);
+            ByteBuffer buffer = ByteBuffer.allocate(9);
+            LE.writeVarInt(buffer, value);
+            assertEquals(expected.length, buffer.position(), "Encoded size of " + value);
+            assertEquals(expected.length, LE.varIntSizeOf(value), "Computed size of " + value);
+            assertEquals(expected.length, LE.varIntSize(buffer.get(0)), "Size from first byte of " + value);
+            assertArrayEquals(expected, Arrays.copyOf(buffer.array(), expected.length), "Encoding of " + value);
+            assertEquals(value, LE.getVarInt(buffer, 0), "Absolute decoding of " + value);
+            buffer.flip();
+            assertEquals(value, LE.readVarInt(buffer), "Decoding of " + value);
+            assertEquals(expected.length, buffer.position(), "Buffer advanced behind " + value);
+        }
+    }
+
+    @Test
+    public void uIntVarRoundTrip() {
+        for (long value : VAR_INT_VALUES) {
+            UIntVar fromValue = new UIntVar(value);
+            byte[] expected = BitcoinUtil.convertLongToVarIntByteArray(value);
+            assertArrayEquals(expected, fromValue.getBytes(), "Serialization of " + value);
+            assertEquals(value, fromValue.getValue(), "Value of " + value);
+            assertEquals(value, new UIntVar(expected).getValue(), "Parsed value of " + value);
+        }
+    }
+}
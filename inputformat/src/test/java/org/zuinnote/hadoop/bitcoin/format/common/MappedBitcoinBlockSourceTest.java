@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.zuinnote.hadoop.bitcoin.format.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedBitcoinBlockSourceTest {
+
+    private static final int DEFAULT_MAXSIZE_BITCOINBLOCK = 8 * 1024 * 1024;
+    private static final byte[][] DEFAULT_MAGIC = {{(byte) 0xF9, (byte) 0xBE, (byte) 0xB4, (byte) 0xD9}};
+
+    private File getFile(String fileName) {
+        return new File(Objects.requireNonNull(getClass().getClassLoader().getResource("testdata/" + fileName)).getFile());
+    }
+
+    private List<ByteBuffer> readRawBlocks(File file) throws IOException {
+        List<ByteBuffer> result = new ArrayList<>();
+        BitcoinBlockReader bbr = new BitcoinBlockReader(new FileInputStream(file), DEFAULT_MAXSIZE_BITCOINBLOCK, 64 * 1024, DEFAULT_MAGIC, false);
+        try {
+            ByteBuffer rawBlock;
+            while ((rawBlock = bbr.readRawBlock()) != null) {
+                result.add(rawBlock);
+            }
+        } finally {
+            bbr.close();
+        }
+        return result;
+    }
+
+    @Test
+    public void readMultiBlockWithSmallWindows() throws IOException {
+        File file = getFile("multiblock.blk");
+        List<ByteBuffer> expected = readRawBlocks(file);
+        // the window can contain only the largest block, ie the file is mapped in several windows
+        try (MappedBitcoinBlockSource source = new MappedBitcoinBlockSource(file, DEFAULT_MAGIC, 191198, false, 191198 + 8)) {
+            for (int i = 0; i < expected.size(); i++) {
+                ByteBuffer rawBlock = source.nextRawBlock();
+                assertNotNull(rawBlock, "Block " + i + " is available");
+                assertTrue(rawBlock.isDirect(), "Block " + i + " is not copied");
+                assertEquals(expected.get(i), rawBlock, "Same content of block " + i);
+            }
+            assertEquals(775, source.getLastBlockPosition(), "Position of the last block");
+            assertEquals(file.length(), source.getPosition(), "Position behind the last block");
+            assertNull(source.nextRawBlock(), "No further block");
+        }
+    }
+
+    @Test
+    public void readMultiNetSkipsOtherMagics() throws IOException {
+        File file = getFile("multinet.blk");
+        List<ByteBuffer> expected = readRawBlocks(file);
+        try (MappedBitcoinBlockSource source = new MappedBitcoinBlockSource(file, DEFAULT_MAGIC, DEFAULT_MAXSIZE_BITCOINBLOCK, false)) {
+            source.getParser().setRecordTransactionRanges(true);
+            BitcoinBlockReader parser = new BitcoinBlockReader(false);
+            for (int i = 0; i < expected.size(); i++) {
+                BitcoinBlock block = source.nextBlock();
+                assertNotNull(block, "Block " + i + " is available");
+                BitcoinBlock expectedBlock = parser.parseBlock(expected.get(i));
+                assertArrayEquals(expectedBlock.getHash().getBytes(), block.getHash().getBytes(), "Same hash of block " + i);
+                assertTrue(block.verifyMerkleRoot(), "Merkle root of block " + i);
+            }
+            assertNull(source.nextBlock(), "No further block");
+        }
+    }
+
+    @Test
+    public void processFilesInParallel() throws IOException {
+        File directory = Files.createTempDirectory("hcl-blocks").toFile();
+        try {
+            byte[] multiBlock = Files.readAllBytes(getFile("multiblock.blk").toPath());
+            byte[] version4 = Files.readAllBytes(getFile("version4.blk").toPath());
+            // Bitcoin Core preallocates block files with zeros
+            byte[] padded = Arrays.copyOf(version4, version4.length + 4096);
+            Files.write(new File(directory, "blk00000.dat").toPath(), multiBlock);
+            Files.write(new File(directory, "blk00001.dat").toPath(), padded);
+            Files.write(new File(directory, "rev00000.dat").toPath(), multiBlock);
+            List<File> files = MappedBitcoinBlockSource.listBlockFiles(directory);
+            assertEquals(2, files.size(), "Only block files are listed");
+            assertEquals("blk00000.dat", files.get(0).getName(), "Block files are sorted");
+            final List<String> hashes = Collections.synchronizedList(new ArrayList<String>());
+            final AtomicLong bytes = new AtomicLong();
+            long blocks = MappedBitcoinBlockSource.processFiles(files, DEFAULT_MAGIC, DEFAULT_MAXSIZE_BITCOINBLOCK, false, 2, new MappedBitcoinBlockSource.BlockHandler() {
+                @Override
+                public void handle(MappedBitcoinBlockSource source, ByteBuffer rawBlock) {
+                    bytes.addAndGet(rawBlock.remaining());
+                    hashes.add(source.parseBlock(rawBlock).getHash().toString());
+                }
+            });
+            assertEquals(4, blocks, "Three blocks in the first file and one in the second file");
+            assertEquals(4, hashes.size(), "All blocks are handled");
+            assertEquals(multiBlock.length + version4.length, bytes.get(), "Padding is skipped");
+            assertTrue(hashes.contains("000000000019D6689C085AE165831E934FF763AE46A2A6C172B3F1B60A8CE26F"), "Genesis block is handled");
+        } finally {
+            for (File currentFile : Objects.requireNonNull(directory.listFiles())) {
+                currentFile.delete();
+            }
+            directory.delete();
+        }
+    }
+}
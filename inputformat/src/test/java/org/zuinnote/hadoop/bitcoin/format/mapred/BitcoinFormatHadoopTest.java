@@ -27,10 +27,18 @@ import org.apache.hadoop.mapred.*;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.junit.jupiter.api.*;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlock;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockHeader;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockIndex;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinIngestManifest;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockView;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinTransaction;
+import org.zuinnote.hadoop.bitcoin.format.mapreduce.BitcoinBlockIndexTool;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -518,6 +526,147 @@ private static Reporter reporter = Reporter.NULL;
   }
 
 
+  @Test
+  public void readBitcoinBlockViewInputFormatMultiBlock() throws IOException {
+    JobConf job = new JobConf(defaultConf);
+    ClassLoader classLoader = getClass().getClassLoader();
+    String fileName="multiblock.blk";
+    String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+    Path file = new Path(fileNameBlock);
+    FileInputFormat.setInputPaths(job, file);
+    BitcoinBlockViewFileInputFormat format = new BitcoinBlockViewFileInputFormat();
+    format.configure(job);
+    InputSplit[] inputSplits = format.getSplits(job,1);
+    assertEquals( 1, inputSplits.length,"Only one split generated for multiblock");
+    	RecordReader<BytesWritable, BitcoinBlockView> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull( reader,"Format returned  null RecordReader");
+	BytesWritable key = reader.createKey();
+	BitcoinBlockView block = reader.createValue();
+	assertTrue( reader.next(key,block),"Input Split for multi block contains the genesis block");
+	assertEquals( 64, key.getLength(),"Key is 64 byte long");
+	assertEquals( 1, block.getTransactionCount(),"Genesis Block must contain exactly one transaction");
+	assertTrue( reader.next(key,block),"Input Split for block version contains block version 1");
+	assertEquals( 2, block.getTransactionCount(),"Random block version 1  must contain exactly two transactions");
+	assertTrue( reader.next(key,block),"Input Split for block version contains at least one block");
+	assertEquals( 343, block.getTransactionCount(),"Random block version 2  must contain exactly 343 transactions");
+    	assertFalse( reader.next(key,block),"No further blocks in multi block");
+	reader.close();
+  }
+
+  @Test
+  public void readBitcoinBlockHeaderInputFormatMultiBlock() throws IOException {
+    JobConf job = new JobConf(defaultConf);
+    ClassLoader classLoader = getClass().getClassLoader();
+    String fileName="multiblock.blk";
+    String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+    Path file = new Path(fileNameBlock);
+    FileInputFormat.setInputPaths(job, file);
+    BitcoinBlockHeaderFileInputFormat format = new BitcoinBlockHeaderFileInputFormat();
+    format.configure(job);
+    InputSplit[] inputSplits = format.getSplits(job,1);
+    assertEquals( 1, inputSplits.length,"Only one split generated for multiblock");
+    	RecordReader<BytesWritable, BitcoinBlockHeader> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull( reader,"Format returned  null RecordReader");
+	BytesWritable key = reader.createKey();
+	BitcoinBlockHeader header = reader.createValue();
+	assertTrue( reader.next(key,header),"Input Split for multi block contains the genesis block header");
+	assertEquals( 64, key.getLength(),"Key is 64 byte long");
+	assertEquals( 1, header.getTransactionCount(),"Genesis Block must contain exactly one transaction");
+	assertTrue( reader.next(key,header),"Input Split for block version contains block header version 1");
+	assertEquals( 2, header.getTransactionCount(),"Random block version 1  must contain exactly two transactions");
+	assertTrue( reader.next(key,header),"Input Split for block version contains at least one block header");
+	assertEquals( 343, header.getTransactionCount(),"Random block version 2  must contain exactly 343 transactions");
+    	assertFalse( reader.next(key,header),"No further block headers in multi block");
+	reader.close();
+  }
+
+  @Test
+  public void readBitcoinRawBlockInputFormatIncrementalManifest() throws Exception {
+    JobConf job = new JobConf(defaultConf);
+    ClassLoader classLoader = getClass().getClassLoader();
+    String fileName="multiblock.blk";
+    String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+    byte[] blocks = Files.readAllBytes(Paths.get(fileNameBlock));
+    java.nio.file.Path tmpDir = Files.createTempDirectory("hcl-incremental");
+    java.nio.file.Path manifestDir = Files.createTempDirectory("hcl-manifest");
+    // the version 2 block is still being written
+    Files.write(tmpDir.resolve(fileName), Arrays.copyOf(blocks, 1000));
+    Path dir = new Path(tmpDir.toUri());
+    Path manifest = new Path(new Path(manifestDir.toUri()), "manifest");
+    Path nextManifest = new Path(new Path(manifestDir.toUri()), "manifest.next");
+    job.set(AbstractBitcoinFileInputFormat.CONF_MANIFEST, manifest.toString());
+    job.set(AbstractBitcoinFileInputFormat.CONF_MANIFEST_OUTPUT, nextManifest.toString());
+    FileInputFormat.setInputPaths(job, dir);
+    BitcoinRawBlockFileInputFormat format = new BitcoinRawBlockFileInputFormat();
+    format.configure(job);
+    assertEquals( 2, countRawBlocks(format, job),"First run reads the complete blocks without a manifest");
+    assertEquals( 775, BitcoinIngestManifest.read(localFs, nextManifest).get(new Path(dir, fileName)).getOffset(),"Manifest records the end of the version 1 block");
+    localFs.rename(nextManifest, manifest);
+    Files.write(tmpDir.resolve(fileName), blocks);
+    assertEquals( 1, countRawBlocks(format, job),"Second run reads only the appended version 2 block");
+    localFs.rename(nextManifest, manifest);
+    assertEquals( 0, countRawBlocks(format, job),"Third run has nothing to read");
+    localFs.delete(dir, true);
+    localFs.delete(new Path(manifestDir.toUri()), true);
+  }
+
+  private static int countRawBlocks(BitcoinRawBlockFileInputFormat format, JobConf job) throws IOException {
+    int result = 0;
+    for (InputSplit split : format.getSplits(job, 1)) {
+      assertTrue( split instanceof BitcoinBlockFileSplit,"Split of new blocks is block aligned");
+      RecordReader<BytesWritable, BytesWritable> reader = format.getRecordReader(split, job, reporter);
+      BytesWritable key = reader.createKey();
+      BytesWritable block = reader.createValue();
+      while (reader.next(key, block)) {
+        result++;
+      }
+      reader.close();
+    }
+    return result;
+  }
+
+  @Test
+  public void readBitcoinRawBlockInputFormatIndexedMultiBlock() throws Exception {
+    JobConf job = new JobConf(defaultConf);
+    ClassLoader classLoader = getClass().getClassLoader();
+    String fileName="multiblock.blk";
+    String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+    java.nio.file.Path tmpDir = Files.createTempDirectory("hcl-index");
+    Files.copy(Paths.get(fileNameBlock), tmpDir.resolve(fileName));
+    Path dir = new Path(tmpDir.toUri());
+    assertEquals( 1, BitcoinBlockIndexTool.indexFiles(job, dir),"One block file indexed");
+    assertTrue( localFs.exists(BitcoinBlockIndex.getIndexPath(new Path(dir, fileName))),"Sidecar index written");
+    FileInputFormat.setInputPaths(job, dir);
+    BitcoinRawBlockFileInputFormat format = new BitcoinRawBlockFileInputFormat();
+    format.configure(job);
+    // goal size smaller than the first two blocks together with the third block
+    InputSplit[] inputSplits = format.getSplits(job,200);
+    assertEquals( 2, inputSplits.length,"Two block aligned splits generated for multiblock, index is not an input file");
+    assertTrue( inputSplits[0] instanceof BitcoinBlockFileSplit,"First split is block aligned");
+    assertEquals( 0, ((BitcoinBlockFileSplit) inputSplits[0]).getStart(),"First split starts with genesis block");
+    assertEquals( 775, ((BitcoinBlockFileSplit) inputSplits[1]).getStart(),"Second split starts with version 2 block");
+	int[] expectedBlocks = {2, 1};
+	for (int i = 0; i < inputSplits.length; i++) {
+		RecordReader<BytesWritable, BytesWritable> reader = format.getRecordReader(inputSplits[i], job, reporter);
+		assertNotNull( reader,"Format returned  null RecordReader");
+		BytesWritable key = reader.createKey();
+		BytesWritable block = reader.createValue();
+		int blockCount=0;
+		while (reader.next(key,block)) {
+			blockCount++;
+		}
+		assertEquals( expectedBlocks[i], blockCount,"Split "+i+" contains each of its blocks exactly once");
+		reader.close();
+	}
+    job.setBoolean(AbstractBitcoinFileInputFormat.CONF_USEINDEX, false);
+    format = new BitcoinRawBlockFileInputFormat();
+    format.configure(job);
+    inputSplits = format.getSplits(job,200);
+    assertEquals( 1, inputSplits.length,"Index is ignored if disabled, file is not splitable");
+    assertFalse( inputSplits[0] instanceof BitcoinBlockFileSplit,"Split is not block aligned if index is disabled");
+    localFs.delete(dir, true);
+  }
+
   @Test
   public void readBitcoinTransactionInputFormatGenesisBlock() throws IOException {
       JobConf job = new JobConf(defaultConf);
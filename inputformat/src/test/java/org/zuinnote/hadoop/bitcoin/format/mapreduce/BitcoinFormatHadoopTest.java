@@ -29,10 +29,20 @@ import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.junit.jupiter.api.*;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlock;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockHeader;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockIndex;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockView;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinChainIndex;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinChainIndexTest;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinIngestManifest;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinTransaction;
+import org.zuinnote.hadoop.bitcoin.format.exception.BitcoinBlockReadException;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -540,6 +550,338 @@ private static FileSystem localFs = null;
   }
 
 
+  @Test
+  public void readBitcoinBlockViewInputFormatMultiBlock() throws IOException, InterruptedException {
+    Configuration conf = new Configuration(defaultConf);
+    ClassLoader classLoader = getClass().getClassLoader();
+    String fileName="multiblock.blk";
+    String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+    Path file = new Path(fileNameBlock);
+    Job job = Job.getInstance(conf);
+    FileInputFormat.setInputPaths(job, file);
+    BitcoinBlockViewFileInputFormat format = new BitcoinBlockViewFileInputFormat();
+    List<InputSplit> splits = format.getSplits(job);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    assertEquals( 1,splits.size(),"Only one split generated for multiblock");
+    	RecordReader<BytesWritable, BitcoinBlockView> reader = format.createRecordReader(splits.get(0),context);
+	assertNotNull( reader,"Format returned  null RecordReader");
+	reader.initialize(splits.get(0),context);
+	assertTrue( reader.nextKeyValue(),"Input Split for multi block contains the genesis block");
+	assertEquals( 64, reader.getCurrentKey().getLength(),"Key is 64 byte long");
+	assertEquals( 1, reader.getCurrentValue().getTransactionCount(),"Genesis Block must contain exactly one transaction");
+	assertTrue( reader.nextKeyValue(),"Input Split for block version contains block version 1");
+	assertEquals( 2, reader.getCurrentValue().getTransactionCount(),"Random block version 1  must contain exactly two transactions");
+	assertTrue( reader.nextKeyValue(),"Input Split for block version contains at least one block");
+	assertEquals( 343, reader.getCurrentValue().getTransactionCount(),"Random block version 2  must contain exactly 343 transactions");
+    	assertFalse( reader.nextKeyValue(),"No further blocks in multi block");
+	reader.close();	
+  }
+
+
+  @Test
+  public void readBitcoinBlockHeaderInputFormatMultiBlock() throws IOException, InterruptedException {
+    Configuration conf = new Configuration(defaultConf);
+    ClassLoader classLoader = getClass().getClassLoader();
+    String fileName="multiblock.blk";
+    String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+    Path file = new Path(fileNameBlock);
+    Job job = Job.getInstance(conf);
+    FileInputFormat.setInputPaths(job, file);
+    BitcoinBlockHeaderFileInputFormat format = new BitcoinBlockHeaderFileInputFormat();
+    List<InputSplit> splits = format.getSplits(job);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    assertEquals( 1,splits.size(),"Only one split generated for multiblock");
+    	RecordReader<BytesWritable, BitcoinBlockHeader> reader = format.createRecordReader(splits.get(0),context);
+	assertNotNull( reader,"Format returned  null RecordReader");
+	reader.initialize(splits.get(0),context);
+	assertTrue( reader.nextKeyValue(),"Input Split for multi block contains the genesis block header");
+	assertEquals( 64, reader.getCurrentKey().getLength(),"Key is 64 byte long");
+	assertEquals( 1, reader.getCurrentValue().getTransactionCount(),"Genesis Block must contain exactly one transaction");
+	assertEquals( 1, reader.getCurrentValue().getVersion(),"Genesis Block has version 1");
+	assertTrue( reader.nextKeyValue(),"Input Split for block version contains block header version 1");
+	assertEquals( 2, reader.getCurrentValue().getTransactionCount(),"Random block version 1  must contain exactly two transactions");
+	assertTrue( reader.nextKeyValue(),"Input Split for block version contains at least one block header");
+	assertEquals( 343, reader.getCurrentValue().getTransactionCount(),"Random block version 2  must contain exactly 343 transactions");
+	assertEquals( 2, reader.getCurrentValue().getVersion(),"Random block version 2 has version 2");
+    	assertFalse( reader.nextKeyValue(),"No further block headers in multi block");
+	reader.close();	
+  }
+
+
+  @Test
+  public void readBitcoinRawBlockInputFormatIndexedMultiBlock() throws Exception {
+    Configuration conf = new Configuration(defaultConf);
+    ClassLoader classLoader = getClass().getClassLoader();
+    String fileName="multiblock.blk";
+    String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+    java.nio.file.Path tmpDir = Files.createTempDirectory("hcl-index");
+    Files.copy(Paths.get(fileNameBlock), tmpDir.resolve(fileName));
+    Path dir = new Path(tmpDir.toUri());
+    assertEquals( 1, BitcoinBlockIndexTool.indexFiles(conf, dir),"One block file indexed");
+    assertTrue( localFs.exists(BitcoinBlockIndex.getIndexPath(new Path(dir, fileName))),"Sidecar index written");
+    // split size smaller than the first two blocks together with the third block
+    conf.setLong(FileInputFormat.SPLIT_MAXSIZE, 1000);
+    Job job = Job.getInstance(conf);
+    FileInputFormat.setInputPaths(job, dir);
+    BitcoinRawBlockFileInputFormat format = new BitcoinRawBlockFileInputFormat();
+    List<InputSplit> splits = format.getSplits(job);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    assertEquals( 2, splits.size(),"Two block aligned splits generated for multiblock, index is not an input file");
+    assertTrue( splits.get(0) instanceof BitcoinBlockFileSplit,"First split is block aligned");
+    assertEquals( 0, ((BitcoinBlockFileSplit) splits.get(0)).getStart(),"First split starts with genesis block");
+    assertEquals( 775, ((BitcoinBlockFileSplit) splits.get(1)).getStart(),"Second split starts with version 2 block");
+	int[] expectedBlocks = {2, 1};
+	for (int i = 0; i < splits.size(); i++) {
+		RecordReader<BytesWritable, BytesWritable> reader = format.createRecordReader(splits.get(i), context);
+		assertNotNull( reader,"Format returned  null RecordReader");
+		reader.initialize(splits.get(i),context);
+		int blockCount=0;
+		while (reader.nextKeyValue()) {
+			blockCount++;
+		}
+		assertEquals( expectedBlocks[i], blockCount,"Split "+i+" contains each of its blocks exactly once");
+		reader.close();
+	}
+    conf.setBoolean(AbstractBitcoinFileInputFormat.CONF_USEINDEX, false);
+    job = Job.getInstance(conf);
+    FileInputFormat.setInputPaths(job, dir);
+    splits = format.getSplits(job);
+    assertEquals( 1, splits.size(),"Index is ignored if disabled, file is not splitable");
+    assertFalse( splits.get(0) instanceof BitcoinBlockFileSplit,"Split is not block aligned if index is disabled");
+    localFs.delete(dir, true);
+  }
+
+  @Test
+  public void readBitcoinRawBlockInputFormatIncrementalManifest() throws Exception {
+    Configuration conf = new Configuration(defaultConf);
+    ClassLoader classLoader = getClass().getClassLoader();
+    String fileName="multiblock.blk";
+    String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+    byte[] blocks = Files.readAllBytes(Paths.get(fileNameBlock));
+    java.nio.file.Path tmpDir = Files.createTempDirectory("hcl-incremental");
+    java.nio.file.Path manifestDir = Files.createTempDirectory("hcl-manifest");
+    // the version 2 block is still being written
+    Files.write(tmpDir.resolve(fileName), Arrays.copyOf(blocks, 1000));
+    Path dir = new Path(tmpDir.toUri());
+    Path manifest = new Path(new Path(manifestDir.toUri()), "manifest");
+    Path nextManifest = new Path(new Path(manifestDir.toUri()), "manifest.next");
+    conf.set(AbstractBitcoinFileInputFormat.CONF_MANIFEST, manifest.toString());
+    conf.set(AbstractBitcoinFileInputFormat.CONF_MANIFEST_OUTPUT, nextManifest.toString());
+    assertArrayEquals( new int[]{2}, countRawBlocksPerSplit(conf, dir),"First run reads the complete blocks without a manifest");
+    BitcoinIngestManifest state = BitcoinIngestManifest.read(localFs, nextManifest);
+    assertNotNull( state,"Manifest of next run written");
+    assertEquals( 775, state.get(new Path(dir, fileName)).getOffset(),"Manifest records the end of the version 1 block");
+    assertEquals( 293, state.get(new Path(dir, fileName)).getLastBlockOffset(),"Manifest records the version 1 block as last block");
+    localFs.rename(nextManifest, manifest);
+    Files.write(tmpDir.resolve(fileName), blocks);
+    assertArrayEquals( new int[]{1}, countRawBlocksPerSplit(conf, dir),"Second run reads only the appended version 2 block");
+    assertEquals( 191973, BitcoinIngestManifest.read(localFs, nextManifest).get(new Path(dir, fileName)).getOffset(),"Manifest records the end of the file");
+    localFs.rename(nextManifest, manifest);
+    assertArrayEquals( new int[0], countRawBlocksPerSplit(conf, dir),"Third run has nothing to read");
+    // the file is replaced by a file without the genesis block
+    Files.write(tmpDir.resolve(fileName), Arrays.copyOfRange(blocks, 293, blocks.length));
+    assertArrayEquals( new int[]{2}, countRawBlocksPerSplit(conf, dir),"Rewritten file is read again completely");
+    localFs.delete(dir, true);
+    localFs.delete(new Path(manifestDir.toUri()), true);
+  }
+
+  @Test
+  public void readBitcoinRawBlockInputFormatIncrementalManifestCompressed() throws Exception {
+    Configuration conf = new Configuration(defaultConf);
+    ClassLoader classLoader = getClass().getClassLoader();
+    String fileName="version4comp.blk.gz";
+    String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+    java.nio.file.Path tmpDir = Files.createTempDirectory("hcl-incremental");
+    java.nio.file.Path manifestDir = Files.createTempDirectory("hcl-manifest");
+    Files.copy(Paths.get(fileNameBlock), tmpDir.resolve(fileName));
+    Path dir = new Path(tmpDir.toUri());
+    Path manifest = new Path(new Path(manifestDir.toUri()), "manifest");
+    Path nextManifest = new Path(new Path(manifestDir.toUri()), "manifest.next");
+    conf.set(AbstractBitcoinFileInputFormat.CONF_MANIFEST, manifest.toString());
+    conf.set(AbstractBitcoinFileInputFormat.CONF_MANIFEST_OUTPUT, nextManifest.toString());
+    Job job = Job.getInstance(conf);
+    FileInputFormat.setInputPaths(job, dir);
+    BitcoinRawBlockFileInputFormat format = new BitcoinRawBlockFileInputFormat();
+    assertEquals( 1, format.getSplits(job).size(),"First run reads the compressed file");
+    BitcoinIngestManifest.Entry entry = BitcoinIngestManifest.read(localFs, nextManifest).get(new Path(dir, fileName));
+    assertEquals( localFs.getFileStatus(new Path(dir, fileName)).getLen(), entry.getOffset(),"Manifest records the length of the compressed file");
+    localFs.rename(nextManifest, manifest);
+    assertEquals( 0, format.getSplits(job).size(),"Unchanged compressed file is skipped");
+    localFs.setTimes(new Path(dir, fileName), entry.getModificationTime() + 60000, -1);
+    assertEquals( 1, format.getSplits(job).size(),"Modified compressed file is read again");
+    localFs.delete(dir, true);
+    localFs.delete(new Path(manifestDir.toUri()), true);
+  }
+
+  @Test
+  public void readBitcoinRawBlockInputFormatIncrementalManifestInvalidBlock() throws Exception {
+    Configuration conf = new Configuration(defaultConf);
+    ClassLoader classLoader = getClass().getClassLoader();
+    String fileName="multiblock.blk";
+    String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+    byte[] blocks = Files.readAllBytes(Paths.get(fileNameBlock));
+    java.nio.file.Path tmpDir = Files.createTempDirectory("hcl-incremental");
+    java.nio.file.Path manifestDir = Files.createTempDirectory("hcl-manifest");
+    // a complete frame after the version 1 block whose block is smaller than a block header
+    byte[] invalid = Arrays.copyOf(blocks, 775 + 8 + 16);
+    System.arraycopy(new byte[]{(byte)0xF9,(byte)0xBE,(byte)0xB4,(byte)0xD9,0x10,0x00,0x00,0x00}, 0, invalid, 775, 8);
+    Arrays.fill(invalid, 775 + 8, invalid.length, (byte) 0);
+    Files.write(tmpDir.resolve(fileName), invalid);
+    Path dir = new Path(tmpDir.toUri());
+    conf.set(AbstractBitcoinFileInputFormat.CONF_MANIFEST, new Path(new Path(manifestDir.toUri()), "manifest").toString());
+    Job job = Job.getInstance(conf);
+    FileInputFormat.setInputPaths(job, dir);
+    BitcoinRawBlockFileInputFormat format = new BitcoinRawBlockFileInputFormat();
+    assertThrows( BitcoinBlockReadException.class, () -> format.getSplits(job),"Invalid complete block is not treated as block still being written");
+    localFs.delete(dir, true);
+    localFs.delete(new Path(manifestDir.toUri()), true);
+  }
+
+  private static int[] countRawBlocksPerSplit(Configuration conf, Path dir) throws IOException, InterruptedException {
+    Job job = Job.getInstance(conf);
+    FileInputFormat.setInputPaths(job, dir);
+    BitcoinRawBlockFileInputFormat format = new BitcoinRawBlockFileInputFormat();
+    List<InputSplit> splits = format.getSplits(job);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    int[] result = new int[splits.size()];
+    for (int i = 0; i < splits.size(); i++) {
+      assertTrue( splits.get(i) instanceof BitcoinBlockFileSplit,"Split of new blocks is block aligned");
+      RecordReader<BytesWritable, BytesWritable> reader = format.createRecordReader(splits.get(i), context);
+      reader.initialize(splits.get(i),context);
+      while (reader.nextKeyValue()) {
+        result[i]++;
+      }
+      reader.close();
+    }
+    return result;
+  }
+
+
+  @Test
+  public void readBitcoinRawBlockInputFormatObfuscatedIndexedMultiBlock() throws Exception {
+    Configuration conf = new Configuration(defaultConf);
+    ClassLoader classLoader = getClass().getClassLoader();
+    String fileName="multiblock.blk";
+    String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+    java.nio.file.Path tmpDir = Files.createTempDirectory("hcl-xor");
+    Files.copy(Paths.get(fileNameBlock), tmpDir.resolve(fileName));
+    Path dir = new Path(tmpDir.toUri());
+    // the index is built on the plain file, the block file is obfuscated afterwards
+    assertEquals( 1, BitcoinBlockIndexTool.indexFiles(conf, dir),"One block file indexed");
+    byte[] xorKey = {(byte) 0x1F, (byte) 0x2E, (byte) 0x3D, (byte) 0x4C, (byte) 0x5B, (byte) 0x6A, (byte) 0x79, (byte) 0x88};
+    byte[] plain = Files.readAllBytes(tmpDir.resolve(fileName));
+    byte[] obfuscated = new byte[plain.length];
+    for (int i = 0; i < plain.length; i++) {
+      obfuscated[i] = (byte) (plain[i] ^ xorKey[i % xorKey.length]);
+    }
+    Files.write(tmpDir.resolve(fileName), obfuscated);
+    conf.setLong(FileInputFormat.SPLIT_MAXSIZE, 1000);
+    conf.set(AbstractBitcoinRecordReader.CONF_XORKEY, "1F2E3D4C5B6A7988");
+    Job job = Job.getInstance(conf);
+    FileInputFormat.setInputPaths(job, dir);
+    BitcoinRawBlockFileInputFormat format = new BitcoinRawBlockFileInputFormat();
+    List<InputSplit> splits = format.getSplits(job);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    assertEquals( 2, splits.size(),"Two block aligned splits generated for multiblock");
+	int[] expectedSizes = {293, 482, 191198};
+	int blockCount=0;
+	for (int i = 0; i < splits.size(); i++) {
+		RecordReader<BytesWritable, BytesWritable> reader = format.createRecordReader(splits.get(i), context);
+		reader.initialize(splits.get(i),context);
+		while (reader.nextKeyValue()) {
+			assertEquals( expectedSizes[blockCount], reader.getCurrentValue().getLength(),"Block "+blockCount+" is de-obfuscated");
+			blockCount++;
+		}
+		reader.close();
+	}
+	assertEquals( 3, blockCount,"All blocks of the obfuscated file are read");
+    localFs.delete(dir, true);
+  }
+
+  @Test
+  public void readBitcoinRawBlockInputFormatInvalidXorKey() throws IOException, InterruptedException {
+    Configuration conf = new Configuration(defaultConf);
+    ClassLoader classLoader = getClass().getClassLoader();
+    String fileName="genesis.blk";
+    String fileNameGenesis=classLoader.getResource("testdata/"+fileName).getFile();	
+    Path file = new Path(fileNameGenesis);
+    conf.set(AbstractBitcoinRecordReader.CONF_XORKEY, "0102");
+    Job job = Job.getInstance(conf);
+    FileInputFormat.setInputPaths(job, file);
+    BitcoinRawBlockFileInputFormat format = new BitcoinRawBlockFileInputFormat();
+    List<InputSplit> splits = format.getSplits(job);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    assertNull( format.createRecordReader(splits.get(0), context),"No RecordReader for a XOR key with less than 8 bytes");
+  }
+
+
+  @Test
+  public void readBitcoinBlockInputFormatChainIndex() throws Exception {
+    Configuration conf = new Configuration(defaultConf);
+    java.nio.file.Path tmpDir = Files.createTempDirectory("hcl-chain");
+    java.nio.file.Path blockDir = Files.createDirectory(tmpDir.resolve("blocks"));
+    // blocks are stored out of order and contain a stale block
+    byte[] genesis = BitcoinChainIndexTest.createBlock(new byte[32], 0, 0x207fffffL);
+    byte[] block1 = BitcoinChainIndexTest.createBlock(BitcoinChainIndexTest.hashOf(genesis), 1, 0x207fffffL);
+    byte[] block2 = BitcoinChainIndexTest.createBlock(BitcoinChainIndexTest.hashOf(block1), 2, 0x207fffffL);
+    byte[] block3 = BitcoinChainIndexTest.createBlock(BitcoinChainIndexTest.hashOf(block2), 3, 0x207fffffL);
+    byte[] stale2 = BitcoinChainIndexTest.createBlock(BitcoinChainIndexTest.hashOf(block1), 4, 0x207fffffL);
+    java.io.ByteArrayOutputStream blk0 = new java.io.ByteArrayOutputStream();
+    blk0.write(genesis);
+    blk0.write(block2);
+    blk0.write(stale2);
+    Files.write(blockDir.resolve("blk00000.dat"), blk0.toByteArray());
+    java.io.ByteArrayOutputStream blk1 = new java.io.ByteArrayOutputStream();
+    blk1.write(block3);
+    blk1.write(block1);
+    Files.write(blockDir.resolve("blk00001.dat"), blk1.toByteArray());
+    Path dir = new Path(blockDir.toUri());
+    assertEquals( 1, BitcoinBlockIndexTool.indexFiles(conf, new Path(dir, "blk00000.dat")),"Sidecar index for the first file");
+    Path chainIndexFile = new Path(new Path(tmpDir.toUri()), "chain.idx");
+    BitcoinChainIndex chainIndex = BitcoinChainIndexTool.buildChainIndex(conf, dir);
+    chainIndex.write(localFs, chainIndexFile);
+    assertEquals( 3, chainIndex.getBestHeight(),"Height of the best chain");
+    BitcoinBlockIndex sidecar = BitcoinBlockIndex.read(localFs, new Path(dir, "blk00000.dat"));
+    assertEquals( 0, sidecar.getHeight(0),"Height of genesis block in sidecar index");
+    assertEquals( 2, sidecar.getHeight(1),"Height of second block in sidecar index");
+    assertEquals( BitcoinBlockIndex.UNKNOWN_HEIGHT, sidecar.getHeight(2),"Stale block has no height in sidecar index");
+    conf.set(AbstractBitcoinRecordReader.CONF_CHAININDEX, chainIndexFile.toString());
+    conf.setBoolean(AbstractBitcoinFileInputFormat.CONF_USEINDEX, false);
+    int[][] expectedHeights = {{0, 2}, {3, 1}};
+    for (int i = 0; i < 2; i++) {
+      Job job = Job.getInstance(conf);
+      FileInputFormat.setInputPaths(job, new Path(dir, "blk0000" + i + ".dat"));
+      BitcoinBlockFileInputFormat format = new BitcoinBlockFileInputFormat();
+      List<InputSplit> splits = format.getSplits(job);
+      TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+      RecordReader<BytesWritable, BitcoinBlock> reader = format.createRecordReader(splits.get(0), context);
+      reader.initialize(splits.get(0),context);
+      for (int height : expectedHeights[i]) {
+        assertTrue( reader.nextKeyValue(),"Block with height "+height+" is read");
+        assertEquals( height, reader.getCurrentValue().getHeight(),"Height of block");
+      }
+      assertFalse( reader.nextKeyValue(),"Stale block is dropped");
+      reader.close();
+    }
+    conf.setBoolean(AbstractBitcoinRecordReader.CONF_DROPORPHANS, false);
+    Job job = Job.getInstance(conf);
+    FileInputFormat.setInputPaths(job, new Path(dir, "blk00000.dat"));
+    BitcoinBlockFileInputFormat format = new BitcoinBlockFileInputFormat();
+    List<InputSplit> splits = format.getSplits(job);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    RecordReader<BytesWritable, BitcoinBlock> reader = format.createRecordReader(splits.get(0), context);
+    reader.initialize(splits.get(0),context);
+    int blockCount = 0;
+    while (reader.nextKeyValue()) {
+      blockCount++;
+    }
+    assertEquals( 3, blockCount,"Stale block is kept");
+    assertEquals( BitcoinBlockIndex.UNKNOWN_HEIGHT, reader.getCurrentValue().getHeight(),"Stale block has no height");
+    reader.close();
+    localFs.delete(new Path(tmpDir.toUri()), true);
+  }
+
+
   @Test
   public void readBitcoinTransactionInputFormatGenesisBlock() throws IOException, InterruptedException {
     Configuration conf = new Configuration(defaultConf);
@@ -708,6 +1050,65 @@ private static FileSystem localFs = null;
 	reader.close();
   }
 
+  @Test
+  public void readBitcoinBlockInputFormatMultiBlockParallelDecoding() throws IOException, InterruptedException {
+    Configuration conf = new Configuration(defaultConf);
+    conf.setInt(AbstractBitcoinRecordReader.CONF_DECODERTHREADS, 2);
+    conf.setInt(AbstractBitcoinRecordReader.CONF_DECODERQUEUEDEPTH, 1);
+    conf.setBoolean(AbstractBitcoinRecordReader.CONF_USEDIRECTBUFFER, true);
+    ClassLoader classLoader = getClass().getClassLoader();
+    String fileName="multiblock.blk";
+    String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+    Path file = new Path(fileNameBlock);
+    Job job = Job.getInstance(conf);
+    FileInputFormat.setInputPaths(job, file);
+    BitcoinBlockFileInputFormat format = new BitcoinBlockFileInputFormat();
+    List<InputSplit> splits = format.getSplits(job);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    assertEquals( 1,splits.size(),"Only one split generated for multiblock");
+    	RecordReader<BytesWritable, BitcoinBlock> reader = format.createRecordReader(splits.get(0),context);
+	assertNotNull( reader,"Format returned  null RecordReader");
+	reader.initialize(splits.get(0),context);
+	assertTrue( reader.nextKeyValue(),"Input Split for multi block contains the genesis block");
+	assertEquals( 1, reader.getCurrentValue().getTransactions().size(),"Genesis Block must contain exactly one transaction");
+	assertEquals( 0, ((AbstractBitcoinRecordReader<?, ?>) reader).getLastBlockPosition(),"Genesis Block is the first block of the file");
+	assertTrue( reader.nextKeyValue(),"Input Split for block version contains block version 1");
+	assertEquals( 2, reader.getCurrentValue().getTransactions().size(),"Random block version 1  must contain exactly two transactions");
+	assertTrue( reader.nextKeyValue(),"Input Split for block version contains at least one block");
+	assertEquals( 343, reader.getCurrentValue().getTransactions().size(),"Random block version 2  must contain exactly 343 transactions");
+	assertTrue( reader.getCurrentValue().verifyMerkleRoot(),"Block decoded in parallel has a valid Merkle root");
+    	assertFalse( reader.nextKeyValue(),"No further blocks in multi block");
+	assertEquals( 1.0f, reader.getProgress(),"Complete split has been processed");
+	reader.close();	
+  }
+
+  @Test
+  public void readBitcoinTransactionInputFormatMultiBlockParallelDecoding() throws IOException, InterruptedException {
+   Configuration conf = new Configuration(defaultConf);
+    conf.setInt(AbstractBitcoinRecordReader.CONF_DECODERTHREADS, 3);
+    conf.setBoolean(AbstractBitcoinRecordReader.CONF_DECODERHASH, true);
+    ClassLoader classLoader = getClass().getClassLoader();
+    String fileName="multiblock.blk";
+    String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+    Path file = new Path(fileNameBlock);
+    Job job = Job.getInstance(conf);
+    FileInputFormat.setInputPaths(job, file);
+    BitcoinTransactionFileInputFormat format = new BitcoinTransactionFileInputFormat();
+    List<InputSplit> splits = format.getSplits(job);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    assertEquals( 1, splits.size(),"Only one split generated for multi block");
+    	RecordReader<BytesWritable, BitcoinTransaction> reader = format.createRecordReader(splits.get(0), context);
+	assertNotNull( reader,"Format returned  null RecordReader");
+	reader.initialize(splits.get(0),context);
+	int transactCount=0;
+	while (reader.nextKeyValue()) {
+		transactCount++;
+		assertArrayEquals( reader.getCurrentValue().getTransactionHash(), reader.getCurrentKey().copyBytes(),"Key is the hash of the transaction");
+	}
+	assertEquals( 346, transactCount,"Multiblock must contain exactly 1+2+343=346 transactions");
+	reader.close();
+  }
+
   @Test
   public void readBitcoinRawBlockInputFormatGzipCompressed() throws IOException, InterruptedException {
    Configuration conf = new Configuration(defaultConf);
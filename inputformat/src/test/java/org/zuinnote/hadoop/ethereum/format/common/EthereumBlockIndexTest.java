@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.ethereum.format.common;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.jupiter.api.Test;
+import org.zuinnote.hadoop.ethereum.format.exception.EthereumBlockReadException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EthereumBlockIndexTest {
+
+    private static final int DEFAULT_BUFFERSIZE = 64 * 1024;
+    private static final int DEFAULT_MAXSIZE_ETHEREUMBLOCK = 1 * 1024 * 1024;
+
+    private File getTestFile(String fileName) {
+        return new File(Objects.requireNonNull(getClass().getClassLoader().getResource("testdata/" + fileName)).getFile());
+    }
+
+    private EthereumBlockIndex buildIndex(String fileName) throws IOException, EthereumBlockReadException {
+        File file = getTestFile(fileName);
+        try (InputStream in = new FileInputStream(file)) {
+            return EthereumBlockIndexBuilder.build(in, file.length(), DEFAULT_MAXSIZE_ETHEREUMBLOCK, DEFAULT_BUFFERSIZE);
+        }
+    }
+
+    @Test
+    public void buildIndexBlock0to10() throws IOException, EthereumBlockReadException {
+        File file = getTestFile("eth0to10.bin");
+        EthereumBlockIndex index = buildIndex("eth0to10.bin");
+        assertEquals(file.length(), index.getFileLength(), "File length of block 0..10");
+        assertEquals(11, index.size(), "Block 0..10 contains 11 blocks");
+        assertEquals(0, index.getOffset(0), "Genesis block starts at the beginning of the file");
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(i, index.getNumber(i), "Number of block " + i);
+            if (i > 0) {
+                assertEquals(index.getOffset(i - 1) + index.getBlockSize(i - 1), index.getOffset(i), "Block " + i + " follows block " + (i - 1));
+            }
+        }
+        assertEquals(file.length(), index.getEndOfBlocks(), "Blocks end at the end of the file");
+    }
+
+    @Test
+    public void buildIndexMatchesFullBlocks() throws IOException, EthereumBlockReadException {
+        EthereumBlockIndex index = buildIndex("eth351000to3510010.bin");
+        assertEquals(11, index.size(), "Block 3510000 .. 3510010 contains 11 blocks");
+        assertEquals(3510000, index.getNumber(0), "Number of first block");
+        assertEquals(3510010, index.getNumber(10), "Number of last block");
+        try (InputStream in = new FileInputStream(getTestFile("eth351000to3510010.bin"))) {
+            EthereumBlockReader ebr = new EthereumBlockReader(in, DEFAULT_MAXSIZE_ETHEREUMBLOCK, DEFAULT_BUFFERSIZE, false);
+            for (int i = 0; i < index.size(); i++) {
+                ByteBuffer rawBlock = ebr.readRawBlock();
+                assertNotNull(rawBlock, "Block " + i + " can be read");
+                assertEquals(index.getOffset(i), ebr.getLastBlockPosition(), "Offset of block " + i + " matches the block reader");
+                assertEquals(index.getBlockSize(i), rawBlock.limit(), "Size of block " + i + " matches the raw block");
+            }
+            assertNull(ebr.readRawBlock(), "No further blocks");
+        }
+    }
+
+    @Test
+    public void writableRoundTrip() throws IOException, EthereumBlockReadException {
+        EthereumBlockIndex index = buildIndex("eth0to10.bin");
+        DataOutputBuffer out = new DataOutputBuffer();
+        index.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        EthereumBlockIndex copy = new EthereumBlockIndex();
+        copy.readFields(in);
+        assertEquals(index.getFileLength(), copy.getFileLength(), "File length is restored");
+        assertEquals(index.size(), copy.size(), "All blocks are restored");
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(index.getOffset(i), copy.getOffset(i), "Offset of block " + i + " is restored");
+            assertEquals(index.getBlockSize(i), copy.getBlockSize(i), "Size of block " + i + " is restored");
+            assertEquals(index.getNumber(i), copy.getNumber(i), "Number of block " + i + " is restored");
+        }
+    }
+
+    @Test
+    public void splitBoundaries() throws IOException, EthereumBlockReadException {
+        EthereumBlockIndex index = buildIndex("eth0to10.bin");
+        long end = index.getEndOfBlocks();
+        assertArrayEquals(new long[]{0, end}, index.getSplitBoundaries(Long.MAX_VALUE), "One split for a large split size");
+        long[] boundaries = index.getSplitBoundaries(1);
+        assertEquals(12, boundaries.length, "Each block in its own split for a small split size");
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(index.getOffset(i), boundaries[i], "Split " + i + " starts at block " + i);
+        }
+        assertEquals(end, boundaries[11], "Last split ends after the last block");
+        assertArrayEquals(new long[0], new EthereumBlockIndex(0).getSplitBoundaries(1000), "No splits for an empty index");
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.ethereum.format.common;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.jupiter.api.Test;
+import org.zuinnote.hadoop.ethereum.format.common.rlp.RLPCursor;
+import org.zuinnote.hadoop.ethereum.format.common.rlp.RLPElement;
+import org.zuinnote.hadoop.ethereum.format.common.rlp.RLPList;
+import org.zuinnote.hadoop.ethereum.format.common.rlp.RLPObject;
+import org.zuinnote.hadoop.ethereum.format.exception.EthereumBlockReadException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EthereumBlockViewTest {
+
+    private static final int DEFAULT_BUFFERSIZE = 64 * 1024;
+    private static final int DEFAULT_MAXSIZE_ETHEREUMBLOCK = 1 * 1024 * 1024;
+
+    private InputStream openTestFile(String fileName) throws IOException {
+        return new FileInputStream(new File(Objects.requireNonNull(getClass().getClassLoader().getResource("testdata/" + fileName)).getFile()));
+    }
+
+    private static EthereumBlockReader createReader(InputStream in) {
+        return new EthereumBlockReader(in, DEFAULT_MAXSIZE_ETHEREUMBLOCK, DEFAULT_BUFFERSIZE, false);
+    }
+
+    private static void assertMatchesTree(RLPList expected, RLPCursor actual, String message) {
+        List<RLPObject> items = expected.getRlpList();
+        assertEquals(items.size(), actual.size(), message + ": number of items");
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i) instanceof RLPList) {
+                assertTrue(actual.isList(i), message + ": item " + i + " is a list");
+                assertMatchesTree((RLPList) items.get(i), actual.getList(i, new RLPCursor()), message + "/" + i);
+            } else {
+                assertFalse(actual.isList(i), message + ": item " + i + " is an element");
+                assertArrayEquals(((RLPElement) items.get(i)).getRawData(), actual.getData(i), message + ": data of item " + i);
+            }
+        }
+    }
+
+    private void checkViewMatchesTree(String fileName, int noOfBlocks) throws IOException, EthereumBlockReadException {
+        EthereumBlockView view = new EthereumBlockView();
+        try (InputStream in = openTestFile(fileName)) {
+            EthereumBlockReader ebr = createReader(in);
+            for (int i = 0; i < noOfBlocks; i++) {
+                ByteBuffer rawBlock = ebr.readRawBlock();
+                assertNotNull(rawBlock, "Block " + i + " can be read");
+                view.reset(rawBlock);
+                assertEquals(0, rawBlock.position(), "Position of the raw block is not changed");
+                RLPList tree = (RLPList) EthereumUtil.rlpDecodeNextItem(rawBlock.duplicate());
+                assertEquals(view.getHeader().getEnd(), view.getHeader().getOffset() + view.headerSlice().remaining(), "Header slice covers the header");
+                assertMatchesTree((RLPList) tree.getRlpList().get(0), view.getHeader(), "Header of block " + i);
+                RLPList transactions = (RLPList) tree.getRlpList().get(1);
+                assertEquals(transactions.getRlpList().size(), view.getTransactionCount(), "Number of transactions of block " + i);
+                for (int j = 0; j < view.getTransactionCount(); j++) {
+                    EthereumTransactionView transaction = view.getTransaction(j);
+                    assertEquals(j, transaction.getIndex(), "Index of transaction " + j);
+                    assertMatchesTree((RLPList) transactions.getRlpList().get(j), transaction.getFields(), "Transaction " + j + " of block " + i);
+                }
+                RLPList uncles = (RLPList) tree.getRlpList().get(2);
+                assertEquals(uncles.getRlpList().size(), view.getUncleCount(), "Number of uncles of block " + i);
+                for (int j = 0; j < view.getUncleCount(); j++) {
+                    assertMatchesTree((RLPList) uncles.getRlpList().get(j), view.getUncleHeader(j), "Uncle " + j + " of block " + i);
+                }
+            }
+            assertNull(ebr.readBlockView(view), "No further blocks");
+        }
+    }
+
+    @Test
+    public void viewMatchesRLPTreeBlock0to10() throws IOException, EthereumBlockReadException {
+        checkViewMatchesTree("eth0to10.bin", 11);
+    }
+
+    @Test
+    public void viewMatchesRLPTreeBlock1346406() throws IOException, EthereumBlockReadException {
+        checkViewMatchesTree("eth1346406.bin", 1);
+    }
+
+    @Test
+    public void readBlockViewGenesisBlock() throws IOException, EthereumBlockReadException {
+        try (InputStream in = openTestFile("eth0to10.bin")) {
+            EthereumBlockReader ebr = createReader(in);
+            EthereumBlockView view = ebr.readBlockView(new EthereumBlockView());
+            assertNotNull(view, "Genesis block can be read");
+            assertEquals(0, view.getNumber(), "Genesis block has number 0");
+            assertEquals(0, view.getTimestamp(), "Genesis block has timestamp 0");
+            assertEquals(5000, view.getGasLimit(), "Gas limit of genesis block");
+            assertEquals(BigInteger.valueOf(17179869184L), view.getDifficulty(), "Difficulty of genesis block");
+            assertEquals(0, view.getTransactionCount(), "Genesis block contains no transactions");
+            assertEquals(0, view.getUncleCount(), "Genesis block contains no uncles");
+            assertEquals("D4E56740F876AEF8C010B86A40D5F56745A118D0906A34E69AEC8C0DB1CB8FA3", EthereumUtil.convertByteArrayToHexString(view.getBlockHash()), "Hash of genesis block");
+            EthereumBlockView next = ebr.readBlockView(view);
+            assertSame(view, next, "View is reused");
+            assertEquals(1, next.getNumber(), "Second block has number 1");
+        }
+    }
+
+    @Test
+    public void transactionViewBlock1346406() throws IOException, EthereumBlockReadException {
+        try (InputStream in = openTestFile("eth1346406.bin")) {
+            EthereumBlockReader ebr = createReader(in);
+            EthereumBlockView view = ebr.readBlockView(new EthereumBlockView());
+            assertNotNull(view, "Block 1346406 can be read");
+            assertEquals(1346406, view.getNumber(), "Number of block");
+            assertEquals(6, view.getTransactionCount(), "Block 1346406 contains 6 transactions");
+            EthereumBlock block = view.toEthereumBlock();
+            for (int i = 0; i < view.getTransactionCount(); i++) {
+                EthereumTransactionView transactionView = view.getTransaction(i);
+                EthereumTransaction transaction = block.getEthereumTransactions().get(i);
+                assertEquals(EthereumUtil.convertVarNumberToBigInteger(transaction.getNonce()).longValue(), transactionView.getNonce(), "Nonce of transaction " + i);
+                assertEquals(transaction.getGasPrice(), transactionView.getGasPrice(), "Gas price of transaction " + i);
+                assertEquals(transaction.getGasLimit(), transactionView.getGasLimit(), "Gas limit of transaction " + i);
+                assertEquals(transaction.getValue(), transactionView.getValue(), "Value of transaction " + i);
+                assertEquals(ByteBuffer.wrap(transaction.getReceiveAddress()), transactionView.receiveAddressSlice(), "Receive address of transaction " + i);
+                assertEquals(ByteBuffer.wrap(transaction.getData()), transactionView.dataSlice(), "Data of transaction " + i);
+                assertTrue(transactionView.isSigned(), "Transaction " + i + " is signed");
+                assertArrayEquals(EthereumUtil.getTransactionHash(transaction), EthereumUtil.getTransactionHash(transactionView.toEthereumTransaction()), "Hash of transaction " + i);
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> view.getTransaction(6), "Transaction 6 does not exist");
+        }
+    }
+
+    @Test
+    public void writableRoundTrip() throws IOException, EthereumBlockReadException {
+        try (InputStream in = openTestFile("eth1346406.bin")) {
+            EthereumBlockReader ebr = createReader(in);
+            EthereumBlockView view = ebr.readBlockView(new EthereumBlockView());
+            assertNotNull(view, "Block 1346406 can be read");
+            DataOutputBuffer out = new DataOutputBuffer();
+            view.write(out);
+            DataInputBuffer dataIn = new DataInputBuffer();
+            dataIn.reset(out.getData(), out.getLength());
+            EthereumBlockView copy = new EthereumBlockView();
+            copy.readFields(dataIn);
+            assertArrayEquals(view.getBlockHash(), copy.getBlockHash(), "Block hash of copy");
+            assertEquals(view.getTransactionCount(), copy.getTransactionCount(), "Number of transactions of copy");
+            assertEquals(view.getTransaction(5).rawSlice(), copy.getTransaction(5).rawSlice(), "Last transaction of copy");
+        }
+    }
+
+    @Test
+    public void truncatedBlock() throws IOException, EthereumBlockReadException {
+        try (InputStream in = openTestFile("eth1346406.bin")) {
+            EthereumBlockReader ebr = createReader(in);
+            ByteBuffer rawBlock = ebr.readRawBlock();
+            assertNotNull(rawBlock, "Block 1346406 can be read");
+            rawBlock.limit(rawBlock.limit() - 1);
+            assertThrows(IndexOutOfBoundsException.class, () -> new EthereumBlockView().reset(rawBlock), "Truncated block is detected");
+        }
+    }
+
+    @Test
+    public void cursorElementEncodings() {
+        // list of a single byte, an empty string and a string with 60 bytes (long encoding)
+        byte[] encoded = new byte[2 + 1 + 1 + 2 + 60];
+        encoded[0] = (byte) 0xf8;
+        encoded[1] = (byte) 64;
+        encoded[2] = (byte) 0x05;
+        encoded[3] = (byte) 0x80;
+        encoded[4] = (byte) 0xb8;
+        encoded[5] = (byte) 60;
+        for (int i = 0; i < 60; i++) {
+            encoded[6 + i] = (byte) i;
+        }
+        RLPCursor cursor = new RLPCursor().reset(ByteBuffer.wrap(encoded));
+        assertEquals(3, cursor.size(), "List contains three items");
+        assertEquals(encoded.length, cursor.getEnd(), "List ends at the end of the data");
+        assertEquals(5, cursor.getLong(0), "Single byte encodes itself");
+        assertEquals(2, cursor.getDataOffset(0), "Single byte has no prefix");
+        assertEquals(0, cursor.getDataLength(1), "Empty string");
+        assertEquals(BigInteger.ZERO, cursor.getBigInteger(1), "Empty string is zero");
+        assertEquals(60, cursor.getDataLength(2), "Length of long string");
+        assertEquals(6, cursor.getDataOffset(2), "Data of long string follows two byte prefix");
+        assertEquals(62, cursor.getItemLength(2), "Long string including prefix");
+        assertEquals(59, cursor.dataSlice(2).get(59), "Last byte of long string");
+        assertThrows(ArithmeticException.class, () -> cursor.getLong(2), "Long string does not fit into a long");
+        assertThrows(IllegalArgumentException.class, () -> cursor.getList(0, new RLPCursor()), "Element is not a list");
+        assertThrows(IllegalArgumentException.class, () -> new RLPCursor().reset(ByteBuffer.wrap(encoded), 2), "Element cannot be used as list");
+    }
+}
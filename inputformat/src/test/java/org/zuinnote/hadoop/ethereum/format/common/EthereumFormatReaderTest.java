@@ -1761,4 +1761,38 @@ public class EthereumFormatReaderTest {
 	 	}
 	 }
 
+
+	 @Test
+	  public void seekBlockStartBlock0to10() throws IOException, EthereumBlockReadException {
+		ClassLoader classLoader = getClass().getClassLoader();
+		String fileName="eth0to10.bin";
+		String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+		File file = new File(fileNameBlock);
+		EthereumBlockIndex index;
+		try (FileInputStream fin = new FileInputStream(file)) {
+			index = EthereumBlockIndexBuilder.build(fin, file.length(), DEFAULT_MAXSIZE_ETHEREUMBLOCK, DEFAULT_BUFFERSIZE);
+		}
+		long[] startOffsets = {1, index.getOffset(5) + 100, index.getOffset(6)};
+		int[] expectedBlocks = {1, 6, 6};
+		for (int i = 0; i < startOffsets.length; i++) {
+			try (FileInputStream fin = new FileInputStream(file)) {
+				assertEquals( startOffsets[i], fin.skip(startOffsets[i]),"Skipped to start offset "+startOffsets[i]);
+				EthereumBlockReader ebr = new EthereumBlockReader(fin,DEFAULT_MAXSIZE_ETHEREUMBLOCK, DEFAULT_BUFFERSIZE,false);
+				ebr.seekBlockStart();
+				assertEquals( index.getOffset(expectedBlocks[i]) - startOffsets[i], ebr.getPosition(),"Position of reader is start of block "+expectedBlocks[i]);
+				EthereumBlock eblock = ebr.readBlock();
+				assertNotNull( eblock,"Block "+expectedBlocks[i]+" can be read after seeking from offset "+startOffsets[i]);
+				assertEquals( BigInteger.valueOf(expectedBlocks[i]), eblock.getEthereumBlockHeader().getNumber(),"Block "+expectedBlocks[i]+" found after seeking from offset "+startOffsets[i]);
+			}
+		}
+		// no further block after the start of the last block
+		try (FileInputStream fin = new FileInputStream(file)) {
+			long lastBlockStart = index.getOffset(10) + 1;
+			assertEquals( lastBlockStart, fin.skip(lastBlockStart),"Skipped into last block");
+			EthereumBlockReader ebr = new EthereumBlockReader(fin,DEFAULT_MAXSIZE_ETHEREUMBLOCK, DEFAULT_BUFFERSIZE,false);
+			ebr.seekBlockStart();
+			assertNull( ebr.readBlock(),"No block found in the last block");
+		}
+	 }
+
 }
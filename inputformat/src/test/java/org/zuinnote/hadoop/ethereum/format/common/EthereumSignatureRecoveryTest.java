@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.ethereum.format.common;
+
+import org.bouncycastle.asn1.sec.SECNamedCurves;
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.math.ec.ECPoint;
+import org.junit.jupiter.api.Test;
+import org.zuinnote.hadoop.ethereum.format.exception.EthereumBlockReadException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EthereumSignatureRecoveryTest {
+
+    private static final int DEFAULT_BUFFERSIZE = 64 * 1024;
+    private static final int DEFAULT_MAXSIZE_ETHEREUMBLOCK = 1 * 1024 * 1024;
+    private static final int CHAIN_ID = 1;
+
+    private List<EthereumTransaction> readTransactions(String fileName) throws IOException, EthereumBlockReadException {
+        List<EthereumTransaction> result = new ArrayList<>();
+        try (InputStream in = new FileInputStream(new File(Objects.requireNonNull(getClass().getClassLoader().getResource("testdata/" + fileName)).getFile()))) {
+            EthereumBlockReader ebr = new EthereumBlockReader(in, DEFAULT_MAXSIZE_ETHEREUMBLOCK, DEFAULT_BUFFERSIZE, false);
+            EthereumBlock block;
+            while ((block = ebr.readBlock()) != null) {
+                result.addAll(block.getEthereumTransactions());
+            }
+        }
+        return result;
+    }
+
+    private void checkMatchesGeneric(String fileName, int noOfTransactions) throws IOException, EthereumBlockReadException {
+        List<EthereumTransaction> transactions = readTransactions(fileName);
+        assertEquals(noOfTransactions, transactions.size(), "Number of transactions in " + fileName);
+        byte[][] batch = EthereumSignatureRecovery.getSendAddresses(transactions, CHAIN_ID);
+        assertEquals(transactions.size(), batch.length, "One address per transaction");
+        for (int i = 0; i < transactions.size(); i++) {
+            EthereumTransaction transaction = transactions.get(i);
+            byte[] expected = EthereumSignatureRecovery.getSendAddressGeneric(transaction, CHAIN_ID);
+            assertNotNull(expected, "Transaction " + i + " of " + fileName + " has a sender");
+            assertArrayEquals(expected, EthereumSignatureRecovery.getSendAddress(transaction, CHAIN_ID), "Sender of transaction " + i + " of " + fileName);
+            assertArrayEquals(expected, batch[i], "Sender of transaction " + i + " of " + fileName + " recovered in batch");
+        }
+    }
+
+    @Test
+    public void optimizedImplementationAvailable() {
+        assertTrue(EthereumSignatureRecovery.isOptimized(), "Optimized secp256k1 implementation is used");
+    }
+
+    @Test
+    public void matchesGenericBlock1346406() throws IOException, EthereumBlockReadException {
+        checkMatchesGeneric("eth1346406.bin", 6);
+    }
+
+    @Test
+    public void matchesGenericBlock3510000to3510010() throws IOException, EthereumBlockReadException {
+        checkMatchesGeneric("eth351000to3510010.bin", 212);
+    }
+
+    @Test
+    public void matchesGenericBlock4800251() throws IOException, EthereumBlockReadException {
+        checkMatchesGeneric("eth4800251.bin", 69);
+    }
+
+    @Test
+    public void parallelMatchesSequentialBlock3510000to3510010() throws IOException, EthereumBlockReadException {
+        List<EthereumTransaction> transactions = readTransactions("eth351000to3510010.bin");
+        byte[][] sequential = EthereumSignatureRecovery.getSendAddresses(transactions, CHAIN_ID);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            byte[][] parallel = EthereumSignatureRecovery.getSendAddresses(transactions, CHAIN_ID, pool);
+            assertEquals(sequential.length, parallel.length, "One address per transaction");
+            for (int i = 0; i < sequential.length; i++) {
+                assertArrayEquals(sequential[i], parallel[i], "Sender of transaction " + i + " recovered in parallel");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void getSendAddressesBlock1346406() throws IOException, EthereumBlockReadException {
+        try (InputStream in = new FileInputStream(new File(Objects.requireNonNull(getClass().getClassLoader().getResource("testdata/eth1346406.bin")).getFile()))) {
+            EthereumBlockReader ebr = new EthereumBlockReader(in, DEFAULT_MAXSIZE_ETHEREUMBLOCK, DEFAULT_BUFFERSIZE, false);
+            EthereumBlock block = ebr.readBlock();
+            byte[][] senders = EthereumUtil.getSendAddresses(block, CHAIN_ID);
+            assertEquals(6, senders.length, "Block 1346406 has 6 transactions");
+            for (int i = 0; i < senders.length; i++) {
+                assertArrayEquals(EthereumUtil.getSendAddress(block.getEthereumTransactions().get(i), CHAIN_ID), senders[i], "Sender of transaction " + i);
+            }
+        }
+    }
+
+    @Test
+    public void batchSkipsUnsignedTransactions() throws IOException, EthereumBlockReadException {
+        List<EthereumTransaction> transactions = readTransactions("eth1346406.bin");
+        EthereumTransaction unsigned = new EthereumTransaction();
+        unsigned.set(transactions.get(0));
+        unsigned.setSig_v(null);
+        unsigned.setSig_r(null);
+        unsigned.setSig_s(null);
+        transactions.add(1, unsigned);
+        byte[][] batch = EthereumSignatureRecovery.getSendAddresses(transactions, CHAIN_ID);
+        assertNull(batch[1], "Unsigned transaction has no sender");
+        assertArrayEquals(EthereumUtil.getSendAddress(transactions.get(0), CHAIN_ID), batch[0], "Sender of first transaction");
+        assertArrayEquals(EthereumUtil.getSendAddress(transactions.get(2), CHAIN_ID), batch[2], "Sender of transaction after unsigned transaction");
+    }
+
+    @Test
+    public void batchSkipsInvalidYParity() throws IOException, EthereumBlockReadException {
+        List<EthereumTransaction> transactions = readTransactions("eth1346406.bin");
+        EthereumTransaction invalid = new EthereumTransaction();
+        invalid.set(transactions.get(0));
+        invalid.setTransactionType(EthereumTransaction.TYPE_DYNAMIC_FEE);
+        invalid.setSig_v(new byte[]{2});
+        transactions.add(1, invalid);
+        byte[][] batch = EthereumSignatureRecovery.getSendAddresses(transactions, CHAIN_ID);
+        assertNull(batch[1], "Transaction with invalid y parity has no sender");
+        assertArrayEquals(EthereumUtil.getSendAddress(transactions.get(0), CHAIN_ID), batch[0], "Sender of first transaction");
+        assertArrayEquals(EthereumUtil.getSendAddress(transactions.get(2), CHAIN_ID), batch[2], "Sender of transaction after invalid transaction");
+    }
+
+    @Test
+    public void batchSkipsPublicKeyAtInfinity() throws IOException, EthereumBlockReadException {
+        List<EthereumTransaction> transactions = readTransactions("eth1346406.bin");
+        // R = G and s = e give the public key r^-1 (eG - eG), which is the point at infinity
+        X9ECParameters params = SECNamedCurves.getByName("secp256k1");
+        ECPoint g = params.getG().normalize();
+        EthereumTransaction infinity = new EthereumTransaction();
+        infinity.set(transactions.get(0));
+        infinity.setSig_v(new byte[]{(byte) (g.getAffineYCoord().testBitZero() ? 28 : 27)});
+        infinity.setSig_r(g.getAffineXCoord().toBigInteger().toByteArray());
+        infinity.setSig_s(new BigInteger(1, EthereumUtil.getTransactionHashWithoutSignature(infinity)).mod(params.getN()).toByteArray());
+        transactions.add(1, infinity);
+        assertNull(EthereumSignatureRecovery.getSendAddress(infinity, CHAIN_ID), "Public key at infinity has no sender");
+        assertNull(EthereumSignatureRecovery.getSendAddressGeneric(infinity, CHAIN_ID), "Public key at infinity has no sender (generic)");
+        byte[][] batch = EthereumSignatureRecovery.getSendAddresses(transactions, CHAIN_ID);
+        assertNull(batch[1], "Public key at infinity has no sender in batch");
+        assertArrayEquals(EthereumUtil.getSendAddress(transactions.get(0), CHAIN_ID), batch[0], "Sender of first transaction");
+        assertArrayEquals(EthereumUtil.getSendAddress(transactions.get(2), CHAIN_ID), batch[2], "Sender of transaction after invalid transaction");
+    }
+
+    @Test
+    public void invertAll() {
+        BigInteger n = BigInteger.valueOf(101);
+        BigInteger[] values = new BigInteger[]{BigInteger.valueOf(3), null, BigInteger.valueOf(50), BigInteger.valueOf(100)};
+        BigInteger[] inverses = EthereumSignatureRecovery.invertAll(values, n);
+        assertNull(inverses[1], "Null values are ignored");
+        for (int i : new int[]{0, 2, 3}) {
+            assertEquals(values[i].modInverse(n), inverses[i], "Inverse of " + values[i]);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2016 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+ *   <p>
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *   <p>
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   <p>
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package org.zuinnote.hadoop.ethereum.format.common;
+
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.crypto.params.ECDomainParameters;
+import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
+import org.bouncycastle.crypto.signers.ECDSASigner;
+import org.bouncycastle.crypto.signers.HMacDSAKCalculator;
+import org.bouncycastle.jcajce.provider.digest.Keccak;
+import org.bouncycastle.math.ec.ECPoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.zuinnote.hadoop.ethereum.format.exception.EthereumBlockReadException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Typed transactions (EIP-2718), base fee and withdrawals do not occur in the test data, thus a block is created that
+ * contains one transaction of each supported type signed by the private key 1
+ */
+public class EthereumTypedTransactionTest {
+
+    private static final int DEFAULT_BUFFERSIZE = 64 * 1024;
+    private static final int DEFAULT_MAXSIZE_ETHEREUMBLOCK = 1 * 1024 * 1024;
+    private static final int CHAIN_ID = 1;
+    private static final X9ECParameters CURVE = CustomNamedCurves.getByName("secp256k1");
+    // address of the private key 1
+    private static final byte[] SENDER = EthereumUtil.convertHexStringToByteArray("7E5F4552091A69125D5DFCB7B8C2659029395BDF");
+    private static final byte[] RECEIVER = filled(20, 0x11);
+    private static final byte[] BASE_FEE = {0x07};
+
+    private byte[] legacyTransaction;
+    private byte[] accessListTransaction;
+    private byte[] dynamicFeeTransaction;
+    private byte[] blobTransaction;
+    private byte[] rawBlock;
+
+    @BeforeEach
+    public void createBlock() {
+        this.legacyTransaction = createLegacyTransaction();
+        this.accessListTransaction = createTypedTransaction(EthereumTransaction.TYPE_ACCESS_LIST, new byte[][]{
+                el(new byte[]{0x01}), el(new byte[]{0x02}), el(new byte[]{0x03, (byte) 0xE8}), el(new byte[]{0x52, 0x08}), el(RECEIVER), el(new byte[]{0x0A}), el(null),
+                accessList()});
+        // data of 512 bytes, its length contains a zero byte
+        this.dynamicFeeTransaction = createTypedTransaction(EthereumTransaction.TYPE_DYNAMIC_FEE, new byte[][]{
+                el(new byte[]{0x01}), el(new byte[]{0x03}), el(new byte[]{0x02}), el(new byte[]{0x09}), el(new byte[]{0x01, 0x00, 0x00}), el(null), el(null),
+                el(filled(512, 0x42)), list()});
+        this.blobTransaction = createTypedTransaction(EthereumTransaction.TYPE_BLOB, new byte[][]{
+                el(new byte[]{0x01}), el(new byte[]{0x04}), el(new byte[]{0x02}), el(new byte[]{0x09}), el(new byte[]{0x52, 0x08}), el(RECEIVER), el(null), el(null),
+                accessList(), el(new byte[]{0x05}), list(el(filled(32, 0x01)))});
+        byte[] header = list(el(filled(32, 0x01)), el(filled(32, 0x02)), el(filled(20, 0x03)), el(filled(32, 0x04)), el(filled(32, 0x05)),
+                el(filled(32, 0x06)), el(new byte[256]), el(null), el(new byte[]{0x01, 0x00}), el(new byte[]{0x01, 0x00, 0x00}), el(new byte[]{0x52, 0x08}),
+                el(new byte[]{0x5A, 0x00, 0x00, 0x00}), el(null), el(filled(32, 0x07)), el(new byte[8]), el(BASE_FEE), el(filled(32, 0x08)));
+        byte[] withdrawal = list(el(new byte[]{0x01}), el(new byte[]{0x02}), el(RECEIVER), el(new byte[]{0x03, (byte) 0xE8}));
+        this.rawBlock = list(header,
+                list(this.legacyTransaction, el(this.accessListTransaction), el(this.dynamicFeeTransaction), el(this.blobTransaction)),
+                list(),
+                list(withdrawal));
+    }
+
+    @Test
+    public void viewDecodesTypedTransactions() {
+        EthereumBlockView view = new EthereumBlockView().reset(ByteBuffer.wrap(this.rawBlock));
+        assertEquals(BigInteger.valueOf(7), view.getBaseFeePerGas(), "Base fee");
+        assertEquals(4, view.getTransactionCount(), "Number of transactions");
+        byte[][] expected = {this.legacyTransaction, this.accessListTransaction, this.dynamicFeeTransaction, this.blobTransaction};
+        for (int i = 0; i < expected.length; i++) {
+            EthereumTransactionView transaction = view.getTransaction(i);
+            assertEquals(i, transaction.getType(), "Type of transaction " + i);
+            assertEquals(ByteBuffer.wrap(expected[i]), transaction.rawSlice(), "Raw slice of transaction " + i + " is its encoding");
+            assertTrue(transaction.isSigned(), "Transaction " + i + " is signed");
+        }
+        assertEquals(ByteBuffer.wrap(RECEIVER), view.getTransaction(3).receiveAddressSlice(), "Receiver of blob transaction");
+        EthereumTransactionView dynamicFee = view.getTransaction(2);
+        assertEquals(3, dynamicFee.getNonce(), "Nonce");
+        assertNull(dynamicFee.getGasPrice(), "Dynamic fee transactions have no gas price");
+        assertEquals(-1, dynamicFee.getFieldIndex(EthereumTransactionView.TX_GASPRICE), "Dynamic fee transactions have no gas price");
+        assertEquals(BigInteger.valueOf(2), dynamicFee.getMaxPriorityFeePerGas(), "Max priority fee");
+        assertEquals(BigInteger.valueOf(9), dynamicFee.getMaxFeePerGas(), "Max fee");
+        assertEquals(BigInteger.valueOf(65536), dynamicFee.getGasLimit(), "Gas limit");
+        assertEquals(0, dynamicFee.receiveAddressSlice().remaining(), "Contract creation");
+        assertEquals(512, dynamicFee.dataSlice().remaining(), "Length of data");
+        assertEquals(BigInteger.valueOf(1000), view.getTransaction(1).getGasPrice(), "Gas price of access list transaction");
+        assertEquals(1, view.getWithdrawalCount(), "Number of withdrawals");
+        assertArrayEquals(RECEIVER, view.getWithdrawal(0).getData(EthereumBlockView.WITHDRAWAL_ADDRESS), "Address of withdrawal");
+    }
+
+    @Test
+    public void readBlockMaterializesTypedFields() throws IOException, EthereumBlockReadException {
+        EthereumBlock block = readBlock(this.rawBlock);
+        EthereumBlockHeader header = block.getEthereumBlockHeader();
+        assertEquals(BigInteger.valueOf(7), header.getBaseFeePerGas(), "Base fee");
+        assertArrayEquals(filled(32, 0x08), header.getWithdrawalsRoot(), "Withdrawals root");
+        assertNull(header.getBlobGasUsedRaw(), "Header without blob gas");
+        assertNull(header.getParentBeaconBlockRoot(), "Header without parent beacon block root");
+        assertEquals(1, block.getWithdrawals().size(), "Number of withdrawals");
+        EthereumWithdrawal withdrawal = block.getWithdrawals().get(0);
+        assertEquals(BigInteger.ONE, withdrawal.getIndex(), "Index of withdrawal");
+        assertEquals(BigInteger.valueOf(2), withdrawal.getValidatorIndex(), "Validator of withdrawal");
+        assertEquals(BigInteger.valueOf(1000), withdrawal.getAmount(), "Amount of withdrawal");
+        List<EthereumTransaction> transactions = block.getEthereumTransactions();
+        EthereumTransaction legacy = transactions.get(0);
+        assertEquals(EthereumTransaction.TYPE_LEGACY, legacy.getTransactionType(), "Type of legacy transaction");
+        assertNull(legacy.getAccessList(), "Legacy transactions have no access list");
+        EthereumTransaction accessList = transactions.get(1);
+        assertEquals(1L, EthereumUtil.calculateChainId(accessList), "Chain id of typed transaction");
+        assertEquals(1, accessList.getAccessList().size(), "Size of access list");
+        assertArrayEquals(RECEIVER, accessList.getAccessList().get(0).getAddress(), "Address in access list");
+        assertEquals(2, accessList.getAccessList().get(0).getStorageKeys().size(), "Storage keys in access list");
+        EthereumTransaction dynamicFee = transactions.get(2);
+        assertNull(dynamicFee.getGasPriceRaw(), "Dynamic fee transactions have no gas price");
+        assertEquals(BigInteger.valueOf(9), dynamicFee.getMaxFeePerGas(), "Max fee");
+        assertTrue(dynamicFee.getAccessList().isEmpty(), "Empty access list");
+        EthereumTransaction blob = transactions.get(3);
+        assertEquals(BigInteger.valueOf(5), blob.getMaxFeePerBlobGas(), "Max fee per blob gas");
+        assertEquals(1, blob.getBlobVersionedHashes().size(), "Number of blobs");
+        assertArrayEquals(filled(32, 0x01), blob.getBlobVersionedHashes().get(0), "Versioned hash of blob");
+    }
+
+    @Test
+    public void transactionHashUsesTypedEncoding() throws IOException, EthereumBlockReadException {
+        byte[][] expected = {this.legacyTransaction, this.accessListTransaction, this.dynamicFeeTransaction, this.blobTransaction};
+        EthereumBlockView view;
+        try (InputStream in = new ByteArrayInputStream(this.rawBlock)) {
+            view = new EthereumBlockReader(in, DEFAULT_MAXSIZE_ETHEREUMBLOCK, DEFAULT_BUFFERSIZE, false).readBlockView(new EthereumBlockView());
+        }
+        List<EthereumTransaction> transactions = view.toEthereumBlock().getEthereumTransactions();
+        for (int i = 0; i < expected.length; i++) {
+            EthereumTransaction transaction = transactions.get(i);
+            assertArrayEquals(keccak(expected[i]), view.getTransaction(i).getTransactionHash(), "Hash of transaction " + i + " calculated over the raw block");
+            assertNull(transaction.getHash(), "Hash of transaction " + i + " is not calculated when reading the block");
+            assertArrayEquals(keccak(expected[i]), EthereumUtil.getTransactionHash(transaction), "Hash of transaction " + i + " calculated over its fields");
+            assertNull(transaction.getHash(), "Hash of transaction " + i + " is not stored on the transaction");
+        }
+    }
+
+    @Test
+    public void sendersOfTypedTransactions() throws IOException, EthereumBlockReadException {
+        EthereumBlock block = readBlock(this.rawBlock);
+        byte[][] senders = EthereumUtil.getSendAddresses(block, CHAIN_ID);
+        for (int i = 0; i < senders.length; i++) {
+            EthereumTransaction transaction = block.getEthereumTransactions().get(i);
+            assertArrayEquals(SENDER, senders[i], "Sender of transaction " + i);
+            assertArrayEquals(SENDER, EthereumUtil.getSendAddress(transaction, CHAIN_ID), "Sender of transaction " + i);
+            assertArrayEquals(SENDER, EthereumSignatureRecovery.getSendAddressGeneric(transaction, CHAIN_ID), "Generic sender of transaction " + i);
+        }
+    }
+
+    @Test
+    public void unsupportedTransactionTypeIsRejected() {
+        byte[] unsupported = {0x05, (byte) 0xc0};
+        byte[] block = list(list(el(null), el(null), el(null), el(null), el(null), el(null), el(null), el(null), el(null), el(null), el(null), el(null), el(null), el(null), el(null)),
+                list(el(unsupported)), list());
+        EthereumBlockView view = new EthereumBlockView().reset(ByteBuffer.wrap(block));
+        assertThrows(IllegalArgumentException.class, () -> view.getTransaction(0), "Unsupported type is rejected by the view");
+        assertThrows(EthereumBlockReadException.class, () -> readBlock(block), "Unsupported type is rejected by the reader");
+    }
+
+    private static EthereumBlock readBlock(byte[] rawBlock) throws IOException, EthereumBlockReadException {
+        try (InputStream in = new ByteArrayInputStream(rawBlock)) {
+            return new EthereumBlockReader(in, DEFAULT_MAXSIZE_ETHEREUMBLOCK, DEFAULT_BUFFERSIZE, false).readBlock();
+        }
+    }
+
+    private static byte[] createLegacyTransaction() {
+        byte[][] fields = {el(new byte[]{0x00}), el(new byte[]{0x02}), el(new byte[]{0x52, 0x08}), el(RECEIVER), el(new byte[]{0x0A}), el(null)};
+        byte[] hash = keccak(list(fields));
+        BigInteger[] signature = sign(hash);
+        byte[] v = {(byte) (EthereumUtil.LOWER_REAL_V + getYParity(hash, signature))};
+        return list(concat(fields, el(v), el(toBytes(signature[0])), el(toBytes(signature[1]))));
+    }
+
+    private static byte[] createTypedTransaction(int type, byte[][] fields) {
+        byte[] hash = keccak(typed(type, list(fields)));
+        BigInteger[] signature = sign(hash);
+        byte[] yParity = getYParity(hash, signature) == 0 ? null : new byte[]{0x01};
+        return typed(type, list(concat(fields, el(yParity), el(toBytes(signature[0])), el(toBytes(signature[1])))));
+    }
+
+    private static byte[] accessList() {
+        return list(list(el(RECEIVER), list(el(filled(32, 0x00)), el(filled(32, 0x01)))));
+    }
+
+    private static BigInteger[] sign(byte[] hash) {
+        ECDSASigner signer = new ECDSASigner(new HMacDSAKCalculator(new SHA256Digest()));
+        ECDomainParameters domain = new ECDomainParameters(CURVE.getCurve(), CURVE.getG(), CURVE.getN(), CURVE.getH());
+        signer.init(true, new ECPrivateKeyParameters(BigInteger.ONE, domain));
+        return signer.generateSignature(hash);
+    }
+
+    /**
+     * Determines the parity of R that recovers the public key of the private key 1, ie G
+     */
+    private static int getYParity(byte[] hash, BigInteger[] signature) {
+        BigInteger n = CURVE.getN();
+        BigInteger e = new BigInteger(1, hash);
+        for (int yParity = 0; yParity < 2; yParity++) {
+            byte[] compressed = new byte[33];
+            compressed[0] = (byte) (0x02 + yParity);
+            byte[] r = toBytes(signature[0]);
+            System.arraycopy(r, 0, compressed, 33 - r.length, r.length);
+            ECPoint rPoint = CURVE.getCurve().decodePoint(compressed);
+            ECPoint q = rPoint.multiply(signature[1]).subtract(CURVE.getG().multiply(e)).multiply(signature[0].modInverse(n)).normalize();
+            if (q.equals(CURVE.getG().normalize())) {
+                return yParity;
+            }
+        }
+        throw new IllegalStateException("Signature does not match private key 1");
+    }
+
+    private static byte[] toBytes(BigInteger value) {
+        byte[] result = value.toByteArray();
+        return result[0] == 0 ? Arrays.copyOfRange(result, 1, result.length) : result;
+    }
+
+    private static byte[] typed(int type, byte[] fields) {
+        byte[] result = new byte[fields.length + 1];
+        result[0] = (byte) type;
+        System.arraycopy(fields, 0, result, 1, fields.length);
+        return result;
+    }
+
+    private static byte[][] concat(byte[][] fields, byte[]... additional) {
+        byte[][] result = Arrays.copyOf(fields, fields.length + additional.length);
+        System.arraycopy(additional, 0, result, fields.length, additional.length);
+        return result;
+    }
+
+    private static byte[] el(byte[] rawData) {
+        return EthereumUtil.encodeRLPElement(rawData);
+    }
+
+    private static byte[] list(byte[]... items) {
+        return EthereumUtil.encodeRLPList(new ArrayList<>(Arrays.asList(items)));
+    }
+
+    private static byte[] filled(int length, int value) {
+        byte[] result = new byte[length];
+        Arrays.fill(result, (byte) value);
+        return result;
+    }
+
+    private static byte[] keccak(byte[] data) {
+        Keccak.Digest256 digest = new Keccak.Digest256();
+        digest.update(data, 0, data.length);
+        return digest.digest();
+    }
+}
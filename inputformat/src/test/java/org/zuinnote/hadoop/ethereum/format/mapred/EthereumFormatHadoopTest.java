@@ -24,10 +24,16 @@ import org.apache.hadoop.mapred.*;
 import org.junit.jupiter.api.*;
 import org.zuinnote.hadoop.ethereum.format.common.EthereumBlock;
 import org.zuinnote.hadoop.ethereum.format.common.EthereumBlockHeader;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumBlockIndex;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumTransaction;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumUtil;
+import org.zuinnote.hadoop.ethereum.format.mapreduce.EthereumBlockIndexTool;
 import org.zuinnote.hadoop.ethereum.format.exception.EthereumBlockReadException;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.ParseException;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -326,6 +332,65 @@ public class EthereumFormatHadoopTest {
 		    	reader.close();
 			}
 		 
+		 @Test
+		  public void readEthereumBlockInputFormatBlock1346406CalculateSender() throws IOException, EthereumBlockReadException, ParseException, InterruptedException {
+			JobConf job = new JobConf(defaultConf);
+			job.set("hadoopcryptoledger.ethereumblockinputformat.calculatesender", "true");
+			job.set("hadoopcryptoledger.ethereumblockinputformat.senderparallelism", "1");
+			ClassLoader classLoader = getClass().getClassLoader();
+			String fileName="eth1346406.bin";
+			String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();
+			Path file = new Path(fileNameBlock);
+		    FileInputFormat.setInputPaths(job, file);
+		    EthereumBlockFileInputFormat format = new EthereumBlockFileInputFormat();
+		    format.configure(job);
+		    InputSplit[] inputSplits = format.getSplits(job,1);
+
+		    assertEquals( 1, inputSplits.length,"Only one split generated for block 1346406");
+		    RecordReader<BytesWritable, EthereumBlock> reader = format.getRecordReader(inputSplits[0], job, reporter);
+			assertNotNull( reader,"Format returned  null RecordReader");
+			BytesWritable key = new BytesWritable();
+			EthereumBlock block = new EthereumBlock();
+			assertTrue( reader.next(key,block),"Input Split for block 1346406 contains at least one block");
+			assertEquals( 6, block.getEthereumTransactions().size(),"Block 1346406 must have 6 transactions");
+			assertEquals("39424BD28A2223DA3E14BF793CF7F8208EE9980A",EthereumUtil.convertByteArrayToHexString(block.getEthereumTransactions().get(0).getSender()),"Sender of transaction 1 is calculated");
+			assertEquals("4BB96091EE9D802ED039C4D1A5F6216F90F81B01",EthereumUtil.convertByteArrayToHexString(block.getEthereumTransactions().get(1).getSender()),"Sender of transaction 2 is calculated");
+			for (int i=2;i<6;i++) {
+				assertEquals("63A9975BA31B0B9626B34300F7F627147DF1F526",EthereumUtil.convertByteArrayToHexString(block.getEthereumTransactions().get(i).getSender()),"Sender of transaction "+(i+1)+" is calculated");
+			}
+			assertFalse( reader.next(key,block),"No further blocks in block 1346406");
+			reader.close();
+		}
+
+		 @Test
+		  public void readEthereumTransactionInputFormatBlock3510000to3510010() throws IOException, EthereumBlockReadException, ParseException, InterruptedException {
+			JobConf job = new JobConf(defaultConf);
+			ClassLoader classLoader = getClass().getClassLoader();
+			String fileName="eth351000to3510010.bin";
+			String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();
+			Path file = new Path(fileNameBlock);
+		    FileInputFormat.setInputPaths(job, file);
+		    EthereumTransactionFileInputFormat format = new EthereumTransactionFileInputFormat();
+		    format.configure(job);
+		    InputSplit[] inputSplits = format.getSplits(job,1);
+
+		    assertEquals( 1, inputSplits.length,"Only one split generated for blocks 3510000 to 3510010");
+		    RecordReader<BytesWritable, EthereumTransaction> reader = format.getRecordReader(inputSplits[0], job, reporter);
+			assertNotNull( reader,"Format returned  null RecordReader");
+			BytesWritable key = new BytesWritable();
+			EthereumTransaction transaction = new EthereumTransaction();
+			int count=0;
+			while (reader.next(key,transaction)) {
+				assertArrayEquals(transaction.getHash(),key.copyBytes(),"Key of transaction "+count+" is its hash");
+				// hash calculated over the raw block equals the hash of the encoded fields
+				transaction.setHash(null);
+				assertArrayEquals(EthereumUtil.getTransactionHash(transaction),key.copyBytes(),"Hash of transaction "+count);
+				count++;
+			}
+			assertEquals( 212, count,"Blocks 3510000 to 3510010 contain 212 transactions");
+			reader.close();
+		}
+
 		 @Test
 		  public void readEthereumBlockInputFormatBlock3346406() throws IOException, EthereumBlockReadException, ParseException, InterruptedException {
 			JobConf job = new JobConf(defaultConf);
@@ -380,6 +445,73 @@ public class EthereumFormatHadoopTest {
 		    	reader.close();
 			}
 		 
+		 @Test
+		  public void readEthereumBlockInputFormatIndexedBlock0to10() throws Exception {
+			JobConf job = new JobConf(defaultConf);
+			ClassLoader classLoader = getClass().getClassLoader();
+			String fileName="eth0to10.bin";
+			String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+			java.nio.file.Path tmpDir = Files.createTempDirectory("hcl-eth-index");
+			Files.copy(Paths.get(fileNameBlock), tmpDir.resolve(fileName));
+			Path dir = new Path(tmpDir.toUri());
+			assertEquals( 1, EthereumBlockIndexTool.indexFiles(job, dir),"One block file indexed");
+			assertTrue( localFs.exists(EthereumBlockIndex.getIndexPath(new Path(dir, fileName))),"Sidecar index written");
+		    FileInputFormat.setInputPaths(job, dir);
+		    EthereumBlockFileInputFormat format = new EthereumBlockFileInputFormat();
+		    format.configure(job);
+		    InputSplit[] inputSplits = format.getSplits(job,4);
+		    assertTrue( inputSplits.length>1,"Several block aligned splits generated for block 0..10, index is not an input file");
+			BytesWritable key = new BytesWritable();	
+			EthereumBlock block = new EthereumBlock();
+			int count=0;
+			for (InputSplit split: inputSplits) {
+				assertTrue( split instanceof EthereumBlockFileSplit,"Split is block aligned");
+				RecordReader<BytesWritable, EthereumBlock> reader = format.getRecordReader(split, job, reporter);
+				assertNotNull( reader,"Format returned  null RecordReader");
+				int splitCount=0;
+				while (reader.next(key,block)) {
+					splitCount++;
+				}
+				assertTrue( splitCount>0,"Each split contains at least one block");
+				count+=splitCount;
+				reader.close();
+			}
+			assertEquals(11,count,"Each of the 11 blocks of block 0..10 is read exactly once");
+			job.setBoolean(AbstractEthereumFileInputFormat.CONF_USEINDEX, false);
+			format.configure(job);
+			inputSplits = format.getSplits(job,4);
+			assertEquals( 1, inputSplits.length,"Index is ignored if disabled, file is not splitable");
+			assertFalse( inputSplits[0] instanceof EthereumBlockFileSplit,"Split is not block aligned if index is disabled");
+			localFs.delete(dir, true);
+			}
+
+		 @Test
+		  public void readEthereumBlockInputFormatSplitableBlock3510000to3510010() throws IOException, EthereumBlockReadException, ParseException, InterruptedException {
+			JobConf job = new JobConf(defaultConf);
+			ClassLoader classLoader = getClass().getClassLoader();
+			String fileName="eth351000to3510010.bin";
+			String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();	
+			Path file = new Path(fileNameBlock);
+			job.setBoolean(AbstractEthereumFileInputFormat.CONF_ISSPLITABLE, true);
+		    FileInputFormat.setInputPaths(job, file);
+		    EthereumBlockFileInputFormat format = new EthereumBlockFileInputFormat();
+		    format.configure(job);
+		    InputSplit[] inputSplits = format.getSplits(job,8);
+		    assertTrue( inputSplits.length>1,"Several splits generated for block 3510000 .. 3510010");
+			BytesWritable key = new BytesWritable();	
+			EthereumBlock block = new EthereumBlock();
+			int count=0;
+			for (InputSplit split: inputSplits) {
+				RecordReader<BytesWritable, EthereumBlock> reader = format.getRecordReader(split, job, reporter);
+				assertNotNull( reader,"Format returned  null RecordReader");
+				while (reader.next(key,block)) {
+					count++;
+				}
+				reader.close();
+			}
+			assertEquals(11,count,"Each of the 11 blocks of block 3510000 .. 3510010 is read exactly once");
+			}
+
 		 @Test
 		  public void readEthereumBlockInputFormatBlock3510000to3510010() throws IOException, EthereumBlockReadException, ParseException, InterruptedException {
 				JobConf job = new JobConf(defaultConf);
@@ -27,10 +27,15 @@ import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
 import org.junit.jupiter.api.*;
 import org.zuinnote.hadoop.ethereum.format.common.EthereumBlock;
 import org.zuinnote.hadoop.ethereum.format.common.EthereumBlockHeader;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumBlockIndex;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumTransaction;
+import org.zuinnote.hadoop.ethereum.format.common.EthereumUtil;
 import org.zuinnote.hadoop.ethereum.format.exception.EthereumBlockReadException;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.ParseException;
 import java.util.List;
 
@@ -342,6 +347,68 @@ public class EthereumFormatHadoopTest {
 		reader.close();
 	}
 
+	@Test
+	public void readEthereumBlockInputFormatBlock1346406CalculateSender() throws IOException, EthereumBlockReadException, ParseException, InterruptedException {
+		Configuration conf = new Configuration(defaultConf);
+		conf.set("hadoopcryptoledger.ethereumblockinputformat.calculatesender", "true");
+		conf.set("hadoopcryptoledger.ethereumblockinputformat.senderparallelism", "2");
+		ClassLoader classLoader = getClass().getClassLoader();
+		String fileName="eth1346406.bin";
+		String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();
+		Path file = new Path(fileNameBlock);
+		Job job = Job.getInstance(conf);
+		FileInputFormat.setInputPaths(job, file);
+		EthereumBlockFileInputFormat format = new EthereumBlockFileInputFormat();
+
+		List<InputSplit> splits = format.getSplits(job);
+		TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+		assertEquals( 1, splits.size(),"Only one split generated for block 1346406");
+		RecordReader<BytesWritable, EthereumBlock> reader = format.createRecordReader(splits.get(0), context);
+		assertNotNull( reader,"Format returned  null RecordReader");
+		reader.initialize(splits.get(0),context);
+		assertTrue( reader.nextKeyValue(),"Input Split for block 1346406 contains at least one block");
+		EthereumBlock block=reader.getCurrentValue();
+		assertEquals( 6, block.getEthereumTransactions().size(),"Block 1346406 must have 6 transactions");
+		assertEquals("39424BD28A2223DA3E14BF793CF7F8208EE9980A",EthereumUtil.convertByteArrayToHexString(block.getEthereumTransactions().get(0).getSender()),"Sender of transaction 1 is calculated");
+		assertEquals("4BB96091EE9D802ED039C4D1A5F6216F90F81B01",EthereumUtil.convertByteArrayToHexString(block.getEthereumTransactions().get(1).getSender()),"Sender of transaction 2 is calculated");
+		for (int i=2;i<6;i++) {
+			assertEquals("63A9975BA31B0B9626B34300F7F627147DF1F526",EthereumUtil.convertByteArrayToHexString(block.getEthereumTransactions().get(i).getSender()),"Sender of transaction "+(i+1)+" is calculated");
+		}
+		assertFalse( reader.nextKeyValue(),"No further blocks in block 1346406");
+		reader.close();
+	}
+
+	@Test
+	public void readEthereumTransactionInputFormatBlock3510000to3510010() throws IOException, EthereumBlockReadException, ParseException, InterruptedException {
+		Configuration conf = new Configuration(defaultConf);
+		ClassLoader classLoader = getClass().getClassLoader();
+		String fileName="eth351000to3510010.bin";
+		String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();
+		Path file = new Path(fileNameBlock);
+		Job job = Job.getInstance(conf);
+		FileInputFormat.setInputPaths(job, file);
+		EthereumTransactionFileInputFormat format = new EthereumTransactionFileInputFormat();
+
+		List<InputSplit> splits = format.getSplits(job);
+		TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+		assertEquals( 1, splits.size(),"Only one split generated for blocks 3510000 to 3510010");
+		RecordReader<BytesWritable, EthereumTransaction> reader = format.createRecordReader(splits.get(0), context);
+		assertNotNull( reader,"Format returned  null RecordReader");
+		reader.initialize(splits.get(0),context);
+		int count=0;
+		while (reader.nextKeyValue()) {
+			EthereumTransaction transaction=reader.getCurrentValue();
+			byte[] key=reader.getCurrentKey().copyBytes();
+			assertArrayEquals(transaction.getHash(),key,"Key of transaction "+count+" is its hash");
+			// hash calculated over the raw block equals the hash of the encoded fields
+			transaction.setHash(null);
+			assertArrayEquals(EthereumUtil.getTransactionHash(transaction),key,"Hash of transaction "+count);
+			count++;
+		}
+		assertEquals( 212, count,"Blocks 3510000 to 3510010 contain 212 transactions");
+		reader.close();
+	}
+
 	@Test
 	public void readEthereumBlockInputFormatBlock3346406() throws IOException, EthereumBlockReadException, ParseException, InterruptedException {
 		Configuration conf = new Configuration(defaultConf);
@@ -400,6 +467,76 @@ public class EthereumFormatHadoopTest {
 		reader.close();
 	}
 
+	@Test
+	public void readEthereumBlockInputFormatIndexedBlock0to10() throws Exception {
+		Configuration conf = new Configuration(defaultConf);
+		ClassLoader classLoader = getClass().getClassLoader();
+		String fileName="eth0to10.bin";
+		String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();
+		java.nio.file.Path tmpDir = Files.createTempDirectory("hcl-eth-index");
+		Files.copy(Paths.get(fileNameBlock), tmpDir.resolve(fileName));
+		Path dir = new Path(tmpDir.toUri());
+		assertEquals( 1, EthereumBlockIndexTool.indexFiles(conf, dir),"One block file indexed");
+		assertTrue( localFs.exists(EthereumBlockIndex.getIndexPath(new Path(dir, fileName))),"Sidecar index written");
+		conf.setLong(FileInputFormat.SPLIT_MAXSIZE, 2000);
+		Job job = Job.getInstance(conf);
+		FileInputFormat.setInputPaths(job, dir);
+		EthereumBlockFileInputFormat format = new EthereumBlockFileInputFormat();
+		List<InputSplit> splits = format.getSplits(job);
+		TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+		assertTrue( splits.size()>1,"Several block aligned splits generated for block 0..10, index is not an input file");
+		int count=0;
+		for (InputSplit split: splits) {
+			assertTrue( split instanceof EthereumBlockFileSplit,"Split is block aligned");
+			RecordReader<BytesWritable, EthereumBlock> reader = format.createRecordReader(split, context);
+			assertNotNull( reader,"Format returned  null RecordReader");
+			reader.initialize(split,context);
+			int splitCount=0;
+			while (reader.nextKeyValue()) {
+				splitCount++;
+			}
+			assertTrue( splitCount>0,"Each split contains at least one block");
+			count+=splitCount;
+			reader.close();
+		}
+		assertEquals(11,count,"Each of the 11 blocks of block 0..10 is read exactly once");
+		conf.setBoolean(AbstractEthereumFileInputFormat.CONF_USEINDEX, false);
+		job = Job.getInstance(conf);
+		FileInputFormat.setInputPaths(job, dir);
+		splits = format.getSplits(job);
+		assertEquals( 1, splits.size(),"Index is ignored if disabled, file is not splitable");
+		assertFalse( splits.get(0) instanceof EthereumBlockFileSplit,"Split is not block aligned if index is disabled");
+		localFs.delete(dir, true);
+	}
+
+	@Test
+	public void readEthereumBlockInputFormatSplitableBlock3510000to3510010() throws IOException, EthereumBlockReadException, ParseException, InterruptedException {
+		Configuration conf = new Configuration(defaultConf);
+		ClassLoader classLoader = getClass().getClassLoader();
+		String fileName="eth351000to3510010.bin";
+		String fileNameBlock=classLoader.getResource("testdata/"+fileName).getFile();
+		Path file = new Path(fileNameBlock);
+		conf.setBoolean(AbstractEthereumFileInputFormat.CONF_ISSPLITABLE, true);
+		conf.setLong(FileInputFormat.SPLIT_MAXSIZE, 5000);
+		Job job = Job.getInstance(conf);
+		FileInputFormat.setInputPaths(job, file);
+		EthereumBlockFileInputFormat format = new EthereumBlockFileInputFormat();
+		List<InputSplit> splits = format.getSplits(job);
+		TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+		assertTrue( splits.size()>1,"Several splits generated for block 3510000 .. 3510010");
+		int count=0;
+		for (InputSplit split: splits) {
+			RecordReader<BytesWritable, EthereumBlock> reader = format.createRecordReader(split, context);
+			assertNotNull( reader,"Format returned  null RecordReader");
+			reader.initialize(split,context);
+			while (reader.nextKeyValue()) {
+				count++;
+			}
+			reader.close();
+		}
+		assertEquals(11,count,"Each of the 11 blocks of block 3510000 .. 3510010 is read exactly once");
+	}
+
 	@Test
 	public void readEthereumBlockInputFormatBlock3510000to3510010() throws IOException, EthereumBlockReadException, ParseException, InterruptedException {
 		Configuration conf = new Configuration(defaultConf);
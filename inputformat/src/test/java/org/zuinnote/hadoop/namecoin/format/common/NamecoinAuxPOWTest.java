@@ -19,6 +19,7 @@ package org.zuinnote.hadoop.namecoin.format.common;
 import org.junit.jupiter.api.Test;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlock;
 import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockReader;
+import org.zuinnote.hadoop.bitcoin.format.common.BitcoinBlockSection;
 import org.zuinnote.hadoop.bitcoin.format.exception.BitcoinBlockReadException;
 
 import java.io.File;
@@ -116,6 +117,29 @@ public class NamecoinAuxPOWTest {
 					bbr.close();
 			}
 	 }
-	 
-	 
+
+	 @Test
+	 public void readAuxPowNamecoinThreeDifferentOpinOneBlockProjection() throws BitcoinBlockReadException, IOException {
+		 ClassLoader classLoader = getClass().getClassLoader();
+			String fileName="namecointhreedifferentopinoneblock.blk";
+			String fullFileNameString=classLoader.getResource("testdata/"+fileName).getFile();	
+			File file = new File(fullFileNameString);
+			BitcoinBlockReader bbr = null;
+			boolean direct=false;
+			boolean auxPow=true;
+			try {
+				FileInputStream fin = new FileInputStream(file);
+				bbr = new BitcoinBlockReader(fin,this.DEFAULT_MAXSIZE_BITCOINBLOCK,this.DEFAULT_BUFFERSIZE,this.DEFAULT_MAGIC,direct,auxPow);
+				bbr.setProjection(BitcoinBlockSection.parseProjection("header,transactions"));
+				BitcoinBlock theBitcoinBlock = bbr.readBlock();
+				assertNotNull(theBitcoinBlock,"Namecoin Three Different Op in One Block contains a block");
+				assertNull(theBitcoinBlock.getAuxPOW(),"Namecoin Three Different Op in Block AuxPowInformation is skipped");
+				assertEquals( 7, theBitcoinBlock.getTransactions().size(),"Namecoin Three Different Op in Block must contain exactly 7 transactions");
+				assertTrue(theBitcoinBlock.verifyMerkleRoot(),"Namecoin Three Different Op in Block has valid Merkle root");
+					} finally {
+				if (bbr!=null) 
+					bbr.close();
+			}
+	 }
+
 }